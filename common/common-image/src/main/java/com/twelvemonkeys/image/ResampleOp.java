@@ -54,11 +54,17 @@
 
 package com.twelvemonkeys.image;
 
+import com.twelvemonkeys.util.LRUHashMap;
+
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.*;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Resamples (scales) a {@code BufferedImage} to a new width and height, using
@@ -103,6 +109,12 @@ import java.awt.image.*;
  * BufferedImage scaled = new ResampleOp(w, h).filter(temp, null);
  * </pre></blockquote>
  * <p>
+ * For large images, resampling may be done in parallel, by specifying
+ * {@link #VALUE_PARALLELISM_PARALLEL} for the {@link #KEY_RESAMPLE_PARALLELISM}
+ * hint. The destination columns are then split into bands, that are filtered
+ * concurrently using a shared {@code ForkJoinPool}.
+ * </p>
+ * <p>
  * For maximum performance, this class will use native code, through
  * <a href="http://www.yeo.id.au/jmagick/">JMagick</a>, when available.
  * Otherwise, the class will silently fall back to pure Java mode.
@@ -294,6 +306,28 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
     public final static Object VALUE_INTERPOLATION_BLACKMAN_SINC =
             new Value(KEY_RESAMPLE_INTERPOLATION, "Blackman-Sinc", FILTER_BLACKMAN_SINC);
 
+    /**
+     * RenderingHints.Key specifying whether resampling may use multiple threads.
+     */
+    public final static RenderingHints.Key KEY_RESAMPLE_PARALLELISM = new Key("ResampleParallelism");
+
+    /**
+     * Resampling is done in the calling thread only. This is the default.
+     */
+    public final static Object VALUE_PARALLELISM_SEQUENTIAL =
+            new Value(KEY_RESAMPLE_PARALLELISM, "Sequential", 0);
+    /**
+     * Resampling of large images is split into bands of destination columns,
+     * filtered concurrently using a shared {@code ForkJoinPool}.
+     */
+    public final static Object VALUE_PARALLELISM_PARALLEL =
+            new Value(KEY_RESAMPLE_PARALLELISM, "Parallel", 1);
+
+    // Minimum number of destination columns (or rows) per parallel task
+    private final static int MIN_PARALLEL_BAND_SIZE = 16;
+    // Minimum number of pixels filtered (in both passes), for parallel resampling to pay off
+    private final static int MIN_PARALLEL_PIXELS = 1 << 18;
+
     // Member variables
     // Package access, to allow access from MagickAccelerator
     int width;
@@ -301,6 +335,8 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
 
     int filterType;
 
+    boolean parallel;
+
     /**
      * RendereingHints.Key implementation, works only with Value values.
      */
@@ -336,7 +372,7 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
         public Value(final RenderingHints.Key pKey, final String pName, final int pType) {
             key = pKey;
             name = pName;
-            type = validateFilterType(pType);
+            type = pKey == KEY_RESAMPLE_INTERPOLATION ? validateFilterType(pType) : pType;
         }
 
         public boolean isCompatibleKey(Key pKey) {
@@ -393,6 +429,8 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
      * {@code FILTER_MITCHELL}</li>
      * </ul>
      * </li>
+     * <li>{@code KEY_RESAMPLE_PARALLELISM} specifies whether the resampling
+     * may use multiple threads, see {@link #VALUE_PARALLELISM_PARALLEL}.</li>
      * </ul>
      * <p>
      * Other hints have no effect on this filter.
@@ -402,12 +440,15 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
      * @param height height of the re-sampled image
      * @param hints  rendering hints, affecting interpolation algorithm
      * @see #KEY_RESAMPLE_INTERPOLATION
+     * @see #KEY_RESAMPLE_PARALLELISM
      * @see RenderingHints#KEY_INTERPOLATION
      * @see RenderingHints#KEY_RENDERING
      * @see RenderingHints#KEY_COLOR_RENDERING
      */
     public ResampleOp(int width, int height, RenderingHints hints) {
         this(width, height, getFilterType(hints));
+
+        parallel = isParallel(hints);
     }
 
     /**
@@ -498,6 +539,20 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
         return FILTER_UNDEFINED;
     }
 
+    private static boolean isParallel(RenderingHints pHints) {
+        if (pHints == null || !pHints.containsKey(KEY_RESAMPLE_PARALLELISM)) {
+            return false;
+        }
+
+        Object value = pHints.get(KEY_RESAMPLE_PARALLELISM);
+        // NOTE: Workaround for a bug in RenderingHints constructor (Bug id# 5084832)
+        if (value != null && !KEY_RESAMPLE_PARALLELISM.isCompatibleValue(value)) {
+            throw new IllegalArgumentException(value + " incompatible with key " + KEY_RESAMPLE_PARALLELISM);
+        }
+
+        return value == VALUE_PARALLELISM_PARALLEL;
+    }
+
     /**
      * Re-samples (scales) the image to the size, and using the algorithm
      * specified in the constructor.
@@ -825,7 +880,7 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
         Object value;
         switch (filterType) {
             case FILTER_UNDEFINED:
-                return null;
+                return parallel ? new RenderingHints(KEY_RESAMPLE_PARALLELISM, VALUE_PARALLELISM_PARALLEL) : null;
             case FILTER_POINT:
                 value = VALUE_INTERPOLATION_POINT;
                 break;
@@ -875,7 +930,13 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
                 throw new IllegalStateException("Unknown filter type: " + filterType);
         }
 
-        return new RenderingHints(KEY_RESAMPLE_INTERPOLATION, value);
+        RenderingHints hints = new RenderingHints(KEY_RESAMPLE_INTERPOLATION, value);
+
+        if (parallel) {
+            hints.put(KEY_RESAMPLE_PARALLELISM, VALUE_PARALLELISM_PARALLEL);
+        }
+
+        return hints;
     }
 
     public Rectangle2D getBounds2D(BufferedImage src) {
@@ -1280,16 +1341,92 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
     /*
     *	image rescaling routine
     */
-    class Contributor {
-        int pixel;
-        double weight;
+
+    // Number of fractional bits in fixed point weights
+    private final static int FIXED_BITS = 20;
+    private final static int FIXED_HALF = 1 << (FIXED_BITS - 1);
+
+    /**
+     * Filter contributions for all destination pixels along one axis, stored in flat arrays.
+     * The contributions for destination pixel {@code i} are stored from index {@code i * stride},
+     * with {@code counts[i]} source pixel indexes in {@code pixels}, and corresponding weights in {@code weights}.
+     * The same weights are also stored in fixed point format, with {@link #FIXED_BITS} fractional bits,
+     * in {@code fixedWeights}, and the value to add before shifting to round a fixed point sum in {@code rounding}.
+     * Tables are immutable once created, and may be shared between threads.
+     */
+    static final class ContributionTable {
+        final int stride;
+        final int[] counts;
+        final int[] pixels;
+        final double[] weights;
+        final int[] fixedWeights;
+        final int[] rounding;
+        // The largest sum of absolute fixed point weights for any destination pixel, used to guard against overflow
+        final long maxFixedWeightSum;
+
+        ContributionTable(final int stride, final int[] counts, final int[] pixels, final double[] weights) {
+            this.stride = stride;
+            this.counts = counts;
+            this.pixels = pixels;
+            this.weights = weights;
+
+            fixedWeights = new int[weights.length];
+            rounding = new int[counts.length];
+
+            long maxSum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                long sum = 0;
+                double weightSum = 0;
+
+                for (int j = i * stride; j < i * stride + counts[i]; j++) {
+                    fixedWeights[j] = (int) Math.round(weights[j] * (1 << FIXED_BITS));
+                    sum += Math.abs(fixedWeights[j]);
+                    weightSum += weights[j];
+                }
+
+                // Mimic the double precision code on exact ties (common with symmetric weights):
+                // If the weights sum to slightly less than 1.0, ties are rounded down, otherwise up
+                rounding[i] = weightSum < 1.0 ? FIXED_HALF - 1 : FIXED_HALF;
+                maxSum = Math.max(maxSum, sum);
+            }
+
+            maxFixedWeightSum = maxSum;
+        }
     }
 
-    class ContributorList {
-        int n;/* number of contributors (may be < p.length) */
-        Contributor[] p;/* pointer to list of contributions */
+    private static final class ContributionKey {
+        private final int srcSize;
+        private final int dstSize;
+        private final Class<?> filter;
+
+        ContributionKey(final int srcSize, final int dstSize, final InterpolationFilter filter) {
+            this.srcSize = srcSize;
+            this.dstSize = dstSize;
+            this.filter = filter.getClass(); // NOTE: Filters are stateless, the class identifies the filter
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof ContributionKey)) {
+                return false;
+            }
+
+            ContributionKey key = (ContributionKey) other;
+            return srcSize == key.srcSize && dstSize == key.dstSize && filter == key.filter;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * srcSize + dstSize) + filter.hashCode();
+        }
     }
 
+    // Cache for the latest used contribution tables
+    private static final Map<ContributionKey, ContributionTable> contributionCache = new LRUHashMap<>(64);
+
     /*
         round()
 
@@ -1317,124 +1454,114 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
     }/* round */
 
     /*
-        calcXContrib()
+        getContributions()
 
-        Calculates the filter weights for a single target column.
-        contribX->p must be freed afterwards.
-
-        Returns -1 if error, 0 otherwise.
+        Looks up the filter weights for all target pixels along one axis from cache,
+        or calculates them if not cached.
     */
-    private ContributorList calcXContrib(double xscale, double fwidth, int srcwidth, InterpolationFilter pFilter, int i) {
-        // TODO: What to do when fwidth > srcwidyj or dstwidth
+    static ContributionTable getContributions(final int srcSize, final int dstSize, final InterpolationFilter pFilter) {
+        ContributionKey key = new ContributionKey(srcSize, dstSize, pFilter);
+        ContributionTable contributions;
+
+        synchronized (contributionCache) {
+            contributions = contributionCache.get(key);
+        }
+
+        if (contributions == null) {
+            // NOTE: Calculated outside the lock, in the rare case of a race, the table is just calculated twice
+            contributions = calcContributions(srcSize, dstSize, pFilter);
+
+            synchronized (contributionCache) {
+                contributionCache.put(key, contributions);
+            }
+        }
+
+        return contributions;
+    }/* getContributions */
 
-        double width;
-        double fscale;
-        double center;
-        double weight;
+    /*
+        calcContributions()
+
+        Calculates the filter weights for all target pixels along one axis.
+    */
+    private static ContributionTable calcContributions(final int srcSize, final int dstSize, final InterpolationFilter pFilter) {
+        // TODO: What to do when fwidth > srcSize or dstSize
+        final double scale = (double) dstSize / (double) srcSize;
+        final boolean shrinking = scale < 1.0;
 
-        ContributorList contribX = new ContributorList();
+        double width = pFilter.support();
+        double fscale = 1.0;
 
-        if (xscale < 1.0) {
+        if (shrinking) {
             /* Shrinking image */
-            width = fwidth / xscale;
-            fscale = 1.0 / xscale;
+            width = width / scale;
+            fscale = 1.0 / scale;
 
             if (width <= .5) {
                 // Reduce to point sampling.
                 width = .5 + 1.0e-6;
                 fscale = 1.0;
             }
+        }
 
-            //contribX.n = 0;
-            contribX.p = new Contributor[(int) (width * 2.0 + 1.0 + 0.5)];
+        final int stride = (int) (width * 2.0 + 1.0 + 0.5);
+        final int[] counts = new int[dstSize];
+        final int[] pixels = new int[dstSize * stride];
+        final double[] weights = new double[dstSize * stride];
 
-            center = (double) i / xscale;
-            int left = (int) Math.ceil(center - width);// Note: Assumes width <= .5
+        for (int i = 0; i < dstSize; i++) {
+            double center = (double) i / scale;
+            int left = (int) Math.ceil(center - width);
             int right = (int) Math.floor(center + width);
 
+            int offset = i * stride;
+            int count = 0;
             double density = 0.0;
 
             for (int j = left; j <= right; j++) {
-                weight = center - (double) j;
+                double weight = center - (double) j;
                 weight = pFilter.filter(weight / fscale) / fscale;
+
                 int n;
                 if (j < 0) {
                     n = -j;
                 }
-                else if (j >= srcwidth) {
-                    n = (srcwidth - j) + srcwidth - 1;
+                else if (j >= srcSize) {
+                    n = (srcSize - j) + srcSize - 1;
                 }
                 else {
                     n = j;
                 }
 
                 /**/
-                if (n >= srcwidth) {
-                    n = n % srcwidth;
+                if (n >= srcSize) {
+                    n = n % srcSize;
                 }
                 else if (n < 0) {
-                    n = srcwidth - 1;
+                    n = srcSize - 1;
                 }
                 /**/
 
-                int k = contribX.n++;
-                contribX.p[k] = new Contributor();
-                contribX.p[k].pixel = n;
-                contribX.p[k].weight = weight;
+                pixels[offset + count] = n;
+                weights[offset + count] = weight;
+                count++;
 
                 density += weight;
-
             }
 
-            if ((density != 0.0) && (density != 1.0)) {
+            if (shrinking && (density != 0.0) && (density != 1.0)) {
                 //Normalize.
                 density = 1.0 / density;
-                for (int k = 0; k < contribX.n; k++) {
-                    contribX.p[k].weight *= density;
+                for (int k = 0; k < count; k++) {
+                    weights[offset + k] *= density;
                 }
             }
-        }
-        else {
-            /* Expanding image */
-            //contribX.n = 0;
-            contribX.p = new Contributor[(int) (fwidth * 2.0 + 1.0 + 0.5)];
-
-            center = (double) i / xscale;
-            int left = (int) Math.ceil(center - fwidth);
-            int right = (int) Math.floor(center + fwidth);
-
-            for (int j = left; j <= right; j++) {
-                weight = center - (double) j;
-                weight = pFilter.filter(weight);
-
-                int n;
-                if (j < 0) {
-                    n = -j;
-                }
-                else if (j >= srcwidth) {
-                    n = (srcwidth - j) + srcwidth - 1;
-                }
-                else {
-                    n = j;
-                }
-
-                /**/
-                if (n >= srcwidth) {
-                    n = n % srcwidth;
-                }
-                else if (n < 0) {
-                    n = srcwidth - 1;
-                }
-                /**/
 
-                int k = contribX.n++;
-                contribX.p[k] = new Contributor();
-                contribX.p[k].pixel = n;
-                contribX.p[k].weight = weight;
-            }
+            counts[i] = count;
         }
-        return contribX;
-    }/* calcXContrib */
+
+        return new ContributionTable(stride, counts, pixels, weights);
+    }/* calcContributions */
 
     /*
         resample()
@@ -1448,133 +1575,73 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
         final int srcWidth = pSource.getWidth();
         final int srcHeight = pSource.getHeight();
 
-        /* create intermediate column to hold horizontal dst column zoom */
-        final ColorModel cm = pSource.getColorModel();
-//        final WritableRaster work = cm.createCompatibleWritableRaster(1, srcHeight);
-        final WritableRaster work = ImageUtil.createCompatibleWritableRaster(pSource, cm, 1, srcHeight);
-
-        double xscale = (double) dstWidth / (double) srcWidth;
-        double yscale = (double) dstHeight / (double) srcHeight;
+        final ContributionTable contribX = getContributions(srcWidth, dstWidth, pFilter);
+        final ContributionTable contribY = getContributions(srcHeight, dstHeight, pFilter);
 
-        ContributorList[] contribY = new ContributorList[dstHeight];
-        for (int i = 0; i < contribY.length; i++) {
-            contribY[i] = new ContributorList();
+        // Fast path for the most common types
+        FixedPointResampler fixedPoint = FixedPointResampler.create(pSource, pDest, contribX, contribY);
+        if (fixedPoint != null) {
+            fixedPoint.resample(parallel && isLargeEnoughForParallel(dstWidth, srcHeight, dstHeight) ? ResamplePool.POOL : null);
+            return pDest;
         }
 
-        // TODO: What to do when fwidth > srcHeight or dstHeight
-        double fwidth = pFilter.support();
-        if (yscale < 1.0) {
-            double width = fwidth / yscale;
-            double fscale = 1.0 / yscale;
-
-            if (width <= .5) {
-                // Reduce to point sampling.
-                width = .5 + 1.0e-6;
-                fscale = 1.0;
-            }
-
-            for (int i = 0; i < dstHeight; i++) {
-                //contribY[i].n = 0;
-                contribY[i].p = new Contributor[(int) (width * 2.0 + 1 + 0.5)];
-
-                double center = (double) i / yscale;
-                int left = (int) Math.ceil(center - width);
-                int right = (int) Math.floor(center + width);
-
-                double density = 0.0;
-
-                for (int j = left; j <= right; j++) {
-                    double weight = center - (double) j;
-                    weight = pFilter.filter(weight / fscale) / fscale;
-                    int n;
-                    if (j < 0) {
-                        n = -j;
-                    }
-                    else if (j >= srcHeight) {
-                        n = (srcHeight - j) + srcHeight - 1;
-                    }
-                    else {
-                        n = j;
-                    }
-
-                    /**/
-                    if (n >= srcHeight) {
-                        n = n % srcHeight;
-                    }
-                    else if (n < 0) {
-                        n = srcHeight - 1;
-                    }
-                    /**/
+        final Raster raster = pSource.getRaster();
+        final WritableRaster out = pDest.getRaster();
 
-                    int k = contribY[i].n++;
-                    contribY[i].p[k] = new Contributor();
-                    contribY[i].p[k].pixel = n;
-                    contribY[i].p[k].weight = weight;
+        // TODO: This is not optimal for non-byte-packed rasters...
+        // (What? Maybe I implemented the fix, but forgot to remove the TODO?)
+        final int numChannels = raster.getNumBands();
+        final int[] channelMax = new int[numChannels];
+        for (int k = 0; k < numChannels; k++) {
+            channelMax[k] = (1 << pSource.getColorModel().getComponentSize(k)) - 1;
+        }
 
-                    density += weight;
-                }
+        if (parallel && canResampleConcurrently(out, dstWidth, srcHeight, dstHeight)) {
+            ForkJoinPool pool = ResamplePool.POOL;
+            int columnsPerTask = Math.max(MIN_PARALLEL_BAND_SIZE, dstWidth / (pool.getParallelism() * 4));
 
-                if ((density != 0.0) && (density != 1.0)) {
-                    //Normalize.
-                    density = 1.0 / density;
-                    for (int k = 0; k < contribY[i].n; k++) {
-                        contribY[i].p[k].weight *= density;
-                    }
-                }
-            }
+            pool.invoke(new ResampleColumns(pSource, out, contribX, contribY, channelMax, 0, dstWidth, columnsPerTask));
         }
         else {
-            for (int i = 0; i < dstHeight; ++i) {
-                //contribY[i].n = 0;
-                contribY[i].p = new Contributor[(int) (fwidth * 2 + 1 + 0.5)];
-
-                double center = (double) i / yscale;
-                double left = Math.ceil(center - fwidth);
-                double right = Math.floor(center + fwidth);
-                for (int j = (int) left; j <= right; ++j) {
-                    double weight = center - (double) j;
-                    weight = pFilter.filter(weight);
-                    int n;
-                    if (j < 0) {
-                        n = -j;
-                    }
-                    else if (j >= srcHeight) {
-                        n = (srcHeight - j) + srcHeight - 1;
-                    }
-                    else {
-                        n = j;
-                    }
+            resampleColumns(pSource, out, contribX, contribY, channelMax, 0, dstWidth);
+        }
 
-                    /**/
-                    if (n >= srcHeight) {
-                        n = n % srcHeight;
-                    }
-                    else if (n < 0) {
-                        n = srcHeight - 1;
-                    }
-                    /**/
+        return pDest;
+    }/* resample */
 
-                    int k = contribY[i].n++;
-                    contribY[i].p[k] = new Contributor();
-                    contribY[i].p[k].pixel = n;
-                    contribY[i].p[k].weight = weight;
-                }
-            }
-        }
+    private static boolean canResampleConcurrently(final WritableRaster out, final int dstWidth, final int srcHeight, final int dstHeight) {
+        // Columns are written concurrently, and pixels packed into the same data element would interfere
+        return !(out.getSampleModel() instanceof MultiPixelPackedSampleModel)
+                && isLargeEnoughForParallel(dstWidth, srcHeight, dstHeight);
+    }
+
+    private static boolean isLargeEnoughForParallel(final int dstWidth, final int srcHeight, final int dstHeight) {
+        return dstWidth >= 2 * MIN_PARALLEL_BAND_SIZE
+                && (long) dstWidth * (srcHeight + dstHeight) >= MIN_PARALLEL_PIXELS;
+    }
 
+    /*
+        resampleColumns()
+
+        Resamples the dst columns from (inclusive) to (exclusive), horizontally into a temp column,
+        then vertically into the dst column. Columns are independent, and may be resampled concurrently.
+    */
+    private static void resampleColumns(final BufferedImage pSource, final WritableRaster out,
+                                        final ContributionTable contribX, final ContributionTable contribY, final int[] channelMax,
+                                        final int from, final int to) {
         final Raster raster = pSource.getRaster();
-        final WritableRaster out = pDest.getRaster();
 
-        // TODO: This is not optimal for non-byte-packed rasters...
-        // (What? Maybe I implemented the fix, but forgot to remove the TODO?)
+        final int srcHeight = raster.getHeight();
+        final int dstHeight = contribY.counts.length;
         final int numChannels = raster.getNumBands();
-        final int[] channelMax = new int[numChannels];
-        for (int k = 0; k < numChannels; k++) {
-            channelMax[k] = (1 << pSource.getColorModel().getComponentSize(k)) - 1;
-        }
 
-        for (int xx = 0; xx < dstWidth; xx++) {
-            ContributorList contribX = calcXContrib(xscale, fwidth, srcWidth, pFilter, xx);
+        /* create intermediate column to hold horizontal dst column zoom */
+        final WritableRaster work = ImageUtil.createCompatibleWritableRaster(pSource, pSource.getColorModel(), 1, srcHeight);
+
+        for (int xx = from; xx < to; xx++) {
+            final int xOffset = xx * contribX.stride;
+            final int xCount = contribX.counts[xx];
+
             /* Apply horiz filter to make dst column in tmp. */
             for (int k = 0; k < srcHeight; k++) {
                 for (int channel = 0; channel < numChannels; channel++) {
@@ -1583,13 +1650,13 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
                     boolean bPelDelta = false;
                     // TODO: This line throws index out of bounds, if the image
                     // is smaller than filter.support()
-                    double pel = raster.getSample(contribX.p[0].pixel, k, channel);
-                    for (int j = 0; j < contribX.n; j++) {
-                        double pel2 = j == 0 ? pel : raster.getSample(contribX.p[j].pixel, k, channel);
+                    double pel = raster.getSample(contribX.pixels[xOffset], k, channel);
+                    for (int j = 0; j < xCount; j++) {
+                        double pel2 = j == 0 ? pel : raster.getSample(contribX.pixels[xOffset + j], k, channel);
                         if (pel2 != pel) {
                             bPelDelta = true;
                         }
-                        weight += pel2 * contribX.p[j].weight;
+                        weight += pel2 * contribX.weights[xOffset + j];
                     }
                     weight = bPelDelta ? round(weight) : pel;
 
@@ -1607,20 +1674,23 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
 
             /* The temp column has been built. Now stretch it vertically into dst column. */
             for (int i = 0; i < dstHeight; i++) {
+                final int yOffset = i * contribY.stride;
+                final int yCount = contribY.counts[i];
+
                 for (int channel = 0; channel < numChannels; channel++) {
 
                     double weight = 0.0;
                     boolean bPelDelta = false;
-                    double pel = work.getSample(0, contribY[i].p[0].pixel, channel);
+                    double pel = work.getSample(0, contribY.pixels[yOffset], channel);
 
-                    for (int j = 0; j < contribY[i].n; j++) {
+                    for (int j = 0; j < yCount; j++) {
                         // TODO: This line throws index out of bounds, if the image
                         // is smaller than filter.support()
-                        double pel2 = j == 0 ? pel : work.getSample(0, contribY[i].p[j].pixel, channel);
+                        double pel2 = j == 0 ? pel : work.getSample(0, contribY.pixels[yOffset + j], channel);
                         if (pel2 != pel) {
                             bPelDelta = true;
                         }
-                        weight += pel2 * contribY[i].p[j].weight;
+                        weight += pel2 * contribY.weights[yOffset + j];
                     }
                     weight = bPelDelta ? round(weight) : pel;
                     if (weight < 0) {
@@ -1634,6 +1704,448 @@ public class ResampleOp implements BufferedImageOp/* TODO: RasterOp */ {
                 }
             }/* next dst row */
         }/* next dst column */
-        return pDest;
-    }/* resample */
+    }/* resampleColumns */
+
+    /**
+     * Resamples a band of destination columns, splitting it in two until small enough.
+     */
+    private static final class ResampleColumns extends RecursiveAction {
+        private final BufferedImage source;
+        private final WritableRaster out;
+        private final ContributionTable contribX;
+        private final ContributionTable contribY;
+        private final int[] channelMax;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        ResampleColumns(final BufferedImage source, final WritableRaster out,
+                        final ContributionTable contribX, final ContributionTable contribY, final int[] channelMax,
+                        final int from, final int to, final int threshold) {
+            this.source = source;
+            this.out = out;
+            this.contribX = contribX;
+            this.contribY = contribY;
+            this.channelMax = channelMax;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                resampleColumns(source, out, contribX, contribY, channelMax, from, to);
+            }
+            else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ResampleColumns(source, out, contribX, contribY, channelMax, from, mid, threshold),
+                          new ResampleColumns(source, out, contribX, contribY, channelMax, mid, to, threshold));
+            }
+        }
+    }
+
+    /**
+     * Fixed point resampler for 8 bit per sample images, with packed int or interleaved byte samples.
+     * Works directly on the backing arrays, first filtering each source row horizontally into an intermediate buffer
+     * (one packed int per pixel, 8 bits per channel), then filtering the intermediate buffer vertically into the
+     * destination. The vertical pass runs over contiguous rows, in loops simple enough for the JIT to vectorize.
+     * For large destinations, the destination rows are filtered in strips, so that the intermediate buffer only
+     * holds the source rows needed for the current strip, bounded by {@link #MAX_WORK_SIZE}.
+     * <p>
+     * The results are the same as for the generic code path, except for fixed point rounding.
+     * As in the generic code path, a channel is copied unchanged, if all contributing samples are equal.
+     * </p>
+     */
+    private static final class FixedPointResampler {
+        // Max size of the intermediate buffer (in pixels), unless a single destination row needs more
+        private static final int MAX_WORK_SIZE = 1 << 22;
+
+        private final ContributionTable contribX;
+        private final ContributionTable contribY;
+
+        private final int numChannels;
+        private final int channelMask;
+
+        // Either ints (packed) or bytes (interleaved) are non-null
+        private final int[] srcInts;
+        private final byte[] srcBytes;
+        private final int srcOffset;
+        private final int srcScanline;
+
+        private final int[] dstInts;
+        private final byte[] dstBytes;
+        private final int dstOffset;
+        private final int dstScanline;
+
+        private final int srcHeight;
+        private final int dstWidth;
+        private final int dstHeight;
+
+        // First and last (inclusive) source row contributing to each destination row
+        private final int[] firstSourceRows;
+        private final int[] lastSourceRows;
+
+        private final int[] work;
+
+        private FixedPointResampler(final BufferedImage source, final BufferedImage dest, final int numChannels,
+                                    final ContributionTable contribX, final ContributionTable contribY) {
+            this.contribX = contribX;
+            this.contribY = contribY;
+            this.numChannels = numChannels;
+            channelMask = numChannels == 4 ? 0xffffffff : 0xffffff;
+
+            WritableRaster srcRaster = source.getRaster();
+            WritableRaster dstRaster = dest.getRaster();
+            DataBuffer srcBuffer = srcRaster.getDataBuffer();
+            DataBuffer dstBuffer = dstRaster.getDataBuffer();
+
+            if (srcBuffer instanceof DataBufferInt) {
+                srcInts = ((DataBufferInt) srcBuffer).getData();
+                srcBytes = null;
+                dstInts = ((DataBufferInt) dstBuffer).getData();
+                dstBytes = null;
+            }
+            else {
+                srcInts = null;
+                srcBytes = ((DataBufferByte) srcBuffer).getData();
+                dstInts = null;
+                dstBytes = ((DataBufferByte) dstBuffer).getData();
+            }
+
+            srcScanline = scanlineStride(srcRaster);
+            srcOffset = dataOffset(srcRaster, srcScanline, srcInts != null ? 1 : numChannels);
+            dstScanline = scanlineStride(dstRaster);
+            dstOffset = dataOffset(dstRaster, dstScanline, dstInts != null ? 1 : numChannels);
+
+            srcHeight = source.getHeight();
+            dstWidth = dest.getWidth();
+            dstHeight = dest.getHeight();
+
+            firstSourceRows = new int[dstHeight];
+            lastSourceRows = new int[dstHeight];
+            int maxRows = 1;
+
+            for (int y = 0; y < dstHeight; y++) {
+                int start = y * contribY.stride;
+                int first = contribY.pixels[start];
+                int last = first;
+
+                for (int j = start + 1; j < start + contribY.counts[y]; j++) {
+                    first = Math.min(first, contribY.pixels[j]);
+                    last = Math.max(last, contribY.pixels[j]);
+                }
+
+                firstSourceRows[y] = first;
+                lastSourceRows[y] = last;
+                maxRows = Math.max(maxRows, last - first + 1);
+            }
+
+            work = new int[(int) Math.max(Math.min((long) srcHeight * dstWidth, MAX_WORK_SIZE), (long) maxRows * dstWidth)];
+        }
+
+        /**
+         * Creates a fixed point resampler for the given images, if supported.
+         *
+         * @return a new resampler, or {@code null} if the image types or layouts are not supported.
+         */
+        static FixedPointResampler create(final BufferedImage source, final BufferedImage dest,
+                                          final ContributionTable contribX, final ContributionTable contribY) {
+            if (source.getType() != dest.getType()) {
+                return null;
+            }
+
+            int numChannels;
+
+            switch (source.getType()) {
+                case BufferedImage.TYPE_INT_RGB:
+                case BufferedImage.TYPE_INT_BGR:
+                case BufferedImage.TYPE_3BYTE_BGR:
+                    numChannels = 3;
+                    break;
+                case BufferedImage.TYPE_INT_ARGB:
+                case BufferedImage.TYPE_INT_ARGB_PRE:
+                case BufferedImage.TYPE_4BYTE_ABGR:
+                case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+                    numChannels = 4;
+                    break;
+                default:
+                    return null;
+            }
+
+            // All filtered values must fit in an int, including negative lobes
+            if (Math.max(contribX.maxFixedWeightSum, contribY.maxFixedWeightSum) * 255 + FIXED_HALF > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            if (!isSupportedLayout(source.getRaster(), numChannels) || !isSupportedLayout(dest.getRaster(), numChannels)) {
+                return null;
+            }
+
+            return new FixedPointResampler(source, dest, numChannels, contribX, contribY);
+        }
+
+        private static boolean isSupportedLayout(final Raster raster, final int numChannels) {
+            SampleModel sampleModel = raster.getSampleModel();
+            DataBuffer buffer = raster.getDataBuffer();
+
+            if (buffer.getNumBanks() != 1) {
+                return false;
+            }
+
+            if (buffer instanceof DataBufferInt) {
+                // The standard int types always have 8 bits per channel, starting at bit 0
+                return sampleModel instanceof SinglePixelPackedSampleModel;
+            }
+            else if (buffer instanceof DataBufferByte && sampleModel instanceof ComponentSampleModel) {
+                ComponentSampleModel componentSampleModel = (ComponentSampleModel) sampleModel;
+                int[] bandOffsets = componentSampleModel.getBandOffsets();
+
+                if (componentSampleModel.getPixelStride() != numChannels || bandOffsets.length != numChannels) {
+                    return false;
+                }
+
+                // Channels are filtered independently, so the band order doesn't matter, as long as bands are adjacent
+                int mask = 0;
+                for (int bandOffset : bandOffsets) {
+                    if (bandOffset < 0 || bandOffset >= numChannels) {
+                        return false;
+                    }
+
+                    mask |= 1 << bandOffset;
+                }
+
+                return mask == (1 << numChannels) - 1;
+            }
+
+            return false;
+        }
+
+        private static int scanlineStride(final Raster raster) {
+            SampleModel sampleModel = raster.getSampleModel();
+
+            return sampleModel instanceof SinglePixelPackedSampleModel
+                   ? ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride()
+                   : ((ComponentSampleModel) sampleModel).getScanlineStride();
+        }
+
+        private static int dataOffset(final Raster raster, final int scanlineStride, final int pixelStride) {
+            // Offset of pixel (0, 0), taking sub-images into account
+            return raster.getDataBuffer().getOffset()
+                    - raster.getSampleModelTranslateY() * scanlineStride
+                    - raster.getSampleModelTranslateX() * pixelStride;
+        }
+
+        void resample(final ForkJoinPool pool) {
+            int fromRow = 0;
+
+            while (fromRow < dstHeight) {
+                // Extend the strip, as long as the source rows needed fit in the intermediate buffer
+                int firstRow = firstSourceRows[fromRow];
+                int lastRow = lastSourceRows[fromRow];
+                int toRow = fromRow + 1;
+
+                while (toRow < dstHeight) {
+                    int first = Math.min(firstRow, firstSourceRows[toRow]);
+                    int last = Math.max(lastRow, lastSourceRows[toRow]);
+
+                    if ((long) (last - first + 1) * dstWidth > work.length) {
+                        break;
+                    }
+
+                    firstRow = first;
+                    lastRow = last;
+                    toRow++;
+                }
+
+                resampleStrip(pool, fromRow, toRow, firstRow, lastRow + 1);
+                fromRow = toRow;
+            }
+        }
+
+        private void resampleStrip(final ForkJoinPool pool, final int fromRow, final int toRow, final int firstRow, final int endRow) {
+            if (pool != null) {
+                int rowsPerTask = Math.max(MIN_PARALLEL_BAND_SIZE, (endRow - firstRow) / (pool.getParallelism() * 4));
+                pool.invoke(new Pass(false, firstRow, endRow, firstRow, rowsPerTask));
+
+                rowsPerTask = Math.max(MIN_PARALLEL_BAND_SIZE, (toRow - fromRow) / (pool.getParallelism() * 4));
+                pool.invoke(new Pass(true, fromRow, toRow, firstRow, rowsPerTask));
+            }
+            else {
+                horizontalPass(firstRow, endRow, firstRow);
+                verticalPass(fromRow, toRow, firstRow);
+            }
+        }
+
+        // Source rows are stored in the intermediate buffer relative to the first source row of the strip
+        private void horizontalPass(final int fromRow, final int toRow, final int firstRow) {
+            final int[] pixels = contribX.pixels;
+            final int[] weights = contribX.fixedWeights;
+            final int[] counts = contribX.counts;
+            final int[] rounding = contribX.rounding;
+            final int stride = contribX.stride;
+
+            for (int y = fromRow; y < toRow; y++) {
+                final int rowOffset = srcOffset + y * srcScanline;
+                final int workOffset = (y - firstRow) * dstWidth;
+
+                for (int x = 0; x < dstWidth; x++) {
+                    final int start = x * stride;
+                    final int end = start + counts[x];
+
+                    final int first = srcPixel(rowOffset, pixels[start]);
+                    int delta = 0;
+                    int c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+
+                    for (int j = start; j < end; j++) {
+                        final int pixel = srcPixel(rowOffset, pixels[j]);
+                        final int w = weights[j];
+
+                        delta |= pixel ^ first;
+                        c0 += (pixel & 0xff) * w;
+                        c1 += (pixel >> 8 & 0xff) * w;
+                        c2 += (pixel >> 16 & 0xff) * w;
+                        c3 += (pixel >>> 24) * w;
+                    }
+
+                    work[workOffset + x] = pack(first, delta, rounding[x], c0, c1, c2, c3) & channelMask;
+                }
+            }
+        }
+
+        private int srcPixel(final int rowOffset, final int x) {
+            if (srcInts != null) {
+                return srcInts[rowOffset + x];
+            }
+
+            int index = rowOffset + x * numChannels;
+            int pixel = (srcBytes[index] & 0xff) | (srcBytes[index + 1] & 0xff) << 8 | (srcBytes[index + 2] & 0xff) << 16;
+
+            return numChannels == 4 ? pixel | (srcBytes[index + 3] & 0xff) << 24 : pixel;
+        }
+
+        private void verticalPass(final int fromRow, final int toRow, final int firstRow) {
+            final int[] pixels = contribY.pixels;
+            final int[] weights = contribY.fixedWeights;
+            final int[] counts = contribY.counts;
+            final int stride = contribY.stride;
+
+            final int[] delta = new int[dstWidth];
+            final int[] acc0 = new int[dstWidth];
+            final int[] acc1 = new int[dstWidth];
+            final int[] acc2 = new int[dstWidth];
+            final int[] acc3 = new int[dstWidth];
+            final int[] row = new int[dstWidth];
+
+            for (int y = fromRow; y < toRow; y++) {
+                final int start = y * stride;
+                final int end = start + counts[y];
+                final int firstOffset = (pixels[start] - firstRow) * dstWidth;
+                final int rounding = contribY.rounding[y];
+
+                Arrays.fill(delta, 0);
+                Arrays.fill(acc0, 0);
+                Arrays.fill(acc1, 0);
+                Arrays.fill(acc2, 0);
+                Arrays.fill(acc3, 0);
+
+                for (int j = start; j < end; j++) {
+                    final int workOffset = (pixels[j] - firstRow) * dstWidth;
+                    final int w = weights[j];
+
+                    for (int x = 0; x < dstWidth; x++) {
+                        final int pixel = work[workOffset + x];
+
+                        delta[x] |= pixel ^ work[firstOffset + x];
+                        acc0[x] += (pixel & 0xff) * w;
+                        acc1[x] += (pixel >> 8 & 0xff) * w;
+                        acc2[x] += (pixel >> 16 & 0xff) * w;
+                        acc3[x] += (pixel >>> 24) * w;
+                    }
+                }
+
+                for (int x = 0; x < dstWidth; x++) {
+                    row[x] = pack(work[firstOffset + x], delta[x], rounding, acc0[x], acc1[x], acc2[x], acc3[x]);
+                }
+
+                storeRow(y, row);
+            }
+        }
+
+        private void storeRow(final int y, final int[] row) {
+            final int rowOffset = dstOffset + y * dstScanline;
+
+            if (dstInts != null) {
+                System.arraycopy(row, 0, dstInts, rowOffset, dstWidth);
+            }
+            else {
+                for (int x = 0, index = rowOffset; x < dstWidth; x++) {
+                    int pixel = row[x];
+
+                    for (int c = 0; c < numChannels; c++) {
+                        dstBytes[index++] = (byte) (pixel >> (c << 3));
+                    }
+                }
+            }
+        }
+
+        private static int pack(final int first, final int delta, final int rounding, final int c0, final int c1, final int c2, final int c3) {
+            return channel(first, delta, rounding, c0, 0) | channel(first, delta, rounding, c1, 8)
+                    | channel(first, delta, rounding, c2, 16) | channel(first, delta, rounding, c3, 24);
+        }
+
+        private static int channel(final int first, final int delta, final int rounding, final int value, final int shift) {
+            if ((delta >>> shift & 0xff) == 0) {
+                // All contributing samples are equal
+                return first & 0xff << shift;
+            }
+
+            int sample = (value + rounding) >> FIXED_BITS;
+
+            return (sample < 0 ? 0 : sample > 255 ? 255 : sample) << shift;
+        }
+
+        /**
+         * Runs a pass over a band of rows, splitting it in two until small enough.
+         */
+        private final class Pass extends RecursiveAction {
+            private final boolean vertical;
+            private final int from;
+            private final int to;
+            private final int firstRow;
+            private final int threshold;
+
+            Pass(final boolean vertical, final int from, final int to, final int firstRow, final int threshold) {
+                this.vertical = vertical;
+                this.from = from;
+                this.to = to;
+                this.firstRow = firstRow;
+                this.threshold = threshold;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from <= threshold) {
+                    if (vertical) {
+                        verticalPass(from, to, firstRow);
+                    }
+                    else {
+                        horizontalPass(from, to, firstRow);
+                    }
+                }
+                else {
+                    int mid = (from + to) >>> 1;
+                    invokeAll(new Pass(vertical, from, mid, firstRow, threshold), new Pass(vertical, mid, to, firstRow, threshold));
+                }
+            }
+        }
+    }
+
+    /**
+     * Lazily created, shared pool for parallel resampling.
+     * Worker threads are daemon threads, and will not prevent the VM from exiting.
+     */
+    private static final class ResamplePool {
+        static final ForkJoinPool POOL = new ForkJoinPool();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.benchmarks;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static javax.imageio.ImageIO.createImageOutputStream;
+
+/**
+ * Creates synthetic benchmark input.
+ * <p>
+ * The images are deterministic, and contain a mix of smooth gradients, hard edges and noise,
+ * so that all compression schemes have something to work on, without being trivially compressible.
+ * </p>
+ */
+final class BenchmarkImages {
+    private BenchmarkImages() {}
+
+    static BufferedImage createImage(final int width, final int height, final int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+            g.fillRect(0, 0, width, height);
+
+            Random random = new Random(42);
+
+            for (int i = 0; i < 64; i++) {
+                g.setColor(new Color(random.nextInt(), true));
+                g.fill(new Ellipse2D.Float(random.nextInt(width), random.nextInt(height), random.nextInt(width / 2) + 1, random.nextInt(height / 2) + 1));
+            }
+
+            // Add some noise to a band of the image
+            for (int y = height / 3; y < height / 2; y++) {
+                for (int x = 0; x < width; x++) {
+                    image.setRGB(x, y, image.getRGB(x, y) ^ random.nextInt(0x1f1f1f));
+                }
+            }
+        }
+        finally {
+            g.dispose();
+        }
+
+        return image;
+    }
+
+    static byte[] encode(final Codec codec, final BufferedImage image) throws IOException {
+        ImageWriter writer = codec.createWriter();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ImageOutputStream output = createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), codec.createWriteParam(writer));
+        }
+        finally {
+            writer.dispose();
+        }
+
+        return bytes.toByteArray();
+    }
+}
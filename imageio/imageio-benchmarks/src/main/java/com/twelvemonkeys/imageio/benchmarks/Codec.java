@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.benchmarks;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+
+/**
+ * The image formats and format variants covered by the reader and writer benchmarks.
+ * Only formats with a TwelveMonkeys {@code ImageWriter} are listed here, as the benchmark input is created
+ * by encoding a synthetic image.
+ * Use {@link FileImageReaderBenchmark} to benchmark reading existing files in any format.
+ * <p>
+ * The {@code _TILED} variants use small (16 x 16) tiles, to measure the per strip/tile overhead of the readers.
+ * </p>
+ */
+public enum Codec {
+    BMP("bmp", BufferedImage.TYPE_4BYTE_ABGR, null),
+    IFF("iff", BufferedImage.TYPE_INT_RGB, null),
+    JPEG("jpeg", BufferedImage.TYPE_3BYTE_BGR, null),
+    PAM("pam", BufferedImage.TYPE_4BYTE_ABGR, null),
+    PICT("pict", BufferedImage.TYPE_INT_RGB, null),
+    PNM("pnm", BufferedImage.TYPE_3BYTE_BGR, null),
+    TGA("tga", BufferedImage.TYPE_3BYTE_BGR, "None"),
+    TGA_RLE("tga", BufferedImage.TYPE_3BYTE_BGR, "RLE"),
+    TIFF("tiff", BufferedImage.TYPE_3BYTE_BGR, "None"),
+    TIFF_PACKBITS("tiff", BufferedImage.TYPE_3BYTE_BGR, "PackBits"),
+    TIFF_LZW("tiff", BufferedImage.TYPE_3BYTE_BGR, "LZW"),
+    TIFF_DEFLATE("tiff", BufferedImage.TYPE_3BYTE_BGR, "Deflate"),
+    TIFF_LZW_TILED("tiff", BufferedImage.TYPE_3BYTE_BGR, "LZW", 16),
+    TIFF_DEFLATE_TILED("tiff", BufferedImage.TYPE_3BYTE_BGR, "Deflate", 16),
+    TIFF_JPEG("tiff", BufferedImage.TYPE_3BYTE_BGR, "JPEG"),
+    TIFF_CCITT_T4("tiff", BufferedImage.TYPE_BYTE_BINARY, "CCITT T.4"),
+    TIFF_CCITT_T6("tiff", BufferedImage.TYPE_BYTE_BINARY, "CCITT T.6"),
+    WEBP("webp", BufferedImage.TYPE_4BYTE_ABGR, null);
+
+    private final String formatName;
+    private final int imageType;
+    private final String compressionType;
+    private final int tileSize;
+
+    Codec(final String formatName, final int imageType, final String compressionType) {
+        this(formatName, imageType, compressionType, 0);
+    }
+
+    Codec(final String formatName, final int imageType, final String compressionType, final int tileSize) {
+        this.formatName = formatName;
+        this.imageType = imageType;
+        this.compressionType = compressionType;
+        this.tileSize = tileSize;
+    }
+
+    public int getImageType() {
+        return imageType;
+    }
+
+    public ImageReader createReader() {
+        return twelveMonkeysPlugin(ImageIO.getImageReadersByFormatName(formatName));
+    }
+
+    public ImageWriter createWriter() {
+        return twelveMonkeysPlugin(ImageIO.getImageWritersByFormatName(formatName));
+    }
+
+    public ImageWriteParam createWriteParam(final ImageWriter writer) {
+        ImageWriteParam param = writer.getDefaultWriteParam();
+
+        if (compressionType != null) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionType(compressionType);
+        }
+
+        if (tileSize > 0) {
+            param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setTiling(tileSize, tileSize, 0, 0);
+        }
+
+        return param;
+    }
+
+    // The JRE may have plugins for the same format, make sure we benchmark our own
+    static <T> T twelveMonkeysPlugin(final Iterator<T> plugins) {
+        while (plugins.hasNext()) {
+            T plugin = plugins.next();
+
+            if (plugin.getClass().getName().startsWith("com.twelvemonkeys.")) {
+                return plugin;
+            }
+        }
+
+        throw new IllegalStateException("No TwelveMonkeys plugin found");
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.benchmarks;
+
+import com.twelvemonkeys.imageio.stream.ByteArrayImageInputStream;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading existing image files, in any format supported by the TwelveMonkeys plugins.
+ * Useful for formats without a writer (like PSD, WebP, PCX or SGI), or for real-world sample files.
+ * <p>
+ * The files to read are specified using the {@code file} parameter, for example:
+ * {@code java -jar benchmarks.jar FileImageReaderBenchmark -p file=/path/to/image.psd,/path/to/image.webp}.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileImageReaderBenchmark {
+    @Param("")
+    public String file;
+
+    private byte[] data;
+    private ImageReader reader;
+
+    @Setup
+    public void setup() throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("No input file, specify using -p file=<path>");
+        }
+
+        data = Files.readAllBytes(new File(file).toPath());
+
+        try (ImageInputStream input = new ByteArrayImageInputStream(data)) {
+            reader = Codec.twelveMonkeysPlugin(ImageIO.getImageReaders(input));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (reader != null) {
+            reader.dispose();
+        }
+    }
+
+    @Benchmark
+    public BufferedImage read() throws IOException {
+        try (ImageInputStream input = new ByteArrayImageInputStream(data)) {
+            reader.setInput(input);
+            return reader.read(0, null);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.benchmarks;
+
+import com.twelvemonkeys.imageio.stream.BufferedFileImageInputStream;
+import com.twelvemonkeys.imageio.stream.BufferedImageInputStream;
+import com.twelvemonkeys.imageio.stream.ByteArrayImageInputStream;
+import com.twelvemonkeys.imageio.stream.MappedFileImageInputStream;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the access patterns typical for image decoding, for the various {@code ImageInputStream}
+ * implementations.
+ * The JRE {@code FileImageInputStream} and {@code MemoryCacheImageInputStream} are included as baselines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageInputStreamBenchmark {
+    public enum StreamType {
+        BYTE_ARRAY,
+        BUFFERED,
+        BUFFERED_FILE,
+        MAPPED_FILE,
+        JRE_FILE,
+        JRE_MEMORY_CACHE
+    }
+
+    @Param
+    public StreamType stream;
+
+    @Param("1048576")
+    public int length;
+
+    private File file;
+    private byte[] data;
+    private long[] seekPositions;
+
+    private final byte[] buffer = new byte[4096];
+    private final int[] ints = new int[256];
+
+    @Setup
+    public void setup() throws IOException {
+        data = new byte[length];
+        Random random = new Random(42);
+        random.nextBytes(data);
+
+        file = File.createTempFile("benchmark-", ".bin");
+        file.deleteOnExit();
+        Files.write(file.toPath(), data);
+
+        // Random seeks, like reading IFDs, strips or tiles
+        seekPositions = new long[1024];
+        for (int i = 0; i < seekPositions.length; i++) {
+            seekPositions[i] = random.nextInt(length - buffer.length);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    private ImageInputStream createStream() throws IOException {
+        switch (stream) {
+            case BYTE_ARRAY:
+                return new ByteArrayImageInputStream(data);
+            case BUFFERED:
+                return new BufferedImageInputStream(new MemoryCacheImageInputStream(new ByteArrayInputStream(data)));
+            case BUFFERED_FILE:
+                return new BufferedFileImageInputStream(file);
+            case MAPPED_FILE:
+                return new MappedFileImageInputStream(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+            case JRE_FILE:
+                return new FileImageInputStream(file);
+            case JRE_MEMORY_CACHE:
+                return new MemoryCacheImageInputStream(new ByteArrayInputStream(data));
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    @Benchmark
+    public int readByte() throws IOException {
+        int result = 0;
+
+        try (ImageInputStream input = createStream()) {
+            int b;
+            while ((b = input.read()) >= 0) {
+                result += b;
+            }
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    public long readInt() throws IOException {
+        long result = 0;
+
+        try (ImageInputStream input = createStream()) {
+            input.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+
+            for (int i = 0; i < length / 4; i++) {
+                result += input.readInt();
+            }
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    public int readFullyIntArray() throws IOException {
+        int result = 0;
+
+        try (ImageInputStream input = createStream()) {
+            for (int i = 0; i < length / (ints.length * 4); i++) {
+                input.readFully(ints, 0, ints.length);
+                result += ints[0];
+            }
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    public int seekAndReadFully() throws IOException {
+        int result = 0;
+
+        try (ImageInputStream input = createStream()) {
+            for (long position : seekPositions) {
+                input.seek(position);
+                input.readFully(buffer);
+                result += buffer[0];
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * JMH performance benchmarks for the TwelveMonkeys ImageIO plugins and streams.
+ * <p>
+ * Build and run using:
+ * </p>
+ * <pre>
+ * mvn -pl imageio/imageio-benchmarks -am package -DskipTests
+ * java -jar imageio/imageio-benchmarks/target/benchmarks.jar [JMH options] [benchmark regexp]
+ * </pre>
+ * <p>
+ * For example, {@code java -jar benchmarks.jar ImageReaderBenchmark -p codec=TIFF_LZW,TIFF_DEFLATE}
+ * runs only the TIFF LZW and Deflate read benchmarks.
+ * Allocation rates are always reported, using the JMH GC profiler.
+ * The {@code gc.alloc.rate.norm} secondary result is the number of bytes allocated per operation,
+ * use {@code -p codec=TIFF_LZW_TILED} to see the allocation overhead per strip/tile.
+ * </p>
+ */
+package com.twelvemonkeys.imageio.benchmarks;
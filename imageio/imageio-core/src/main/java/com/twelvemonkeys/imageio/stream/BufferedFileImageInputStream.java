@@ -49,14 +49,15 @@ import static java.lang.Math.max;
  * {@link File} or {@link RandomAccessFile} can be used as input.
  *
  * @see javax.imageio.stream.FileImageInputStream
+ * @see MappedFileImageInputStream
  */
-// TODO: Create a memory-mapped version?
-//  Or not... From java.nio.channels.FileChannel.map:
+// NOTE: From java.nio.channels.FileChannel.map:
 //      For most operating systems, mapping a file into memory is more
 //      expensive than reading or writing a few tens of kilobytes of data via
 //      the usual {@link #read read} and {@link #write write} methods.  From the
 //      standpoint of performance it is generally only worth mapping relatively
 //      large files into memory.
+//  For this reason, the memory-mapped version is opt-in, see MappedFileImageInputStreamSpi.
 public final class BufferedFileImageInputStream extends ImageInputStreamImpl {
     static final int DEFAULT_BUFFER_SIZE = 8192;
 
@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.stream;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static com.twelvemonkeys.lang.Validate.isTrue;
+import static com.twelvemonkeys.lang.Validate.notNull;
+import static java.lang.Math.min;
+
+/**
+ * An {@code ImageInputStream} that reads from a memory-mapped file.
+ * <p>
+ * The file is mapped in windows of (at most) {@link #DEFAULT_WINDOW_SIZE} bytes, and remapped as needed
+ * when seeking or reading outside the current window.
+ * This makes it possible to read files larger than 2 GB, which is the limit for a single
+ * {@link MappedByteBuffer}.
+ * </p>
+ * <p>
+ * Reads are served directly from the mapped memory, with no system calls and no intermediate buffer copies.
+ * This is mostly beneficial for large files with random access patterns, like TIFF, BigTIFF or PSD.
+ * For small files, or sequential reads, {@link BufferedFileImageInputStream} is likely to be just as fast.
+ * </p>
+ * <p>
+ * Note that there is no way to explicitly unmap a {@code MappedByteBuffer},
+ * mapped memory is released when the buffer is garbage collected.
+ * </p>
+ *
+ * @see java.nio.channels.FileChannel#map(FileChannel.MapMode, long, long)
+ * @see BufferedFileImageInputStream
+ */
+public final class MappedFileImageInputStream extends ImageInputStreamImpl {
+    static final int DEFAULT_WINDOW_SIZE = 128 * 1024 * 1024;
+
+    private final int windowSize;
+    private final long length;
+
+    private FileChannel channel;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    /**
+     * Constructs a {@code MappedFileImageInputStream} that will read from a given {@code File}.
+     *
+     * @param file a {@code File} to read from.
+     * @throws IllegalArgumentException if {@code file} is {@code null}.
+     * @throws IOException if {@code file} is a directory or cannot be opened for reading for any reason.
+     */
+    public MappedFileImageInputStream(final File file) throws IOException {
+        this(new RandomAccessFile(notNull(file, "file"), "r").getChannel(), DEFAULT_WINDOW_SIZE, true);
+    }
+
+    /**
+     * Constructs a {@code MappedFileImageInputStream} that will read from a given {@code FileChannel}.
+     * The channel must be readable, and will be closed when this stream is closed.
+     *
+     * @param channel a {@code FileChannel} to read from.
+     * @throws IllegalArgumentException if {@code channel} is {@code null}.
+     * @throws IOException if the size of the channel can't be determined.
+     */
+    public MappedFileImageInputStream(final FileChannel channel) throws IOException {
+        this(channel, DEFAULT_WINDOW_SIZE);
+    }
+
+    MappedFileImageInputStream(final FileChannel channel, final int windowSize) throws IOException {
+        this(channel, windowSize, false);
+    }
+
+    private MappedFileImageInputStream(final FileChannel channel, final int windowSize, final boolean closeOnFailure) throws IOException {
+        this.channel = notNull(channel, "channel");
+        this.windowSize = isTrue(windowSize >= 16, windowSize, "windowSize must be >= 16");
+
+        try {
+            this.length = channel.size();
+
+            // Start at the current position of the channel, like FileImageInputStream does with RandomAccessFile
+            streamPos = flushedPos = channel.position();
+        }
+        catch (IOException | RuntimeException e) {
+            // We opened the channel, so we must close it, as the caller has no stream to close
+            if (closeOnFailure) {
+                try {
+                    channel.close();
+                }
+                catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+
+            throw e;
+        }
+    }
+
+    private boolean mapWindow() throws IOException {
+        if (streamPos >= length) {
+            return false;
+        }
+
+        // Align the window start, so that short seeks backwards don't always require remapping
+        long start = streamPos - streamPos % (windowSize / 2);
+        long size = min(windowSize, length - start);
+
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        window.order(byteOrder);
+        window.position((int) (streamPos - start));
+        windowStart = start;
+
+        return true;
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        return window != null && window.hasRemaining() || mapWindow();
+    }
+
+    @Override
+    public void setByteOrder(final ByteOrder byteOrder) {
+        super.setByteOrder(byteOrder);
+
+        if (window != null) {
+            window.order(byteOrder);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+
+        if (!ensureAvailable()) {
+            return -1;
+        }
+
+        bitOffset = 0;
+        streamPos++;
+
+        return window.get() & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int len) throws IOException {
+        checkClosed();
+
+        if (offset < 0 || len < 0 || offset + len > buffer.length || offset + len < 0) {
+            throw new IndexOutOfBoundsException("offset < 0 || len < 0 || offset + len > buffer.length");
+        }
+
+        bitOffset = 0;
+
+        if (len == 0) {
+            return 0;
+        }
+
+        int total = 0;
+
+        // Read across window boundaries, to avoid partial reads in the common case
+        while (total < len && ensureAvailable()) {
+            int count = min(window.remaining(), len - total);
+            window.get(buffer, offset + total, count);
+            total += count;
+            streamPos += count;
+        }
+
+        return total > 0 ? total : -1;
+    }
+
+    // Reading integral values directly from the mapped buffer avoids both
+    // the temporary byte array and the byte shuffling in ImageInputStreamImpl.
+    // Values crossing a window boundary are handled by the super implementation.
+
+    @Override
+    public short readShort() throws IOException {
+        checkClosed();
+
+        if (bitOffset == 0 && ensureAvailable() && window.remaining() >= 2) {
+            streamPos += 2;
+            return window.getShort();
+        }
+
+        return super.readShort();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        checkClosed();
+
+        if (bitOffset == 0 && ensureAvailable() && window.remaining() >= 4) {
+            streamPos += 4;
+            return window.getInt();
+        }
+
+        return super.readInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        checkClosed();
+
+        if (bitOffset == 0 && ensureAvailable() && window.remaining() >= 8) {
+            streamPos += 8;
+            return window.getLong();
+        }
+
+        return super.readLong();
+    }
+
+    @Override
+    public void readFully(final short[] s, final int off, final int len) throws IOException {
+        checkClosed();
+
+        if (off < 0 || len < 0 || off + len > s.length || off + len < 0) {
+            throw new IndexOutOfBoundsException("off < 0 || len < 0 || off + len > s.length!");
+        }
+
+        if (bitOffset == 0 && ensureAvailable() && window.remaining() >= len * 2L) {
+            window.asShortBuffer().get(s, off, len);
+            window.position(window.position() + len * 2);
+            streamPos += len * 2L;
+        }
+        else {
+            super.readFully(s, off, len);
+        }
+    }
+
+    @Override
+    public void readFully(final int[] i, final int off, final int len) throws IOException {
+        checkClosed();
+
+        if (off < 0 || len < 0 || off + len > i.length || off + len < 0) {
+            throw new IndexOutOfBoundsException("off < 0 || len < 0 || off + len > i.length!");
+        }
+
+        if (bitOffset == 0 && ensureAvailable() && window.remaining() >= len * 4L) {
+            window.asIntBuffer().get(i, off, len);
+            window.position(window.position() + len * 4);
+            streamPos += len * 4L;
+        }
+        else {
+            super.readFully(i, off, len);
+        }
+    }
+
+    @Override
+    public void readFully(final float[] f, final int off, final int len) throws IOException {
+        checkClosed();
+
+        if (off < 0 || len < 0 || off + len > f.length || off + len < 0) {
+            throw new IndexOutOfBoundsException("off < 0 || len < 0 || off + len > f.length!");
+        }
+
+        if (bitOffset == 0 && ensureAvailable() && window.remaining() >= len * 4L) {
+            window.asFloatBuffer().get(f, off, len);
+            window.position(window.position() + len * 4);
+            streamPos += len * 4L;
+        }
+        else {
+            super.readFully(f, off, len);
+        }
+    }
+
+    @Override
+    public void seek(final long position) throws IOException {
+        checkClosed();
+
+        if (position < flushedPos) {
+            throw new IndexOutOfBoundsException("position < flushedPos!");
+        }
+
+        bitOffset = 0;
+        streamPos = position;
+
+        // Keep the current window if the new position is within it, otherwise remap lazily on next read
+        if (window != null) {
+            long windowPos = position - windowStart;
+
+            if (windowPos >= 0 && windowPos < window.limit()) {
+                window.position((int) windowPos);
+            }
+            else {
+                window = null;
+            }
+        }
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+
+        channel.close();
+
+        channel = null;
+        window = null;
+    }
+}
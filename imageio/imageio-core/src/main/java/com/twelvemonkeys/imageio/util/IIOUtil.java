@@ -251,10 +251,10 @@ public final class IIOUtil {
                 int dstOff = (destPos + x / samplePeriod) * pixelStride / 8;
                 int srcOff = (srcPos + x) * pixelStride / 8;
 
-                int srcBitPos = 8 - pixelStride - (x * pixelStride) % 8;
+                int srcBitPos = 8 - pixelStride - ((srcPos + x) * pixelStride) % 8;
                 int srcMask = mask << srcBitPos;
 
-                int dstBitPos = 8 - pixelStride - (x * pixelStride / samplePeriod) % 8;
+                int dstBitPos = 8 - pixelStride - ((destPos + x / samplePeriod) * pixelStride) % 8;
                 int dstMask = ~(mask << dstBitPos);
 
                 int val = ((srcRow[srcOff] & srcMask) >> srcBitPos);
@@ -178,12 +178,12 @@ final class HuffmanTable extends Segment {
         return tc[tableId][tableClass];
     }
 
-    private short[] lengths(int tableId, int tableClass) {
+    short[] lengths(int tableId, int tableClass) {
         // TODO: Consider stripping the 0s?
         return l[tableId][tableClass];
     }
 
-    private short[] tables(int tableId, int tableClass) {
+    short[] tables(int tableId, int tableClass) {
         // Find sum of lengths
         short[] lengths = lengths(tableId, tableClass);
 
@@ -0,0 +1,1878 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.jpeg;
+
+import com.twelvemonkeys.imageio.color.YCbCrConverter;
+import com.twelvemonkeys.imageio.metadata.jpeg.JPEG;
+
+import javax.imageio.IIOException;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.*;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A pure Java decoder for Huffman coded DCT JPEG streams, baseline, extended sequential and
+ * progressive (SOF0, SOF1 and SOF2, 8 bit precision), with 1 to 4 components.
+ * <p>
+ * The decoder may decode the image at 1/2, 1/4 or 1/8 of the full size, by computing a reduced size
+ * inverse DCT from the low frequency coefficients only, the same way as libjpeg's
+ * {@code scale_num/scale_denom} does. Each decoded MCU row is up-sampled, optionally color converted and
+ * written directly into the destination raster.
+ * Images with a single, interleaved scan are decoded in one pass, so memory use is bounded by a
+ * single MCU row in addition to the destination. Progressive and other multi-scan images
+ * are first decoded into a coefficient buffer.
+ * Only the MCU rows and columns needed for the requested region are transformed, and
+ * decoding stops after the last MCU row in the region, when possible.
+ * </p>
+ * <p>
+ * In parallel mode, single scan images with restart intervals are split at the {@code RSTn} markers.
+ * The intervals covering a window of MCU rows are entropy decoded and transformed concurrently,
+ * before the MCU rows of the window are up-sampled and written to the destination. Intervals
+ * outside the requested region are skipped entirely.
+ * </p>
+ */
+final class JPEGDCTDecoder {
+
+    // Zigzag index -> natural (row major) order, with extra entries to guard against corrupt data
+    private static final int[] NATURAL_ORDER = {
+             0,  1,  8, 16,  9,  2,  3, 10,
+            17, 24, 32, 25, 18, 11,  4,  5,
+            12, 19, 26, 33, 40, 48, 41, 34,
+            27, 20, 13,  6,  7, 14, 21, 28,
+            35, 42, 49, 56, 57, 50, 43, 36,
+            29, 22, 15, 23, 30, 37, 44, 51,
+            58, 59, 52, 45, 38, 31, 39, 46,
+            53, 60, 61, 54, 47, 55, 62, 63,
+            63, 63, 63, 63, 63, 63, 63, 63,
+            63, 63, 63, 63, 63, 63, 63, 63
+    };
+
+    private static final int RESTART_MARKER_BEGIN = 0xFFD0;
+    private static final int RESTART_MARKER_END = 0xFFD7;
+
+    // Minimum number of MCUs in the image, for parallel decoding to pay off
+    private static final int MIN_PARALLEL_MCUS = 1024;
+    // Minimum number of MCU rows decoded per window in parallel mode
+    private static final int MIN_WINDOW_ROWS = 8;
+
+    // Block decoding modes for the scans of multi-scan images
+    private static final int MODE_SEQUENTIAL = 0;
+    private static final int MODE_DC_FIRST = 1;
+    private static final int MODE_DC_REFINE = 2;
+    private static final int MODE_AC_FIRST = 3;
+    private static final int MODE_AC_REFINE = 4;
+
+    // Fixed point constants for the integer inverse DCT, as in libjpeg's jidctint.c
+    private static final int CONST_BITS = 13;
+    private static final int PASS1_BITS = 2;
+
+    private static final int FIX_0_298631336 = 2446;
+    private static final int FIX_0_390180644 = 3196;
+    private static final int FIX_0_541196100 = 4433;
+    private static final int FIX_0_765366865 = 6270;
+    private static final int FIX_0_899976223 = 7373;
+    private static final int FIX_1_175875602 = 9633;
+    private static final int FIX_1_501321110 = 12299;
+    private static final int FIX_1_847759065 = 15137;
+    private static final int FIX_1_961570560 = 16069;
+    private static final int FIX_2_053119869 = 16819;
+    private static final int FIX_2_562915447 = 20995;
+    private static final int FIX_3_072711026 = 25172;
+
+    private static final int FIX_0_191341716 = 1567;
+    private static final int FIX_0_353553391 = 2896;
+    private static final int FIX_0_461939766 = 3784;
+
+    private final ImageInputStream input;
+    private final JPEGImageReader listenerDelegate;
+    private final Executor executor;
+
+    private final int scale;
+    private final int blockSize;
+
+    private final int[][] qTables = new int[4][];
+    private final HuffmanDecoder[][] huffTables = new HuffmanDecoder[4][2];
+    private int restartInterval;
+    private Frame frame;
+
+    private final int[] block = new int[64];
+    private final int[] workspace = new int[64];
+
+    // Component geometry
+    private int numComponents;
+    private int hMax;
+    private int vMax;
+    private int mcusX;
+    private int mcusY;
+    private int[] hSub;
+    private int[] vSub;
+    private int[] idctSizes;
+    private int[] planeStrides;
+    private int[] planeRows;
+    private int[] componentWidths;
+    private int[] componentHeights;
+    private boolean[] fancyUpsampling;
+    private byte[][][] planes;
+
+    // Coefficient buffers, quantization tables in natural order, for multi-scan images
+    private short[][] coefficients;
+    private int[][] componentQTables;
+
+    // Scan state
+    private int[] componentIndexes;
+    private HuffmanDecoder[] dcTables;
+    private HuffmanDecoder[] acTables;
+    private int[][] quantTables;
+    private int[] predictors;
+    private int restartsToGo;
+    private volatile boolean intervalsCorrupt;
+    private int mode;
+    private int spectralStart;
+    private int spectralEnd;
+    private int approxLow;
+    private int eobRun;
+
+    // Output state
+    private WritableRaster destination;
+    private Rectangle region;
+    private int xSub;
+    private int ySub;
+    private boolean convertYCbCr;
+    private int outputWidth;
+    private int outputHeight;
+    private int outputBands;
+    private int firstMCURow;
+    private int lastMCURow;
+    private int firstMCUColumn;
+    private int lastMCUColumn;
+    private int[][] columnIndexes;
+    private byte[] rowBuffer;
+    private int[] pixelBuffer;
+
+    /**
+     * Creates a decoder.
+     *
+     * @param input the stream to decode, positioned at the SOI marker.
+     * @param listenerDelegate the reader to report progress and warnings to.
+     * @param scale the scale denominator, must be one of 1, 2, 4 or 8.
+     * @param executor the executor used for concurrent decoding of restart intervals, or {@code null}.
+     */
+    JPEGDCTDecoder(final ImageInputStream input, final JPEGImageReader listenerDelegate, final int scale, final Executor executor) {
+        if (scale != 1 && scale != 2 && scale != 4 && scale != 8) {
+            throw new IllegalArgumentException("Unsupported scale: 1/" + scale);
+        }
+
+        this.input = input;
+        this.listenerDelegate = listenerDelegate;
+        this.executor = executor;
+        this.scale = scale;
+        this.blockSize = 8 / scale;
+    }
+
+    /**
+     * Tests if the given frame can be decoded by this decoder.
+     *
+     * @param frame the frame header.
+     * @return {@code true} if the image can be decoded.
+     */
+    static boolean canDecode(final Frame frame) {
+        if (frame == null) {
+            return false;
+        }
+
+        if ((frame.marker != JPEG.SOF0 && frame.marker != JPEG.SOF1 && frame.marker != JPEG.SOF2) || frame.samplePrecision != 8) {
+            return false;
+        }
+
+        if (frame.componentsInFrame() < 1 || frame.componentsInFrame() > 4) {
+            return false;
+        }
+
+        for (Frame.Component component : frame.components) {
+            if (component.hSub < 1 || component.hSub > 4 || component.vSub < 1 || component.vSub > 4) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the size of the decoded image, for the given dimension and scale.
+     *
+     * @param size the width or height of the full size image.
+     * @param scale the scale denominator.
+     * @return the size of the decoded image.
+     */
+    static int scaledSize(final int size, final int scale) {
+        return (size + scale - 1) / scale;
+    }
+
+    /**
+     * Decodes the image, writing the pixels inside {@code region} to {@code destination}.
+     * Source pixel {@code (region.x + x * xSub, region.y + y * ySub)} is written to pixel {@code (x, y)} of
+     * {@code destination}.
+     *
+     * @param destination the destination raster, with either 1 band (luminance only) or one band per component.
+     * @param region the region to decode, in scaled image coordinates.
+     * @param xSub the horizontal subsampling, in scaled image coordinates.
+     * @param ySub the vertical subsampling, in scaled image coordinates.
+     * @param convertYCbCr {@code true} if the 3 component image should be converted from YCbCr to RGB.
+     * @return {@code true} if the image was fully decoded, or {@code false} if the read was aborted.
+     * @throws IOException if an I/O exception occurs, or the stream is not supported.
+     */
+    boolean decode(final WritableRaster destination, final Rectangle region, final int xSub, final int ySub,
+                   final boolean convertYCbCr) throws IOException {
+        Scan scan = readHeader();
+
+        if (!canDecode(frame)) {
+            throw new IIOException("Unsupported JPEG process: SOF" + frame.process());
+        }
+
+        this.destination = destination;
+        this.region = region;
+        this.xSub = xSub;
+        this.ySub = ySub;
+        this.convertYCbCr = convertYCbCr;
+
+        outputWidth = scaledSize(frame.samplesPerLine, scale);
+        outputHeight = scaledSize(frame.lines, scale);
+
+        initComponents();
+        initOutput();
+
+        if (frame.marker != JPEG.SOF2 && scan.components.length == numComponents) {
+            return decodeSequential(scan);
+        }
+
+        return decodeMultiScan(scan);
+    }
+
+    private Scan readHeader() throws IOException {
+        if (input.readUnsignedShort() != JPEG.SOI) {
+            throw new IIOException("Not a JPEG stream, does not start with SOI marker");
+        }
+
+        Scan scan = readNextScan();
+
+        if (scan == null) {
+            throw new IIOException("No SOS segment in stream");
+        }
+
+        return scan;
+    }
+
+    private Scan readNextScan() throws IOException {
+        while (true) {
+            int marker = readMarker();
+
+            switch (marker) {
+                case JPEG.SOS:
+                    if (frame == null) {
+                        throw new IIOException("No SOF segment before SOS in stream");
+                    }
+
+                    return (Scan) readSegment(marker);
+                case JPEG.EOI:
+                    return null;
+                default:
+                    if (marker >= RESTART_MARKER_BEGIN && marker <= RESTART_MARKER_END) {
+                        // Stray restart marker, no length, just ignore
+                        listenerDelegate.processWarningOccurred(String.format("Corrupt JPEG data: unexpected marker 0x%02x", marker & 0xff));
+                        continue;
+                    }
+
+                    processSegment(readSegment(marker));
+            }
+        }
+    }
+
+    private int readMarker() throws IOException {
+        int trash = 0;
+        int b = input.readUnsignedByte();
+
+        while (b != 0xff) {
+            b = input.readUnsignedByte();
+            trash++;
+        }
+
+        do {
+            b = input.readUnsignedByte();
+        }
+        while (b == 0xff);
+
+        if (trash > 0) {
+            listenerDelegate.processWarningOccurred(String.format("Corrupt JPEG data: %d extraneous bytes before marker 0x%02x", trash, b));
+        }
+
+        return 0xff00 | b;
+    }
+
+    private Segment readSegment(final int marker) throws IOException {
+        int length = input.readUnsignedShort();
+
+        switch (marker) {
+            case JPEG.DQT:
+            case JPEG.DHT:
+            case JPEG.DRI:
+            case JPEG.SOS:
+            case JPEG.SOF0:
+            case JPEG.SOF1:
+            case JPEG.SOF2:
+            case JPEG.SOF3:
+            case JPEG.SOF5:
+            case JPEG.SOF6:
+            case JPEG.SOF7:
+            case JPEG.SOF9:
+            case JPEG.SOF10:
+            case JPEG.SOF11:
+            case JPEG.SOF13:
+            case JPEG.SOF14:
+            case JPEG.SOF15:
+                byte[] data = new byte[length - 2];
+                input.readFully(data);
+
+                return Segment.read(marker, null, length, new DataInputStream(new ByteArrayInputStream(data)));
+            default:
+                input.skipBytes(length - 2);
+
+                return null;
+        }
+    }
+
+    private void processSegment(final Segment segment) throws IOException {
+        if (segment instanceof QuantizationTable) {
+            QuantizationTable table = (QuantizationTable) segment;
+
+            for (int id = 0; id < qTables.length; id++) {
+                if (table.isPresent(id)) {
+                    qTables[id] = table.qTable(id).clone();
+                }
+            }
+        }
+        else if (segment instanceof HuffmanTable) {
+            HuffmanTable table = (HuffmanTable) segment;
+
+            for (int id = 0; id < huffTables.length; id++) {
+                for (int tableClass = 0; tableClass < 2; tableClass++) {
+                    if (table.isPresent(id, tableClass)) {
+                        huffTables[id][tableClass] = new HuffmanDecoder(table.lengths(id, tableClass), table.tables(id, tableClass));
+                    }
+                }
+            }
+        }
+        else if (segment instanceof RestartInterval) {
+            restartInterval = ((RestartInterval) segment).interval;
+        }
+        else if (segment instanceof Frame) {
+            if (frame != null) {
+                throw new IIOException("Multiple SOF segments in stream");
+            }
+
+            frame = (Frame) segment;
+        }
+    }
+
+    private boolean decodeSequential(final Scan scan) throws IOException {
+        initScan(scan);
+
+        if (executor != null && restartInterval > 0 && mcusX * mcusY >= MIN_PARALLEL_MCUS) {
+            return decodeParallel();
+        }
+
+        BitReader bits = new BitReader(input);
+
+        boolean complete = decodeRows(bits, 0);
+
+        warnIfCorrupt(bits);
+
+        return complete;
+    }
+
+    private boolean decodeParallel() throws IOException {
+        ScanData scanData = ScanData.read(input);
+        int intervals = (mcusX * mcusY + restartInterval - 1) / restartInterval;
+
+        if (!scanData.hasIntervals(intervals)) {
+            // Missing or out of sequence restart markers, decode sequentially
+            BitReader bits = new BitReader(scanData.data, 0, scanData.length);
+
+            boolean complete = decodeRows(bits, 0);
+
+            warnIfCorrupt(bits);
+
+            return complete;
+        }
+
+        int parallelism = Runtime.getRuntime().availableProcessors();
+
+        // Each window needs enough intervals to keep all threads busy
+        int windowRows = Math.max(MIN_WINDOW_ROWS, (parallelism * 8 * restartInterval + mcusX - 1) / mcusX);
+        windowRows = Math.min(windowRows, lastMCURow - firstMCURow + 1);
+
+        // The window holds the decoded MCU rows, plus the MCU rows above and below needed for up-sampling
+        byte[][] window = new byte[numComponents][];
+        for (int c = 0; c < numComponents; c++) {
+            window[c] = new byte[planeStrides[c] * ((windowRows + 2) * planeRows[c] + 2)];
+        }
+
+        for (int first = firstMCURow; first <= lastMCURow; first += windowRows) {
+            int last = Math.min(first + windowRows, lastMCURow + 1);
+            int baseRow = Math.max(first - 1, 0);
+            int fromMCU = baseRow * mcusX;
+            int toMCU = Math.min(last + 1, mcusY) * mcusX;
+
+            int firstInterval = fromMCU / restartInterval;
+            int lastInterval = (toMCU - 1) / restartInterval + 1;
+            int intervalsPerTask = Math.max(1, (lastInterval - firstInterval) / (parallelism * 4));
+
+            List<Future<Void>> tasks = new ArrayList<>();
+            for (int from = firstInterval; from < lastInterval; from += intervalsPerTask) {
+                FutureTask<Void> task = new FutureTask<>(new DecodeIntervals(scanData, window, baseRow, fromMCU, toMCU,
+                                                                             from, Math.min(from + intervalsPerTask, lastInterval)));
+                executor.execute(task);
+                tasks.add(task);
+            }
+
+            // Wait for all tasks, before the window is written or reused
+            awaitIntervals(tasks);
+
+            for (int mcuY = first; mcuY < last; mcuY++) {
+                writeRows(window, mcuY, baseRow);
+            }
+
+            listenerDelegate.processImageProgress(100f * (last - firstMCURow) / (lastMCURow + 1 - firstMCURow));
+
+            if (listenerDelegate.abortRequested()) {
+                return false;
+            }
+        }
+
+        if (intervalsCorrupt) {
+            listenerDelegate.processWarningOccurred("Corrupt JPEG data: bad Huffman code");
+        }
+
+        return true;
+    }
+
+    private static void awaitIntervals(final List<Future<Void>> tasks) throws IOException {
+        Throwable failure = null;
+
+        for (Future<Void> task : tasks) {
+            try {
+                task.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                for (Future<Void> pending : tasks) {
+                    pending.cancel(false);
+                }
+
+                throw new InterruptedIOException("Interrupted while decoding JPEG restart intervals");
+            }
+            catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new IIOException("Could not decode JPEG restart intervals", failure);
+        }
+    }
+
+    private void decodeIntervals(final ScanData scanData, final byte[][] planes, final int baseRow, final int fromMCU, final int toMCU,
+                                 final int firstInterval, final int lastInterval) throws IOException {
+        int[] predictors = new int[componentIndexes.length];
+        int[] block = new int[64];
+        int[] workspace = new int[64];
+
+        for (int interval = firstInterval; interval < lastInterval; interval++) {
+            BitReader bits = new BitReader(scanData.data, scanData.intervalStart(interval), scanData.intervalStart(interval + 1));
+            Arrays.fill(predictors, 0);
+
+            int start = interval * restartInterval;
+            int end = Math.min(start + restartInterval, toMCU);
+
+            for (int mcu = start; mcu < end; mcu++) {
+                // MCUs before the window are only decoded to get to the first MCU of the window
+                decodeMCU(bits, predictors, block, workspace, mcu % mcusX, mcu / mcusX, planes, baseRow, mcu >= fromMCU);
+            }
+
+            if (bits.isCorrupt()) {
+                intervalsCorrupt = true;
+            }
+        }
+    }
+
+    private boolean decodeMultiScan(Scan scan) throws IOException {
+        coefficients = new short[numComponents][];
+        componentQTables = new int[numComponents][];
+
+        for (int c = 0; c < numComponents; c++) {
+            coefficients[c] = new short[mcusX * hSub[c] * mcusY * vSub[c] * 64];
+        }
+
+        BitReader bits = new BitReader(input);
+
+        while (scan != null) {
+            initScan(scan);
+
+            if (!decodeScan(bits)) {
+                return false;
+            }
+
+            bits.sync();
+
+            try {
+                scan = readNextScan();
+            }
+            catch (EOFException e) {
+                // Truncated file, display what we have so far, like libjpeg
+                listenerDelegate.processWarningOccurred("Premature end of JPEG file");
+                scan = null;
+            }
+        }
+
+        warnIfCorrupt(bits);
+
+        // Output from the coefficients, starting at the context row above the region
+        return decodeRows(bits, Math.max(0, firstMCURow - 1));
+    }
+
+    private void warnIfCorrupt(final BitReader bits) {
+        if (bits.isCorrupt()) {
+            listenerDelegate.processWarningOccurred("Corrupt JPEG data: bad Huffman code");
+        }
+        if (bits.isPrematureEnd()) {
+            listenerDelegate.processWarningOccurred("Premature end of JPEG file");
+        }
+    }
+
+    private boolean decodeRows(final BitReader bits, final int firstRow) throws IOException {
+        // Output lags one MCU row behind decoding, to have the context rows needed for up-sampling
+        nextMCURow(bits, firstRow, planes[firstRow & 1]);
+
+        for (int mcuY = firstRow; mcuY <= lastMCURow; mcuY++) {
+            byte[][] current = planes[mcuY & 1];
+
+            if (mcuY + 1 < mcusY) {
+                byte[][] next = planes[(mcuY + 1) & 1];
+                nextMCURow(bits, mcuY + 1, next);
+
+                for (int c = 0; c < numComponents; c++) {
+                    int stride = planeStrides[c];
+                    System.arraycopy(current[c], planeRows[c] * stride, next[c], 0, stride);
+                    System.arraycopy(next[c], stride, current[c], (planeRows[c] + 1) * stride, stride);
+                }
+            }
+
+            if (mcuY >= firstMCURow) {
+                writeRows(current, mcuY, mcuY);
+            }
+
+            listenerDelegate.processImageProgress(100f * (mcuY + 1 - firstRow) / (lastMCURow + 1 - firstRow));
+
+            if (listenerDelegate.abortRequested()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void nextMCURow(final BitReader bits, final int mcuY, final byte[][] planes) throws IOException {
+        // Only transform the rows needed for output, including context rows
+        boolean transform = mcuY >= firstMCURow - 1;
+
+        if (coefficients != null) {
+            if (transform) {
+                transformMCURow(mcuY, planes);
+            }
+        }
+        else {
+            decodeMCURow(bits, mcuY, planes, transform);
+        }
+    }
+
+    private void initComponents() {
+        Frame.Component[] components = frame.components;
+        numComponents = components.length;
+
+        // Sampling factors, normalized for single component images (MCU is a single block)
+        hSub = new int[numComponents];
+        vSub = new int[numComponents];
+
+        hMax = 1;
+        vMax = 1;
+
+        for (int c = 0; c < numComponents; c++) {
+            hSub[c] = numComponents == 1 ? 1 : components[c].hSub;
+            vSub[c] = numComponents == 1 ? 1 : components[c].vSub;
+            hMax = Math.max(hMax, hSub[c]);
+            vMax = Math.max(vMax, vSub[c]);
+        }
+
+        mcusX = (frame.samplesPerLine + 8 * hMax - 1) / (8 * hMax);
+        mcusY = (frame.lines + 8 * vMax - 1) / (8 * vMax);
+
+        idctSizes = new int[numComponents];
+        planeStrides = new int[numComponents];
+        planeRows = new int[numComponents];
+        componentWidths = new int[numComponents];
+        componentHeights = new int[numComponents];
+        fancyUpsampling = new boolean[numComponents];
+        planes = new byte[2][numComponents][];
+
+        for (int c = 0; c < numComponents; c++) {
+            // As libjpeg, use a larger IDCT for sub-sampled components when scaling, to avoid up-sampling
+            int size = blockSize;
+            while (size < 8 && hSub[c] * size * 2 <= hMax * blockSize && vSub[c] * size * 2 <= vMax * blockSize) {
+                size *= 2;
+            }
+
+            idctSizes[c] = size;
+            planeStrides[c] = mcusX * hSub[c] * size;
+            planeRows[c] = vSub[c] * size;
+            componentWidths[c] = (frame.samplesPerLine * hSub[c] * size + hMax * 8 - 1) / (hMax * 8);
+            componentHeights[c] = (frame.lines * vSub[c] * size + vMax * 8 - 1) / (vMax * 8);
+
+            // Triangle ("fancy") up-sampling for the common 2:1 cases, otherwise replication, like libjpeg
+            int hOut = hMax * blockSize;
+            int vOut = vMax * blockSize;
+            int hIn = hSub[c] * size;
+            int vIn = vSub[c] * size;
+            fancyUpsampling[c] = blockSize > 1 && hIn * 2 == hOut && (vIn == vOut || vIn * 2 == vOut);
+
+            // Data rows for one MCU row, plus a context row above and below
+            planes[0][c] = new byte[planeStrides[c] * (planeRows[c] + 2)];
+            planes[1][c] = new byte[planeStrides[c] * (planeRows[c] + 2)];
+        }
+    }
+
+    private void initScan(final Scan scan) throws IIOException {
+        Frame.Component[] components = frame.components;
+        Scan.Component[] scanComponents = scan.components;
+
+        componentIndexes = new int[scanComponents.length];
+        dcTables = new HuffmanDecoder[scanComponents.length];
+        acTables = new HuffmanDecoder[scanComponents.length];
+        quantTables = new int[scanComponents.length][];
+        predictors = new int[scanComponents.length];
+        restartsToGo = restartInterval;
+        eobRun = 0;
+
+        spectralStart = scan.spectralSelStart;
+        spectralEnd = scan.spectralSelEnd;
+        approxLow = scan.approxLow;
+
+        if (frame.marker == JPEG.SOF2) {
+            // Validate progression parameters, as libjpeg
+            boolean valid = spectralStart == 0
+                            ? spectralEnd == 0
+                            : spectralEnd >= spectralStart && spectralEnd <= 63 && scanComponents.length == 1;
+            valid &= scan.approxHigh == 0 || scan.approxHigh - 1 == approxLow;
+            valid &= approxLow <= 13;
+
+            if (!valid) {
+                throw new IIOException(String.format("Invalid progressive parameters Ss=%d Se=%d Ah=%d Al=%d", spectralStart, spectralEnd, scan.approxHigh, approxLow));
+            }
+
+            mode = spectralStart == 0
+                   ? scan.approxHigh == 0 ? MODE_DC_FIRST : MODE_DC_REFINE
+                   : scan.approxHigh == 0 ? MODE_AC_FIRST : MODE_AC_REFINE;
+        }
+        else {
+            mode = MODE_SEQUENTIAL;
+        }
+
+        for (int i = 0; i < scanComponents.length; i++) {
+            componentIndexes[i] = indexOf(components, scanComponents[i].scanCompSel);
+            dcTables[i] = huffTables[scanComponents[i].dcTabSel][0];
+            acTables[i] = huffTables[scanComponents[i].acTabSel][1];
+            quantTables[i] = qTables[components[componentIndexes[i]].qtSel];
+
+            if (dcTables[i] == null && (mode == MODE_SEQUENTIAL || mode == MODE_DC_FIRST)
+                    || acTables[i] == null && (mode == MODE_SEQUENTIAL || mode == MODE_AC_FIRST || mode == MODE_AC_REFINE)) {
+                throw new IIOException("Missing Huffman table for component " + scanComponents[i].scanCompSel);
+            }
+            if (quantTables[i] == null) {
+                throw new IIOException("Missing quantization table for component " + scanComponents[i].scanCompSel);
+            }
+
+            if (componentQTables != null && componentQTables[componentIndexes[i]] == null) {
+                // Latch the quantization table the first time the component is seen, like libjpeg
+                int[] qTable = new int[64];
+                for (int k = 0; k < 64; k++) {
+                    qTable[NATURAL_ORDER[k]] = quantTables[i][k];
+                }
+
+                componentQTables[componentIndexes[i]] = qTable;
+            }
+        }
+    }
+
+    private void restart(final BitReader bits) throws IOException {
+        if (restartInterval > 0) {
+            if (restartsToGo == 0) {
+                bits.restart();
+                Arrays.fill(predictors, 0);
+                eobRun = 0;
+                restartsToGo = restartInterval;
+            }
+
+            restartsToGo--;
+        }
+    }
+
+    private void decodeMCURow(final BitReader bits, final int mcuY, final byte[][] planes, final boolean transform) throws IOException {
+        for (int mcuX = 0; mcuX < mcusX; mcuX++) {
+            restart(bits);
+            decodeMCU(bits, predictors, block, workspace, mcuX, mcuY, planes, mcuY, transform);
+        }
+    }
+
+    /**
+     * Decodes a single MCU of an interleaved scan, into planes holding MCU rows from {@code baseRow}.
+     * All mutable state is passed as parameters, so that MCUs may be decoded concurrently.
+     */
+    private void decodeMCU(final BitReader bits, final int[] predictors, final int[] block, final int[] workspace,
+                           final int mcuX, final int mcuY, final byte[][] planes, final int baseRow, final boolean transform) throws IOException {
+        boolean transformMCU = transform && mcuX >= firstMCUColumn && mcuX <= lastMCUColumn;
+
+        for (int i = 0; i < componentIndexes.length; i++) {
+            int c = componentIndexes[i];
+            int h = hSub[c];
+            int v = vSub[c];
+            int size = idctSizes[c];
+            int stride = planeStrides[c];
+            int rowOffset = ((mcuY - baseRow) * planeRows[c] + 1) * stride;
+            byte[] plane = planes[c];
+
+            for (int by = 0; by < v; by++) {
+                for (int bx = 0; bx < h; bx++) {
+                    predictors[i] = decodeBlock(bits, dcTables[i], acTables[i], quantTables[i], predictors[i], block);
+
+                    if (transformMCU) {
+                        inverseDCT(block, workspace, size, plane, rowOffset + (mcuX * h + bx) * size + by * size * stride, stride);
+                    }
+                }
+            }
+        }
+    }
+
+    private void transformMCURow(final int mcuY, final byte[][] planes) {
+        for (int c = 0; c < numComponents; c++) {
+            short[] coefs = coefficients[c];
+            int[] qTable = componentQTables[c];
+            int h = hSub[c];
+            int v = vSub[c];
+            int size = idctSizes[c];
+            int stride = planeStrides[c];
+            int blocksPerLine = mcusX * h;
+            byte[] plane = planes[c];
+
+            if (qTable == null) {
+                // Component not present in any scan
+                Arrays.fill(plane, (byte) 128);
+                continue;
+            }
+
+            for (int mcuX = firstMCUColumn; mcuX <= lastMCUColumn; mcuX++) {
+                for (int by = 0; by < v; by++) {
+                    for (int bx = 0; bx < h; bx++) {
+                        int offset = ((mcuY * v + by) * blocksPerLine + mcuX * h + bx) * 64;
+
+                        for (int k = 0; k < 64; k++) {
+                            block[k] = coefs[offset + k] * qTable[k];
+                        }
+
+                        inverseDCT(block, workspace, size, plane, (mcuX * h + bx) * size + (by * size + 1) * stride, stride);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean decodeScan(final BitReader bits) throws IOException {
+        if (componentIndexes.length == 1) {
+            // Non-interleaved, the MCU is a single block, and only blocks inside the component are coded
+            int c = componentIndexes[0];
+            short[] coefs = coefficients[c];
+            int blocksPerLine = mcusX * hSub[c];
+            int blocksX = (frame.samplesPerLine * hSub[c] + hMax * 8 - 1) / (hMax * 8);
+            int blocksY = (frame.lines * vSub[c] + vMax * 8 - 1) / (vMax * 8);
+
+            for (int by = 0; by < blocksY; by++) {
+                for (int bx = 0; bx < blocksX; bx++) {
+                    restart(bits);
+                    decodeBlock(bits, 0, coefs, (by * blocksPerLine + bx) * 64);
+                }
+
+                if (listenerDelegate.abortRequested()) {
+                    return false;
+                }
+            }
+        }
+        else {
+            for (int mcuY = 0; mcuY < mcusY; mcuY++) {
+                for (int mcuX = 0; mcuX < mcusX; mcuX++) {
+                    restart(bits);
+
+                    for (int i = 0; i < componentIndexes.length; i++) {
+                        int c = componentIndexes[i];
+                        int h = hSub[c];
+                        int v = vSub[c];
+                        int blocksPerLine = mcusX * h;
+                        short[] coefs = coefficients[c];
+
+                        for (int by = 0; by < v; by++) {
+                            for (int bx = 0; bx < h; bx++) {
+                                decodeBlock(bits, i, coefs, ((mcuY * v + by) * blocksPerLine + mcuX * h + bx) * 64);
+                            }
+                        }
+                    }
+                }
+
+                if (listenerDelegate.abortRequested()) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private void decodeBlock(final BitReader bits, final int i, final short[] coefs, final int offset) throws IOException {
+        switch (mode) {
+            case MODE_SEQUENTIAL:
+                decodeBlockSequential(bits, i, coefs, offset);
+                break;
+            case MODE_DC_FIRST:
+                decodeBlockDCFirst(bits, i, coefs, offset);
+                break;
+            case MODE_DC_REFINE:
+                if (bits.receive(1) != 0) {
+                    coefs[offset] |= 1 << approxLow;
+                }
+                break;
+            case MODE_AC_FIRST:
+                decodeBlockACFirst(bits, i, coefs, offset);
+                break;
+            case MODE_AC_REFINE:
+                decodeBlockACRefine(bits, i, coefs, offset);
+                break;
+        }
+    }
+
+    private void decodeBlockSequential(final BitReader bits, final int i, final short[] coefs, final int offset) throws IOException {
+        int s = bits.decode(dcTables[i]);
+        predictors[i] += bits.receiveExtend(s);
+        coefs[offset] = (short) predictors[i];
+
+        HuffmanDecoder acTable = acTables[i];
+
+        for (int k = 1; k < 64; k++) {
+            int rs = bits.decode(acTable);
+            int r = rs >> 4;
+            s = rs & 0xf;
+
+            if (s != 0) {
+                k += r;
+
+                if (k > 63) {
+                    break; // Corrupt data
+                }
+
+                coefs[offset + NATURAL_ORDER[k]] = (short) bits.receiveExtend(s);
+            }
+            else if (r == 15) {
+                k += 15;
+            }
+            else {
+                break; // EOB
+            }
+        }
+    }
+
+    // The progressive decoding methods below are adapted from libjpeg's jdphuff.c
+
+    private void decodeBlockDCFirst(final BitReader bits, final int i, final short[] coefs, final int offset) throws IOException {
+        int s = bits.decode(dcTables[i]);
+        predictors[i] += bits.receiveExtend(s);
+        coefs[offset] = (short) (predictors[i] << approxLow);
+    }
+
+    private void decodeBlockACFirst(final BitReader bits, final int i, final short[] coefs, final int offset) throws IOException {
+        if (eobRun > 0) {
+            eobRun--;
+            return;
+        }
+
+        HuffmanDecoder acTable = acTables[i];
+
+        for (int k = spectralStart; k <= spectralEnd; k++) {
+            int rs = bits.decode(acTable);
+            int r = rs >> 4;
+            int s = rs & 0xf;
+
+            if (s != 0) {
+                k += r;
+                coefs[offset + NATURAL_ORDER[k]] = (short) (bits.receiveExtend(s) << approxLow);
+            }
+            else if (r == 15) {
+                k += 15;
+            }
+            else {
+                // EOBr, run length is 2^r + appended bits
+                eobRun = 1 << r;
+                if (r != 0) {
+                    eobRun += bits.receive(r);
+                }
+
+                eobRun--; // This block is the first in the run
+
+                break;
+            }
+        }
+    }
+
+    private void decodeBlockACRefine(final BitReader bits, final int i, final short[] coefs, final int offset) throws IOException {
+        int p1 = 1 << approxLow; // 1 in the bit position being coded
+        int m1 = -1 << approxLow; // -1 in the bit position being coded
+        int k = spectralStart;
+
+        if (eobRun == 0) {
+            HuffmanDecoder acTable = acTables[i];
+
+            for (; k <= spectralEnd; k++) {
+                int rs = bits.decode(acTable);
+                int r = rs >> 4;
+                int s = rs & 0xf;
+
+                if (s != 0) {
+                    // Size of new coefficient should always be 1
+                    s = bits.receive(1) != 0 ? p1 : m1;
+                }
+                else if (r != 15) {
+                    // EOBr, run length is 2^r + appended bits
+                    eobRun = 1 << r;
+                    if (r != 0) {
+                        eobRun += bits.receive(r);
+                    }
+
+                    break; // Rest of block is handled by the EOB logic below
+                }
+                // Else ZRL, skip 15 zeroes in band
+
+                // Advance over already nonzero coefficients, appending correction bits, until r zeroes are skipped
+                do {
+                    int pos = offset + NATURAL_ORDER[k];
+                    int coef = coefs[pos];
+
+                    if (coef != 0) {
+                        if (bits.receive(1) != 0 && (coef & p1) == 0) {
+                            coefs[pos] = (short) (coef >= 0 ? coef + p1 : coef + m1);
+                        }
+                    }
+                    else if (--r < 0) {
+                        break; // Reached target zero coefficient
+                    }
+
+                    k++;
+                }
+                while (k <= spectralEnd);
+
+                if (s != 0) {
+                    coefs[offset + NATURAL_ORDER[k]] = (short) s;
+                }
+            }
+        }
+
+        if (eobRun > 0) {
+            // Scan any remaining coefficient positions after the end-of-band, appending correction bits
+            for (; k <= spectralEnd; k++) {
+                int pos = offset + NATURAL_ORDER[k];
+                int coef = coefs[pos];
+
+                if (coef != 0) {
+                    if (bits.receive(1) != 0 && (coef & p1) == 0) {
+                        coefs[pos] = (short) (coef >= 0 ? coef + p1 : coef + m1);
+                    }
+                }
+            }
+
+            eobRun--;
+        }
+    }
+
+    private static int indexOf(final Frame.Component[] components, final int id) throws IIOException {
+        for (int i = 0; i < components.length; i++) {
+            if (components[i].id == id) {
+                return i;
+            }
+        }
+
+        throw new IIOException("No such component id in SOF: " + id);
+    }
+
+    private static int decodeBlock(final BitReader bits, final HuffmanDecoder dcTable, final HuffmanDecoder acTable,
+                                   final int[] qTable, final int predictor, final int[] block) throws IOException {
+        Arrays.fill(block, 0);
+
+        int s = bits.decode(dcTable);
+        int dc = predictor + bits.receiveExtend(s);
+        block[0] = dc * qTable[0];
+
+        for (int k = 1; k < 64; k++) {
+            int rs = bits.decode(acTable);
+            int r = rs >> 4;
+            s = rs & 0xf;
+
+            if (s != 0) {
+                k += r;
+
+                if (k > 63) {
+                    break; // Corrupt data
+                }
+
+                block[NATURAL_ORDER[k]] = bits.receiveExtend(s) * qTable[k];
+            }
+            else if (r == 15) {
+                k += 15;
+            }
+            else {
+                break; // EOB
+            }
+        }
+
+        return dc;
+    }
+
+    private static void inverseDCT(final int[] block, final int[] workspace, final int size, final byte[] out, final int offset, final int stride) {
+        switch (size) {
+            case 8:
+                inverseDCT8x8(block, workspace, out, offset, stride);
+                break;
+            case 4:
+                inverseDCT4x4(block, workspace, out, offset, stride);
+                break;
+            case 2:
+                inverseDCT2x2(block, out, offset, stride);
+                break;
+            default:
+                out[offset] = clamp(((block[0] + 4) >> 3) + 128);
+        }
+    }
+
+    // The reduced size transforms use the N point IDCT basis, C(u)/2 * cos((2x + 1) * u * PI / 2N),
+    // on the N x N low frequency coefficients. This makes the DC coefficient produce the block average,
+    // like the full 8x8 IDCT.
+    static void inverseDCT4x4(final int[] in, final int[] ws, final byte[] out, final int offset, final int stride) {
+        int shift1 = CONST_BITS - PASS1_BITS;
+        int round1 = 1 << (shift1 - 1);
+
+        // Pass 1: Columns
+        for (int col = 0; col < 4; col++) {
+            int e0 = (in[col] + in[col + 16]) * FIX_0_353553391;
+            int e1 = (in[col] - in[col + 16]) * FIX_0_353553391;
+            int o0 = in[col + 8] * FIX_0_461939766 + in[col + 24] * FIX_0_191341716;
+            int o1 = in[col + 8] * FIX_0_191341716 - in[col + 24] * FIX_0_461939766;
+
+            ws[col] = (e0 + o0 + round1) >> shift1;
+            ws[col + 8] = (e1 + o1 + round1) >> shift1;
+            ws[col + 16] = (e1 - o1 + round1) >> shift1;
+            ws[col + 24] = (e0 - o0 + round1) >> shift1;
+        }
+
+        // Pass 2: Rows
+        int shift2 = CONST_BITS + PASS1_BITS;
+        int round2 = (1 << (shift2 - 1)) + (128 << shift2);
+
+        for (int row = 0; row < 4; row++) {
+            int w = row * 8;
+            int o = offset + row * stride;
+
+            int e0 = (ws[w] + ws[w + 2]) * FIX_0_353553391;
+            int e1 = (ws[w] - ws[w + 2]) * FIX_0_353553391;
+            int o0 = ws[w + 1] * FIX_0_461939766 + ws[w + 3] * FIX_0_191341716;
+            int o1 = ws[w + 1] * FIX_0_191341716 - ws[w + 3] * FIX_0_461939766;
+
+            out[o] = clamp((e0 + o0 + round2) >> shift2);
+            out[o + 1] = clamp((e1 + o1 + round2) >> shift2);
+            out[o + 2] = clamp((e1 - o1 + round2) >> shift2);
+            out[o + 3] = clamp((e0 - o0 + round2) >> shift2);
+        }
+    }
+
+    static void inverseDCT2x2(final int[] in, final byte[] out, final int offset, final int stride) {
+        // Both passes at once, as all basis values are +/- 1/(2 * sqrt(2)), the product is 1/8
+        int sum0 = in[0] + in[8];
+        int diff0 = in[0] - in[8];
+        int sum1 = in[1] + in[9];
+        int diff1 = in[1] - in[9];
+
+        out[offset] = clamp(((sum0 + sum1 + 4) >> 3) + 128);
+        out[offset + 1] = clamp(((sum0 - sum1 + 4) >> 3) + 128);
+        out[offset + stride] = clamp(((diff0 + diff1 + 4) >> 3) + 128);
+        out[offset + stride + 1] = clamp(((diff0 - diff1 + 4) >> 3) + 128);
+    }
+
+    // Adapted from libjpeg's jpeg_idct_islow
+    static void inverseDCT8x8(final int[] in, final int[] ws, final byte[] out, final int offset, final int stride) {
+        int shift1 = CONST_BITS - PASS1_BITS;
+        int round1 = 1 << (shift1 - 1);
+
+        // Pass 1: Process columns from input, store into work array
+        for (int col = 0; col < 8; col++) {
+            if (in[col + 8] == 0 && in[col + 16] == 0 && in[col + 24] == 0 && in[col + 32] == 0
+                    && in[col + 40] == 0 && in[col + 48] == 0 && in[col + 56] == 0) {
+                // AC terms all zero
+                int dc = in[col] << PASS1_BITS;
+
+                ws[col] = dc;
+                ws[col + 8] = dc;
+                ws[col + 16] = dc;
+                ws[col + 24] = dc;
+                ws[col + 32] = dc;
+                ws[col + 40] = dc;
+                ws[col + 48] = dc;
+                ws[col + 56] = dc;
+
+                continue;
+            }
+
+            // Even part
+            int z2 = in[col + 16];
+            int z3 = in[col + 48];
+
+            int z1 = (z2 + z3) * FIX_0_541196100;
+            int tmp2 = z1 - z3 * FIX_1_847759065;
+            int tmp3 = z1 + z2 * FIX_0_765366865;
+
+            z2 = in[col];
+            z3 = in[col + 32];
+
+            int tmp0 = (z2 + z3) << CONST_BITS;
+            int tmp1 = (z2 - z3) << CONST_BITS;
+
+            int tmp10 = tmp0 + tmp3;
+            int tmp13 = tmp0 - tmp3;
+            int tmp11 = tmp1 + tmp2;
+            int tmp12 = tmp1 - tmp2;
+
+            // Odd part
+            tmp0 = in[col + 56];
+            tmp1 = in[col + 40];
+            tmp2 = in[col + 24];
+            tmp3 = in[col + 8];
+
+            z1 = tmp0 + tmp3;
+            z2 = tmp1 + tmp2;
+            z3 = tmp0 + tmp2;
+            int z4 = tmp1 + tmp3;
+            int z5 = (z3 + z4) * FIX_1_175875602;
+
+            tmp0 *= FIX_0_298631336;
+            tmp1 *= FIX_2_053119869;
+            tmp2 *= FIX_3_072711026;
+            tmp3 *= FIX_1_501321110;
+            z1 *= -FIX_0_899976223;
+            z2 *= -FIX_2_562915447;
+            z3 *= -FIX_1_961570560;
+            z4 *= -FIX_0_390180644;
+
+            z3 += z5;
+            z4 += z5;
+
+            tmp0 += z1 + z3;
+            tmp1 += z2 + z4;
+            tmp2 += z2 + z3;
+            tmp3 += z1 + z4;
+
+            ws[col] = (tmp10 + tmp3 + round1) >> shift1;
+            ws[col + 56] = (tmp10 - tmp3 + round1) >> shift1;
+            ws[col + 8] = (tmp11 + tmp2 + round1) >> shift1;
+            ws[col + 48] = (tmp11 - tmp2 + round1) >> shift1;
+            ws[col + 16] = (tmp12 + tmp1 + round1) >> shift1;
+            ws[col + 40] = (tmp12 - tmp1 + round1) >> shift1;
+            ws[col + 24] = (tmp13 + tmp0 + round1) >> shift1;
+            ws[col + 32] = (tmp13 - tmp0 + round1) >> shift1;
+        }
+
+        // Pass 2: Process rows from work array, store into output
+        int shift2 = CONST_BITS + PASS1_BITS + 3;
+        int round2 = 1 << (shift2 - 1);
+
+        for (int row = 0; row < 8; row++) {
+            int w = row * 8;
+            int o = offset + row * stride;
+
+            if (ws[w + 1] == 0 && ws[w + 2] == 0 && ws[w + 3] == 0 && ws[w + 4] == 0
+                    && ws[w + 5] == 0 && ws[w + 6] == 0 && ws[w + 7] == 0) {
+                // AC terms all zero
+                byte dc = clamp(((ws[w] + (1 << (PASS1_BITS + 2))) >> (PASS1_BITS + 3)) + 128);
+
+                out[o] = dc;
+                out[o + 1] = dc;
+                out[o + 2] = dc;
+                out[o + 3] = dc;
+                out[o + 4] = dc;
+                out[o + 5] = dc;
+                out[o + 6] = dc;
+                out[o + 7] = dc;
+
+                continue;
+            }
+
+            // Even part
+            int z2 = ws[w + 2];
+            int z3 = ws[w + 6];
+
+            int z1 = (z2 + z3) * FIX_0_541196100;
+            int tmp2 = z1 - z3 * FIX_1_847759065;
+            int tmp3 = z1 + z2 * FIX_0_765366865;
+
+            int tmp0 = (ws[w] + ws[w + 4]) << CONST_BITS;
+            int tmp1 = (ws[w] - ws[w + 4]) << CONST_BITS;
+
+            int tmp10 = tmp0 + tmp3;
+            int tmp13 = tmp0 - tmp3;
+            int tmp11 = tmp1 + tmp2;
+            int tmp12 = tmp1 - tmp2;
+
+            // Odd part
+            tmp0 = ws[w + 7];
+            tmp1 = ws[w + 5];
+            tmp2 = ws[w + 3];
+            tmp3 = ws[w + 1];
+
+            z1 = tmp0 + tmp3;
+            z2 = tmp1 + tmp2;
+            z3 = tmp0 + tmp2;
+            int z4 = tmp1 + tmp3;
+            int z5 = (z3 + z4) * FIX_1_175875602;
+
+            tmp0 *= FIX_0_298631336;
+            tmp1 *= FIX_2_053119869;
+            tmp2 *= FIX_3_072711026;
+            tmp3 *= FIX_1_501321110;
+            z1 *= -FIX_0_899976223;
+            z2 *= -FIX_2_562915447;
+            z3 *= -FIX_1_961570560;
+            z4 *= -FIX_0_390180644;
+
+            z3 += z5;
+            z4 += z5;
+
+            tmp0 += z1 + z3;
+            tmp1 += z2 + z4;
+            tmp2 += z2 + z3;
+            tmp3 += z1 + z4;
+
+            out[o] = clamp(((tmp10 + tmp3 + round2) >> shift2) + 128);
+            out[o + 7] = clamp(((tmp10 - tmp3 + round2) >> shift2) + 128);
+            out[o + 1] = clamp(((tmp11 + tmp2 + round2) >> shift2) + 128);
+            out[o + 6] = clamp(((tmp11 - tmp2 + round2) >> shift2) + 128);
+            out[o + 2] = clamp(((tmp12 + tmp1 + round2) >> shift2) + 128);
+            out[o + 5] = clamp(((tmp12 - tmp1 + round2) >> shift2) + 128);
+            out[o + 3] = clamp(((tmp13 + tmp0 + round2) >> shift2) + 128);
+            out[o + 4] = clamp(((tmp13 - tmp0 + round2) >> shift2) + 128);
+        }
+    }
+
+    private static byte clamp(final int value) {
+        return (byte) (value < 0 ? 0 : value > 255 ? 255 : value);
+    }
+
+    private void initOutput() {
+        // Luminance only for gray destinations
+        outputBands = destination.getNumBands() == 1 ? 1 : numComponents;
+
+        int mcuWidth = hMax * blockSize;
+        int mcuHeight = vMax * blockSize;
+
+        int width = Math.min((Math.min(region.width, outputWidth - region.x) + xSub - 1) / xSub, destination.getWidth());
+        int lastColumn = region.x + Math.max(width - 1, 0) * xSub;
+        int lastRow = Math.min(Math.min(region.y + region.height, outputHeight), region.y + destination.getHeight() * ySub) - 1;
+
+        // The MCUs covering the region, and the columns needed for up-sampling context
+        firstMCURow = Math.min(region.y / mcuHeight, mcusY - 1);
+        lastMCURow = Math.max(Math.min(lastRow / mcuHeight, mcusY - 1), firstMCURow);
+        firstMCUColumn = Math.max(region.x / mcuWidth - 1, 0);
+        lastMCUColumn = Math.min(lastColumn / mcuWidth + 1, mcusX - 1);
+
+        // Up-sampling (pixel replication) lookup, from output column to component column
+        columnIndexes = new int[numComponents][width];
+
+        for (int c = 0; c < numComponents; c++) {
+            for (int x = 0; x < width; x++) {
+                columnIndexes[c][x] = ((region.x + x * xSub) * hSub[c] * idctSizes[c]) / (hMax * blockSize);
+            }
+        }
+
+        rowBuffer = new byte[width * numComponents];
+        pixelBuffer = isByteInterleaved(destination, outputBands) ? null : new int[width * outputBands];
+    }
+
+    private static boolean isByteInterleaved(final Raster raster, final int bands) {
+        if (raster.getDataBuffer() instanceof DataBufferByte && raster.getSampleModel() instanceof ComponentSampleModel && raster.getNumBands() == bands) {
+            int[] bankIndices = ((ComponentSampleModel) raster.getSampleModel()).getBankIndices();
+
+            for (int bankIndex : bankIndices) {
+                if (bankIndex != bankIndices[0]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private void writeRows(final byte[][] planes, final int mcuY, final int baseRow) {
+        int firstRow = mcuY * vMax * blockSize;
+        int endRow = Math.min(Math.min(firstRow + vMax * blockSize, outputHeight), Math.min(region.y + region.height, region.y + destination.getHeight() * ySub));
+        int width = columnIndexes[0].length;
+
+        // First row inside the region, on the subsampling grid
+        int startRow = Math.max(firstRow, region.y);
+        startRow += (ySub - (startRow - region.y) % ySub) % ySub;
+
+        for (int y = startRow; y < endRow; y += ySub) {
+            for (int c = 0; c < outputBands; c++) {
+                if (fancyUpsampling[c]) {
+                    upsampleRow(c, planes[c], baseRow, y, width);
+                }
+                else {
+                    replicateRow(c, planes[c], baseRow, y, width);
+                }
+            }
+
+            if (convertYCbCr && outputBands == 3) {
+                for (int x = 0; x < width; x++) {
+                    YCbCrConverter.convertYCbCr2RGB(rowBuffer, rowBuffer, x * 3);
+                }
+            }
+
+            writeRow((y - region.y) / ySub, width);
+        }
+    }
+
+    private int componentRow(final int c, final int y) {
+        return (y * vSub[c] * idctSizes[c]) / (vMax * blockSize);
+    }
+
+    private int planeOffset(final int c, final int baseRow, final int componentRow) {
+        // The planes hold MCU rows from baseRow, row -1 is the context row from the MCU row above
+        return (componentRow - baseRow * planeRows[c] + 1) * planeStrides[c];
+    }
+
+    private void replicateRow(final int c, final byte[] plane, final int baseRow, final int y, final int width) {
+        int[] columns = columnIndexes[c];
+        int offset = planeOffset(c, baseRow, componentRow(c, y));
+
+        for (int x = 0, i = c; x < width; x++, i += numComponents) {
+            rowBuffer[i] = plane[offset + columns[x]];
+        }
+    }
+
+    // Adapted from libjpeg's h2v1_fancy_upsample and h2v2_fancy_upsample
+    private void upsampleRow(final int c, final byte[] plane, final int baseRow, final int y, final int width) {
+        int row = componentRow(c, y);
+        int offset = planeOffset(c, baseRow, row);
+        int last = componentWidths[c] - 1;
+
+        if (vSub[c] * idctSizes[c] == vMax * blockSize) {
+            // h2v1: 3/4 * nearer input sample + 1/4 * further input sample
+            for (int x = 0, i = c; x < width; x++, i += numComponents) {
+                int sx = region.x + x * xSub;
+                int col = sx >> 1;
+                int value = plane[offset + col] & 0xff;
+
+                if ((sx & 1) == 0) {
+                    if (col > 0) {
+                        value = (value * 3 + (plane[offset + col - 1] & 0xff) + 1) >> 2;
+                    }
+                }
+                else if (col < last) {
+                    value = (value * 3 + (plane[offset + col + 1] & 0xff) + 2) >> 2;
+                }
+
+                rowBuffer[i] = (byte) value;
+            }
+        }
+        else {
+            // h2v2: same as h2v1, but also weighting 3/4 nearer input row + 1/4 further input row
+            int neighbor = (y & 1) == 0 ? row - 1 : row + 1;
+            if (neighbor < 0 || neighbor >= componentHeights[c]) {
+                neighbor = row;
+            }
+
+            int neighborOffset = planeOffset(c, baseRow, neighbor);
+
+            for (int x = 0, i = c; x < width; x++, i += numComponents) {
+                int sx = region.x + x * xSub;
+                int col = sx >> 1;
+                int sum = (plane[offset + col] & 0xff) * 3 + (plane[neighborOffset + col] & 0xff);
+                int value;
+
+                if ((sx & 1) == 0) {
+                    value = col > 0
+                            ? (sum * 3 + (plane[offset + col - 1] & 0xff) * 3 + (plane[neighborOffset + col - 1] & 0xff) + 8) >> 4
+                            : (sum * 4 + 8) >> 4;
+                }
+                else {
+                    value = col < last
+                            ? (sum * 3 + (plane[offset + col + 1] & 0xff) * 3 + (plane[neighborOffset + col + 1] & 0xff) + 7) >> 4
+                            : (sum * 4 + 7) >> 4;
+                }
+
+                rowBuffer[i] = (byte) value;
+            }
+        }
+    }
+
+    private void writeRow(final int y, final int width) {
+        int minX = destination.getMinX();
+        int minY = destination.getMinY();
+
+        if (pixelBuffer == null) {
+            ComponentSampleModel sampleModel = (ComponentSampleModel) destination.getSampleModel();
+            DataBufferByte buffer = (DataBufferByte) destination.getDataBuffer();
+            int bank = sampleModel.getBankIndices()[0];
+            byte[] data = buffer.getData(bank);
+            int[] bandOffsets = sampleModel.getBandOffsets();
+            int pixelStride = sampleModel.getPixelStride();
+            int offset = buffer.getOffsets()[bank]
+                    + (minY + y - destination.getSampleModelTranslateY()) * sampleModel.getScanlineStride()
+                    + (minX - destination.getSampleModelTranslateX()) * pixelStride;
+
+            for (int b = 0; b < outputBands; b++) {
+                for (int x = 0, i = b, o = offset + bandOffsets[b]; x < width; x++, i += numComponents, o += pixelStride) {
+                    data[o] = rowBuffer[i];
+                }
+            }
+        }
+        else {
+            for (int x = 0, i = 0, o = 0; x < width; x++, i += numComponents) {
+                for (int b = 0; b < outputBands; b++) {
+                    pixelBuffer[o++] = rowBuffer[i + b] & 0xff;
+                }
+            }
+
+            destination.setPixels(minX, minY + y, width, 1, pixelBuffer);
+        }
+    }
+
+    private final class DecodeIntervals implements Callable<Void> {
+        private final ScanData scanData;
+        private final byte[][] planes;
+        private final int baseRow;
+        private final int fromMCU;
+        private final int toMCU;
+        private final int from;
+        private final int to;
+
+        DecodeIntervals(final ScanData scanData, final byte[][] planes, final int baseRow, final int fromMCU, final int toMCU,
+                        final int from, final int to) {
+            this.scanData = scanData;
+            this.planes = planes;
+            this.baseRow = baseRow;
+            this.fromMCU = fromMCU;
+            this.toMCU = toMCU;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            decodeIntervals(scanData, planes, baseRow, fromMCU, toMCU, from, to);
+
+            return null;
+        }
+    }
+
+    /**
+     * The entropy coded data of a scan, and the offsets of the restart intervals.
+     */
+    static final class ScanData {
+        final byte[] data;
+        final int length;
+        private final int[] restarts; // Offsets of the data following each RSTn marker
+        private final int restartCount;
+        private final boolean inSequence;
+
+        private ScanData(final byte[] data, final int length, final int[] restarts, final int restartCount, final boolean inSequence) {
+            this.data = data;
+            this.length = length;
+            this.restarts = restarts;
+            this.restartCount = restartCount;
+            this.inSequence = inSequence;
+        }
+
+        boolean hasIntervals(final int intervals) {
+            return inSequence && restartCount >= intervals - 1;
+        }
+
+        int intervalStart(final int interval) {
+            return interval == 0 ? 0 : interval <= restartCount ? restarts[interval - 1] : length;
+        }
+
+        /**
+         * Reads the entropy coded data from the stream, up to and including the first marker that is not
+         * a restart marker.
+         */
+        static ScanData read(final ImageInputStream input) throws IOException {
+            byte[] data = new byte[65536];
+            int length = 0;
+            int[] restarts = new int[64];
+            int count = 0;
+            boolean inSequence = true;
+            int end = -1;
+            int pos = 0;
+
+            while (end < 0) {
+                if (length == data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+
+                int read = input.read(data, length, data.length - length);
+                if (read <= 0) {
+                    end = length; // Premature end of file, the bit reader will feed zeros
+                    break;
+                }
+
+                length += read;
+
+                // Look for markers, a trailing 0xff is examined after the next read
+                for (; pos < length - 1; pos++) {
+                    if ((data[pos] & 0xff) != 0xff) {
+                        continue;
+                    }
+
+                    int marker = 0xff00 | data[pos + 1] & 0xff;
+
+                    if (marker >= RESTART_MARKER_BEGIN && marker <= RESTART_MARKER_END) {
+                        inSequence &= (marker & 7) == (count & 7);
+
+                        if (count == restarts.length) {
+                            restarts = Arrays.copyOf(restarts, restarts.length * 2);
+                        }
+
+                        restarts[count++] = pos + 2;
+                        pos++;
+                    }
+                    else if (marker != 0xff00 && marker != 0xffff) {
+                        end = pos + 2;
+                        break;
+                    }
+                }
+            }
+
+            return new ScanData(data, end, restarts, count, inSequence);
+        }
+    }
+
+    /**
+     * Huffman decoding table, with a fast lookup for short codes, as in libjpeg.
+     */
+    static final class HuffmanDecoder {
+        static final int LOOKAHEAD = 9;
+
+        // (code length << 8) | value for codes of length <= LOOKAHEAD, 0 for longer codes
+        final int[] lookup = new int[1 << LOOKAHEAD];
+        final int[] maxCode = new int[18];
+        final int[] valueOffset = new int[17];
+        final short[] values;
+
+        HuffmanDecoder(final short[] lengths, final short[] values) throws IIOException {
+            this.values = values;
+
+            int code = 0;
+            int index = 0;
+
+            for (int length = 1; length <= 16; length++) {
+                int count = lengths[length - 1];
+
+                valueOffset[length] = index - code;
+
+                for (int i = 0; i < count; i++, index++, code++) {
+                    if (length <= LOOKAHEAD) {
+                        int shift = LOOKAHEAD - length;
+                        int entry = (length << 8) | (values[index] & 0xff);
+
+                        Arrays.fill(lookup, code << shift, (code + 1) << shift, entry);
+                    }
+                }
+
+                if (code > 1 << length) {
+                    throw new IIOException("Bad JPEG Huffman table");
+                }
+
+                maxCode[length] = count > 0 ? code - 1 : -1;
+                code <<= 1;
+            }
+
+            maxCode[17] = Integer.MAX_VALUE; // Sentinel
+        }
+    }
+
+    /**
+     * Reads bits from the entropy coded segment, removing stuffed zero bytes and stopping at markers.
+     */
+    static final class BitReader {
+        private final ImageInputStream stream;
+        private final byte[] buffer;
+        private int pos;
+        private int limit;
+
+        private long bits;
+        private int count;
+
+        private int marker = -1;
+        private boolean corrupt;
+        private boolean prematureEnd;
+
+        BitReader(final ImageInputStream stream) {
+            this.stream = stream;
+            this.buffer = new byte[8192];
+        }
+
+        BitReader(final byte[] data, final int offset, final int limit) {
+            this.stream = null;
+            this.buffer = data;
+            this.pos = offset;
+            this.limit = limit;
+        }
+
+        boolean isCorrupt() {
+            return corrupt;
+        }
+
+        boolean isPrematureEnd() {
+            return prematureEnd;
+        }
+
+        private boolean refill() throws IOException {
+            if (stream == null) {
+                return pos < limit;
+            }
+
+            int remaining = limit - pos;
+            System.arraycopy(buffer, pos, buffer, 0, remaining);
+            pos = 0;
+            limit = remaining;
+
+            int read = stream.read(buffer, limit, buffer.length - limit);
+            if (read > 0) {
+                limit += read;
+            }
+
+            return limit > 0;
+        }
+
+        private void fill() throws IOException {
+            while (count <= 56) {
+                int b = 0;
+
+                if (marker < 0) {
+                    if (limit - pos < 2) {
+                        refill();
+                    }
+
+                    if (pos >= limit) {
+                        // No more data, pretend we found EOI, and feed zeros
+                        marker = JPEG.EOI;
+                        prematureEnd = true;
+                    }
+                    else {
+                        b = buffer[pos++] & 0xff;
+
+                        if (b == 0xff) {
+                            int next = pos < limit ? buffer[pos] & 0xff : -1;
+
+                            if (next < 0) {
+                                marker = JPEG.EOI;
+                                prematureEnd = true;
+                                b = 0;
+                            }
+                            else if (next == 0) {
+                                pos++; // Stuffed zero
+                            }
+                            else if (next == 0xff) {
+                                continue; // Fill byte, skip
+                            }
+                            else {
+                                // Leave the marker in the buffer, and feed zeros from now on
+                                pos--;
+                                marker = 0xff00 | next;
+                                b = 0;
+                            }
+                        }
+                    }
+                }
+
+                bits = (bits << 8) | b;
+                count += 8;
+            }
+        }
+
+        int decode(final HuffmanDecoder table) throws IOException {
+            if (count < 16) {
+                fill();
+            }
+
+            int entry = table.lookup[(int) (bits >>> (count - HuffmanDecoder.LOOKAHEAD)) & ((1 << HuffmanDecoder.LOOKAHEAD) - 1)];
+
+            if (entry != 0) {
+                count -= entry >> 8;
+                return entry & 0xff;
+            }
+
+            for (int length = HuffmanDecoder.LOOKAHEAD + 1; length <= 16; length++) {
+                int code = (int) (bits >>> (count - length)) & ((1 << length) - 1);
+
+                if (code <= table.maxCode[length]) {
+                    count -= length;
+                    return table.values[code + table.valueOffset[length]] & 0xff;
+                }
+            }
+
+            // Bad code, skip a bit, and return 0 (DC 0/EOB)
+            corrupt = true;
+            count--;
+
+            return 0;
+        }
+
+        int receive(final int length) throws IOException {
+            if (count < length) {
+                fill();
+            }
+
+            count -= length;
+
+            return (int) (bits >>> count) & ((1 << length) - 1);
+        }
+
+        int receiveExtend(final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            int value = receive(length);
+
+            return value < 1 << (length - 1) ? value - (1 << length) + 1 : value;
+        }
+
+        void restart() throws IOException {
+            // Discard remaining bits in the current byte, and any padding before the marker
+            bits = 0;
+            count = 0;
+
+            if (marker < 0) {
+                marker = findMarker();
+            }
+
+            if (marker >= RESTART_MARKER_BEGIN && marker <= RESTART_MARKER_END) {
+                pos += 2;
+                marker = -1; // Consumed
+            }
+            else {
+                // Keep any other marker, and continue feeding zeros
+                corrupt = true;
+            }
+        }
+
+        private int findMarker() throws IOException {
+            while (true) {
+                if (limit - pos < 2 && !refill() || limit - pos < 2) {
+                    pos = limit;
+                    prematureEnd = true;
+
+                    return JPEG.EOI;
+                }
+
+                if ((buffer[pos] & 0xff) == 0xff) {
+                    int next = buffer[pos + 1] & 0xff;
+
+                    if (next != 0 && next != 0xff) {
+                        return 0xff00 | next;
+                    }
+                }
+
+                pos++;
+            }
+        }
+
+        /**
+         * Ends the current scan, by moving the stream position back to the first byte not yet consumed,
+         * normally the marker following the scan.
+         */
+        void sync() throws IOException {
+            if (stream != null && limit > pos) {
+                stream.seek(stream.getStreamPosition() - (limit - pos));
+            }
+
+            pos = 0;
+            limit = 0;
+            bits = 0;
+            count = 0;
+            marker = -1;
+        }
+    }
+}
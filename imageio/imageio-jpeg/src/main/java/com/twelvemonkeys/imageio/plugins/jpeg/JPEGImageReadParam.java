@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.jpeg;
+
+import java.util.concurrent.Executor;
+
+/**
+ * JPEGImageReadParam.
+ * <p>
+ * In addition to the standard {@link javax.imageio.plugins.jpeg.JPEGImageReadParam} settings,
+ * this class allows decoding using the pure Java DCT decoder instead of the JRE JPEG reader,
+ * for all images it can decode, and specifying an {@link Executor} used for decoding
+ * the restart intervals of such images concurrently.
+ * </p>
+ * <p>
+ * Pure Java decoding is disabled by default, unless the system property
+ * {@code com.twelvemonkeys.imageio.plugins.jpeg.purejava} is {@code "true"}.
+ * Images read with DCT scaling are always decoded using the pure Java decoder.
+ * </p>
+ * <p>
+ * The entropy coded data is read by the reading thread, while the restart intervals
+ * are decoded on the executor.
+ * The executor is not shut down by the reader, its life cycle is the responsibility of the caller.
+ * </p>
+ */
+public final class JPEGImageReadParam extends javax.imageio.plugins.jpeg.JPEGImageReadParam {
+    private boolean pureJava = JPEGImageReader.PURE_JAVA;
+    private Executor executor;
+
+    /**
+     * Returns whether images are decoded using the pure Java DCT decoder, if possible.
+     *
+     * @return {@code true} if images are decoded using the pure Java decoder, if possible.
+     */
+    public boolean isPureJava() {
+        return pureJava;
+    }
+
+    /**
+     * Sets whether images are decoded using the pure Java DCT decoder, if possible.
+     * Images the pure Java decoder can't decode are always read using the JRE JPEG reader.
+     *
+     * @param pureJava {@code true} if images should be decoded using the pure Java decoder, if possible.
+     */
+    public void setPureJava(final boolean pureJava) {
+        this.pureJava = pureJava;
+    }
+
+    /**
+     * Returns the executor used for concurrent decoding of restart intervals, or {@code null} if decoding is sequential.
+     *
+     * @return the executor used for concurrent decoding, or {@code null}.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor used for concurrent decoding of restart intervals, when using the pure Java decoder.
+     * A {@code null} value (the default) means intervals are decoded sequentially in the reading thread.
+     * Only large, single scan images with restart intervals are decoded concurrently.
+     *
+     * @param executor the executor used for concurrent decoding, may be {@code null}.
+     */
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+}
@@ -60,6 +60,7 @@ import java.awt.image.*;
 import java.io.*;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 /**
  * A JPEG {@code ImageReader} implementation based on the JRE {@code JPEGImageReader},
@@ -77,6 +78,12 @@ import java.util.*;
  * <li>Support for JPEGs with corrupted {@code ICC_PROFILE} segments (image data is read, profile is ignored)</li>
  * <li>Support for JPEGs using non-standard color spaces, unsupported by Java 2D (image data is read, profile is ignored)</li>
  * <li>Issues warnings instead of throwing exceptions in cases of corrupted data where ever the image data can still be read in a reasonable way</li>
+ * <li>Fast decoding at 1/2, 1/4 or 1/8 scale (DCT scaling) for baseline and progressive JPEGs, when source subsampling is 2, 4 or 8 in both directions</li>
+ * <li>Optional pure Java decoding of baseline and progressive JPEGs, instead of using the JRE reader, using
+ * {@link JPEGImageReadParam#setPureJava(boolean)}, or by setting the system property
+ * {@code com.twelvemonkeys.imageio.plugins.jpeg.purejava} to {@code true}</li>
+ * <li>Optional concurrent decoding of JPEGs with restart intervals, when decoding in pure Java or using DCT scaling,
+ * using {@link JPEGImageReadParam#setExecutor(java.util.concurrent.Executor)}</li>
  * </ul>
  * Thumbnail support:
  * <ul>
@@ -104,6 +111,9 @@ public final class JPEGImageReader extends ImageReaderBase {
 
     final static boolean DEBUG = "true".equalsIgnoreCase(System.getProperty("com.twelvemonkeys.imageio.plugins.jpeg.debug"));
 
+    /** Default for {@link JPEGImageReadParam#isPureJava()}, use the pure Java {@link JPEGDCTDecoder} instead of the delegate */
+    final static boolean PURE_JAVA = "true".equalsIgnoreCase(System.getProperty("com.twelvemonkeys.imageio.plugins.jpeg.purejava"));
+
     /** Internal constant for referring all APP segments */
     static final int ALL_APP_MARKERS = -1;
 
@@ -346,6 +356,23 @@ public final class JPEGImageReader extends ImageReaderBase {
             return readImageAsRasterAndReplaceColorProfile(imageIndex, param, sof, sourceCSType, profile);
         }
 
+        int scale = getDCTScale(param, sof, sourceCSType);
+
+        if (scale > 1) {
+            if (DEBUG) {
+                System.out.println("Reading using DCT scaling decoder, scale 1/" + scale);
+            }
+
+            return readImageDCT(imageIndex, param, sourceCSType, scale);
+        }
+        else if (isPureJava(param) && canReadDCT(param, sof, sourceCSType)) {
+            if (DEBUG) {
+                System.out.println("Reading using DCT decoder");
+            }
+
+            return readImageDCT(imageIndex, param, sourceCSType, 1);
+        }
+
         if (DEBUG) {
             System.out.println("Reading using delegate");
         }
@@ -353,6 +380,142 @@ public final class JPEGImageReader extends ImageReaderBase {
         return delegate.read(0, param);
     }
 
+    /**
+     * Returns the DCT scale denominator to use for decoding, if the source subsampling of {@code param}
+     * can be performed by DCT scaling (like libjpeg's {@code scale_num/scale_denom}), otherwise {@code 1}.
+     * Subsampling is only replaced by scaling for uniform factors of 2, 4 or 8, with no subsampling offsets
+     * and a source region aligned with the subsampling grid.
+     */
+    private int getDCTScale(final ImageReadParam param, final Frame sof, final JPEGColorSpace csType) {
+        if (param == null) {
+            return 1;
+        }
+
+        int scale = param.getSourceXSubsampling();
+
+        if (scale != param.getSourceYSubsampling() || scale != 2 && scale != 4 && scale != 8
+                || param.getSubsamplingXOffset() != 0 || param.getSubsamplingYOffset() != 0) {
+            return 1;
+        }
+
+        Rectangle sourceRegion = param.getSourceRegion();
+        if (sourceRegion != null && (sourceRegion.x % scale != 0 || sourceRegion.y % scale != 0)) {
+            return 1;
+        }
+
+        return canReadDCT(param, sof, csType) ? scale : 1;
+    }
+
+    private static boolean isPureJava(final ImageReadParam param) {
+        return param instanceof JPEGImageReadParam ? ((JPEGImageReadParam) param).isPureJava() : PURE_JAVA;
+    }
+
+    private static Executor getExecutor(final ImageReadParam param) {
+        return param instanceof JPEGImageReadParam ? ((JPEGImageReadParam) param).getExecutor() : null;
+    }
+
+    private static boolean canReadDCT(final ImageReadParam param, final Frame sof, final JPEGColorSpace csType) {
+        if (!JPEGDCTDecoder.canDecode(sof)) {
+            return false;
+        }
+
+        switch (csType) {
+            case Gray:
+            case YCbCr:
+            case RGB:
+                break;
+            default:
+                return false;
+        }
+
+        if (param != null) {
+            if (param.getSourceBands() != null || param.getDestinationBands() != null) {
+                return false;
+            }
+
+            // Gray destinations are supported by decoding luminance only
+            BufferedImage destination = param.getDestination();
+            if (destination != null) {
+                int bands = destination.getRaster().getNumBands();
+
+                return bands == sof.componentsInFrame() || bands == 1 && csType != JPEGColorSpace.RGB;
+            }
+        }
+
+        return true;
+    }
+
+    private BufferedImage readImageDCT(final int imageIndex, final ImageReadParam param, final JPEGColorSpace csType, final int scale) throws IOException {
+        int width = getWidth(imageIndex);
+        int height = getHeight(imageIndex);
+
+        BufferedImage image = getDestination(param, getImageTypes(imageIndex), width, height);
+
+        Rectangle srcRegion = new Rectangle();
+        Rectangle dstRegion = new Rectangle();
+        computeRegions(param, width, height, image, srcRegion, dstRegion);
+
+        WritableRaster destination = image.getRaster().createWritableChild(dstRegion.x, dstRegion.y, dstRegion.width, dstRegion.height, 0, 0, null);
+
+        // When scaling, the decoder does the subsampling, and the region is in scaled coordinates
+        Rectangle region = scale > 1
+                           ? new Rectangle(srcRegion.x / scale, srcRegion.y / scale, dstRegion.width, dstRegion.height)
+                           : srcRegion;
+        int xSub = scale > 1 ? 1 : param != null ? param.getSourceXSubsampling() : 1;
+        int ySub = scale > 1 ? 1 : param != null ? param.getSourceYSubsampling() : 1;
+
+        processImageStarted(imageIndex);
+
+        if (createDCTDecoder(scale, param).decode(destination, region, xSub, ySub, csType == JPEGColorSpace.YCbCr)) {
+            processImageComplete();
+        }
+        else {
+            processReadAborted();
+        }
+
+        return image;
+    }
+
+    private JPEGDCTDecoder createDCTDecoder(final int scale, final ImageReadParam param) throws IOException {
+        imageInput.seek(streamOffsets.get(currentStreamIndex));
+
+        return new JPEGDCTDecoder(new JPEGSegmentImageInputStream(imageInput, new JPEGSegmentWarningDelegate()), this, scale, getExecutor(param));
+    }
+
+    private Raster readRasterDCT(final int imageIndex, final ImageReadParam param) throws IOException {
+        int width = getWidth(imageIndex);
+        int height = getHeight(imageIndex);
+
+        Rectangle srcRegion = new Rectangle();
+        Rectangle dstRegion = new Rectangle();
+        computeRegions(param, width, height, null, srcRegion, dstRegion);
+
+        // Raw raster, no color conversion
+        WritableRaster raster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, dstRegion.width, dstRegion.height, getSOF().componentsInFrame(), null);
+        int xSub = param != null ? param.getSourceXSubsampling() : 1;
+        int ySub = param != null ? param.getSourceYSubsampling() : 1;
+
+        processImageStarted(imageIndex);
+
+        if (createDCTDecoder(1, param).decode(raster, srcRegion, xSub, ySub, false)) {
+            processImageComplete();
+        }
+        else {
+            processReadAborted();
+        }
+
+        return raster;
+    }
+
+    private boolean canReadRasterDCT(final ImageReadParam param, final JPEGColorSpace csType) throws IOException {
+        if (param != null && param.getSourceBands() != null || !JPEGDCTDecoder.canDecode(getSOF())) {
+            return false;
+        }
+
+        // The JRE reader converts these, even when reading rasters
+        return csType != JPEGColorSpace.PhotoYCC && csType != JPEGColorSpace.PhotoYCCA;
+    }
+
     private boolean delegateCSTypeMismatch(final JFIF jfif, final AdobeDCT adobeDCT, final Frame startOfFrame, final JPEGColorSpace sourceCSType) throws IOException {
         switch (sourceCSType) {
             case GrayA:
@@ -493,7 +656,7 @@ public final class JPEGImageReader extends ImageReaderBase {
         // for each iteration, so we'll read all at once.
         try {
             param.setSourceRegion(srcRegion);
-            Raster raster = delegate.readRaster(0, param); // non-converted
+            Raster raster = isPureJava(param) && canReadRasterDCT(param, csType) ? readRasterDCT(imageIndex, param) : delegate.readRaster(0, param); // non-converted
 
             // Apply source color conversion from implicit color space
             if (csType == JPEGColorSpace.YCbCr) {
@@ -1054,6 +1217,10 @@ public final class JPEGImageReader extends ImageReaderBase {
             return new JPEGLosslessDecoderWrapper(this).readRaster(segments, imageInput);
         }
 
+        if (isPureJava(param) && canReadRasterDCT(param, getSourceCSType(getJFIF(), getAdobeDCT(), getSOF()))) {
+            return readRasterDCT(imageIndex, param);
+        }
+
         try {
             return delegate.readRaster(0, param);
         }
@@ -1077,7 +1244,7 @@ public final class JPEGImageReader extends ImageReaderBase {
 
     @Override
     public ImageReadParam getDefaultReadParam() {
-        return delegate.getDefaultReadParam();
+        return new JPEGImageReadParam();
     }
 
     @Override
@@ -1196,6 +1363,16 @@ public final class JPEGImageReader extends ImageReaderBase {
         super.processWarningOccurred(warning);
     }
 
+    @Override
+    protected void processImageProgress(float percentageDone) {
+        super.processImageProgress(percentageDone);
+    }
+
+    @Override
+    protected synchronized boolean abortRequested() {
+        return super.abortRequested();
+    }
+
     private static void invertCMYK(final Raster raster) {
         byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
 
@@ -394,6 +394,14 @@ final class JPEGSegmentImageInputStream extends ImageInputStreamImpl {
         }
     }
 
+    @Override
+    public void seek(final long pos) throws IOException {
+        super.seek(pos);
+
+        // Force repositioning of the underlying stream on next read, even if the new position is inside the current segment
+        segment = null;
+    }
+
     @Override
     public int read() throws IOException {
         bitOffset = 0;
@@ -49,6 +49,10 @@ import static com.twelvemonkeys.imageio.metadata.tiff.TIFFEntry.getValueLength;
 
 /**
  * TIFFWriter
+ * <p>
+ * Writes classic TIFF, with 32 bit offsets, by default.
+ * Use {@link #TIFFWriter(int)} with an offset size of 8, to write BigTIFF with 64 bit offsets.
+ * </p>
  *
  * @author <a href="mailto:harald.kuhr@gmail.com">Harald Kuhr</a>
  * @author last modified by $Author: haraldk$
@@ -60,6 +64,39 @@ public final class TIFFWriter extends MetadataWriter {
     private static final int LONGWORD_LENGTH = 4;
     private static final int ENTRY_LENGTH = 12;
 
+    private static final int LONGLONGWORD_LENGTH = 8;
+    private static final int BIGTIFF_ENTRY_LENGTH = 20;
+
+    private final int offsetSize;
+
+    /**
+     * Creates a {@code TIFFWriter} for classic TIFF.
+     */
+    public TIFFWriter() {
+        this(LONGWORD_LENGTH);
+    }
+
+    /**
+     * Creates a {@code TIFFWriter}.
+     *
+     * @param offsetSize the size of offsets in bytes, must be 4 for classic TIFF or 8 for BigTIFF.
+     */
+    public TIFFWriter(final int offsetSize) {
+        this.offsetSize = Validate.isTrue(offsetSize == LONGWORD_LENGTH || offsetSize == LONGLONGWORD_LENGTH, offsetSize, "offsetSize must be 4 for TIFF or 8 for BigTIFF: %s");
+    }
+
+    private boolean isBigTIFF() {
+        return offsetSize == LONGLONGWORD_LENGTH;
+    }
+
+    private int entryCountLength() {
+        return isBigTIFF() ? LONGLONGWORD_LENGTH : WORD_LENGTH;
+    }
+
+    private int entryLength() {
+        return isBigTIFF() ? BIGTIFF_ENTRY_LENGTH : ENTRY_LENGTH;
+    }
+
     public boolean write(final Collection<Entry> entries, final ImageOutputStream stream) throws IOException {
         return write(new IFD(entries), stream);
     }
@@ -87,7 +124,7 @@ public final class TIFFWriter extends MetadataWriter {
         }
 
         // Offset to next IFD (EOF)
-        stream.writeInt(0);
+        writeOffset(0, stream);
 
         return true;
     }
@@ -96,7 +133,15 @@ public final class TIFFWriter extends MetadataWriter {
         // Header
         ByteOrder byteOrder = stream.getByteOrder();
         stream.writeShort(byteOrder == ByteOrder.BIG_ENDIAN ? TIFF.BYTE_ORDER_MARK_BIG_ENDIAN : TIFF.BYTE_ORDER_MARK_LITTLE_ENDIAN);
-        stream.writeShort(42);
+
+        if (isBigTIFF()) {
+            stream.writeShort(TIFF.BIGTIFF_MAGIC);
+            stream.writeShort(offsetSize); // Byte size of offsets
+            stream.writeShort(0); // Always 0
+        }
+        else {
+            stream.writeShort(TIFF.TIFF_MAGIC);
+        }
     }
 
     public long writeIFD(final Collection<Entry> entries, final ImageOutputStream stream) throws IOException {
@@ -118,34 +163,44 @@ public final class TIFFWriter extends MetadataWriter {
         long dataSize = computeDataSize(ordered);
 
         // Offset to this IFD
-        final long ifdOffset = stream.getStreamPosition() + dataSize + LONGWORD_LENGTH;
+        final long ifdOffset = stream.getStreamPosition() + dataSize + offsetSize;
 
         if (!isSubIFD) {
-            stream.writeInt(assertIntegerOffset(ifdOffset));
-            dataOffset += LONGWORD_LENGTH;
+            writeOffset(ifdOffset, stream);
+            dataOffset += offsetSize;
 
             // Seek to offset
             stream.seek(ifdOffset);
         }
         else {
-            dataOffset += WORD_LENGTH + ordered.size() * ENTRY_LENGTH;
+            dataOffset += entryCountLength() + ordered.size() * entryLength();
         }
 
         // Write directory
-        stream.writeShort(ordered.size());
+        if (isBigTIFF()) {
+            stream.writeLong(ordered.size());
+        }
+        else {
+            stream.writeShort(ordered.size());
+        }
 
         for (Entry entry : ordered) {
             // Write tag id
             stream.writeShort((Integer) entry.getIdentifier());
             // Write tag type
-            stream.writeShort(getType(entry));
+            stream.writeShort(getWriteType(entry));
             // Write value count
-            stream.writeInt(getCount(entry));
+            if (isBigTIFF()) {
+                stream.writeLong(getCount(entry));
+            }
+            else {
+                stream.writeInt(getCount(entry));
+            }
 
             // Write value
             if (entry.getValue() instanceof Directory) {
                 // TODO: This could possibly be a compound directory, in which case the count should be > 1
-                stream.writeInt(assertIntegerOffset(dataOffset));
+                writeOffset(dataOffset, stream);
                 long streamPosition = stream.getStreamPosition();
                 stream.seek(dataOffset);
                 Directory subIFD = (Directory) entry.getValue();
@@ -162,26 +217,35 @@ public final class TIFFWriter extends MetadataWriter {
     }
 
     public long computeIFDSize(final Collection<Entry> directory) {
-        return WORD_LENGTH + computeDataSize(new IFD(directory)) + directory.size() * ENTRY_LENGTH;
+        return entryCountLength() + computeDataSize(new IFD(directory)) + directory.size() * entryLength();
+    }
+
+    private short getWriteType(final Entry entry) {
+        // Pointers to sub-IFDs must be 64 bit in BigTIFF
+        if (isBigTIFF() && entry.getValue() instanceof Directory) {
+            return TIFF.TYPE_IFD8;
+        }
+
+        return getType(entry);
     }
 
     private long computeDataSize(final Directory directory) {
         long dataSize = 0;
 
         for (Entry entry : directory) {
-            long length = getValueLength(getType(entry), getCount(entry));
+            long length = getValueLength(getWriteType(entry), getCount(entry));
 
             if (length < 0) {
                 throw new IllegalArgumentException(String.format("Unknown size for entry %s", entry));
             }
 
-            if (length > LONGWORD_LENGTH) {
+            if (length > offsetSize) {
                 dataSize += length;
             }
 
             if (entry.getValue() instanceof Directory) {
                 Directory subIFD = (Directory) entry.getValue();
-                long subIFDSize = WORD_LENGTH + subIFD.size() * ENTRY_LENGTH + computeDataSize(subIFD);
+                long subIFDSize = entryCountLength() + subIFD.size() * entryLength() + computeDataSize(subIFD);
                 dataSize += subIFDSize;
             }
         }
@@ -226,14 +290,14 @@ public final class TIFFWriter extends MetadataWriter {
     }
 
     private long writeValue(final Entry entry, final long dataOffset, final ImageOutputStream stream) throws IOException {
-        short type = getType(entry);
+        short type = getWriteType(entry);
         long valueLength = getValueLength(type, getCount(entry));
 
-        if (valueLength <= LONGWORD_LENGTH) {
+        if (valueLength <= offsetSize) {
             writeValueInline(entry.getValue(), type, stream);
 
             // Pad
-            for (long i = valueLength; i < LONGWORD_LENGTH; i++) {
+            for (long i = valueLength; i < offsetSize; i++) {
                 stream.write(0);
             }
 
@@ -313,6 +377,29 @@ public final class TIFFWriter extends MetadataWriter {
                     stream.writeInts(ints, 0, ints.length);
                     break;
 
+                case TIFF.TYPE_LONG8:
+                case TIFF.TYPE_SLONG8:
+                case TIFF.TYPE_IFD8:
+                    long[] longs;
+
+                    if (value instanceof long[]) {
+                        longs = (long[]) value;
+                    }
+                    else if (value instanceof int[]) {
+                        int[] values = (int[]) value;
+                        longs = new long[values.length];
+
+                        for (int i = 0; i < values.length; i++) {
+                            longs[i] = values[i] & 0xffffffffL;
+                        }
+                    }
+                    else {
+                        throw new IllegalArgumentException("Unsupported type for TIFF LONG8: " + value.getClass());
+                    }
+
+                    stream.writeLongs(longs, 0, longs.length);
+                    break;
+
                 case TIFF.TYPE_RATIONAL:
                 case TIFF.TYPE_SRATIONAL:
                     Rational[] rationals = (Rational[]) value;
@@ -375,6 +462,11 @@ public final class TIFFWriter extends MetadataWriter {
                 case TIFF.TYPE_SLONG:
                     stream.writeInt(((Number) value).intValue());
                     break;
+                case TIFF.TYPE_LONG8:
+                case TIFF.TYPE_SLONG8:
+                case TIFF.TYPE_IFD8:
+                    stream.writeLong(((Number) value).longValue());
+                    break;
                 case TIFF.TYPE_RATIONAL:
                 case TIFF.TYPE_SRATIONAL:
                     Rational rational = (Rational) value;
@@ -395,13 +487,22 @@ public final class TIFFWriter extends MetadataWriter {
     }
 
     private void writeValueAt(final long dataOffset, final Object value, final short type, final ImageOutputStream stream) throws IOException {
-        stream.writeInt(assertIntegerOffset(dataOffset));
+        writeOffset(dataOffset, stream);
         long position = stream.getStreamPosition();
         stream.seek(dataOffset);
         writeValueInline(value, type, stream);
         stream.seek(position);
     }
 
+    private void writeOffset(final long offset, final ImageOutputStream stream) throws IOException {
+        if (isBigTIFF()) {
+            stream.writeLong(offset);
+        }
+        else {
+            stream.writeInt(assertIntegerOffset(offset));
+        }
+    }
+
     private int assertIntegerOffset(long offset) throws IIOException {
         if (offset > Integer.MAX_VALUE - (long) Integer.MIN_VALUE) {
             throw new IIOException("Integer overflow for TIFF stream");
@@ -33,6 +33,7 @@ package com.twelvemonkeys.imageio.plugins.psd;
 import com.twelvemonkeys.image.ImageUtil;
 import com.twelvemonkeys.imageio.ImageReaderBase;
 import com.twelvemonkeys.imageio.color.ColorSpaces;
+import com.twelvemonkeys.imageio.stream.ByteArrayImageInputStream;
 import com.twelvemonkeys.imageio.util.ImageTypeSpecifiers;
 
 import javax.imageio.IIOException;
@@ -78,6 +79,9 @@ public final class PSDImageReader extends ImageReaderBase {
     private ICC_ColorSpace colorSpace;
     private PSDMetadata metadata;
 
+    // Reused for all ZIP compressed layer channels read by this reader
+    private ZIPChannelDecoder zipDecoder;
+
     PSDImageReader(final ImageReaderSpi originatingProvider) {
         super(originatingProvider);
     }
@@ -88,6 +92,16 @@ public final class PSDImageReader extends ImageReaderBase {
         colorSpace = null;
     }
 
+    @Override
+    public void dispose() {
+        super.dispose();
+
+        if (zipDecoder != null) {
+            zipDecoder.end();
+            zipDecoder = null;
+        }
+    }
+
     public int getWidth(final int imageIndex) throws IOException {
         checkBounds(imageIndex);
         readHeader();
@@ -463,19 +477,19 @@ public final class PSDImageReader extends ImageReaderBase {
             switch (header.bits) {
                 case 1:
                     byte[] row1 = ((DataBufferByte) rowRaster.getDataBuffer()).getData();
-                    read1bitChannel(c, channels, destRaster.getDataBuffer(), interleavedBands, bandOffset, pSourceCM, row1, pSource, pDest, pXSub, pYSub, header.width, header.height, pByteCounts, pCompression == PSD.COMPRESSION_RLE);
+                    read1bitChannel(imageInput, c, channels, destRaster.getDataBuffer(), interleavedBands, bandOffset, pSourceCM, row1, pSource, pDest, pXSub, pYSub, header.width, header.height, pByteCounts, pCompression == PSD.COMPRESSION_RLE);
                     break;
                 case 8:
                     byte[] row8 = ((DataBufferByte) rowRaster.getDataBuffer()).getData();
-                    read8bitChannel(c, channels, destRaster.getDataBuffer(), interleavedBands, bandOffset, pSourceCM, row8, pSource, pDest, pXSub, pYSub, header.width, header.height, pByteCounts, c * header.height, pCompression == PSD.COMPRESSION_RLE);
+                    read8bitChannel(imageInput, c, channels, destRaster.getDataBuffer(), interleavedBands, bandOffset, pSourceCM, row8, pSource, pDest, pXSub, pYSub, header.width, header.height, pByteCounts, c * header.height, pCompression == PSD.COMPRESSION_RLE);
                     break;
                 case 16:
                     short[] row16 = ((DataBufferUShort) rowRaster.getDataBuffer()).getData();
-                    read16bitChannel(c, channels, destRaster.getDataBuffer(), interleavedBands, bandOffset, pSourceCM, row16, pSource, pDest, pXSub, pYSub, header.width, header.height, pByteCounts, c * header.height, pCompression == PSD.COMPRESSION_RLE);
+                    read16bitChannel(imageInput, c, channels, destRaster.getDataBuffer(), interleavedBands, bandOffset, pSourceCM, row16, pSource, pDest, pXSub, pYSub, header.width, header.height, pByteCounts, c * header.height, pCompression == PSD.COMPRESSION_RLE);
                     break;
                 case 32:
                     int[] row32 = ((DataBufferInt) rowRaster.getDataBuffer()).getData();
-                    read32bitChannel(c, channels, destRaster.getDataBuffer(), interleavedBands, bandOffset, pSourceCM, row32, pSource, pDest, pXSub, pYSub, header.width, header.height, pByteCounts, c * header.height, pCompression == PSD.COMPRESSION_RLE);
+                    read32bitChannel(imageInput, c, channels, destRaster.getDataBuffer(), interleavedBands, bandOffset, pSourceCM, row32, pSource, pDest, pXSub, pYSub, header.width, header.height, pByteCounts, c * header.height, pCompression == PSD.COMPRESSION_RLE);
                     break;
                 default:
                     throw new IIOException(String.format("Unsupported PSD bit depth: %s", header.bits));
@@ -529,7 +543,7 @@ public final class PSDImageReader extends ImageReaderBase {
         processImageProgress(100f * channel / channelCount + 100f * y / (height * channelCount));
     }
 
-    private void read32bitChannel(final int pChannel, final int pChannelCount,
+    private void read32bitChannel(final ImageInputStream pInput, final int pChannel, final int pChannelCount,
                                   final DataBuffer pData, final int pBands, final int pBandOffset,
                                   final ColorModel pSourceColorModel,
                                   final int[] pRow,
@@ -552,14 +566,14 @@ public final class PSDImageReader extends ImageReaderBase {
             if (y >= pSource.y && y < pSource.y + pSource.height && y % pYSub == 0) {
                 if (pRLECompressed) {
 
-                    try (DataInputStream input = PSDUtil.createPackBitsStream(imageInput, length)) {
+                    try (DataInputStream input = PSDUtil.createPackBitsStream(pInput, length)) {
                         for (int x = 0; x < pChannelWidth; x++) {
                             pRow[x] = input.readInt();
                         }
                     }
                 }
                 else {
-                    imageInput.readFully(pRow, 0, pChannelWidth);
+                    pInput.readFully(pRow, 0, pChannelWidth);
                 }
 
                 // TODO: Destination offset...??
@@ -577,7 +591,7 @@ public final class PSDImageReader extends ImageReaderBase {
                 }
             }
             else {
-                imageInput.skipBytes(length);
+                pInput.skipBytes(length);
             }
 
             if (abortRequested()) {
@@ -588,7 +602,7 @@ public final class PSDImageReader extends ImageReaderBase {
         }
     }
 
-    private void read16bitChannel(final int pChannel, final int pChannelCount,
+    private void read16bitChannel(final ImageInputStream pInput, final int pChannel, final int pChannelCount,
                                   final DataBuffer pData, final int pBands, final int pBandOffset,
                                   final ColorModel pSourceColorModel,
                                   final short[] pRow,
@@ -610,14 +624,14 @@ public final class PSDImageReader extends ImageReaderBase {
             // Read entire line, if within source region and sampling
             if (y >= pSource.y && y < pSource.y + pSource.height && y % pYSub == 0) {
                 if (pRLECompressed) {
-                    try (DataInputStream input = PSDUtil.createPackBitsStream(imageInput, length)) {
+                    try (DataInputStream input = PSDUtil.createPackBitsStream(pInput, length)) {
                         for (int x = 0; x < pChannelWidth; x++) {
                             pRow[x] = input.readShort();
                         }
                     }
                 }
                 else {
-                    imageInput.readFully(pRow, 0, pChannelWidth);
+                    pInput.readFully(pRow, 0, pChannelWidth);
                 }
 
                 // TODO: Destination offset...??
@@ -635,7 +649,7 @@ public final class PSDImageReader extends ImageReaderBase {
                 }
             }
             else {
-                imageInput.skipBytes(length);
+                pInput.skipBytes(length);
             }
 
             if (abortRequested()) {
@@ -646,7 +660,7 @@ public final class PSDImageReader extends ImageReaderBase {
         }
     }
 
-    private void read8bitChannel(final int pChannel, final int pChannelCount,
+    private void read8bitChannel(final ImageInputStream pInput, final int pChannel, final int pChannelCount,
                                  final DataBuffer pData, final int pBands, final int pBandOffset,
                                  final ColorModel pSourceColorModel,
                                  final byte[] pRow,
@@ -668,12 +682,12 @@ public final class PSDImageReader extends ImageReaderBase {
             // Read entire line, if within source region and sampling
             if (y >= pSource.y && y < pSource.y + pSource.height && y % pYSub == 0) {
                 if (pRLECompressed) {
-                    try (DataInputStream input = PSDUtil.createPackBitsStream(imageInput, length)) {
+                    try (DataInputStream input = PSDUtil.createPackBitsStream(pInput, length)) {
                         input.readFully(pRow, 0, pChannelWidth);
                     }
                 }
                 else {
-                    imageInput.readFully(pRow, 0, pChannelWidth);
+                    pInput.readFully(pRow, 0, pChannelWidth);
                 }
 
                 // TODO: Destination offset...??
@@ -691,7 +705,7 @@ public final class PSDImageReader extends ImageReaderBase {
                 }
             }
             else {
-                imageInput.skipBytes(length);
+                pInput.skipBytes(length);
             }
 
             if (abortRequested()) {
@@ -703,7 +717,7 @@ public final class PSDImageReader extends ImageReaderBase {
     }
 
     @SuppressWarnings({"UnusedDeclaration"})
-    private void read1bitChannel(final int pChannel, final int pChannelCount,
+    private void read1bitChannel(final ImageInputStream pInput, final int pChannel, final int pChannelCount,
                                  final DataBuffer pData, final int pBands, final int pBandOffset,
                                  final ColorModel pSourceColorModel,
                                  final byte[] pRow,
@@ -723,12 +737,12 @@ public final class PSDImageReader extends ImageReaderBase {
             // Read entire line, if within source region and sampling
             if (y >= pSource.y && y < pSource.y + pSource.height && y % pYSub == 0) {
                 if (pRLECompressed) {
-                    try (DataInputStream input = PSDUtil.createPackBitsStream(imageInput, length)) {
+                    try (DataInputStream input = PSDUtil.createPackBitsStream(pInput, length)) {
                         input.readFully(pRow, 0, pRow.length);
                     }
                 }
                 else {
-                    imageInput.readFully(pRow, 0, pRow.length);
+                    pInput.readFully(pRow, 0, pRow.length);
                 }
 
                 // TODO: Destination offset...??
@@ -767,7 +781,7 @@ public final class PSDImageReader extends ImageReaderBase {
                 }
             }
             else {
-                imageInput.skipBytes(length);
+                pInput.skipBytes(length);
             }
 
             if (abortRequested()) {
@@ -1039,7 +1053,7 @@ public final class PSDImageReader extends ImageReaderBase {
             // Skip layer if we can't read it
             // channelId
             // -1 = transparency mask; -2 = user supplied layer mask, -3 = real user supplied layer mask (when both a user mask and a vector mask are present)
-            if (channelInfo.channelId < -1 || (compression != PSD.COMPRESSION_NONE && compression != PSD.COMPRESSION_RLE)) { // TODO: ZIP Compressions!
+            if (channelInfo.channelId < -1 || compression < PSD.COMPRESSION_NONE || compression > PSD.COMPRESSION_ZIP_PREDICTION) {
                 imageInput.skipBytes(channelInfo.length - 2);
             }
             else {
@@ -1051,6 +1065,7 @@ public final class PSDImageReader extends ImageReaderBase {
                 //       byte counts are written for all channels before the image data.
                 //       This is the reason for the current code duplication
                 int[] byteCounts = null;
+                ImageInputStream channelInput = imageInput;
 
                 // 0: None, 1: PackBits RLE, 2: Zip, 3: Zip w/prediction
                 switch (compression) {
@@ -1068,6 +1083,15 @@ public final class PSDImageReader extends ImageReaderBase {
                         break;
                     case PSD.COMPRESSION_ZIP:
                     case PSD.COMPRESSION_ZIP_PREDICTION:
+                        // The entire channel is compressed as one, decode it up front, and read as uncompressed
+                        if (zipDecoder == null) {
+                            zipDecoder = new ZIPChannelDecoder();
+                        }
+
+                        byte[] decoded = zipDecoder.decode(imageInput, channelInfo.length - 2, width, height, header.bits, compression == PSD.COMPRESSION_ZIP_PREDICTION);
+                        channelInput = new ByteArrayImageInputStream(decoded);
+
+                        break;
                     default:
                         // Explicitly skipped above
                         throw new AssertionError(String.format("Unsupported layer data. Compression: %d", compression));
@@ -1078,21 +1102,21 @@ public final class PSDImageReader extends ImageReaderBase {
                 switch (header.bits) {
                     case 1:
                         byte[] row1 = ((DataBufferByte) rowRaster.getDataBuffer()).getData();
-                        read1bitChannel(c, imageType.getNumBands(), raster.getDataBuffer(), interleavedBands, bandOffset, sourceCM, row1, area, area, xsub, ysub, width, height, byteCounts, compression == PSD.COMPRESSION_RLE);
+                        read1bitChannel(channelInput, c, imageType.getNumBands(), raster.getDataBuffer(), interleavedBands, bandOffset, sourceCM, row1, area, area, xsub, ysub, width, height, byteCounts, compression == PSD.COMPRESSION_RLE);
                         break;
                     case 8:
                         byte[] row8 = ((DataBufferByte) rowRaster.getDataBuffer()).getData();
-                        read8bitChannel(c, imageType.getNumBands(), raster.getDataBuffer(), interleavedBands, bandOffset, sourceCM, row8, area, area, xsub,
+                        read8bitChannel(channelInput, c, imageType.getNumBands(), raster.getDataBuffer(), interleavedBands, bandOffset, sourceCM, row8, area, area, xsub,
                                 ysub, width, height, byteCounts, 0, compression == PSD.COMPRESSION_RLE);
                         break;
                     case 16:
                         short[] row16 = ((DataBufferUShort) rowRaster.getDataBuffer()).getData();
-                        read16bitChannel(c, imageType.getNumBands(), raster.getDataBuffer(), interleavedBands, bandOffset, sourceCM, row16, area, area, xsub,
+                        read16bitChannel(channelInput, c, imageType.getNumBands(), raster.getDataBuffer(), interleavedBands, bandOffset, sourceCM, row16, area, area, xsub,
                                 ysub, width, height, byteCounts, 0, compression == PSD.COMPRESSION_RLE);
                         break;
                     case 32:
                         int[] row32 = ((DataBufferInt) rowRaster.getDataBuffer()).getData();
-                        read32bitChannel(c, imageType.getNumBands(), raster.getDataBuffer(), interleavedBands, bandOffset, sourceCM, row32, area, area, xsub,
+                        read32bitChannel(channelInput, c, imageType.getNumBands(), raster.getDataBuffer(), interleavedBands, bandOffset, sourceCM, row32, area, area, xsub,
                                 ysub, width, height, byteCounts, 0, compression == PSD.COMPRESSION_RLE);
                         break;
                     default:
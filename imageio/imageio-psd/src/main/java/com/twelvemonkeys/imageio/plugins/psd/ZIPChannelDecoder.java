@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.psd;
+
+import javax.imageio.IIOException;
+import javax.imageio.stream.ImageInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decoder for ZIP (Deflate) compressed PSD channel data, with or without prediction.
+ * <p>
+ * The entire compressed channel is read into memory, and inflated in one go, to keep the number of
+ * native calls low. The decoder, its native {@code Inflater} and buffers, may be reused for multiple channels.
+ * Invoke {@link #end()} to release the native resources, when the decoder is no longer needed.
+ * </p>
+ */
+final class ZIPChannelDecoder {
+    private final Inflater inflater = new Inflater();
+
+    private byte[] compressed = new byte[0];
+    private byte[] decoded = new byte[0];
+
+    /**
+     * Reads and decodes a ZIP compressed channel.
+     *
+     * @param stream the stream to read from, positioned at the start of the compressed data.
+     * @param length the length of the compressed data.
+     * @param width the width of the channel.
+     * @param height the height of the channel.
+     * @param bits the bit depth of the channel.
+     * @param prediction {@code true} if the data is compressed using prediction.
+     * @return the decoded channel data, in Photoshop byte order (big endian). The returned array may be longer
+     * than the decoded data, and is only valid until the next invocation of this method.
+     *
+     * @throws IOException if an I/O exception occurs, or the data can't be decoded.
+     */
+    byte[] decode(final ImageInputStream stream, final long length, final int width, final int height,
+                  final int bits, final boolean prediction) throws IOException {
+        int rowLength = (width * bits + 7) / 8;
+        long decodedLength = rowLength * (long) height;
+
+        if (length > Integer.MAX_VALUE || decodedLength > Integer.MAX_VALUE) {
+            throw new IIOException(String.format("PSD ZIP compressed channel too large: %d x %d", width, height));
+        }
+
+        if (compressed.length < length) {
+            compressed = new byte[(int) length];
+        }
+        if (decoded.length < decodedLength) {
+            decoded = new byte[(int) decodedLength];
+        }
+
+        stream.readFully(compressed, 0, (int) length);
+
+        inflater.reset();
+        inflater.setInput(compressed, 0, (int) length);
+
+        try {
+            int inflated = 0;
+
+            // Normally done in a single invocation
+            while (inflated < decodedLength) {
+                int count = inflater.inflate(decoded, inflated, (int) decodedLength - inflated);
+
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new EOFException("Unexpected end of PSD ZIP compressed data");
+                }
+
+                inflated += count;
+            }
+        }
+        catch (DataFormatException e) {
+            throw new IIOException("Could not decode PSD ZIP compressed data: " + e.getMessage(), e);
+        }
+
+        if (prediction) {
+            decodePrediction(decoded, rowLength, width, height, bits);
+        }
+
+        return decoded;
+    }
+
+    private static void decodePrediction(final byte[] data, final int rowLength, final int width, final int height, final int bits) throws IIOException {
+        switch (bits) {
+            case 8:
+                for (int y = 0; y < height; y++) {
+                    int offset = y * rowLength;
+
+                    for (int x = 1; x < width; x++) {
+                        data[offset + x] += data[offset + x - 1];
+                    }
+                }
+
+                break;
+
+            case 16:
+                for (int y = 0; y < height; y++) {
+                    int offset = y * rowLength;
+                    int previous = 0;
+
+                    for (int x = 0; x < width; x++) {
+                        int i = offset + 2 * x;
+                        int value = previous + ((data[i] & 0xff) << 8 | data[i + 1] & 0xff);
+
+                        data[i] = (byte) (value >> 8);
+                        data[i + 1] = (byte) value;
+
+                        previous = value;
+                    }
+                }
+
+                break;
+
+            case 32:
+                // The bytes of each row are delta encoded, and ordered as all the first (most significant) bytes,
+                // followed by all the second bytes, etc. Restore the normal (big endian) byte order after decoding.
+                byte[] row = new byte[rowLength];
+
+                for (int y = 0; y < height; y++) {
+                    int offset = y * rowLength;
+
+                    for (int i = 1; i < rowLength; i++) {
+                        data[offset + i] += data[offset + i - 1];
+                    }
+
+                    System.arraycopy(data, offset, row, 0, rowLength);
+
+                    for (int x = 0; x < width; x++) {
+                        for (int b = 0; b < 4; b++) {
+                            data[offset + 4 * x + b] = row[b * width + x];
+                        }
+                    }
+                }
+
+                break;
+
+            default:
+                throw new IIOException(String.format("Unsupported bit depth for PSD ZIP compression with prediction: %d", bits));
+        }
+    }
+
+    /**
+     * Releases the native resources held by this decoder. The decoder can no longer be used.
+     */
+    void end() {
+        inflater.end();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import com.twelvemonkeys.imageio.spi.ImageWriterSpiBase;
+
+import javax.imageio.ImageTypeSpecifier;
+import java.util.Locale;
+
+/**
+ * BigTIFFImageWriterSpi.
+ * <p>
+ * This is a separate service provider for the BigTIFF format, to allow explicitly
+ * writing BigTIFF (64 bit offsets), even for images that would fit in a classic TIFF.
+ * The normal TIFF writer will switch to BigTIFF automatically, only for images that are
+ * too large for classic TIFF.
+ * </p>
+ */
+public final class BigTIFFImageWriterSpi extends ImageWriterSpiBase {
+    /**
+     * Creates a {@code BigTIFFImageWriterSpi}.
+     */
+    public BigTIFFImageWriterSpi() {
+        super(new BigTIFFProviderInfo());
+    }
+
+    @Override
+    public boolean canEncodeImage(final ImageTypeSpecifier type) {
+        return TIFFImageWriterSpi.canEncode(type);
+    }
+
+    @Override
+    public TIFFImageWriter createWriterInstance(final Object extension) {
+        return new TIFFImageWriter(this);
+    }
+
+    @Override
+    public String getDescription(final Locale locale) {
+        return "BigTIFF image writer";
+    }
+}
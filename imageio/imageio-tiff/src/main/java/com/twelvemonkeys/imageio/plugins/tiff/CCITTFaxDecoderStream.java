@@ -36,10 +36,16 @@ import java.io.EOFException;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * CCITT Modified Huffman RLE, Group 3 (T4) and Group 4 (T6) fax compression.
+ * <p>
+ * Codes are decoded using two-level lookup tables, derived from the code trees, peeking up to 13 bits
+ * at a time from a bit accumulator. Runs are written to the row buffer using bulk fills.
+ * </p>
  *
  * @author <a href="mailto:harald.kuhr@gmail.com">Harald Kuhr</a>
  * @author <a href="https://github.com/Schmidor">Oliver Schmidtmer</a>
@@ -72,6 +78,14 @@ final class CCITTFaxDecoderStream extends FilterInputStream {
 
     private int lastChangingElement = 0;
 
+    // Input buffer, and bit accumulator
+    private final byte[] input = new byte[1024];
+    private int inputPos;
+    private int inputLimit;
+
+    private long bits;
+    private int bitCount;
+
     /**
      * Creates a CCITTFaxDecoderStream.
      * This constructor may be used for CCITT streams embedded in PDF files,
@@ -221,10 +235,10 @@ final class CCITTFaxDecoderStream extends FilterInputStream {
             int completeRun;
 
             if (white) {
-                completeRun = decodeRun(whiteRunTree);
+                completeRun = decodeRun(WHITE_RUN_TABLE);
             }
             else {
-                completeRun = decodeRun(blackRunTree);
+                completeRun = decodeRun(BLACK_RUN_TABLE);
             }
 
             index += completeRun;
@@ -245,61 +259,57 @@ final class CCITTFaxDecoderStream extends FilterInputStream {
         int index = 0;
         changesCurrentRowCount = 0;
 
-        mode: while (index < columns) {
+        while (index < columns) {
             // read mode
-            Node n = codeTree.root;
+            int entry = lookup(MODE_TABLE);
 
-            while (true) {
-                n = n.walk(readBit());
+            if ((entry & KIND_MASK) == KIND_INVALID) {
+                // Skip unknown code
+                continue;
+            }
 
-                if (n == null) {
-                    continue mode;
-                }
-                else if (n.isLeaf) {
-                    switch (n.value) {
-                        case VALUE_HMODE:
-                            int runLength;
-                            runLength = decodeRun(white ? whiteRunTree : blackRunTree);
-                            index += runLength;
-                            changesCurrentRow[changesCurrentRowCount++] = index;
-
-                            runLength = decodeRun(white ? blackRunTree : whiteRunTree);
-                            index += runLength;
-                            changesCurrentRow[changesCurrentRowCount++] = index;
-                            break;
-
-                        case VALUE_PASSMODE:
-                            int pChangingElement = getNextChangingElement(index, white) + 1;
-
-                            if (pChangingElement >= changesReferenceRowCount) {
-                                index = columns;
-                            }
-                            else {
-                                index = changesReferenceRow[pChangingElement];
-                            }
-
-                            break;
-
-                        default:
-                            // Vertical mode (-3 to 3)
-                            int vChangingElement = getNextChangingElement(index, white);
-
-                            if (vChangingElement >= changesReferenceRowCount || vChangingElement == -1) {
-                                index = columns + n.value;
-                            }
-                            else {
-                                index = changesReferenceRow[vChangingElement] + n.value;
-                            }
-
-                            changesCurrentRow[changesCurrentRowCount] = index;
-                            changesCurrentRowCount++;
-                            white = !white;
-
-                            break;
+            int value = entry >> VALUE_SHIFT;
+
+            switch (value) {
+                case VALUE_HMODE:
+                    int runLength;
+                    runLength = decodeRun(white ? WHITE_RUN_TABLE : BLACK_RUN_TABLE);
+                    index += runLength;
+                    changesCurrentRow[changesCurrentRowCount++] = index;
+
+                    runLength = decodeRun(white ? BLACK_RUN_TABLE : WHITE_RUN_TABLE);
+                    index += runLength;
+                    changesCurrentRow[changesCurrentRowCount++] = index;
+                    break;
+
+                case VALUE_PASSMODE:
+                    int pChangingElement = getNextChangingElement(index, white) + 1;
+
+                    if (pChangingElement >= changesReferenceRowCount) {
+                        index = columns;
+                    }
+                    else {
+                        index = changesReferenceRow[pChangingElement];
                     }
 
-                    continue mode;
-                }
+                    break;
+
+                default:
+                    // Vertical mode (-3 to 3)
+                    int vChangingElement = getNextChangingElement(index, white);
+
+                    if (vChangingElement >= changesReferenceRowCount || vChangingElement == -1) {
+                        index = columns + value;
+                    }
+                    else {
+                        index = changesReferenceRow[vChangingElement] + value;
+                    }
+
+                    changesCurrentRow[changesCurrentRowCount] = index;
+                    changesCurrentRowCount++;
+                    white = !white;
+
+                    break;
             }
         }
     }
@@ -335,20 +345,18 @@ final class CCITTFaxDecoderStream extends FilterInputStream {
         if (optionByteAligned) {
             resetBuffer();
         }
-        eof: while (true) {
+        while (true) {
             // read till next EOL code
-            Node n = eolOnlyTree.root;
-
-            while (true) {
-                n = n.walk(readBit());
+            int entry = lookup(EOL_TABLE);
+            int kind = entry & KIND_MASK;
 
-                if (n == null) {
-                    continue eof;
-                }
+            if (kind == KIND_FILL) {
+                skipFill();
+                break;
+            }
 
-                if (n.isLeaf) {
-                    break eof;
-                }
+            if (kind == KIND_LEAF) {
+                break;
             }
         }
 
@@ -384,6 +392,8 @@ final class CCITTFaxDecoderStream extends FilterInputStream {
         boolean white = true;
 
         lastChangingElement = 0;
+        Arrays.fill(decodedRow, (byte) 0);
+
         for (int i = 0; i <= changesCurrentRowCount; i++) {
             int nextChange = columns;
 
@@ -395,36 +405,17 @@ final class CCITTFaxDecoderStream extends FilterInputStream {
                 nextChange = columns;
             }
 
-            int byteIndex = index / 8;
-
-            while (index % 8 != 0 && (nextChange - index) > 0) {
-                decodedRow[byteIndex] |= (white ? 0 : 1 << (7 - ((index) % 8)));
-                index++;
-            }
-
-            if (index % 8 == 0) {
-                byteIndex = index / 8;
-                final byte value = (byte) (white ? 0x00 : 0xff);
-
-                while ((nextChange - index) > 7) {
-                    decodedRow[byteIndex] = value;
-                    index += 8;
-                    ++byteIndex;
-                }
-            }
-
-            while ((nextChange - index) > 0) {
-                if (index % 8 == 0) {
-                    decodedRow[byteIndex] = 0;
+            if (nextChange > index) {
+                if (!white) {
+                    fillBlack(index, nextChange);
                 }
 
-                decodedRow[byteIndex] |= (white ? 0 : 1 << (7 - ((index) % 8)));
-                index++;
+                index = nextChange;
             }
 
             white = !white;
         }
-        
+
         if (index != columns) {
             throw new IOException("Sum of run-lengths does not equal scan line width: " + index + " > " + columns);
         }
@@ -432,67 +423,132 @@ final class CCITTFaxDecoderStream extends FilterInputStream {
         decodedLength = (index + 7) / 8;
     }
 
-    private int decodeRun(final Tree tree) throws IOException {
-        int total = 0;
+    private void fillBlack(final int start, final int end) {
+        // Row is all white (0) initially, set the bits from start (inclusive) to end (exclusive)
+        int first = start >> 3;
+        int last = (end - 1) >> 3;
+        int firstMask = 0xff >>> (start & 7);
+        int lastMask = 0xff00 >>> (((end - 1) & 7) + 1);
 
-        Node n = tree.root;
+        if (first == last) {
+            decodedRow[first] |= firstMask & lastMask;
+        }
+        else {
+            decodedRow[first] |= firstMask;
+            Arrays.fill(decodedRow, first + 1, last, (byte) 0xff);
+            decodedRow[last] |= lastMask;
+        }
+    }
+
+    private int decodeRun(final int[] table) throws IOException {
+        int total = 0;
 
         while (true) {
-            boolean bit = readBit();
-            n = n.walk(bit);
+            int entry = lookup(table);
 
-            if (n == null) {
-                throw new IOException("Unknown code in Huffman RLE stream");
-            }
+            switch (entry & KIND_MASK) {
+                case KIND_LEAF:
+                    int value = entry >> VALUE_SHIFT;
 
-            if (n.isLeaf) {
-                total += n.value;
-                if (n.value >= 64) {
-                    n = tree.root;
-                }
-                else if (n.value >= 0) {
-                    return total;
-                }
-                else {
-                    return columns;
-                }
+                    total += value;
+
+                    if (value >= 64) {
+                        // Make up code, continue with the terminating code
+                        continue;
+                    }
+                    else if (value >= 0) {
+                        return total;
+                    }
+                    else {
+                        return columns; // EOL
+                    }
+
+                case KIND_FILL:
+                    skipFill();
+                    return columns; // EOL
+
+                default:
+                    throw new IOException("Unknown code in Huffman RLE stream");
             }
         }
     }
 
+    /**
+     * Looks up the next code in the given table, and consumes its bits.
+     *
+     * @param table the lookup table.
+     * @return the table entry for the code.
+     * @throws EOFException if the code is incomplete at the end of the stream.
+     */
+    private int lookup(final int[] table) throws IOException {
+        int entry = table[peekBits(TABLE_BITS)];
+
+        if ((entry & KIND_MASK) == KIND_TABLE) {
+            // Long code, continue in second level table
+            skipBits(TABLE_BITS);
+            entry = table[(entry >> VALUE_SHIFT) + peekBits(SUBTABLE_BITS)];
+        }
+
+        skipBits((entry >> LENGTH_SHIFT) & LENGTH_MASK);
+
+        return entry;
+    }
+
+    private void skipFill() throws IOException {
+        // Skip any number of zero fill bits, and the one bit terminating the EOL
+        while (!readBit()) {
+        }
+    }
+
     private void resetBuffer() throws IOException {
-        bufferPos = -1;
+        // Discard the remaining bits of the current byte
+        bitCount -= bitCount & 7;
     }
 
-    int buffer = -1;
-    int bufferPos = -1;
+    private void fillBits() throws IOException {
+        while (bitCount <= 56) {
+            if (inputPos >= inputLimit) {
+                int read = in.read(input, 0, input.length);
 
-    private boolean readBit() throws IOException {
-        if (bufferPos < 0 || bufferPos > 7) {
-            buffer = in.read();
+                if (read <= 0) {
+                    break;
+                }
 
-            if (buffer == -1) {
-                throw new EOFException("Unexpected end of Huffman RLE stream");
+                inputPos = 0;
+                inputLimit = read;
             }
 
-            bufferPos = 0;
+            int b = input[inputPos++] & 0xff;
+            bits = (bits << 8) | (fillOrder == TIFFBaseline.FILL_LEFT_TO_RIGHT ? b : ReverseInputStream.BIT_REVERSE_TABLE[b] & 0xff);
+            bitCount += 8;
         }
+    }
 
-        boolean isSet;
+    private int peekBits(final int count) throws IOException {
+        if (bitCount < count) {
+            fillBits();
 
-        if (fillOrder == TIFFBaseline.FILL_LEFT_TO_RIGHT) {
-            isSet = ((buffer >> (7 - bufferPos)) & 1) == 1;
-        }
-        else {
-            isSet = ((buffer >> (bufferPos)) & 1) == 1;
+            if (bitCount < count) {
+                // End of stream, pad with zeros
+                return (int) ((bits & ((1L << bitCount) - 1)) << (count - bitCount));
+            }
         }
 
-        bufferPos++;
+        return (int) (bits >>> (bitCount - count)) & ((1 << count) - 1);
+    }
 
-        if (bufferPos > 7) {
-            bufferPos = -1;
+    private void skipBits(final int count) throws IOException {
+        if (count > bitCount) {
+            throw new EOFException("Unexpected end of Huffman RLE stream");
         }
 
+        bitCount -= count;
+    }
+
+    private boolean readBit() throws IOException {
+        boolean isSet = peekBits(1) == 1;
+        skipBits(1);
+
         return isSet;
     }
 
@@ -538,15 +594,16 @@ final class CCITTFaxDecoderStream extends FilterInputStream {
 
     @Override
     public long skip(long n) throws IOException {
+        // Missing data is skipped as zeros, consistent with read
         if (decodedLength < 0) {
-            return -1;
+            return Math.max(n, 0);
         }
 
         if (decodedPos >= decodedLength) {
             fetch();
 
             if (decodedLength < 0) {
-                return -1;
+                return Math.max(n, 0);
             }
         }
 
@@ -819,6 +876,25 @@ final class CCITTFaxDecoderStream extends FilterInputStream {
     final static int VALUE_PASSMODE = -3000;
     final static int VALUE_HMODE = -4000;
 
+    // Lookup table entries: value << VALUE_SHIFT | code length << LENGTH_SHIFT | kind
+    // For KIND_TABLE entries, the value is the offset of the second level table
+    private static final int KIND_MASK = 0x7;
+    private static final int KIND_LEAF = 1;
+    private static final int KIND_INVALID = 2;
+    private static final int KIND_FILL = 3;
+    private static final int KIND_TABLE = 4;
+    private static final int LENGTH_SHIFT = 3;
+    private static final int LENGTH_MASK = 0x1f;
+    private static final int VALUE_SHIFT = 8;
+
+    private static final int TABLE_BITS = 8;
+    private static final int SUBTABLE_BITS = 5; // Longest code is 13 bits
+
+    final static int[] BLACK_RUN_TABLE;
+    final static int[] WHITE_RUN_TABLE;
+    final static int[] EOL_TABLE;
+    final static int[] MODE_TABLE;
+
     static {
         EOL = new Node();
         EOL.isLeaf = true;
@@ -881,5 +957,69 @@ final class CCITTFaxDecoderStream extends FilterInputStream {
         catch (IOException e) {
             throw new AssertionError(e);
         }
+
+        BLACK_RUN_TABLE = createLookupTable(blackRunTree);
+        WHITE_RUN_TABLE = createLookupTable(whiteRunTree);
+        EOL_TABLE = createLookupTable(eolOnlyTree);
+        MODE_TABLE = createLookupTable(codeTree);
+    }
+
+    private static int[] createLookupTable(final Tree tree) {
+        // First level table, indexed by the next TABLE_BITS bits, followed by the second level tables
+        int[] table = new int[1 << TABLE_BITS];
+        List<int[]> subtables = new ArrayList<>();
+        int offset = table.length;
+
+        for (int bits = 0; bits < table.length; bits++) {
+            Node node = walk(tree.root, bits, TABLE_BITS, table, bits);
+
+            if (node != null) {
+                int[] subtable = new int[1 << SUBTABLE_BITS];
+
+                for (int subBits = 0; subBits < subtable.length; subBits++) {
+                    if (walk(node, subBits, SUBTABLE_BITS, subtable, subBits) != null) {
+                        throw new AssertionError("Code longer than " + (TABLE_BITS + SUBTABLE_BITS) + " bits");
+                    }
+                }
+
+                table[bits] = offset << VALUE_SHIFT | KIND_TABLE;
+                subtables.add(subtable);
+                offset += subtable.length;
+            }
+        }
+
+        int[] result = Arrays.copyOf(table, offset);
+
+        offset = table.length;
+        for (int[] subtable : subtables) {
+            System.arraycopy(subtable, 0, result, offset, subtable.length);
+            offset += subtable.length;
+        }
+
+        return result;
+    }
+
+    private static Node walk(final Node root, final int bits, final int length, final int[] table, final int index) {
+        // Walks the tree, and stores the entry for the code in table, or returns the internal node reached
+        Node node = root;
+
+        for (int i = 0; i < length; i++) {
+            node = node.walk(((bits >> (length - 1 - i)) & 1) == 1);
+
+            if (node == null) {
+                table[index] = (i + 1) << LENGTH_SHIFT | KIND_INVALID;
+                return null;
+            }
+            else if (node.isLeaf) {
+                table[index] = node.value << VALUE_SHIFT | (i + 1) << LENGTH_SHIFT | KIND_LEAF;
+                return null;
+            }
+            else if (node == FILL) {
+                table[index] = (i + 1) << LENGTH_SHIFT | KIND_FILL;
+                return null;
+            }
+        }
+
+        return node;
     }
 }
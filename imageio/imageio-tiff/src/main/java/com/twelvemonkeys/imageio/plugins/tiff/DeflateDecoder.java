@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import com.twelvemonkeys.io.enc.DecodeException;
+import com.twelvemonkeys.io.enc.Decoder;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decoder for ZLIB/Deflate compressed TIFF data.
+ * The decoder, and its native {@code Inflater}, may be reused for multiple strips or tiles, see {@link #reset(long)}.
+ * Invoke {@link #end()} to release the native resources, when the decoder is no longer needed.
+ * <p>
+ * The compressed data is read in large chunks (the entire strip or tile, unless it's large),
+ * and inflated directly into the decode buffer, to keep the number of native calls low.
+ * </p>
+ */
+final class DeflateDecoder implements Decoder {
+    // Larger strips/tiles are read in chunks of this size, so reading can stop early, ie. for source regions
+    private static final int MAX_INPUT_SIZE = 64 * 1024;
+
+    private final Inflater inflater = new Inflater();
+    private byte[] input = new byte[1024];
+
+    public int decode(final InputStream stream, final ByteBuffer buffer) throws IOException {
+        if (buffer == null) {
+            throw new NullPointerException("buffer == null"); // As per contract
+        }
+
+        byte[] out = buffer.array();
+        int offset = buffer.arrayOffset();
+        int start = buffer.position();
+
+        try {
+            while (buffer.hasRemaining() && !inflater.finished()) {
+                int inflated = inflater.inflate(out, offset + buffer.position(), buffer.remaining());
+
+                if (inflated > 0) {
+                    buffer.position(buffer.position() + inflated);
+                }
+                else if (inflater.needsDictionary()) {
+                    throw new DecodeException("Unsupported ZLIB preset dictionary");
+                }
+                else if (inflater.needsInput()) {
+                    int read = fillInput(stream);
+
+                    if (read < 0) {
+                        if (buffer.position() > start) {
+                            // Return what we have, we'll fail on the next invocation
+                            break;
+                        }
+
+                        throw new EOFException("Unexpected end of ZLIB input stream");
+                    }
+
+                    inflater.setInput(input, 0, read);
+                }
+            }
+        }
+        catch (DataFormatException e) {
+            throw new DecodeException(e.getMessage() != null ? e.getMessage() : "Invalid ZLIB data format", e);
+        }
+
+        return buffer.position();
+    }
+
+    private int fillInput(final InputStream stream) throws IOException {
+        int length = 0;
+
+        while (length < input.length) {
+            int read = stream.read(input, length, input.length - length);
+
+            if (read < 0) {
+                break;
+            }
+
+            length += read;
+        }
+
+        return length > 0 ? length : -1;
+    }
+
+    /**
+     * Resets the decoder to its initial state, for decoding a new strip or tile.
+     *
+     * @param length the compressed length of the strip or tile, or {@code -1} if unknown.
+     */
+    void reset(final long length) {
+        inflater.reset();
+
+        if (length > input.length) {
+            input = new byte[(int) Math.min(length, MAX_INPUT_SIZE)];
+        }
+    }
+
+    /**
+     * Releases the native resources held by this decoder. The decoder can no longer be used.
+     */
+    void end() {
+        inflater.end();
+    }
+}
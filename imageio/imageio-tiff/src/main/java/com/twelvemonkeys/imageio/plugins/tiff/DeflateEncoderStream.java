@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import com.twelvemonkeys.lang.Validate;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * An output stream that compresses a TIFF strip or tile, using ZLIB/Deflate compression.
+ * <p>
+ * Unlike {@code DeflaterOutputStream}, which deflates every (typically row sized) write, data is collected
+ * and deflated in large batches (normally the entire strip or tile), to keep the number of native calls low.
+ * The native resources of the {@code Deflater} are released when the stream is closed.
+ * </p>
+ */
+final class DeflateEncoderStream extends FilterOutputStream {
+    // Larger strips/tiles are deflated in batches of this size
+    private static final int MAX_BATCH_SIZE = 256 * 1024;
+
+    private final Deflater deflater;
+
+    private final byte[] input;
+    private int inputLength;
+
+    private final byte[] output;
+
+    private boolean closed;
+
+    /**
+     * Creates a deflate encoder stream.
+     *
+     * @param stream the stream to write the compressed data to.
+     * @param level the compression level.
+     * @param length the (uncompressed) length of the strip or tile in bytes, used for sizing the buffers.
+     */
+    DeflateEncoderStream(final OutputStream stream, final int level, final long length) {
+        super(Validate.notNull(stream, "stream"));
+
+        deflater = new Deflater(level);
+
+        input = new byte[(int) Math.max(1024, Math.min(length, MAX_BATCH_SIZE))];
+        output = new byte[Math.max(1024, input.length / 2)];
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        if (inputLength == input.length) {
+            deflateInput();
+        }
+
+        input[inputLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int off, final int len) throws IOException {
+        int count = 0;
+
+        while (count < len) {
+            if (inputLength == input.length) {
+                deflateInput();
+            }
+
+            int length = Math.min(len - count, input.length - inputLength);
+            System.arraycopy(bytes, off + count, input, inputLength, length);
+
+            inputLength += length;
+            count += length;
+        }
+    }
+
+    private void deflateInput() throws IOException {
+        deflater.setInput(input, 0, inputLength);
+        inputLength = 0;
+
+        while (!deflater.needsInput()) {
+            writeOutput(deflater.deflate(output, 0, output.length));
+        }
+    }
+
+    private void writeOutput(final int length) throws IOException {
+        if (length > 0) {
+            out.write(output, 0, length);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // NOTE: No sync flush, as this will degrade compression, data is deflated when the stream is closed
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            deflater.setInput(input, 0, inputLength);
+            inputLength = 0;
+            deflater.finish();
+
+            while (!deflater.finished()) {
+                writeOutput(deflater.deflate(output, 0, output.length));
+            }
+        }
+        finally {
+            deflater.end();
+        }
+
+        out.close();
+    }
+}
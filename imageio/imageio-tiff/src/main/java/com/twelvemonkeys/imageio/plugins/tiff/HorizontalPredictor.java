@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import java.nio.ByteOrder;
+
+/**
+ * In-place kernels for the TIFF horizontal differencing (Predictor 2) and
+ * floating point (Predictor 3) predictors, working on one row of samples at a time.
+ * Multi-byte samples are stored in the byte order of the TIFF stream.
+ */
+final class HorizontalPredictor {
+    // See TIFF 6.0 Specification, Section 14: "Differencing Predictor", page 64,
+    // and Adobe Photoshop TIFF Technical Note 3: "Floating Point Predictor".
+
+    private HorizontalPredictor() {}
+
+    static boolean isValidFloatingPointBPS(final int bitsPerSample) {
+        switch (bitsPerSample) {
+            case 16:
+            case 24:
+            case 32:
+            case 64:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Reverses horizontal differencing of a row, in place.
+     *
+     * @param row the row, must hold at least {@code (columns * samplesPerPixel * bitsPerSample + 7) / 8} bytes.
+     * @param columns the number of pixels in the row.
+     * @param samplesPerPixel the number of samples per pixel, must be {@code 1} for less than 8 bits per sample.
+     * @param bitsPerSample the bits per sample, one of 1, 2, 4, 8, 16, 32 or 64.
+     * @param byteOrder the byte order of multi-byte samples.
+     */
+    static void decode(final byte[] row, final int columns, final int samplesPerPixel, final int bitsPerSample, final ByteOrder byteOrder) {
+        final int samples = columns * samplesPerPixel;
+        final boolean bigEndian = byteOrder == ByteOrder.BIG_ENDIAN;
+
+        switch (bitsPerSample) {
+            case 1:
+                decode1(row, (columns + 7) / 8);
+                break;
+            case 2:
+                decode2(row, (columns + 3) / 4);
+                break;
+            case 4:
+                decode4(row, (columns + 1) / 2);
+                break;
+            case 8:
+                decode8(row, samples, samplesPerPixel);
+                break;
+            case 16:
+                decode16(row, samples, samplesPerPixel, bigEndian);
+                break;
+            case 32:
+                decode32(row, samples, samplesPerPixel, bigEndian);
+                break;
+            case 64:
+                decode64(row, samples, samplesPerPixel, bigEndian);
+                break;
+            default:
+                throw new AssertionError(String.format("Unsupported bits per sample value: %d", bitsPerSample));
+        }
+    }
+
+    /**
+     * Applies horizontal differencing to a row, in place.
+     *
+     * @param row the row, must hold at least {@code (columns * samplesPerPixel * bitsPerSample + 7) / 8} bytes.
+     * @param columns the number of pixels in the row.
+     * @param samplesPerPixel the number of samples per pixel, must be {@code 1} for less than 8 bits per sample.
+     * @param bitsPerSample the bits per sample, one of 1, 2, 4, 8, 16, 32 or 64.
+     * @param byteOrder the byte order of multi-byte samples.
+     */
+    static void encode(final byte[] row, final int columns, final int samplesPerPixel, final int bitsPerSample, final ByteOrder byteOrder) {
+        final int samples = columns * samplesPerPixel;
+        final boolean bigEndian = byteOrder == ByteOrder.BIG_ENDIAN;
+
+        switch (bitsPerSample) {
+            case 1:
+                encode1(row, (columns + 7) / 8);
+                break;
+            case 2:
+                encode2(row, (columns + 3) / 4);
+                break;
+            case 4:
+                encode4(row, (columns + 1) / 2);
+                break;
+            case 8:
+                encode8(row, samples, samplesPerPixel);
+                break;
+            case 16:
+                encode16(row, samples, samplesPerPixel, bigEndian);
+                break;
+            case 32:
+                encode32(row, samples, samplesPerPixel, bigEndian);
+                break;
+            case 64:
+                encode64(row, samples, samplesPerPixel, bigEndian);
+                break;
+            default:
+                throw new AssertionError(String.format("Unsupported bits per sample value: %d", bitsPerSample));
+        }
+    }
+
+    /**
+     * Reverses the floating point predictor of a row, in place.
+     * The bytes of each sample are first un-differenced, then re-interleaved from the byte planes
+     * (most significant byte first) into samples in the given byte order.
+     *
+     * @param row the row, must hold at least {@code columns * samplesPerPixel * bitsPerSample / 8} bytes.
+     * @param temp a scratch buffer, at least as large as the row.
+     * @param columns the number of pixels in the row.
+     * @param samplesPerPixel the number of samples per pixel.
+     * @param bitsPerSample the bits per sample, one of 16, 24, 32 or 64.
+     * @param byteOrder the byte order of the decoded samples.
+     */
+    static void decodeFloatingPoint(final byte[] row, final byte[] temp, final int columns, final int samplesPerPixel,
+                                    final int bitsPerSample, final ByteOrder byteOrder) {
+        final int bytesPerSample = bitsPerSample / 8;
+        final int samples = columns * samplesPerPixel;
+
+        decode8(row, samples * bytesPerSample, samplesPerPixel);
+        System.arraycopy(row, 0, temp, 0, samples * bytesPerSample);
+
+        for (int b = 0; b < bytesPerSample; b++) {
+            int plane = b * samples;
+            int offset = byteOrder == ByteOrder.BIG_ENDIAN ? b : bytesPerSample - 1 - b;
+
+            for (int i = 0; i < samples; i++) {
+                row[offset + i * bytesPerSample] = temp[plane + i];
+            }
+        }
+    }
+
+    /**
+     * Applies the floating point predictor to a row, in place.
+     * The samples are split into byte planes (most significant byte first), then the bytes are differenced.
+     *
+     * @param row the row, must hold at least {@code columns * samplesPerPixel * bitsPerSample / 8} bytes.
+     * @param temp a scratch buffer, at least as large as the row.
+     * @param columns the number of pixels in the row.
+     * @param samplesPerPixel the number of samples per pixel.
+     * @param bitsPerSample the bits per sample, one of 16, 24, 32 or 64.
+     * @param byteOrder the byte order of the samples.
+     */
+    static void encodeFloatingPoint(final byte[] row, final byte[] temp, final int columns, final int samplesPerPixel,
+                                    final int bitsPerSample, final ByteOrder byteOrder) {
+        final int bytesPerSample = bitsPerSample / 8;
+        final int samples = columns * samplesPerPixel;
+        final int length = samples * bytesPerSample;
+
+        for (int b = 0; b < bytesPerSample; b++) {
+            int plane = b * samples;
+            int offset = byteOrder == ByteOrder.BIG_ENDIAN ? b : bytesPerSample - 1 - b;
+
+            for (int i = 0; i < samples; i++) {
+                temp[plane + i] = row[offset + i * bytesPerSample];
+            }
+        }
+
+        for (int i = length - 1; i >= samplesPerPixel; i--) {
+            row[i] = (byte) (temp[i] - temp[i - samplesPerPixel]);
+        }
+
+        System.arraycopy(temp, 0, row, 0, Math.min(samplesPerPixel, length));
+    }
+
+    // Packed samples (samplesPerPixel is always 1)
+
+    private static void decode1(final byte[] row, final int length) {
+        int sample = 0;
+
+        for (int i = 0; i < length; i++) {
+            int original = row[i];
+            int temp;
+
+            sample += (original >> 7) & 0x1;
+            temp = (sample << 7) & 0x80;
+            sample += (original >> 6) & 0x1;
+            temp |= (sample << 6) & 0x40;
+            sample += (original >> 5) & 0x1;
+            temp |= (sample << 5) & 0x20;
+            sample += (original >> 4) & 0x1;
+            temp |= (sample << 4) & 0x10;
+            sample += (original >> 3) & 0x1;
+            temp |= (sample << 3) & 0x08;
+            sample += (original >> 2) & 0x1;
+            temp |= (sample << 2) & 0x04;
+            sample += (original >> 1) & 0x1;
+            temp |= (sample << 1) & 0x02;
+            sample += original & 0x1;
+
+            row[i] = (byte) (temp | sample & 0x1);
+        }
+    }
+
+    private static void decode2(final byte[] row, final int length) {
+        int sample = 0;
+
+        for (int i = 0; i < length; i++) {
+            int original = row[i];
+            int temp;
+
+            sample += (original >> 6) & 0x3;
+            temp = (sample << 6) & 0xc0;
+            sample += (original >> 4) & 0x3;
+            temp |= (sample << 4) & 0x30;
+            sample += (original >> 2) & 0x3;
+            temp |= (sample << 2) & 0x0c;
+            sample += original & 0x3;
+
+            row[i] = (byte) (temp | sample & 0x3);
+        }
+    }
+
+    private static void decode4(final byte[] row, final int length) {
+        int sample = 0;
+
+        for (int i = 0; i < length; i++) {
+            int original = row[i];
+            int temp;
+
+            sample += (original >> 4) & 0xf;
+            temp = (sample << 4) & 0xf0;
+            sample += original & 0x0f;
+
+            row[i] = (byte) (temp | sample & 0xf);
+        }
+    }
+
+    private static void encode1(final byte[] row, final int length) {
+        // Last sample of the previous byte, none for the first byte
+        for (int i = length - 1; i >= 0; i--) {
+            int original = row[i] & 0xff;
+            int shifted = (original >> 1) | (i > 0 ? (row[i - 1] & 0x1) << 7 : 0);
+
+            row[i] = (byte) (original ^ shifted); // Subtraction modulo 2 is XOR
+        }
+    }
+
+    private static void encode2(final byte[] row, final int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            int original = row[i] & 0xff;
+            int prev = i > 0 ? row[i - 1] & 0x3 : 0;
+
+            row[i] = (byte) ((((original >> 6) - prev) & 0x3) << 6
+                    | (((original >> 4) - (original >> 6)) & 0x3) << 4
+                    | (((original >> 2) - (original >> 4)) & 0x3) << 2
+                    | ((original - (original >> 2)) & 0x3));
+        }
+    }
+
+    private static void encode4(final byte[] row, final int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            int original = row[i] & 0xff;
+            int prev = i > 0 ? row[i - 1] & 0xf : 0;
+
+            row[i] = (byte) ((((original >> 4) - prev) & 0xf) << 4 | ((original - (original >> 4)) & 0xf));
+        }
+    }
+
+    // Byte aligned samples, the stride is the number of samples per pixel
+
+    private static void decode8(final byte[] row, final int samples, final int stride) {
+        for (int i = stride; i < samples; i++) {
+            row[i] += row[i - stride];
+        }
+    }
+
+    private static void encode8(final byte[] row, final int samples, final int stride) {
+        for (int i = samples - 1; i >= stride; i--) {
+            row[i] -= row[i - stride];
+        }
+    }
+
+    private static void decode16(final byte[] row, final int samples, final int stride, final boolean bigEndian) {
+        for (int i = stride; i < samples; i++) {
+            put16(row, i << 1, get16(row, i << 1, bigEndian) + get16(row, (i - stride) << 1, bigEndian), bigEndian);
+        }
+    }
+
+    private static void encode16(final byte[] row, final int samples, final int stride, final boolean bigEndian) {
+        for (int i = samples - 1; i >= stride; i--) {
+            put16(row, i << 1, get16(row, i << 1, bigEndian) - get16(row, (i - stride) << 1, bigEndian), bigEndian);
+        }
+    }
+
+    private static void decode32(final byte[] row, final int samples, final int stride, final boolean bigEndian) {
+        for (int i = stride; i < samples; i++) {
+            put32(row, i << 2, get32(row, i << 2, bigEndian) + get32(row, (i - stride) << 2, bigEndian), bigEndian);
+        }
+    }
+
+    private static void encode32(final byte[] row, final int samples, final int stride, final boolean bigEndian) {
+        for (int i = samples - 1; i >= stride; i--) {
+            put32(row, i << 2, get32(row, i << 2, bigEndian) - get32(row, (i - stride) << 2, bigEndian), bigEndian);
+        }
+    }
+
+    private static void decode64(final byte[] row, final int samples, final int stride, final boolean bigEndian) {
+        for (int i = stride; i < samples; i++) {
+            put64(row, i << 3, get64(row, i << 3, bigEndian) + get64(row, (i - stride) << 3, bigEndian), bigEndian);
+        }
+    }
+
+    private static void encode64(final byte[] row, final int samples, final int stride, final boolean bigEndian) {
+        for (int i = samples - 1; i >= stride; i--) {
+            put64(row, i << 3, get64(row, i << 3, bigEndian) - get64(row, (i - stride) << 3, bigEndian), bigEndian);
+        }
+    }
+
+    private static int get16(final byte[] row, final int offset, final boolean bigEndian) {
+        return bigEndian
+               ? (row[offset] & 0xff) << 8 | row[offset + 1] & 0xff
+               : (row[offset + 1] & 0xff) << 8 | row[offset] & 0xff;
+    }
+
+    private static void put16(final byte[] row, final int offset, final int value, final boolean bigEndian) {
+        if (bigEndian) {
+            row[offset] = (byte) (value >> 8);
+            row[offset + 1] = (byte) value;
+        }
+        else {
+            row[offset] = (byte) value;
+            row[offset + 1] = (byte) (value >> 8);
+        }
+    }
+
+    private static int get32(final byte[] row, final int offset, final boolean bigEndian) {
+        return bigEndian
+               ? get16(row, offset, true) << 16 | get16(row, offset + 2, true)
+               : get16(row, offset + 2, false) << 16 | get16(row, offset, false);
+    }
+
+    private static void put32(final byte[] row, final int offset, final int value, final boolean bigEndian) {
+        put16(row, bigEndian ? offset : offset + 2, value >> 16, bigEndian);
+        put16(row, bigEndian ? offset + 2 : offset, value, bigEndian);
+    }
+
+    private static long get64(final byte[] row, final int offset, final boolean bigEndian) {
+        return bigEndian
+               ? (long) get32(row, offset, true) << 32 | get32(row, offset + 4, true) & 0xffffffffL
+               : (long) get32(row, offset + 4, false) << 32 | get32(row, offset, false) & 0xffffffffL;
+    }
+
+    private static void put64(final byte[] row, final int offset, final long value, final boolean bigEndian) {
+        put32(row, bigEndian ? offset : offset + 4, (int) (value >> 32), bigEndian);
+        put32(row, bigEndian ? offset + 4 : offset, (int) value, bigEndian);
+    }
+}
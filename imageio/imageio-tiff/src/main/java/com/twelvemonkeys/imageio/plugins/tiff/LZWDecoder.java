@@ -35,12 +35,19 @@ import com.twelvemonkeys.io.enc.Decoder;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 
 /**
  * Lempel–Ziv–Welch (LZW) decompression.
  * LZW is a universal loss-less data compression algorithm created by Abraham Lempel, Jacob Ziv, and Terry Welch.
  * Inspired by libTiff's LZW decompression.
+ * <p>
+ * The string table is kept in flat arrays, where each string is represented by the code of its prefix string
+ * and its last byte. Strings are written directly into the buffer's backing array, back to front.
+ * Codes are read from a bit accumulator, filled from an internal input buffer.
+ * No objects are allocated while decoding.
+ * </p>
  *
  * @author <a href="mailto:harald.kuhr@gmail.com">Harald Kuhr</a>
  * @author last modified by $Author: haraldk$
@@ -58,25 +65,63 @@ abstract class LZWDecoder implements Decoder {
 
     private static final int TABLE_SIZE = 1 << MAX_BITS;
 
-    private final LZWString[] table;
+    // The string table, string for code is string for prefix code + suffix byte
+    private final short[] prefixes;
+    private final byte[] suffixes;
+    private final byte[] firstChars; // Copied forward for fast access
+    private final int[] lengths;
+
     private int tableLength;
+    private int tableHighWater; // Entries below this index are defined, even after a clear (as in libTiff)
     int bitsPerCode;
     private int oldCode = CLEAR_CODE;
     private int maxCode;
     int bitMask;
     private int maxString;
     boolean eofReached;
-    int nextData;
+
+    // Bit accumulator
+    long nextData;
     int nextBits;
 
+    // Input buffer
+    final byte[] input = new byte[4096];
+    int inputPos;
+    int inputLimit;
+
     protected LZWDecoder(int tableSize) {
-        table = new LZWString[tableSize];
+        prefixes = new short[tableSize];
+        suffixes = new byte[tableSize];
+        firstChars = new byte[tableSize];
+        lengths = new int[tableSize];
 
         // First 258 entries of table is always fixed
         for (int i = 0; i < 256; i++) {
-            table[i] = new LZWString((byte) i);
+            suffixes[i] = (byte) i;
+            firstChars[i] = (byte) i;
+            lengths[i] = 1;
         }
 
+        tableHighWater = 258;
+
+        init();
+    }
+
+    /**
+     * Resets the decoder to its initial state, for decoding a new strip or tile.
+     * The string table is kept, but all entries above the fixed entries are undefined after reset.
+     */
+    void reset() {
+        tableHighWater = 258;
+        oldCode = CLEAR_CODE;
+        eofReached = false;
+
+        nextData = 0;
+        nextBits = 0;
+
+        inputPos = 0;
+        inputLimit = 0;
+
         init();
     }
 
@@ -97,6 +142,21 @@ abstract class LZWDecoder implements Decoder {
             throw new NullPointerException("buffer == null"); // As per contract
         }
 
+        if (!buffer.hasArray()) {
+            // Decode via a heap buffer, for direct or read-only buffers
+            ByteBuffer heap = ByteBuffer.allocate(buffer.remaining());
+            decode(stream, heap);
+            heap.flip();
+            buffer.put(heap);
+
+            return buffer.position();
+        }
+
+        byte[] out = buffer.array();
+        int offset = buffer.arrayOffset();
+        int pos = offset + buffer.position();
+        int limit = offset + buffer.limit();
+
         // Adapted from the pseudo-code example found in the TIFF 6.0 Specification, 1992.
         // See Section 13: "LZW Compression"/"LZW Decoding", page 61+
         int code;
@@ -110,46 +170,77 @@ abstract class LZWDecoder implements Decoder {
                     break;
                 }
 
-                if (table[code] == null) {
+                if (!isDefined(code)) {
                     throw new DecodeException(String.format("Corrupted TIFF LZW: code %d (table size: %d)", code, tableLength));
                 }
 
-                table[code].writeTo(buffer);
+                pos = writeString(code, out, pos, limit);
             }
             else {
-                if (table[oldCode] == null) {
+                if (!isDefined(oldCode)) {
                     throw new DecodeException(String.format("Corrupted TIFF LZW: code %d (table size: %d)", oldCode, tableLength));
                 }
 
                 if (isInTable(code)) {
-                    table[code].writeTo(buffer);
-                    addStringToTable(table[oldCode].concatenate(table[code].firstChar));
+                    pos = writeString(code, out, pos, limit);
+                    addStringToTable(oldCode, firstChars[code]);
                 }
                 else {
-                    LZWString outString = table[oldCode].concatenate(table[oldCode].firstChar);
-
-                    outString.writeTo(buffer);
-                    addStringToTable(outString);
+                    addStringToTable(oldCode, firstChars[oldCode]);
+                    pos = writeString(tableLength - 1, out, pos, limit);
                 }
             }
 
             oldCode = code;
 
-            if (buffer.remaining() < maxString + 1) {
+            if (limit - pos < maxString + 1) {
                 // Buffer (almost) full, stop decoding for now
                 break;
             }
         }
 
+        buffer.position(pos - offset);
+
         return buffer.position();
     }
 
-    private void addStringToTable(final LZWString string) throws IOException {
-        if (tableLength > table.length) {
+    private int writeString(int code, final byte[] out, final int pos, final int limit) {
+        int length = lengths[code];
+
+        if (length > limit - pos) {
+            throw new BufferOverflowException();
+        }
+
+        if (length == 1) {
+            out[pos] = suffixes[code];
+        }
+        else {
+            for (int i = pos + length - 1; i >= pos; i--) {
+                out[i] = suffixes[code];
+                code = prefixes[code];
+            }
+        }
+
+        return pos + length;
+    }
+
+    private void addStringToTable(final int prefix, final byte suffix) throws IOException {
+        if (tableLength >= prefixes.length) {
             throw new DecodeException(String.format("TIFF LZW with more than %d bits per code encountered (table overflow)", MAX_BITS));
         }
 
-        table[tableLength++] = string;
+        int length = lengths[prefix] + 1;
+
+        prefixes[tableLength] = (short) prefix;
+        suffixes[tableLength] = suffix;
+        firstChars[tableLength] = firstChars[prefix];
+        lengths[tableLength] = length;
+
+        tableLength++;
+
+        if (tableLength > tableHighWater) {
+            tableHighWater = tableLength;
+        }
 
         if (tableLength > maxCode) {
             bitsPerCode++;
@@ -163,8 +254,8 @@ abstract class LZWDecoder implements Decoder {
             maxCode = maxCode();
         }
 
-        if (string.length > maxString) {
-            maxString = string.length;
+        if (length > maxString) {
+            maxString = length;
         }
     }
 
@@ -174,8 +265,21 @@ abstract class LZWDecoder implements Decoder {
         return code < tableLength;
     }
 
+    private boolean isDefined(int code) {
+        return code < CLEAR_CODE || code > EOI_CODE && code < tableHighWater;
+    }
+
     protected abstract int getNextCode(final InputStream stream) throws IOException;
 
+    final boolean fillInput(final InputStream stream) throws IOException {
+        int read = stream.read(input, 0, input.length);
+
+        inputPos = 0;
+        inputLimit = Math.max(read, 0);
+
+        return read > 0;
+    }
+
     static boolean isOldBitReversedStream(final InputStream stream) throws IOException {
         stream.mark(2);
 
@@ -210,31 +314,22 @@ abstract class LZWDecoder implements Decoder {
                 return EOI_CODE;
             }
 
-            int code;
-            int read = stream.read();
-            if (read < 0) {
-                eofReached = true;
-                return EOI_CODE;
-            }
-
-            nextData = (nextData << 8) | read;
-            nextBits += 8;
-
             if (nextBits < bitsPerCode) {
-                read = stream.read();
-                if (read < 0) {
+                // Fill the accumulator, high-to-low-order
+                while (nextBits <= 56 && (inputPos < inputLimit || fillInput(stream))) {
+                    nextData = (nextData << 8) | (input[inputPos++] & 0xff);
+                    nextBits += 8;
+                }
+
+                if (nextBits < bitsPerCode) {
                     eofReached = true;
                     return EOI_CODE;
                 }
-
-                nextData = (nextData << 8) | read;
-                nextBits += 8;
             }
 
-            code = ((nextData >> (nextBits - bitsPerCode)) & bitMask);
             nextBits -= bitsPerCode;
 
-            return code;
+            return (int) (nextData >>> nextBits) & bitMask;
         }
     }
 
@@ -259,152 +354,24 @@ abstract class LZWDecoder implements Decoder {
                 return EOI_CODE;
             }
 
-            int code;
-            int read = stream.read();
-            if (read < 0) {
-                eofReached = true;
-                return EOI_CODE;
-            }
-
-            nextData |= read << nextBits;
-            nextBits += 8;
-
             if (nextBits < bitsPerCode) {
-                read = stream.read();
-                if (read < 0) {
+                // Fill the accumulator, low-to-high-order
+                while (nextBits <= 56 && (inputPos < inputLimit || fillInput(stream))) {
+                    nextData |= (long) (input[inputPos++] & 0xff) << nextBits;
+                    nextBits += 8;
+                }
+
+                if (nextBits < bitsPerCode) {
                     eofReached = true;
                     return EOI_CODE;
                 }
-
-                nextData |= read << nextBits;
-                nextBits += 8;
             }
 
-            code = (nextData & bitMask);
-            nextData >>= bitsPerCode;
+            int code = (int) nextData & bitMask;
+            nextData >>>= bitsPerCode;
             nextBits -= bitsPerCode;
 
             return code;
         }
     }
-
-    static final class LZWString implements Comparable<LZWString> {
-        static final LZWString EMPTY = new LZWString((byte) 0, (byte) 0, 0, null);
-
-        final LZWString previous;
-
-        final int length;
-        final byte value;
-        final byte firstChar; // Copied forward for fast access
-
-        public LZWString(final byte code) {
-            this(code, code, 1, null);
-        }
-
-        private LZWString(final byte value, final byte firstChar, final int length, final LZWString previous) {
-            this.value = value;
-            this.firstChar = firstChar;
-            this.length = length;
-            this.previous = previous;
-        }
-
-        public final LZWString concatenate(final byte value) {
-            if (this == EMPTY) {
-                return new LZWString(value);
-            }
-
-            return new LZWString(value, this.firstChar, length + 1, this);
-        }
-
-        public final void writeTo(final ByteBuffer buffer) {
-            if (length == 0) {
-                return;
-            }
-
-            if (length == 1) {
-                buffer.put(value);
-            }
-            else {
-                LZWString e = this;
-                final int offset = buffer.position();
-
-                for (int i = length - 1; i >= 0; i--) {
-                    buffer.put(offset + i, e.value);
-                    e = e.previous;
-                }
-
-                buffer.position(offset + length);
-            }
-        }
-
-        @Override
-        public String toString() {
-            StringBuilder builder = new StringBuilder("ZLWString[");
-            int offset = builder.length();
-            LZWString e = this;
-            for (int i = length - 1; i >= 0; i--) {
-                builder.insert(offset, String.format("%2x", e.value));
-                e = e.previous;
-            }
-            builder.append("]");
-            return builder.toString();
-        }
-
-        @Override
-        public boolean equals(final Object other) {
-            if (this == other) {
-                return true;
-            }
-            if (other == null || getClass() != other.getClass()) {
-                return false;
-            }
-
-            LZWString string = (LZWString) other;
-
-            return firstChar == string.firstChar &&
-                    length == string.length &&
-                    value == string.value &&
-//                    !(previous != null ? !previous.equals(string.previous) : string.previous != null);
-                    previous == string.previous;
-        }
-
-        @Override
-        public int hashCode() {
-            int result = previous != null ? previous.hashCode() : 0;
-            result = 31 * result + length;
-            result = 31 * result + (int) value;
-            result = 31 * result + (int) firstChar;
-            return result;
-        }
-
-        @Override
-        public int compareTo(final LZWString other) {
-            if (other == this) {
-                return 0;
-            }
-
-            if (length != other.length) {
-                return other.length - length;
-            }
-
-            if (firstChar != other.firstChar) {
-                return other.firstChar - firstChar;
-            }
-
-            LZWString t = this;
-            LZWString o = other;
-
-            for (int i = length - 1; i > 0; i--) {
-                if (t.value != o.value) {
-                    return o.value - t.value;
-                }
-
-                t = t.previous;
-                o = o.previous;
-            }
-
-            return 0;
-        }
-    }
 }
-
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import com.twelvemonkeys.io.enc.Decoder;
+import com.twelvemonkeys.io.enc.PackBitsDecoder;
+import com.twelvemonkeys.lang.Validate;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An {@code InputStream} decoding a strip or tile (segment) on the fly, similar to {@code DecoderStream}.
+ * Unlike {@code DecoderStream}, the stream and its decode buffer may be reused for the next segment,
+ * see {@link #restart(Decoder)}.
+ *
+ * @see com.twelvemonkeys.io.enc.DecoderStream
+ */
+final class SegmentDecoderStream extends InputStream {
+    private final InputStream stream;
+    private final ByteBuffer buffer;
+
+    private Decoder decoder;
+
+    SegmentDecoderStream(final InputStream stream, final int bufferSize) {
+        this.stream = Validate.notNull(stream, "stream");
+
+        buffer = ByteBuffer.allocate(bufferSize);
+        buffer.flip();
+    }
+
+    int bufferSize() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Starts decoding a new segment, discarding any remaining decoded data from the previous segment.
+     *
+     * @param decoder the decoder to use for the new segment, must be in its initial state.
+     */
+    void restart(final Decoder decoder) {
+        this.decoder = Validate.notNull(decoder, "decoder");
+
+        buffer.clear();
+        buffer.flip();
+    }
+
+    private boolean fill() throws IOException {
+        buffer.clear();
+        int read = decoder.decode(stream, buffer);
+        buffer.flip();
+
+        return read > 0;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            return -1;
+        }
+
+        return buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!buffer.hasRemaining() && !fill()) {
+            return -1;
+        }
+
+        // Read until we have read len bytes, or have reached EOF
+        int count = 0;
+
+        while (count < len) {
+            if (!buffer.hasRemaining() && !fill()) {
+                break;
+            }
+
+            int length = Math.min(len - count, buffer.remaining());
+            buffer.get(bytes, off + count, length);
+            count += length;
+        }
+
+        return count;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        long total = 0;
+
+        while (total < n) {
+            if (!buffer.hasRemaining() && decoder instanceof PackBitsDecoder) {
+                total += skipPackBitsRuns(n - total);
+
+                if (total >= n) {
+                    break;
+                }
+            }
+
+            if (!buffer.hasRemaining() && !fill()) {
+                break;
+            }
+
+            int skipped = (int) Math.min(n - total, buffer.remaining());
+            buffer.position(buffer.position() + skipped);
+            total += skipped;
+        }
+
+        return total;
+    }
+
+    /**
+     * Skips whole PackBits runs in the encoded stream, without expanding them.
+     * A run extending beyond {@code n} bytes is decoded into the buffer, as {@code PackBitsDecoder} would.
+     */
+    private long skipPackBitsRuns(final long n) throws IOException {
+        long total = 0;
+
+        while (total < n) {
+            int b = stream.read();
+
+            if (b < 0) {
+                break;
+            }
+
+            int header = (byte) b;
+
+            if (header >= 0) {
+                // Literal run
+                int length = header + 1;
+
+                if (total + length <= n) {
+                    skipFully(length);
+                    total += length;
+                }
+                else {
+                    buffer.clear();
+                    readFully(buffer.array(), length);
+                    buffer.limit(length);
+
+                    break;
+                }
+            }
+            else if (header != -128) {
+                // Replicate run
+                int value = stream.read();
+                int length = 1 - header;
+
+                if (value < 0) {
+                    throw new EOFException("Unexpected end of PackBits stream");
+                }
+
+                if (total + length <= n) {
+                    total += length;
+                }
+                else {
+                    buffer.clear();
+                    Arrays.fill(buffer.array(), 0, length, (byte) value);
+                    buffer.limit(length);
+
+                    break;
+                }
+            }
+            // else no-op
+        }
+
+        return total;
+    }
+
+    private void skipFully(final int length) throws IOException {
+        long remaining = length;
+
+        while (remaining > 0) {
+            long skipped = stream.skip(remaining);
+
+            if (skipped <= 0) {
+                throw new EOFException("Unexpected end of PackBits stream");
+            }
+
+            remaining -= skipped;
+        }
+    }
+
+    private void readFully(final byte[] bytes, final int length) throws IOException {
+        int total = 0;
+
+        while (total < length) {
+            int read = stream.read(bytes, total, length - total);
+
+            if (read < 0) {
+                throw new EOFException("Unexpected end of PackBits stream");
+            }
+
+            total += read;
+        }
+    }
+}
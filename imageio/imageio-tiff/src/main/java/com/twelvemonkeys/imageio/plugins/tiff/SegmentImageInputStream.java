@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import com.twelvemonkeys.lang.Validate;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+
+/**
+ * An {@code ImageInputStream} view of the decoded strip/tile data.
+ * Allows bulk reading of 16, 32 and 64 bit samples using the {@code readFully} methods of {@code ImageInputStream},
+ * instead of reading one sample at a time, as for {@code DataInputStream}.
+ * <p>
+ * The stream can only be read sequentially, and does not support seeking.
+ * Skipping is delegated to the underlying stream, to avoid decoding skipped data when possible.
+ * </p>
+ */
+final class SegmentImageInputStream extends ImageInputStreamImpl {
+    private final InputStream stream;
+
+    SegmentImageInputStream(final InputStream stream, final ByteOrder byteOrder) {
+        this.stream = Validate.notNull(stream, "stream");
+        setByteOrder(byteOrder);
+    }
+
+    @Override
+    public int read() throws IOException {
+        bitOffset = 0;
+
+        int read = stream.read();
+
+        if (read >= 0) {
+            streamPos++;
+        }
+
+        return read;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int off, final int len) throws IOException {
+        bitOffset = 0;
+
+        int read = stream.read(bytes, off, len);
+
+        if (read > 0) {
+            streamPos += read;
+        }
+
+        return read;
+    }
+
+    @Override
+    public int skipBytes(final int length) throws IOException {
+        return (int) skipBytes((long) length);
+    }
+
+    @Override
+    public long skipBytes(final long length) throws IOException {
+        bitOffset = 0;
+
+        long total = 0;
+
+        while (total < length) {
+            long skipped = stream.skip(length - total);
+
+            if (skipped <= 0) {
+                break;
+            }
+
+            total += skipped;
+        }
+
+        streamPos += total;
+
+        return total;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A buffered {@code InputStream} reading a single strip or tile (segment) from an {@code ImageInputStream}.
+ * Unlike a {@code BufferedInputStream} over an {@code IIOInputStreamAdapter}, the stream and its buffer
+ * may be reused for the next segment, see {@link #setSegment(ImageInputStream, long)}.
+ * <p>
+ * Mark/reset is supported, as long as no more than the buffer size is read between the calls.
+ * </p>
+ */
+final class SegmentInputStream extends InputStream {
+    private final byte[] buffer = new byte[8192];
+    private int pos;
+    private int limit;
+    private int markPos = -1;
+
+    private ImageInputStream stream;
+    private long remaining;
+
+    /**
+     * Starts reading a new segment, from the current position of {@code stream}.
+     * Any buffered data from the previous segment is discarded.
+     *
+     * @param stream the stream to read from.
+     * @param length the maximum number of bytes to read, or {@code -1} to read until the end of {@code stream}.
+     */
+    void setSegment(final ImageInputStream stream, final long length) {
+        this.stream = stream;
+        this.remaining = length < 0 ? Long.MAX_VALUE : length;
+
+        pos = 0;
+        limit = 0;
+        markPos = -1;
+    }
+
+    private boolean fill() throws IOException {
+        if (markPos < 0 || limit >= buffer.length) {
+            // Mark (if any) is invalidated, start over
+            markPos = -1;
+            pos = 0;
+            limit = 0;
+        }
+
+        int read = readStream(buffer, limit, buffer.length - limit);
+
+        if (read > 0) {
+            limit += read;
+            return true;
+        }
+
+        return false;
+    }
+
+    private int readStream(final byte[] bytes, final int off, final int len) throws IOException {
+        if (stream == null || remaining <= 0) {
+            return -1;
+        }
+
+        int read = stream.read(bytes, off, (int) Math.min(len, remaining));
+
+        if (read > 0) {
+            remaining -= read;
+        }
+
+        return read;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos >= limit && !fill()) {
+            return -1;
+        }
+
+        return buffer[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        if (pos >= limit) {
+            if (len >= buffer.length && markPos < 0) {
+                // No need to copy via the buffer
+                return readStream(bytes, off, len);
+            }
+
+            if (!fill()) {
+                return -1;
+            }
+        }
+
+        int count = Math.min(limit - pos, len);
+        System.arraycopy(buffer, pos, bytes, off, count);
+        pos += count;
+
+        return count;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+
+        if (pos < limit || markPos >= 0) {
+            if (pos >= limit && !fill()) {
+                return 0;
+            }
+
+            int skipped = (int) Math.min(limit - pos, n);
+            pos += skipped;
+
+            return skipped;
+        }
+
+        if (stream == null || remaining <= 0) {
+            return 0;
+        }
+
+        int skipped = stream.skipBytes((int) Math.min(Math.min(n, remaining), Integer.MAX_VALUE));
+        remaining -= skipped;
+
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return limit - pos;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(final int readLimit) {
+        if (pos > 0) {
+            // Move buffered data to the start of the buffer, to make room for as much data as possible
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+
+        markPos = pos;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        if (markPos < 0) {
+            throw new IOException("Mark invalidated or not set");
+        }
+
+        pos = markPos;
+    }
+
+    @Override
+    public void close() {
+        stream = null;
+        remaining = 0;
+        pos = 0;
+        limit = 0;
+        markPos = -1;
+    }
+}
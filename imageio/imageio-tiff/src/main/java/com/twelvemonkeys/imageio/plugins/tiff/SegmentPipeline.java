@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import com.twelvemonkeys.io.enc.PackBitsDecoder;
+
+import javax.imageio.stream.ImageInputStream;
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+
+/**
+ * The reusable part of the TIFF strip/tile decoding pipeline, used for sequential reading.
+ * <p>
+ * Decoder state and buffers are reset for each strip or tile, and reused across strips, tiles and images
+ * read by the same reader, as long as the decoding parameters stay the same.
+ * </p>
+ */
+final class SegmentPipeline {
+    private final int compression;
+    private final int fillOrder;
+    private final int predictor;
+    private final int width;
+    private final int height;
+    private final int bands;
+    private final int bitsPerSample;
+    private final ByteOrder byteOrder;
+
+    private final SegmentInputStream source;
+    private final SegmentDecoderStream decoderStream;
+    private final InputStream head;
+    private final DataInput input;
+
+    private LZWDecoder lzwDecoder;
+    private LZWDecoder lzwCompatibilityDecoder;
+    private DeflateDecoder deflateDecoder;
+
+    SegmentPipeline(final int compression, final int fillOrder, final int predictor,
+                    final int width, final int height, final int bands, final int bitsPerSample, final ByteOrder byteOrder,
+                    final SegmentInputStream source, final SegmentDecoderStream decoderStream,
+                    final InputStream head, final DataInput input) {
+        this.compression = compression;
+        this.fillOrder = fillOrder;
+        this.predictor = predictor;
+        this.width = width;
+        this.height = height;
+        this.bands = bands;
+        this.bitsPerSample = bitsPerSample;
+        this.byteOrder = byteOrder;
+
+        this.source = source;
+        this.decoderStream = decoderStream;
+        this.head = head;
+        this.input = input;
+    }
+
+    boolean matches(final int compression, final int fillOrder, final int predictor,
+                    final int width, final int height, final int bands, final int bitsPerSample, final ByteOrder byteOrder) {
+        return this.compression == compression && this.fillOrder == fillOrder && this.predictor == predictor
+                && this.width == width && this.height == height && this.bands == bands && this.bitsPerSample == bitsPerSample
+                && this.byteOrder == byteOrder;
+    }
+
+    /**
+     * Starts decoding a new strip or tile, from the current position of {@code stream}.
+     *
+     * @param stream the stream to read from.
+     * @param byteCount the compressed size of the strip or tile, or {@code -1} if unknown.
+     * @return the head of the pipeline, for the new strip or tile.
+     * @throws IOException if an I/O exception occurs.
+     */
+    InputStream start(final ImageInputStream stream, final long byteCount) throws IOException {
+        source.setSegment(stream, byteCount);
+
+        if (decoderStream != null) {
+            switch (compression) {
+                case TIFFBaseline.COMPRESSION_PACKBITS:
+                    // Tiny, and can't be reset
+                    decoderStream.restart(new PackBitsDecoder());
+                    break;
+                case TIFFExtension.COMPRESSION_LZW:
+                    decoderStream.restart(getLZWDecoder(LZWDecoder.isOldBitReversedStream(source)));
+                    break;
+                default:
+                    decoderStream.restart(getDeflateDecoder(byteCount));
+                    break;
+            }
+        }
+
+        if (head instanceof HorizontalDeDifferencingStream) {
+            ((HorizontalDeDifferencingStream) head).restart();
+        }
+
+        return head;
+    }
+
+    /**
+     * @return the {@code DataInput} reading from the head of the pipeline, using the byte order of the TIFF stream.
+     */
+    DataInput getInput() {
+        return input;
+    }
+
+    private LZWDecoder getLZWDecoder(final boolean oldBitReversedStream) {
+        LZWDecoder decoder = oldBitReversedStream ? lzwCompatibilityDecoder : lzwDecoder;
+
+        if (decoder == null) {
+            decoder = (LZWDecoder) LZWDecoder.create(oldBitReversedStream);
+
+            if (oldBitReversedStream) {
+                lzwCompatibilityDecoder = decoder;
+            }
+            else {
+                lzwDecoder = decoder;
+            }
+        }
+        else {
+            decoder.reset();
+        }
+
+        return decoder;
+    }
+
+    private DeflateDecoder getDeflateDecoder(final long byteCount) {
+        if (deflateDecoder == null) {
+            deflateDecoder = new DeflateDecoder();
+        }
+
+        deflateDecoder.reset(byteCount);
+
+        return deflateDecoder;
+    }
+
+    /**
+     * Releases the reference to the current input stream, keeping buffers and decoders for reuse.
+     */
+    void release() {
+        source.close();
+    }
+
+    /**
+     * Releases all resources held by this pipeline. The pipeline can no longer be used.
+     */
+    void dispose() {
+        release();
+
+        if (deflateDecoder != null) {
+            deflateDecoder.end();
+            deflateDecoder = null;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import javax.imageio.ImageReadParam;
+import java.util.concurrent.Executor;
+
+/**
+ * TIFFImageReadParam.
+ * <p>
+ * In addition to the standard {@link ImageReadParam} settings, this class allows specifying an {@link Executor}
+ * used for decoding strips or tiles concurrently.
+ * Strips and tiles are compressed independently, so for large, compressed images with many strips or tiles,
+ * this may give a considerable speedup on multi-core machines.
+ * </p>
+ * <p>
+ * The compressed bytes of each strip or tile are read sequentially from the input stream by the reading thread,
+ * while decompression and sample conversion runs on the executor.
+ * The executor is not shut down by the reader, its life cycle is the responsibility of the caller.
+ * </p>
+ * <p>
+ * For tiled images, {@link TIFFImageReader#readAsRenderedImage(int, ImageReadParam)} returns a lazily decoded image,
+ * that keeps its most recently used tiles in a cache bounded by the {@link #setTileCacheSize(long) tile cache size}.
+ * </p>
+ */
+public final class TIFFImageReadParam extends ImageReadParam {
+    /** The default tile cache size, 64 MB. */
+    public static final long DEFAULT_TILE_CACHE_SIZE = 64L * 1024 * 1024;
+
+    private Executor executor;
+    private long tileCacheSize = DEFAULT_TILE_CACHE_SIZE;
+
+    /**
+     * Returns the executor used for concurrent strip/tile decoding, or {@code null} if decoding is sequential.
+     *
+     * @return the executor used for concurrent decoding, or {@code null}.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor used for concurrent strip/tile decoding.
+     * A {@code null} value (the default) means strips/tiles are decoded sequentially in the reading thread.
+     *
+     * @param executor the executor used for concurrent decoding, may be {@code null}.
+     */
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the maximum number of bytes used for caching decoded tiles of images returned from
+     * {@link TIFFImageReader#readAsRenderedImage(int, ImageReadParam)}.
+     *
+     * @return the tile cache size in bytes.
+     */
+    public long getTileCacheSize() {
+        return tileCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of bytes used for caching decoded tiles of images returned from
+     * {@link TIFFImageReader#readAsRenderedImage(int, ImageReadParam)}.
+     * When the cache is full, the least recently used tiles are discarded, and decoded again if requested.
+     * A value of {@code 0} disables caching.
+     *
+     * @param tileCacheSize the tile cache size in bytes.
+     * @throws IllegalArgumentException if {@code tileCacheSize} is negative.
+     */
+    public void setTileCacheSize(final long tileCacheSize) {
+        if (tileCacheSize < 0) {
+            throw new IllegalArgumentException("tileCacheSize < 0: " + tileCacheSize);
+        }
+
+        this.tileCacheSize = tileCacheSize;
+    }
+}
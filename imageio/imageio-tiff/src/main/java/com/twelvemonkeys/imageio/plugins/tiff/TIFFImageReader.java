@@ -82,6 +82,12 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
@@ -110,6 +116,7 @@ import static java.util.Arrays.asList;
  *     <li>ZLib (aka Adobe-style Deflate) Compression (type 8)</li>
  *     <li>Deflate Compression (type 32946)</li>
  *     <li>Horizontal differencing Predictor (type 2) for LZW, ZLib, Deflate and PackBits compression</li>
+ *     <li>Floating point Predictor (type 3) for LZW, ZLib, Deflate and PackBits compression</li>
  *     <li>Alpha channel (ExtraSamples types 1/Associated Alpha and 2/Unassociated Alpha)</li>
  *     <li>Class S, CMYK data (PhotometricInterpretation type 5/Separated)</li>
  *     <li>Class Y, YCbCr data (PhotometricInterpretation type 6/YCbCr for both JPEG and other compressions</li>
@@ -133,8 +140,7 @@ public final class TIFFImageReader extends ImageReaderBase {
     // TODO: Thumbnail support (what is a TIFF thumbnail anyway? Photoshop way? Or use subfiletype?)
 
     // TODOs ImageIO advanced functionality:
-    // TODO: Implement readAsRenderedImage to allow tiled RenderedImage?
-    //       For some layouts, we could do reads super-fast with a memory mapped buffer.
+    // TODO: For some layouts, we could do reads super-fast with a memory mapped buffer.
     // TODO: Implement readRaster directly (100% correctly)
 
     // TODOs Extension support
@@ -165,6 +171,9 @@ public final class TIFFImageReader extends ImageReaderBase {
     private CompoundDirectory IFDs;
     private Directory currentIFD;
 
+    // Reused for all strips/tiles and images read sequentially by this reader
+    private SegmentPipeline segmentPipeline;
+
     TIFFImageReader(final ImageReaderSpi provider) {
         super(provider);
     }
@@ -173,6 +182,21 @@ public final class TIFFImageReader extends ImageReaderBase {
     protected void resetMembers() {
         IFDs = null;
         currentIFD = null;
+
+        if (segmentPipeline != null) {
+            // Keep buffers and decoders, but don't hold on to the input
+            segmentPipeline.release();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+
+        if (segmentPipeline != null) {
+            segmentPipeline.dispose();
+            segmentPipeline = null;
+        }
     }
 
     private void readMetadata() throws IOException {
@@ -898,6 +922,11 @@ public final class TIFFImageReader extends ImageReaderBase {
         return specs.iterator();
     }
 
+    @Override
+    public TIFFImageReadParam getDefaultReadParam() {
+        return new TIFFImageReadParam();
+    }
+
     @Override
     public BufferedImage read(int imageIndex, ImageReadParam param) throws IOException {
         readIFD(imageIndex);
@@ -969,7 +998,6 @@ public final class TIFFImageReader extends ImageReaderBase {
         // Raw type may contain extra samples
         WritableRaster rowRaster = rawType.createBufferedImage(stripTileWidth, 1).getRaster();
 
-        Rectangle clip = new Rectangle(srcRegion);
         int srcRow = 0;
         Boolean needsCSConversion = null;
 
@@ -1045,14 +1073,29 @@ public final class TIFFImageReader extends ImageReaderBase {
                 boolean needsAdapter = compression != TIFFBaseline.COMPRESSION_NONE
                         || interpretation == TIFFExtension.PHOTOMETRIC_YCBCR || needsBitPadding;
 
-                for (int y = 0; y < tilesDown; y++) {
+                Executor executor = param instanceof TIFFImageReadParam ? ((TIFFImageReadParam) param).getExecutor() : null;
+
+                if (executor != null && needsAdapter && tilesDown * tilesAcross > 1
+                        && canDecodeConcurrently(destRaster, tilesAcross, xSub, stripTileByteCounts)) {
+                    readStripTilesConcurrently(executor, param, rawType, srcRegion, xSub, ySub, destRaster,
+                            compression, predictor, interpretation, numBands, bands, bitsPerSample, needsBitPadding,
+                            yCbCrSubsampling, yCbCrPos, width, height, stripTileWidth, stripTileHeight, tilesAcross, tilesDown,
+                            stripTileOffsets, stripTileByteCounts);
+
+                    break;
+                }
+
+                for (int y = 0; y < tilesDown && srcRow < srcRegion.y + srcRegion.height; y++) {
                     int col = 0;
                     int rowsInTile = Math.min(stripTileHeight, height - srcRow);
 
                     for (int x = 0; x < tilesAcross; x++) {
                         int colsInTile = Math.min(stripTileWidth, width - col);
 
-                        for (int b = 0; b < bands; b++) {
+                        // Read only strips/tiles that lies within region
+                        Rectangle clip = computeStripTileClip(srcRegion, xSub, ySub, col, srcRow, colsInTile, rowsInTile);
+
+                        for (int b = 0; clip != null && b < bands; b++) {
                             int i = b * tilesDown * tilesAcross + y * tilesAcross + x;
 
                             imageInput.seek(stripTileOffsets[i]);
@@ -1063,43 +1106,16 @@ public final class TIFFImageReader extends ImageReaderBase {
                                 input = imageInput;
                             }
                             else {
-                                InputStream adapter = stripTileByteCounts != null
-                                                      ? createStreamAdapter(imageInput, stripTileByteCounts[i])
-                                                      : createStreamAdapter(imageInput);
-
-                                adapter = createDecompressorStream(compression, stripTileWidth, numBands, adapter);
-                                adapter = createUnpredictorStream(predictor, stripTileWidth, numBands, bitsPerSample, adapter, imageInput.getByteOrder());
-
-                                if (interpretation == TIFFExtension.PHOTOMETRIC_YCBCR && rowRaster.getTransferType() == DataBuffer.TYPE_BYTE) {
-                                    adapter = new YCbCrUpsamplerStream(adapter, yCbCrSubsampling, yCbCrPos, colsInTile);
-                                }
-                                else if (interpretation == TIFFExtension.PHOTOMETRIC_YCBCR && rowRaster.getTransferType() == DataBuffer.TYPE_USHORT) {
-                                    adapter = new YCbCr16UpsamplerStream(adapter, yCbCrSubsampling, yCbCrPos, colsInTile, imageInput.getByteOrder());
-                                }
-                                else if (interpretation == TIFFExtension.PHOTOMETRIC_YCBCR) {
-                                    // Handled in getRawImageType
-                                    throw new AssertionError();
-                                }
-
-                                if (needsBitPadding) {
-                                    // We'll pad "odd" bitsPerSample streams to the smallest data type (byte/short/int) larger than the input
-                                    adapter = new BitPaddingStream(adapter, numBands, bitsPerSample, colsInTile, imageInput.getByteOrder());
-                                }
-
-                                // According to the spec, short/long/etc should follow order of containing stream
-                                input = imageInput.getByteOrder() == ByteOrder.BIG_ENDIAN
-                                        ? new DataInputStream(adapter)
-                                        : new LittleEndianDataInputStream(adapter);
+                                input = reuseStripTileInput(imageInput, stripTileByteCounts != null ? stripTileByteCounts[i] : -1,
+                                        compression, predictor, interpretation, stripTileWidth, stripTileHeight, colsInTile, numBands, bitsPerSample,
+                                        needsBitPadding, rowRaster.getTransferType(), yCbCrSubsampling, yCbCrPos);
                             }
 
                             // Clip the stripTile rowRaster to not exceed the srcRegion
-                            clip.width = Math.min(colsInTile, srcRegion.width);
-                            Raster clippedRow = clipRowToRect(rowRaster, clip,
-                                    param != null ? param.getSourceBands() : null,
-                                    param != null ? param.getSourceXSubsampling() : 1);
+                            Raster clippedRow = clipRowToRect(rowRaster, clip, param != null ? param.getSourceBands() : null, xSub);
 
                             // Read a full strip/tile
-                            readStripTileData(clippedRow, srcRegion, xSub, ySub, b, numBands, interpretation, destRaster, col, srcRow, colsInTile, rowsInTile, input);
+                            readStripTileData(clippedRow, srcRegion, xSub, ySub, b, numBands, interpretation, destRaster, col, srcRow, clip, rowsInTile, input);
                         }
 
                         col += colsInTile;
@@ -1826,6 +1842,37 @@ public final class TIFFImageReader extends ImageReaderBase {
         return stream.createInputStream();
     }
 
+    /**
+     * Computes the columns of a strip/tile that are inside the source region, relative to the strip/tile.
+     * The first column is aligned to the horizontal subsampling grid of the source region.
+     *
+     * @return the columns to read, as a rectangle of height 1, or {@code null} if the strip/tile is outside the region,
+     * or contains no rows on the vertical subsampling grid.
+     */
+    static Rectangle computeStripTileClip(final Rectangle srcRegion, final int xSub, final int ySub,
+                                          final int col, final int row, final int colsInTile, final int rowsInTile) {
+        if (firstSampledRow(srcRegion, ySub, row) >= Math.min(row + rowsInTile, srcRegion.y + srcRegion.height)) {
+            return null;
+        }
+
+        int start = Math.max(col, srcRegion.x);
+        int firstCol = srcRegion.x + (start - srcRegion.x + xSub - 1) / xSub * xSub;
+        int endCol = Math.min(col + colsInTile, srcRegion.x + srcRegion.width);
+
+        if (firstCol >= endCol) {
+            return null;
+        }
+
+        return new Rectangle(firstCol - col, 0, endCol - firstCol, 1);
+    }
+
+    /**
+     * @return the first row at or below {@code row}, that is inside the source region and on its vertical subsampling grid.
+     */
+    static int firstSampledRow(final Rectangle srcRegion, final int ySub, final int row) {
+        return srcRegion.y + (Math.max(row, srcRegion.y) - srcRegion.y + ySub - 1) / ySub * ySub;
+    }
+
     private Raster clipRowToRect(final Raster raster, final Rectangle rect, final int[] bands, final int xSub) {
         if (rect.contains(raster.getMinX(), 0, raster.getWidth(), 1)
                 && xSub == 1
@@ -1833,7 +1880,8 @@ public final class TIFFImageReader extends ImageReaderBase {
             return raster;
         }
 
-        return raster.createChild((rect.x + xSub - 1) / xSub, 0, (rect.width + xSub - 1) / xSub, 1, 0, 0, bands);
+        // NOTE: Subsampled samples are compacted in place, starting at rect.x / xSub, see readStripTileData
+        return raster.createChild(rect.x / xSub, 0, (rect.width + xSub - 1) / xSub, 1, 0, 0, bands);
     }
 
     private WritableRaster clipToRect(final WritableRaster raster, final Rectangle rect, final int[] bands) {
@@ -1845,12 +1893,200 @@ public final class TIFFImageReader extends ImageReaderBase {
         return raster.createWritableChild(rect.x, rect.y, rect.width, rect.height, 0, 0, bands);
     }
 
+    private boolean canDecodeConcurrently(final WritableRaster destRaster, final int tilesAcross, final int xSub, final long[] stripTileByteCounts) {
+        if (stripTileByteCounts == null) {
+            // We need the byte counts to fetch the compressed data up front
+            return false;
+        }
+
+        for (long byteCount : stripTileByteCounts) {
+            if (byteCount > Integer.MAX_VALUE - 8) {
+                return false;
+            }
+        }
+
+        // Horizontally adjacent tiles may share destination samples when packed or subsampled, these must be written in order
+        return tilesAcross == 1 || xSub == 1 && !(destRaster.getSampleModel() instanceof MultiPixelPackedSampleModel);
+    }
+
+    private void readStripTilesConcurrently(final Executor executor, final ImageReadParam param, final ImageTypeSpecifier rawType,
+                                            final Rectangle srcRegion, final int xSub, final int ySub, final WritableRaster destRaster,
+                                            final int compression, final int predictor, final int interpretation,
+                                            final int numBands, final int bands, final int bitsPerSample, final boolean needsBitPadding,
+                                            final int[] yCbCrSubsampling, final int yCbCrPos,
+                                            final int width, final int height, final int stripTileWidth, final int stripTileHeight,
+                                            final int tilesAcross, final int tilesDown,
+                                            final long[] stripTileOffsets, final long[] stripTileByteCounts) throws IOException {
+        // Limit the number of strips/tiles in flight, to keep memory usage bounded for huge images
+        int maxPending = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+        Deque<Future<Void>> pending = new ArrayDeque<>(maxPending);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+
+        int tileCount = tilesDown * tilesAcross;
+        int tilesDone = 0;
+        int srcRow = 0;
+
+        try {
+            for (int y = 0; y < tilesDown && srcRow < srcRegion.y + srcRegion.height; y++) {
+                int col = 0;
+                int rowsInTile = Math.min(stripTileHeight, height - srcRow);
+
+                for (int x = 0; x < tilesAcross; x++) {
+                    int colsInTile = Math.min(stripTileWidth, width - col);
+
+                    // Read only strips/tiles that lies within region
+                    final Rectangle clip = computeStripTileClip(srcRegion, xSub, ySub, col, srcRow, colsInTile, rowsInTile);
+
+                    if (clip == null) {
+                        col += colsInTile;
+                        tilesDone++;
+                        continue;
+                    }
+
+                    // Raw type may contain extra samples, each strip/tile needs its own row buffer
+                    WritableRaster rowRaster = rawType.createBufferedImage(stripTileWidth, 1).getRaster();
+                    final DataInput[] inputs = new DataInput[bands];
+
+                    for (int b = 0; b < bands; b++) {
+                        int i = b * tilesDown * tilesAcross + y * tilesAcross + x;
+
+                        // The image input is not thread safe, so we fetch the compressed data in this thread
+                        ImageInputStream stream = new ByteArrayImageInputStream(readStripTileBytes(stripTileOffsets[i], stripTileByteCounts[i]));
+                        stream.setByteOrder(imageInput.getByteOrder());
+
+                        inputs[b] = createStripTileInput(stream, -1, compression, predictor, interpretation, stripTileWidth, colsInTile,
+                                numBands, bitsPerSample, needsBitPadding, rowRaster.getTransferType(), yCbCrSubsampling, yCbCrPos);
+                    }
+
+                    // Clip the stripTile rowRaster to not exceed the srcRegion
+                    final Raster clippedRow = clipRowToRect(rowRaster, clip, param.getSourceBands(), xSub);
+
+                    final int startCol = col;
+                    final int startRow = srcRow;
+                    final int rows = rowsInTile;
+
+                    FutureTask<Void> task = new FutureTask<>(new Callable<Void>() {
+                        @Override
+                        public Void call() throws IOException {
+                            if (!cancelled.get()) {
+                                for (int b = 0; b < inputs.length; b++) {
+                                    readStripTileData(clippedRow, srcRegion, xSub, ySub, b, numBands, interpretation, destRaster, startCol, startRow, clip, rows, inputs[b]);
+                                }
+                            }
+
+                            return null;
+                        }
+                    });
+
+                    executor.execute(task);
+                    pending.add(task);
+
+                    while (pending.size() >= maxPending) {
+                        awaitStripTile(pending.removeFirst());
+                        processImageProgress(100f * ++tilesDone / tileCount);
+                    }
+
+                    col += colsInTile;
+
+                    if (abortRequested()) {
+                        break;
+                    }
+                }
+
+                srcRow += rowsInTile;
+
+                if (abortRequested()) {
+                    processReadAborted();
+                    break;
+                }
+            }
+
+            while (!pending.isEmpty()) {
+                awaitStripTile(pending.removeFirst());
+                processImageProgress(100f * ++tilesDone / tileCount);
+            }
+        }
+        finally {
+            // Make sure no task is still writing to the destination when we return
+            if (!pending.isEmpty()) {
+                cancelled.set(true);
+
+                for (Future<Void> future : pending) {
+                    try {
+                        future.get();
+                    }
+                    catch (ExecutionException ignore) {
+                        // We're already failing or aborting
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private byte[] readStripTileBytes(final long offset, final long byteCount) throws IOException {
+        imageInput.seek(offset);
+
+        byte[] data = new byte[(int) byteCount];
+        int length = 0;
+
+        while (length < data.length) {
+            int read = imageInput.read(data, length, data.length - length);
+
+            if (read < 0) {
+                // Truncated stream, let the decoder deal with it, as in the sequential case
+                return Arrays.copyOf(data, length);
+            }
+
+            length += read;
+        }
+
+        return data;
+    }
+
+    private void awaitStripTile(final Future<Void> future) throws IOException {
+        try {
+            future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decoding TIFF strip/tile");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new IIOException("Could not decode TIFF strip/tile", cause);
+        }
+    }
+
     private void readStripTileData(final Raster tileRowRaster, final Rectangle srcRegion, final int xSub, final int ySub,
                                    final int band, final int numBands, final int interpretation,
                                    final WritableRaster raster, final int startCol, final int startRow,
-                                   final int colsInTile, final int rowsInTile, final DataInput input)
+                                   final Rectangle clip, final int rowsInTile, final DataInput input)
             throws IOException {
 
+        // Columns inside the source region, relative to strip/tile, and the destination column
+        final int srcCol = clip.x;
+        final int srcCols = clip.width;
+        final int dstCol = (startCol + srcCol - srcRegion.x) / xSub;
+
+        // Rows inside the source region, on the vertical subsampling grid, other rows are skipped without decoding when possible
+        final int firstRow = firstSampledRow(srcRegion, ySub, startRow);
+        final int endRow = Math.min(startRow + rowsInTile, srcRegion.y + srcRegion.height);
+
         DataBuffer dataBuffer = tileRowRaster.getDataBuffer();
         int bands = dataBuffer.getNumBanks();
         boolean banded = bands > 1;
@@ -1870,25 +2106,20 @@ public final class TIFFImageReader extends ImageReaderBase {
                                     ? tileRowRaster.createChild(tileRowRaster.getMinX(), 0, tileRowRaster.getWidth(), 1, 0, 0, new int[] {band})
                                     : tileRowRaster;
 
-                for (int row = startRow; row < startRow + rowsInTile; row++) {
-                    if (row >= srcRegion.y + srcRegion.height) {
-                        break; // We're done with this tile
-                    }
-
+                for (int row = firstRow, next = startRow; row < endRow; row += ySub) {
+                    skipFully(input, (row - next) * (long) rowDataByte.length);
                     input.readFully(rowDataByte);
+                    next = row + 1;
 
-                    if (row % ySub == 0 && row >= srcRegion.y) {
-                        if (!banded) {
-                            normalizeColor(interpretation, rowDataByte);
-                        }
+                    if (!banded) {
+                        normalizeColor(interpretation, rowDataByte);
+                    }
 
-                        // Subsample horizontal
-                        subsampleRow(rowDataByte, srcRegion.x * numBands, colsInTile,
-                                rowDataByte, srcRegion.x * numBands / xSub, numBands, bitsPerSample, xSub);
+                    // Subsample horizontal
+                    subsampleRow(rowDataByte, srcCol * numBands, srcCols,
+                            rowDataByte, srcCol / xSub * numBands, numBands, bitsPerSample, xSub);
 
-                        destChannel.setDataElements(startCol / xSub, (row - srcRegion.y) / ySub, srcChannel);
-                    }
-                    // Else skip data
+                    destChannel.setDataElements(dstCol, (row - srcRegion.y) / ySub, srcChannel);
                 }
             }
 
@@ -1912,25 +2143,20 @@ public final class TIFFImageReader extends ImageReaderBase {
                                     ? tileRowRaster.createChild(tileRowRaster.getMinX(), 0, tileRowRaster.getWidth(), 1, 0, 0, new int[] {band})
                                     : tileRowRaster;
 
-                for (int row = startRow; row < startRow + rowsInTile; row++) {
-                    if (row >= srcRegion.y + srcRegion.height) {
-                        break; // We're done with this tile
-                    }
-
+                for (int row = firstRow, next = startRow; row < endRow; row += ySub) {
+                    skipFully(input, (row - next) * 2L * rowDataShort.length);
                     readFully(input, rowDataShort);
+                    next = row + 1;
 
-                    if (row >= srcRegion.y) {
-                        normalizeColor(interpretation, rowDataShort);
+                    normalizeColor(interpretation, rowDataShort);
 
-                        // Subsample horizontal
-                        subsampleRow(rowDataShort, srcRegion.x * numBands, colsInTile,
-                                rowDataShort, srcRegion.x * numBands / xSub, numBands, bitsPerSample, xSub);
+                    // Subsample horizontal
+                    subsampleRow(rowDataShort, srcCol * numBands, srcCols,
+                            rowDataShort, srcCol / xSub * numBands, numBands, bitsPerSample, xSub);
 
-                        destChannel.setDataElements(startCol / xSub, (row - srcRegion.y) / ySub, srcChannel);
-                        // TODO: Possible speedup ~30%!:
-//                        raster.setDataElements(startCol, row - srcRegion.y, colsInTile, 1, rowDataShort);
-                    }
-                    // Else skip data
+                    destChannel.setDataElements(dstCol, (row - srcRegion.y) / ySub, srcChannel);
+                    // TODO: Possible speedup ~30%!:
+//                    raster.setDataElements(startCol, row - srcRegion.y, colsInTile, 1, rowDataShort);
                 }
             }
 
@@ -1946,23 +2172,18 @@ public final class TIFFImageReader extends ImageReaderBase {
                                     ? tileRowRaster.createChild(tileRowRaster.getMinX(), 0, tileRowRaster.getWidth(), 1, 0, 0, new int[] {band})
                                     : tileRowRaster;
 
-                for (int row = startRow; row < startRow + rowsInTile; row++) {
-                    if (row >= srcRegion.y + srcRegion.height) {
-                        break; // We're done with this tile
-                    }
-
+                for (int row = firstRow, next = startRow; row < endRow; row += ySub) {
+                    skipFully(input, (row - next) * 4L * rowDataInt.length);
                     readFully(input, rowDataInt);
+                    next = row + 1;
 
-                    if (row >= srcRegion.y) {
-                        normalizeColor(interpretation, rowDataInt);
+                    normalizeColor(interpretation, rowDataInt);
 
-                        // Subsample horizontal
-                        subsampleRow(rowDataInt, srcRegion.x * numBands, colsInTile,
-                                rowDataInt, srcRegion.x * numBands / xSub, numBands, bitsPerSample, xSub);
+                    // Subsample horizontal
+                    subsampleRow(rowDataInt, srcCol * numBands, srcCols,
+                            rowDataInt, srcCol / xSub * numBands, numBands, bitsPerSample, xSub);
 
-                        destChannel.setDataElements(startCol / xSub, (row - srcRegion.y) / ySub, srcChannel);
-                    }
-                    // Else skip data
+                    destChannel.setDataElements(dstCol, (row - srcRegion.y) / ySub, srcChannel);
                 }
             }
 
@@ -1982,10 +2203,8 @@ public final class TIFFImageReader extends ImageReaderBase {
                                     : tileRowRaster;
 
 
-                for (int row = startRow; row < startRow + rowsInTile; row++) {
-                    if (row >= srcRegion.y + srcRegion.height) {
-                        break; // We're done with this tile
-                    }
+                for (int row = firstRow, next = startRow; row < endRow; row += ySub) {
+                    skipFully(input, (row - next) * (needsWidening ? 2L : 4L) * rowDataFloat.length);
 
                     if (needsWidening) {
                         readFully(input, rowDataShort);
@@ -1995,19 +2214,18 @@ public final class TIFFImageReader extends ImageReaderBase {
                         readFully(input, rowDataFloat);
                     }
 
-                    if (row >= srcRegion.y) {
-                        normalizeColor(interpretation, rowDataFloat);
+                    next = row + 1;
 
-                        // Subsample horizontal
-                        if (xSub != 1) {
-                            for (int x = srcRegion.x / xSub * numBands; x < ((srcRegion.x + srcRegion.width) / xSub) * numBands; x += numBands) {
-                                System.arraycopy(rowDataFloat, x * xSub, rowDataFloat, x, numBands);
-                            }
-                        }
+                    normalizeColor(interpretation, rowDataFloat);
 
-                        destChannel.setDataElements(startCol, row - srcRegion.y, srcChannel);
+                    // Subsample horizontal
+                    if (xSub != 1) {
+                        for (int x = 0; x < (srcCols + xSub - 1) / xSub; x++) {
+                            System.arraycopy(rowDataFloat, (srcCol + x * xSub) * numBands, rowDataFloat, (srcCol / xSub + x) * numBands, numBands);
+                        }
                     }
-                    // Else skip data
+
+                    destChannel.setDataElements(dstCol, (row - srcRegion.y) / ySub, srcChannel);
                 }
             }
 
@@ -2035,6 +2253,29 @@ public final class TIFFImageReader extends ImageReaderBase {
         }
     }
 
+    private static void skipFully(final DataInput input, final long length) throws IOException {
+        if (input instanceof ImageInputStream) {
+            // Seeks for uncompressed data, skips decoded data otherwise
+            if (length > 0 && ((ImageInputStream) input).skipBytes(length) < length) {
+                throw new EOFException("Unexpected end of TIFF strip/tile data");
+            }
+
+            return;
+        }
+
+        long remaining = length;
+
+        while (remaining > 0) {
+            int skipped = input.skipBytes((int) Math.min(remaining, Integer.MAX_VALUE));
+
+            if (skipped <= 0) {
+                throw new EOFException("Unexpected end of TIFF strip/tile data");
+            }
+
+            remaining -= skipped;
+        }
+    }
+
     // TODO: Candidate util method (with off/len + possibly byte order)
     private void readFully(final DataInput input, final float[] rowDataFloat) throws IOException {
         if (input instanceof ImageInputStream) {
@@ -2310,6 +2551,101 @@ public final class TIFFImageReader extends ImageReaderBase {
         return (short) Math.max(0, Math.min(0xffff, val));
     }
 
+    private DataInput createStripTileInput(final ImageInputStream stream, final long byteCount,
+                                           final int compression, final int predictor, final int interpretation,
+                                           final int stripTileWidth, final int colsInTile, final int numBands, final int bitsPerSample,
+                                           final boolean needsBitPadding, final int transferType,
+                                           final int[] yCbCrSubsampling, final int yCbCrPos) throws IOException {
+        InputStream adapter = byteCount >= 0
+                              ? createStreamAdapter(stream, byteCount)
+                              : createStreamAdapter(stream);
+
+        adapter = createDecompressorStream(compression, stripTileWidth, numBands, adapter);
+        adapter = createUnpredictorStream(predictor, stripTileWidth, numBands, bitsPerSample, adapter, stream.getByteOrder());
+
+        return createStripTileInput(adapter, stream.getByteOrder(), interpretation, colsInTile, numBands, bitsPerSample,
+                needsBitPadding, transferType, yCbCrSubsampling, yCbCrPos);
+    }
+
+    /**
+     * Same as {@link #createStripTileInput}, but reuses the decoder state and buffers of the previous strip/tile.
+     * Only for sequential reading, the returned input is valid until the next invocation.
+     */
+    private DataInput reuseStripTileInput(final ImageInputStream stream, final long byteCount,
+                                          final int compression, final int predictor, final int interpretation,
+                                          final int stripTileWidth, final int stripTileHeight, final int colsInTile, final int numBands, final int bitsPerSample,
+                                          final boolean needsBitPadding, final int transferType,
+                                          final int[] yCbCrSubsampling, final int yCbCrPos) throws IOException {
+        int fillOrder = getValueAsIntWithDefault(TIFF.TAG_FILL_ORDER, 1);
+        ByteOrder byteOrder = stream.getByteOrder();
+
+        if (segmentPipeline == null
+                || !segmentPipeline.matches(compression, fillOrder, predictor, stripTileWidth, stripTileHeight, numBands, bitsPerSample, byteOrder)) {
+            if (segmentPipeline != null) {
+                segmentPipeline.dispose();
+                segmentPipeline = null;
+            }
+
+            SegmentInputStream source = new SegmentInputStream();
+            SegmentDecoderStream decoderStream = createSegmentDecoderStream(compression, stripTileWidth, stripTileHeight, numBands, bitsPerSample, fillOrder, source);
+            InputStream head = decoderStream != null ? decoderStream : source;
+
+            if (!isCCITT(compression)) {
+                head = createUnpredictorStream(predictor, stripTileWidth, numBands, bitsPerSample, head, byteOrder);
+            }
+
+            // Allows bulk reading of 16/32/64 bit samples
+            DataInput input = new SegmentImageInputStream(head, byteOrder);
+
+            segmentPipeline = new SegmentPipeline(compression, fillOrder, predictor, stripTileWidth, stripTileHeight, numBands, bitsPerSample, byteOrder,
+                    source, decoderStream, head, input);
+        }
+
+        InputStream adapter = segmentPipeline.start(stream, byteCount);
+
+        if (isCCITT(compression)) {
+            // The CCITT decoder keeps state that can't be reset, only the source buffer is reused
+            adapter = createDecompressorStream(compression, stripTileWidth, numBands, adapter);
+            adapter = createUnpredictorStream(predictor, stripTileWidth, numBands, bitsPerSample, adapter, byteOrder);
+        }
+        else if (interpretation != TIFFExtension.PHOTOMETRIC_YCBCR && !needsBitPadding) {
+            return segmentPipeline.getInput();
+        }
+
+        return createStripTileInput(adapter, byteOrder, interpretation, colsInTile, numBands, bitsPerSample,
+                needsBitPadding, transferType, yCbCrSubsampling, yCbCrPos);
+    }
+
+    private DataInput createStripTileInput(InputStream adapter, final ByteOrder byteOrder, final int interpretation,
+                                           final int colsInTile, final int numBands, final int bitsPerSample,
+                                           final boolean needsBitPadding, final int transferType,
+                                           final int[] yCbCrSubsampling, final int yCbCrPos) {
+        if (interpretation == TIFFExtension.PHOTOMETRIC_YCBCR && transferType == DataBuffer.TYPE_BYTE) {
+            adapter = new YCbCrUpsamplerStream(adapter, yCbCrSubsampling, yCbCrPos, colsInTile);
+        }
+        else if (interpretation == TIFFExtension.PHOTOMETRIC_YCBCR && transferType == DataBuffer.TYPE_USHORT) {
+            adapter = new YCbCr16UpsamplerStream(adapter, yCbCrSubsampling, yCbCrPos, colsInTile, byteOrder);
+        }
+        else if (interpretation == TIFFExtension.PHOTOMETRIC_YCBCR) {
+            // Handled in getRawImageType
+            throw new AssertionError();
+        }
+
+        if (needsBitPadding) {
+            // We'll pad "odd" bitsPerSample streams to the smallest data type (byte/short/int) larger than the input
+            adapter = new BitPaddingStream(adapter, numBands, bitsPerSample, colsInTile, byteOrder);
+        }
+
+        return createDataInput(adapter, byteOrder);
+    }
+
+    private static DataInput createDataInput(final InputStream adapter, final ByteOrder byteOrder) {
+        // According to the spec, short/long/etc should follow order of containing stream
+        return byteOrder == ByteOrder.BIG_ENDIAN
+               ? new DataInputStream(adapter)
+               : new LittleEndianDataInputStream(adapter);
+    }
+
     private InputStream createDecompressorStream(final int compression, final int width, final int bands, final InputStream stream) throws IOException {
         int fillOrder = getValueAsIntWithDefault(TIFF.TAG_FILL_ORDER, 1);
 
@@ -2335,6 +2671,37 @@ public final class TIFFImageReader extends ImageReaderBase {
         }
     }
 
+    private static SegmentDecoderStream createSegmentDecoderStream(final int compression, final int width, final int height,
+                                                                   final int bands, final int bitsPerSample,
+                                                                   final int fillOrder, final InputStream stream) {
+        switch (compression) {
+            case TIFFBaseline.COMPRESSION_PACKBITS:
+                return new SegmentDecoderStream(createFillOrderStream(fillOrder, stream), 256);
+            case TIFFExtension.COMPRESSION_LZW:
+                return new SegmentDecoderStream(createFillOrderStream(fillOrder, stream), Math.max(width * bands, 4096));
+            case TIFFExtension.COMPRESSION_ZLIB:
+            case TIFFExtension.COMPRESSION_DEFLATE:
+            case TIFFCustom.COMPRESSION_PIXTIFF_ZIP:
+                // Inflate the entire strip/tile in one go, unless it's large (reading may stop early, ie. for source regions)
+                long stripTileSize = (width * (long) bands * bitsPerSample + 7) / 8 * height;
+                return new SegmentDecoderStream(createFillOrderStream(fillOrder, stream), (int) Math.max(4096, Math.min(stripTileSize, 64 * 1024)));
+            case TIFFBaseline.COMPRESSION_NONE:
+            case TIFFBaseline.COMPRESSION_CCITT_MODIFIED_HUFFMAN_RLE:
+            case TIFFExtension.COMPRESSION_CCITT_T4:
+            case TIFFExtension.COMPRESSION_CCITT_T6:
+                // No decoding, or decoder state that can't be reset
+                return null;
+            default:
+                throw new IllegalArgumentException("Unsupported TIFF compression: " + compression);
+        }
+    }
+
+    private static boolean isCCITT(final int compression) {
+        return compression == TIFFBaseline.COMPRESSION_CCITT_MODIFIED_HUFFMAN_RLE
+                || compression == TIFFExtension.COMPRESSION_CCITT_T4
+                || compression == TIFFExtension.COMPRESSION_CCITT_T6;
+    }
+
     private int findCCITTType(final int encodedCompression, final InputStream stream) throws IOException {
         int compressionType = CCITTFaxDecoderStream.findCompressionType(encodedCompression, stream);
 
@@ -2345,7 +2712,7 @@ public final class TIFFImageReader extends ImageReaderBase {
         return compressionType;
     }
 
-    private InputStream createFillOrderStream(final int fillOrder, final InputStream stream) {
+    private static InputStream createFillOrderStream(final int fillOrder, final InputStream stream) {
         switch (fillOrder) {
             case TIFFBaseline.FILL_LEFT_TO_RIGHT:
                 return stream;
@@ -2376,7 +2743,11 @@ public final class TIFFImageReader extends ImageReaderBase {
             case TIFFExtension.PREDICTOR_HORIZONTAL_DIFFERENCING:
                 return new HorizontalDeDifferencingStream(stream, width, samplesPerPixel, bitsPerSample, byteOrder);
             case TIFFExtension.PREDICTOR_HORIZONTAL_FLOATINGPOINT:
-                throw new IIOException("Unsupported TIFF Predictor value: " + predictor);
+                if (!HorizontalPredictor.isValidFloatingPointBPS(bitsPerSample)) {
+                    throw new IIOException("Unsupported BitsPerSample for floating point Predictor (expected 16/24/32/64): " + bitsPerSample);
+                }
+
+                return new HorizontalDeDifferencingStream(stream, predictor, width, samplesPerPixel, bitsPerSample, byteOrder);
             default:
                 throw new IIOException("Unknown TIFF Predictor value: " + predictor);
         }
@@ -2582,6 +2953,44 @@ public final class TIFFImageReader extends ImageReaderBase {
         return readRaster(imageIndex, param);
     }
 
+    /**
+     * Returns a {@code RenderedImage} for the given image.
+     * <p>
+     * For tiled images, when no source region, subsampling or destination settings are specified, the returned image
+     * is decoded lazily, one tile at a time, as tiles are requested.
+     * Decoded tiles are cached, up to the {@link TIFFImageReadParam#getTileCacheSize() tile cache size} of the
+     * {@code param} (or {@link TIFFImageReadParam#DEFAULT_TILE_CACHE_SIZE} if {@code param} is not a
+     * {@code TIFFImageReadParam}).
+     * The returned image reads from the input of this reader, and is only valid as long as the input is not changed,
+     * and the reader is not disposed.
+     * </p>
+     * <p>
+     * Otherwise, the image is fully decoded, as if by {@link #read(int, ImageReadParam)}.
+     * </p>
+     */
+    @Override
+    public RenderedImage readAsRenderedImage(int imageIndex, ImageReadParam param) throws IOException {
+        if (isImageTiled(imageIndex) && isDefaultRegionAndDestination(param)) {
+            long tileCacheSize = param instanceof TIFFImageReadParam
+                                 ? ((TIFFImageReadParam) param).getTileCacheSize()
+                                 : TIFFImageReadParam.DEFAULT_TILE_CACHE_SIZE;
+
+            return new TIFFRenderedImage(this, imageIndex, getImageTypes(imageIndex).next(), tileCacheSize);
+        }
+
+        return super.readAsRenderedImage(imageIndex, param);
+    }
+
+    private static boolean isDefaultRegionAndDestination(final ImageReadParam param) {
+        return param == null
+                || param.getSourceRegion() == null
+                && param.getSourceXSubsampling() == 1 && param.getSourceYSubsampling() == 1
+                && param.getSubsamplingXOffset() == 0 && param.getSubsamplingYOffset() == 0
+                && param.getSourceBands() == null && param.getDestinationBands() == null
+                && param.getDestination() == null && param.getDestinationType() == null
+                && new Point().equals(param.getDestinationOffset());
+    }
+
     // TODO: Thumbnail support
 
     /// Metadata
@@ -32,9 +32,18 @@ package com.twelvemonkeys.imageio.plugins.tiff;
 
 import javax.imageio.ImageWriteParam;
 import java.util.Locale;
+import java.util.concurrent.Executor;
 
 /**
  * TIFFImageWriteParam
+ * <p>
+ * In addition to the standard {@link ImageWriteParam} settings, this class allows specifying an {@link Executor}
+ * used for compressing strips or tiles concurrently.
+ * When an executor is set, striped images using PackBits, LZW, ZLib/Deflate or CCITT compression are written
+ * in multiple strips of about 256 KB (uncompressed), rather than a single strip.
+ * The compressed strips or tiles are written in order by the writing thread.
+ * The executor is not shut down by the writer, its life cycle is the responsibility of the caller.
+ * </p>
  *
  * @author <a href="mailto:harald.kuhr@gmail.com">Harald Kuhr</a>
  * @author last modified by $Author: haraldk$
@@ -46,7 +55,6 @@ public final class TIFFImageWriteParam extends ImageWriteParam {
     // TODO: Support CCITT T.6 (4)
     // TODO: Support JBIG compression via ImageIO plugin/delegate?
     // TODO: Support JPEG2000 compression via ImageIO plugin/delegate?
-    // TODO: Support tiling
     // TODO: Support OPTIONAL predictor. See TIFF 6.0 Specification, Section 14: "Differencing Predictor", page 64.
 
     // DONE:
@@ -55,6 +63,9 @@ public final class TIFFImageWriteParam extends ImageWriteParam {
     // Support PackBits compression (32773)
     // Support LZW compression (5)?
     // Support JPEG compression (7)
+    // Support tiling
+
+    private Executor executor;
 
     TIFFImageWriteParam() {
         this(Locale.getDefault());
@@ -73,6 +84,28 @@ public final class TIFFImageWriteParam extends ImageWriteParam {
         };
         compressionType = compressionTypes[0];
         canWriteCompressed = true;
+
+        // NOTE: Tile sizes are rounded up to the nearest multiple of 16, as required by the TIFF specification
+        canWriteTiles = true;
+    }
+
+    /**
+     * Returns the executor used for concurrent strip/tile compression, or {@code null} if compression is sequential.
+     *
+     * @return the executor used for concurrent compression, or {@code null}.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor used for concurrent strip/tile compression.
+     * A {@code null} value (the default) means strips/tiles are compressed sequentially in the writing thread.
+     *
+     * @param executor the executor used for concurrent compression, may be {@code null}.
+     */
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
     }
 
     @Override
@@ -59,9 +59,15 @@ import java.awt.color.ICC_ColorSpace;
 import java.awt.image.*;
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.zip.Deflater;
-import java.util.zip.DeflaterOutputStream;
 
 import static com.twelvemonkeys.imageio.plugins.tiff.TIFFStreamMetadata.configureStreamByteOrder;
 
@@ -74,7 +80,6 @@ import static com.twelvemonkeys.imageio.plugins.tiff.TIFFStreamMetadata.configur
  */
 public final class TIFFImageWriter extends ImageWriterBase {
     // Long term
-    // TODO: Support tiling
     // TODO: Support thumbnails
     // TODO: Support JPEG compression of CMYK data (pending JPEGImageWriter CMYK write support)
     // ----
@@ -101,9 +106,20 @@ public final class TIFFImageWriter extends ImageWriterBase {
     // CCITT compressions T.4 and T.6
     // Support storing multiple images in one stream (multi-page TIFF)
     // Support more of the ImageIO metadata (ie. compression from metadata, etc)
+    // Support tiling
+
+    /**
+     * Target uncompressed size of strips, when compressing concurrently or writing rows incrementally.
+     */
+    private static final int STRIP_SIZE = 256 * 1024;
 
     private static final Rational STANDARD_DPI = new Rational(72);
 
+    /**
+     * Largest offset or byte count that fits in a classic TIFF (unsigned 32 bit).
+     */
+    private static final long MAX_CLASSIC_TIFF_OFFSET = 0xffffffffL;
+
     /**
      * Flag for active sequence writing
      */
@@ -121,6 +137,21 @@ public final class TIFFImageWriter extends ImageWriterBase {
      */
     private long sequenceLastIFDPos = -1;
 
+    /**
+     * Flag for writing BigTIFF (64 bit offsets) on active sequence writing
+     */
+    private boolean sequenceBigTIFF = false;
+
+    /**
+     * Image being written using prepareWriteEmpty/prepareInsertEmpty, with pixels supplied using replacePixels
+     */
+    private EmptyImage emptyImage = null;
+
+    /**
+     * Flag for active replacePixels
+     */
+    private boolean replacingPixels = false;
+
     TIFFImageWriter(final ImageWriterSpi provider) {
         super(provider);
     }
@@ -134,23 +165,113 @@ public final class TIFFImageWriter extends ImageWriterBase {
 
     @Override
     public void write(final IIOMetadata streamMetadata, final IIOImage image, final ImageWriteParam param) throws IOException {
-        prepareWriteSequence(streamMetadata);
+        // We know the size of the image up front, so we can switch to BigTIFF automatically, if needed
+        RenderedImage renderedImage = image.getRenderedImage();
+        prepareWriteSequence(streamMetadata, isBigTIFFProvider()
+                || exceedsClassicTIFF(renderedImage.getSampleModel(), renderedImage.getWidth(), renderedImage.getHeight(), image.getMetadata(), param));
         writeToSequence(image, param);
         endWriteSequence();
     }
 
+    private boolean isBigTIFFProvider() {
+        return originatingProvider instanceof BigTIFFImageWriterSpi;
+    }
+
+    private boolean exceedsClassicTIFF(final SampleModel sampleModel, final int width, final int height,
+                                       final IIOMetadata imageMetadata, final ImageWriteParam param) {
+        // Estimate based on the worst case size of the compressed data, and some room for the IFD and metadata
+        long rowSize = (width * (long) computePixelSize(sampleModel) + 7L) / 8L;
+        long dataSize = rowSize * height;
+        long estimatedSize = worstCaseCompressedSize(dataSize, rowSize, height, getEstimatedCompression(imageMetadata, param)) + (1 << 20);
+
+        return estimatedSize > MAX_CLASSIC_TIFF_OFFSET;
+    }
+
+    private static int getEstimatedCompression(final IIOMetadata imageMetadata, final ImageWriteParam param) {
+        if ((param == null || param.getCompressionMode() == ImageWriteParam.MODE_COPY_FROM_METADATA) && imageMetadata != null) {
+            // Compression may be specified in the metadata, assume the worst
+            return -1;
+        }
+
+        return TIFFImageWriteParam.getCompressionType(param);
+    }
+
+    private static long worstCaseCompressedSize(final long dataSize, final long rowSize, final int rows, final int compression) {
+        switch (compression) {
+            case TIFFBaseline.COMPRESSION_NONE:
+                return dataSize;
+            case TIFFBaseline.COMPRESSION_PACKBITS:
+                // One header byte per run of up to 128 literal bytes, runs never cross rows
+                return dataSize + ((rowSize + 127) / 128) * rows;
+            case TIFFExtension.COMPRESSION_ZLIB:
+            case TIFFExtension.COMPRESSION_DEFLATE:
+                // Stored blocks of max 65535 bytes with a 5 byte header, and the zlib header and checksum of each segment
+                return dataSize + dataSize / 8192 + 16L * rows;
+            case TIFFExtension.COMPRESSION_LZW:
+                // Codes are at most 12 bits, each for at least one byte, plus clear and end of information codes
+                return dataSize + dataSize / 2 + 4L * rows;
+            case TIFFBaseline.COMPRESSION_CCITT_MODIFIED_HUFFMAN_RLE:
+            case TIFFExtension.COMPRESSION_CCITT_T4:
+            case TIFFExtension.COMPRESSION_CCITT_T6:
+                // Alternating single pixel runs need up to 9 bits per pixel (plus EOL codes)
+                return dataSize * 10 + 4L * rows;
+            default:
+                // JPEG, or unknown, use a safe margin
+                return dataSize * 2;
+        }
+    }
+
     private long writePage(int imageIndex, IIOImage image, ImageWriteParam param, TIFFWriter tiffWriter, long lastIFDPointerOffset)
             throws IOException {
         RenderedImage renderedImage = image.getRenderedImage();
-        SampleModel sampleModel = renderedImage.getSampleModel();
 
         // Can't use createFromRenderedImage in this case, as it does not consider palette for TYPE_BYTE_BINARY...
         // TODO: Consider writing workaround in ImageTypeSpecifiers
         ImageTypeSpecifier spec = new ImageTypeSpecifier(renderedImage);
 
+        Page page = beginPage(spec, renderedImage.getWidth(), renderedImage.getHeight(), image.getMetadata(), param, tiffWriter, lastIFDPointerOffset, false);
+
+        // TODO: Cache JPEGImageWriter, dispose in dispose() method
+        if (page.compression == TIFFExtension.COMPRESSION_JPEG && !page.tiled) {
+            long stripOffset = imageOutput.getStreamPosition();
+
+            ImageWriter jpegWriter = createJPEGWriter();
+            try {
+                jpegWriter.setOutput(new SubImageOutputStream(imageOutput));
+                ListenerDelegate listener = new ListenerDelegate(imageIndex);
+                jpegWriter.addIIOWriteProgressListener(listener);
+                jpegWriter.addIIOWriteWarningListener(listener);
+                jpegWriter.write(null, image, copyParams(param, jpegWriter));
+            }
+            finally {
+                jpegWriter.dispose();
+            }
+
+            page.segmentOffsets[0] = stripOffset;
+            page.segmentByteCounts[0] = imageOutput.getStreamPosition() - stripOffset;
+        }
+        else {
+            // Write image data
+            writeImageData(imageIndex, renderedImage, param, page.entries, page.segmentWidth, page.segmentHeight, page.tiled,
+                    page.segmentOffsets, page.segmentByteCounts, page.numBands, page.bandOffsets, page.bitOffsets);
+        }
+
+        return endPage(page, tiffWriter);
+    }
+
+    /**
+     * Sets up the IFD entries and the strip or tile layout of a page.
+     * For uncompressed data, the IFD is written up front, otherwise it's written by {@link #endPage(Page, TIFFWriter)},
+     * after the image data.
+     */
+    private Page beginPage(final ImageTypeSpecifier spec, final int width, final int height, final IIOMetadata imageMetadata,
+                           final ImageWriteParam param, final TIFFWriter tiffWriter, final long lastIFDPointerOffset, final boolean streaming)
+            throws IOException {
+        SampleModel sampleModel = spec.getSampleModel();
+
         // TODO: Handle case where convertImageMetadata returns null, due to unknown metadata format, or reconsider if that's a valid case...
-        TIFFImageMetadata metadata = image.getMetadata() != null
-                                     ? convertImageMetadata(image.getMetadata(), spec, param)
+        TIFFImageMetadata metadata = imageMetadata != null
+                                     ? convertImageMetadata(imageMetadata, spec, param)
                                      : getDefaultImageMetadata(spec, param);
 
         int numBands = sampleModel.getNumBands();
@@ -181,100 +302,188 @@ public final class TIFFImageWriter extends ImageWriterBase {
             entries.put((Integer) entry.getIdentifier(), entry);
         }
 
-        entries.put(TIFF.TAG_IMAGE_WIDTH, new TIFFEntry(TIFF.TAG_IMAGE_WIDTH, renderedImage.getWidth()));
-        entries.put(TIFF.TAG_IMAGE_HEIGHT, new TIFFEntry(TIFF.TAG_IMAGE_HEIGHT, renderedImage.getHeight()));
+        entries.put(TIFF.TAG_IMAGE_WIDTH, new TIFFEntry(TIFF.TAG_IMAGE_WIDTH, width));
+        entries.put(TIFF.TAG_IMAGE_HEIGHT, new TIFFEntry(TIFF.TAG_IMAGE_HEIGHT, height));
 
         // TODO: RowsPerStrip - can be entire image (or even 2^32 -1), but it's recommended to write "about 8K bytes" per strip
-        entries.put(TIFF.TAG_ROWS_PER_STRIP, new TIFFEntry(TIFF.TAG_ROWS_PER_STRIP, renderedImage.getHeight()));
+        entries.put(TIFF.TAG_ROWS_PER_STRIP, new TIFFEntry(TIFF.TAG_ROWS_PER_STRIP, height));
         // StripByteCounts - for no compression, entire image data...
         entries.put(TIFF.TAG_STRIP_BYTE_COUNTS, new TIFFEntry(TIFF.TAG_STRIP_BYTE_COUNTS, -1)); // Updated later
         // StripOffsets - can be offset to single strip only
         entries.put(TIFF.TAG_STRIP_OFFSETS, new TIFFEntry(TIFF.TAG_STRIP_OFFSETS, -1)); // Updated later
 
-        // TODO: If tiled, write tile indexes etc
-        // Depending on param.getTilingMode
-        long nextIFDPointerOffset = -1;
-
         int compression = ((Number) entries.get(TIFF.TAG_COMPRESSION).getValue()).intValue();
 
+        // Strips or tiles
+        final boolean tiled = isTiled(param);
+        final int segmentWidth = tiled ? getTileSize(param.getTileWidth()) : width;
+        final int segmentHeight = tiled ? getTileSize(param.getTileHeight()) : getRowsPerStrip(width, height, pixelSize, compression, streaming, getExecutor(param) != null);
+        final int segmentsAcross = (width + segmentWidth - 1) / segmentWidth;
+        final int segmentCount = segmentsAcross * ((height + segmentHeight - 1) / segmentHeight);
+
+        final int offsetsTag = tiled ? TIFF.TAG_TILE_OFFSETS : TIFF.TAG_STRIP_OFFSETS;
+        final int byteCountsTag = tiled ? TIFF.TAG_TILE_BYTE_COUNTS : TIFF.TAG_STRIP_BYTE_COUNTS;
+
+        if (!tiled && segmentHeight != height) {
+            entries.put(TIFF.TAG_ROWS_PER_STRIP, new TIFFEntry(TIFF.TAG_ROWS_PER_STRIP, TIFF.TYPE_LONG, segmentHeight));
+            entries.put(TIFF.TAG_STRIP_BYTE_COUNTS, createSegmentEntry(TIFF.TAG_STRIP_BYTE_COUNTS, new long[segmentCount])); // Updated later
+            entries.put(TIFF.TAG_STRIP_OFFSETS, createSegmentEntry(TIFF.TAG_STRIP_OFFSETS, new long[segmentCount])); // Updated later
+        }
+        else if (tiled) {
+            entries.remove(TIFF.TAG_ROWS_PER_STRIP);
+            entries.remove(TIFF.TAG_STRIP_BYTE_COUNTS);
+            entries.remove(TIFF.TAG_STRIP_OFFSETS);
+
+            entries.put(TIFF.TAG_TILE_WIDTH, new TIFFEntry(TIFF.TAG_TILE_WIDTH, TIFF.TYPE_LONG, segmentWidth));
+            entries.put(TIFF.TAG_TILE_HEIGTH, new TIFFEntry(TIFF.TAG_TILE_HEIGTH, TIFF.TYPE_LONG, segmentHeight));
+            entries.put(TIFF.TAG_TILE_BYTE_COUNTS, createSegmentEntry(TIFF.TAG_TILE_BYTE_COUNTS, new long[segmentCount])); // Updated later
+            entries.put(TIFF.TAG_TILE_OFFSETS, createSegmentEntry(TIFF.TAG_TILE_OFFSETS, new long[segmentCount])); // Updated later
+        }
+
+        Page page = new Page(entries, width, height, compression, tiled, segmentWidth, segmentHeight, segmentCount,
+                offsetsTag, byteCountsTag, numBands, bandOffsets, bitOffsets, lastIFDPointerOffset);
+
         if (compression == TIFFBaseline.COMPRESSION_NONE) {
             // This implementation, allows semi-streaming-compatible uncompressed TIFFs
             long streamPosition = imageOutput.getStreamPosition();
 
             long ifdSize = tiffWriter.computeIFDSize(entries.values());
-            long stripOffset = streamPosition + 4 + ifdSize + 4;
-            long stripByteCount = ((long) renderedImage.getWidth() * renderedImage.getHeight() * pixelSize + 7L) / 8L;
+            long stripOffset = streamPosition + offsetSize() + ifdSize + offsetSize();
+            long bytesPerRow = (segmentWidth * (long) pixelSize + 7L) / 8L;
 
-            entries.put(TIFF.TAG_STRIP_OFFSETS, new TIFFEntry(TIFF.TAG_STRIP_OFFSETS, TIFF.TYPE_LONG, stripOffset));
-            entries.put(TIFF.TAG_STRIP_BYTE_COUNTS, new TIFFEntry(TIFF.TAG_STRIP_BYTE_COUNTS, TIFF.TYPE_LONG, stripByteCount));
+            for (int i = 0; i < segmentCount; i++) {
+                // Tiles are always full size, while the last strip only contains the remaining rows
+                int rows = tiled ? segmentHeight : Math.min(segmentHeight, height - (i / segmentsAcross) * segmentHeight);
+
+                page.segmentOffsets[i] = stripOffset;
+                page.segmentByteCounts[i] = bytesPerRow * rows;
+                stripOffset += page.segmentByteCounts[i];
+            }
+
+            entries.put(offsetsTag, createSegmentEntry(offsetsTag, page.segmentOffsets));
+            entries.put(byteCountsTag, createSegmentEntry(byteCountsTag, page.segmentByteCounts));
 
             long ifdPointer = tiffWriter.writeIFD(entries.values(), imageOutput); // NOTE: Writer takes case of ordering tags
-            nextIFDPointerOffset = imageOutput.getStreamPosition();
+            page.nextIFDPointerOffset = imageOutput.getStreamPosition();
 
             // If we have a previous IFD, update pointer
             if (streamPosition > lastIFDPointerOffset) {
                 imageOutput.seek(lastIFDPointerOffset);
-                imageOutput.writeInt((int) ifdPointer);
-                imageOutput.seek(nextIFDPointerOffset);
+                writeOffset(ifdPointer);
+                imageOutput.seek(page.nextIFDPointerOffset);
             }
 
-            imageOutput.writeInt(0); // Update next IFD pointer later
+            writeOffset(0); // Update next IFD pointer later
         }
         else {
-            imageOutput.writeInt(0); // Update current IFD pointer later
+            writeOffset(0); // Update current IFD pointer later
         }
 
-        long stripOffset = imageOutput.getStreamPosition();
+        return page;
+    }
 
-        // TODO: Create compressor stream per Tile/Strip
-        // TODO: Cache JPEGImageWriter, dispose in dispose() method
-        if (compression == TIFFExtension.COMPRESSION_JPEG) {
-            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("JPEG");
+    /**
+     * Completes a page, by writing the IFD with the final strip or tile offsets and byte counts, after the image data.
+     *
+     * @return the position of the next IFD pointer.
+     */
+    private long endPage(final Page page, final TIFFWriter tiffWriter) throws IOException {
+        // Update IFD0-pointer, and write IFD
+        if (page.compression != TIFFBaseline.COMPRESSION_NONE) {
+            page.entries.put(page.offsetsTag, createSegmentEntry(page.offsetsTag, page.segmentOffsets));
+            page.entries.put(page.byteCountsTag, createSegmentEntry(page.byteCountsTag, page.segmentByteCounts));
 
-            if (!writers.hasNext()) {
-                // This can only happen if someone deliberately uninstalled it
-                throw new IIOException("No JPEG ImageWriter found!");
-            }
+            long ifdPointer = tiffWriter.writeIFD(page.entries.values(), imageOutput); // NOTE: Writer takes case of ordering tags
 
-            ImageWriter jpegWriter = writers.next();
-            try {
-                jpegWriter.setOutput(new SubImageOutputStream(imageOutput));
-                ListenerDelegate listener = new ListenerDelegate(imageIndex);
-                jpegWriter.addIIOWriteProgressListener(listener);
-                jpegWriter.addIIOWriteWarningListener(listener);
-                jpegWriter.write(null, image, copyParams(param, jpegWriter));
-            }
-            finally {
-                jpegWriter.dispose();
-            }
+            page.nextIFDPointerOffset = imageOutput.getStreamPosition();
+
+            // TODO: This is slightly duped....
+            // However, need to update here, because to the writeIFD method writes the pointer, but at the incorrect offset
+            // TODO: Refactor writeIFD to take an offset
+            imageOutput.seek(page.lastIFDPointerOffset);
+            writeOffset(ifdPointer);
+            imageOutput.seek(page.nextIFDPointerOffset);
+
+            writeOffset(0); // Next IFD pointer updated later
         }
-        else {
-            // Write image data
-            writeImageData(createCompressorStream(renderedImage, param, entries), imageIndex, renderedImage, numBands, bandOffsets, bitOffsets);
+
+        return page.nextIFDPointerOffset;
+    }
+
+    private static boolean isTiled(final ImageWriteParam param) {
+        return param != null && param.canWriteTiles() && param.getTilingMode() == ImageWriteParam.MODE_EXPLICIT;
+    }
+
+    private static int getRowsPerStrip(final int width, final int height, final int pixelSize, final int compression,
+                                       final boolean streaming, final boolean concurrent) {
+        if (streaming || concurrent && isParallelCompression(compression)) {
+            // Multiple strips, to allow compressing them concurrently, or flushing them as soon as they are filled
+            long bytesPerRow = (width * (long) pixelSize + 7L) / 8L;
+            int rows = (int) Math.max(1, Math.min(height, STRIP_SIZE / bytesPerRow));
+
+            // Each strip is a complete JPEG stream, keep strips aligned with the MCUs
+            return compression == TIFFExtension.COMPRESSION_JPEG && rows < height ? Math.max(16, rows & ~15) : rows;
         }
 
-        long stripByteCount = imageOutput.getStreamPosition() - stripOffset;
+        return height;
+    }
 
-        // Update IFD0-pointer, and write IFD
-        if (compression != TIFFBaseline.COMPRESSION_NONE) {
-            entries.put(TIFF.TAG_STRIP_OFFSETS, new TIFFEntry(TIFF.TAG_STRIP_OFFSETS, TIFF.TYPE_LONG, stripOffset));
-            entries.put(TIFF.TAG_STRIP_BYTE_COUNTS, new TIFFEntry(TIFF.TAG_STRIP_BYTE_COUNTS, TIFF.TYPE_LONG, stripByteCount));
+    private static Executor getExecutor(final ImageWriteParam param) {
+        return param instanceof TIFFImageWriteParam ? ((TIFFImageWriteParam) param).getExecutor() : null;
+    }
 
-            long ifdPointer = tiffWriter.writeIFD(entries.values(), imageOutput); // NOTE: Writer takes case of ordering tags
+    private static boolean isParallelCompression(final int compression) {
+        // No need to parallelize no compression, and the JPEG writer does its own thing
+        return compression != TIFFBaseline.COMPRESSION_NONE && compression != TIFFExtension.COMPRESSION_JPEG;
+    }
 
-            nextIFDPointerOffset = imageOutput.getStreamPosition();
+    private static int getTileSize(final int size) {
+        // TIFF 6.0 Specification, Section 15: "TileWidth/TileLength must be a multiple of 16"
+        return Math.max(16, (size + 15) & ~15);
+    }
 
-            // TODO: This is slightly duped....
-            // However, need to update here, because to the writeIFD method writes the pointer, but at the incorrect offset
-            // TODO: Refactor writeIFD to take an offset
-            imageOutput.seek(lastIFDPointerOffset);
-            imageOutput.writeInt((int) ifdPointer);
-            imageOutput.seek(nextIFDPointerOffset);
+    private TIFFEntry createSegmentEntry(final int tag, final long[] values) throws IIOException {
+        short type = TIFF.TYPE_LONG;
+
+        if (sequenceBigTIFF) {
+            type = TIFF.TYPE_LONG8;
+        }
+        else {
+            for (long value : values) {
+                if (value > MAX_CLASSIC_TIFF_OFFSET) {
+                    throw new IIOException("Image data exceeds the 4 GB limit of classic TIFF, use the BigTIFF format instead");
+                }
+            }
+        }
+
+        // Single values are written as scalars, to be compatible with previous versions
+        return values.length == 1
+               ? new TIFFEntry(tag, type, values[0])
+               : new TIFFEntry(tag, type, values);
+    }
+
+    private int offsetSize() {
+        return sequenceBigTIFF ? 8 : 4;
+    }
+
+    private void writeOffset(final long offset) throws IOException {
+        if (sequenceBigTIFF) {
+            imageOutput.writeLong(offset);
+        }
+        else {
+            imageOutput.writeInt((int) offset);
+        }
+    }
+
+    private ImageWriter createJPEGWriter() throws IIOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("JPEG");
 
-            imageOutput.writeInt(0); // Next IFD pointer updated later
+        if (!writers.hasNext()) {
+            // This can only happen if someone deliberately uninstalled it
+            throw new IIOException("No JPEG ImageWriter found!");
         }
 
-        return nextIFDPointerOffset;
+        return writers.next();
     }
 
     // TODO: Candidate util method
@@ -309,7 +518,18 @@ public final class TIFFImageWriter extends ImageWriterBase {
         return size;
     }
 
-    private DataOutput createCompressorStream(final RenderedImage image, final ImageWriteParam param, final Map<Integer, Entry> entries) {
+    private DataOutput createCompressorStream(final int width, final int height, final ImageWriteParam param, final Map<Integer, Entry> entries) {
+        int compression = ((Number) entries.get(TIFF.TAG_COMPRESSION).getValue()).intValue();
+
+        if (compression == TIFFBaseline.COMPRESSION_NONE) {
+            return imageOutput;
+        }
+
+        return createCompressorStream(IIOUtil.createStreamAdapter(imageOutput), imageOutput.getByteOrder(), width, height, param, entries);
+    }
+
+    private static DataOutput createCompressorStream(final OutputStream output, final ByteOrder byteOrder, final int width, final int height,
+                                                     final ImageWriteParam param, final Map<Integer, Entry> entries) {
         /*
         36 MB test data:
 
@@ -367,13 +587,13 @@ public final class TIFFImageWriter extends ImageWriterBase {
         // Use predictor by default for LZW and ZLib/Deflate
         // TODO: Unless explicitly disabled in TIFFImageWriteParam
         int compression = ((Number) entries.get(TIFF.TAG_COMPRESSION).getValue()).intValue();
-        OutputStream stream;
+        int predictor = entries.containsKey(TIFF.TAG_PREDICTOR) ? ((Number) entries.get(TIFF.TAG_PREDICTOR).getValue()).intValue() : TIFFBaseline.PREDICTOR_NONE;
+        OutputStream stream = output;
 
         switch (compression) {
             case TIFFBaseline.COMPRESSION_NONE:
-                return imageOutput;
+                return new DataOutputStream(stream);
             case TIFFBaseline.COMPRESSION_PACKBITS:
-                stream = IIOUtil.createStreamAdapter(imageOutput);
                 stream = new EncoderStream(stream, new PackBitsEncoder(), true);
                 // NOTE: PackBits + Predictor is possible, but not generally supported, disable it by default
                 // (and probably not even allow it, see http://stackoverflow.com/questions/20337400/tiff-packbits-compression-with-predictor-step)
@@ -399,19 +619,17 @@ public final class TIFFImageWriter extends ImageWriterBase {
                     deflateSetting = Deflater.BEST_COMPRESSION - Math.round((Deflater.BEST_COMPRESSION - 1) * param.getCompressionQuality());
                 }
 
-                stream = IIOUtil.createStreamAdapter(imageOutput);
-                stream = new DeflaterOutputStream(stream, new Deflater(deflateSetting), 1024);
-                if (entries.containsKey(TIFF.TAG_PREDICTOR) && entries.get(TIFF.TAG_PREDICTOR).getValue().equals(TIFFExtension.PREDICTOR_HORIZONTAL_DIFFERENCING)) {
-                    stream = new HorizontalDifferencingStream(stream, image.getTileWidth(), samplesPerPixel, bitPerSample, imageOutput.getByteOrder());
+                stream = new DeflateEncoderStream(stream, deflateSetting, ((width * samplesPerPixel * bitPerSample + 7) / 8) * (long) height);
+                if (predictor != TIFFBaseline.PREDICTOR_NONE) {
+                    stream = new HorizontalDifferencingStream(stream, predictor, width, samplesPerPixel, bitPerSample, byteOrder);
                 }
 
                 return new DataOutputStream(stream);
 
             case TIFFExtension.COMPRESSION_LZW:
-                stream = IIOUtil.createStreamAdapter(imageOutput);
-                stream = new EncoderStream(stream, new LZWEncoder(((image.getTileWidth() * samplesPerPixel * bitPerSample + 7) / 8) * image.getTileHeight()));
-                if (entries.containsKey(TIFF.TAG_PREDICTOR) && entries.get(TIFF.TAG_PREDICTOR).getValue().equals(TIFFExtension.PREDICTOR_HORIZONTAL_DIFFERENCING)) {
-                    stream = new HorizontalDifferencingStream(stream, image.getTileWidth(), samplesPerPixel, bitPerSample, imageOutput.getByteOrder());
+                stream = new EncoderStream(stream, new LZWEncoder(((width * samplesPerPixel * bitPerSample + 7) / 8) * height));
+                if (predictor != TIFFBaseline.PREDICTOR_NONE) {
+                    stream = new HorizontalDifferencingStream(stream, predictor, width, samplesPerPixel, bitPerSample, byteOrder);
                 }
 
                 return new DataOutputStream(stream);
@@ -419,7 +637,7 @@ public final class TIFFImageWriter extends ImageWriterBase {
             case TIFFBaseline.COMPRESSION_CCITT_MODIFIED_HUFFMAN_RLE:
             case TIFFExtension.COMPRESSION_CCITT_T4:
             case TIFFExtension.COMPRESSION_CCITT_T6:
-                if (image.getSampleModel().getNumBands() != 1 || image.getSampleModel().getSampleSize(0) != 1) {
+                if (samplesPerPixel != 1 || bitPerSample != 1) {
                     throw new IllegalArgumentException("CCITT compressions supports 1 sample/pixel, 1 bit/sample only");
                 }
 
@@ -432,8 +650,7 @@ public final class TIFFImageWriter extends ImageWriterBase {
 
                 Entry fillOrderEntry = entries.get(TIFF.TAG_FILL_ORDER);
                 int fillOrder = (int) (fillOrderEntry != null ? fillOrderEntry.getValue() : TIFFBaseline.FILL_LEFT_TO_RIGHT);
-                stream = IIOUtil.createStreamAdapter(imageOutput);
-                stream = new CCITTFaxEncoderStream(stream, image.getTileWidth(), image.getTileHeight(), compression, fillOrder, option);
+                stream = new CCITTFaxEncoderStream(stream, width, height, compression, fillOrder, option);
 
                 return new DataOutputStream(stream);
         }
@@ -502,7 +719,10 @@ public final class TIFFImageWriter extends ImageWriterBase {
         return shorts;
     }
 
-    private void writeImageData(DataOutput stream, int imageIndex, RenderedImage renderedImage, int numComponents, int[] bandOffsets, int[] bitOffsets) throws IOException {
+    private void writeImageData(final int imageIndex, final RenderedImage renderedImage, final ImageWriteParam param,
+                                final Map<Integer, Entry> entries, final int segmentWidth, final int segmentHeight, final boolean tiled,
+                                final long[] segmentOffsets, final long[] segmentByteCounts,
+                                final int numComponents, final int[] bandOffsets, final int[] bitOffsets) throws IOException {
         // Store 3BYTE, 4BYTE as is (possibly need to re-arrange to RGB order)
         // Store INT_RGB as 3BYTE, INT_ARGB as 4BYTE?, INT_ABGR must be re-arranged
         // Store IndexColorModel as is
@@ -511,199 +731,415 @@ public final class TIFFImageWriter extends ImageWriterBase {
 
         processImageStarted(imageIndex);
 
-        final int minTileY = renderedImage.getMinTileY();
-        final int maxYTiles = minTileY + renderedImage.getNumYTiles();
-        final int minTileX = renderedImage.getMinTileX();
-        final int maxXTiles = minTileX + renderedImage.getNumXTiles();
+        int compression = ((Number) entries.get(TIFF.TAG_COMPRESSION).getValue()).intValue();
+        ImageWriter jpegWriter = compression == TIFFExtension.COMPRESSION_JPEG ? createJPEGWriter() : null;
 
-        // Use buffer to have longer, better performing writes
-        final int tileHeight = renderedImage.getTileHeight();
-        final int tileWidth = renderedImage.getTileWidth();
+        try {
+            int segmentsAcross = (renderedImage.getWidth() + segmentWidth - 1) / segmentWidth;
+
+            Executor executor = getExecutor(param);
+
+            if (executor != null && isParallelCompression(compression) && segmentOffsets.length > 1) {
+                writeSegmentsConcurrently(executor, renderedImage, param, entries, segmentWidth, segmentHeight, tiled,
+                        segmentOffsets, segmentByteCounts, numComponents, bandOffsets, bitOffsets);
+            }
+            else {
+                for (int i = 0; i < segmentOffsets.length; i++) {
+                    // Each strip or tile is compressed separately
+                    Rectangle bounds = new Rectangle(renderedImage.getMinX() + (i % segmentsAcross) * segmentWidth,
+                                                     renderedImage.getMinY() + (i / segmentsAcross) * segmentHeight,
+                                                     segmentWidth, segmentHeight);
+
+                    segmentOffsets[i] = imageOutput.getStreamPosition();
+                    writeSegment(jpegWriter, renderedImage, bounds, tiled, param, entries, numComponents, bandOffsets, bitOffsets);
+                    segmentByteCounts[i] = imageOutput.getStreamPosition() - segmentOffsets[i];
+
+                    processImageProgress((100f * (i + 1)) / segmentOffsets.length);
+                }
+            }
+        }
+        finally {
+            if (jpegWriter != null) {
+                jpegWriter.dispose();
+            }
+        }
+
+        processImageComplete();
+    }
+
+    private void writeSegment(final ImageWriter jpegWriter, final RenderedImage renderedImage, final Rectangle bounds, final boolean tiled,
+                              final ImageWriteParam param, final Map<Integer, Entry> entries,
+                              final int numComponents, final int[] bandOffsets, final int[] bitOffsets) throws IOException {
+        if (jpegWriter != null) {
+            writeJPEGSegment(jpegWriter, renderedImage, bounds, param);
+        }
+        else {
+            Raster segment = getSegment(renderedImage, bounds, tiled);
+            DataOutput stream = createCompressorStream(segment.getWidth(), segment.getHeight(), param, entries);
+
+            writeRaster(stream, segment, numComponents, bandOffsets, bitOffsets);
+
+            if (stream instanceof DataOutputStream) {
+                DataOutputStream dataOutputStream = (DataOutputStream) stream;
+                dataOutputStream.close();
+            }
+        }
+    }
+
+    private void writeSegmentsConcurrently(final Executor executor, final RenderedImage renderedImage, final ImageWriteParam param,
+                                           final Map<Integer, Entry> entries, final int segmentWidth, final int segmentHeight, final boolean tiled,
+                                           final long[] segmentOffsets, final long[] segmentByteCounts,
+                                           final int numComponents, final int[] bandOffsets, final int[] bitOffsets) throws IOException {
+        // Compress a window of segments at a time, to keep memory usage bounded, then write them in order
+        int windowSize = Math.min(Math.max(2, Runtime.getRuntime().availableProcessors() * 2), segmentOffsets.length);
+        SegmentBuffer[] buffers = new SegmentBuffer[windowSize];
+        List<Future<Void>> tasks = new ArrayList<>(windowSize);
+
+        for (int i = 0; i < windowSize; i++) {
+            buffers[i] = new SegmentBuffer();
+        }
+
+        int segmentsAcross = (renderedImage.getWidth() + segmentWidth - 1) / segmentWidth;
+        ByteOrder byteOrder = imageOutput.getByteOrder();
+
+        for (int start = 0; start < segmentOffsets.length; start += windowSize) {
+            int end = Math.min(start + windowSize, segmentOffsets.length);
+
+            for (int i = start; i < end; i++) {
+                Rectangle bounds = new Rectangle(renderedImage.getMinX() + (i % segmentsAcross) * segmentWidth,
+                                                 renderedImage.getMinY() + (i / segmentsAcross) * segmentHeight,
+                                                 segmentWidth, segmentHeight);
+
+                FutureTask<Void> task = new FutureTask<>(new CompressSegment(renderedImage, param, entries, byteOrder, bounds, tiled,
+                                                                             numComponents, bandOffsets, bitOffsets, buffers[i - start]));
+                executor.execute(task);
+                tasks.add(task);
+            }
+
+            // Wait for all tasks, before the buffers are written or reused
+            awaitSegments(tasks);
+            tasks.clear();
+
+            for (int i = start; i < end; i++) {
+                SegmentBuffer buffer = buffers[i - start];
+
+                segmentOffsets[i] = imageOutput.getStreamPosition();
+                buffer.writeTo(imageOutput);
+                segmentByteCounts[i] = imageOutput.getStreamPosition() - segmentOffsets[i];
+
+                buffer.reset();
+
+                processImageProgress((100f * (i + 1)) / segmentOffsets.length);
+            }
+        }
+    }
+
+    private static void awaitSegments(final List<Future<Void>> tasks) throws IOException {
+        Throwable failure = null;
+
+        for (Future<Void> task : tasks) {
+            try {
+                task.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                for (Future<Void> pending : tasks) {
+                    pending.cancel(false);
+                }
+
+                throw new InterruptedIOException("Interrupted while compressing TIFF strip/tile");
+            }
+            catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new IIOException("Could not compress TIFF strip/tile", failure);
+        }
+    }
+
+    private void compressSegment(final RenderedImage renderedImage, final ImageWriteParam param, final Map<Integer, Entry> entries,
+                                 final ByteOrder byteOrder, final Rectangle bounds, final boolean tiled,
+                                 final int numComponents, final int[] bandOffsets, final int[] bitOffsets,
+                                 final SegmentBuffer buffer) throws IOException {
+        Raster segment = getSegment(renderedImage, bounds, tiled);
+        DataOutputStream stream = (DataOutputStream) createCompressorStream(buffer, byteOrder, segment.getWidth(), segment.getHeight(), param, entries);
+
+        writeRaster(stream, segment, numComponents, bandOffsets, bitOffsets);
+
+        stream.close();
+    }
+
+    /**
+     * Gets the raster for a strip or tile.
+     * Tiles are always full size, padded with zeros outside the image, while strips are clipped to the image.
+     */
+    private Raster getSegment(final RenderedImage renderedImage, final Rectangle bounds, final boolean padded) {
+        Rectangle clipped = bounds.intersection(getBounds(renderedImage));
+
+        if (renderedImage.getNumXTiles() == 1 && renderedImage.getNumYTiles() == 1 && (!padded || clipped.equals(bounds))) {
+            // Single tile image (ie. BufferedImage), no need to copy the data
+            Raster tile = renderedImage.getTile(renderedImage.getMinTileX(), renderedImage.getMinTileY());
+
+            return clipped.equals(tile.getBounds())
+                   ? tile
+                   : tile.createChild(clipped.x, clipped.y, clipped.width, clipped.height, clipped.x, clipped.y, null);
+        }
+
+        Rectangle rect = padded ? bounds : clipped;
+        WritableRaster raster = Raster.createWritableRaster(renderedImage.getSampleModel().createCompatibleSampleModel(rect.width, rect.height), rect.getLocation());
+        renderedImage.copyData(raster.createWritableChild(clipped.x, clipped.y, clipped.width, clipped.height, clipped.x, clipped.y, null));
+
+        return raster;
+    }
+
+    private Rectangle getBounds(final RenderedImage renderedImage) {
+        return new Rectangle(renderedImage.getMinX(), renderedImage.getMinY(), renderedImage.getWidth(), renderedImage.getHeight());
+    }
+
+    private void writeJPEGSegment(final ImageWriter jpegWriter, final RenderedImage renderedImage, final Rectangle bounds,
+                                  final ImageWriteParam param) throws IOException {
+        // Each tile is written as a complete JPEG stream, padded with zeros outside the image
+        Rectangle clipped = bounds.intersection(getBounds(renderedImage));
+        WritableRaster raster = Raster.createWritableRaster(renderedImage.getSampleModel().createCompatibleSampleModel(bounds.width, bounds.height), null);
+        renderedImage.copyData(raster.createWritableChild(clipped.x - bounds.x, clipped.y - bounds.y, clipped.width, clipped.height, clipped.x, clipped.y, null));
+
+        ColorModel colorModel = renderedImage.getColorModel();
+        BufferedImage tile = new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+
+        ImageWriteParam jpegParam = copyParams(param, jpegWriter);
+        jpegParam.setSourceRegion(null);
+        jpegParam.setSourceSubsampling(1, 1, 0, 0);
+        jpegParam.setSourceBands(null);
+
+        jpegWriter.setOutput(new SubImageOutputStream(imageOutput));
+        jpegWriter.write(null, new IIOImage(tile, null, null), jpegParam);
+    }
+
+    private void writeRaster(final DataOutput stream, final Raster tile, final int numComponents, final int[] bandOffsets, final int[] bitOffsets) throws IOException {
+        final int tileHeight = tile.getHeight();
+        final int tileWidth = tile.getWidth();
 
         // TODO: SampleSize may differ between bands/banks
-        final int sampleSize = renderedImage.getSampleModel().getSampleSize(0);
-        final int numBands = renderedImage.getSampleModel().getNumBands();
+        final int sampleSize = tile.getSampleModel().getSampleSize(0);
+        final int numBands = tile.getSampleModel().getNumBands();
 
+        // Use buffer to have longer, better performing writes
         final ByteBuffer buffer = ByteBuffer.allocate((tileWidth * numBands * sampleSize + 7) / 8);
 
-        for (int yTile = minTileY; yTile < maxYTiles; yTile++) {
-            for (int xTile = minTileX; xTile < maxXTiles; xTile++) {
-                final Raster tile = renderedImage.getTile(xTile, yTile);
+        // Model translation
+        final int offsetX = tile.getMinX() - tile.getSampleModelTranslateX();
+        final int offsetY = tile.getMinY() - tile.getSampleModelTranslateY();
 
-                // Model translation
-                final int offsetX = tile.getMinX() - tile.getSampleModelTranslateX();
-                final int offsetY = tile.getMinY() - tile.getSampleModelTranslateY();
+        // Scanline stride, not accounting for model translation
+        final int stride = (tile.getSampleModel().getWidth() * sampleSize + 7) / 8;
+        final DataBuffer dataBuffer = tile.getDataBuffer();
 
-                // Scanline stride, not accounting for model translation
-                final int stride = (tile.getSampleModel().getWidth() * sampleSize + 7) / 8;
-                final DataBuffer dataBuffer = tile.getDataBuffer();
+        switch (dataBuffer.getDataType()) {
+            case DataBuffer.TYPE_BYTE:
+//                System.err.println("Writing " + numBands + "BYTE -> " + numBands + "BYTE");
+                int steps = (tileWidth * sampleSize + 7) / 8;
+                // Byte offset and shift needed for "packed" samples with "odd" offset
+                int xOffset = sampleSize < 8 ? offsetX * sampleSize / 8 : offsetX;
+                int shift = sampleSize < 8 ? (offsetX * sampleSize) % 8 : 0;
 
-                switch (dataBuffer.getDataType()) {
-                    case DataBuffer.TYPE_BYTE:
-//                        System.err.println("Writing " + numBands + "BYTE -> " + numBands + "BYTE");
-                        int steps = (tileWidth * sampleSize + 7) / 8;
-                        // Shift needed for "packed" samples with "odd" offset
-                        int shift = offsetX % 8;
+                // TODO: Generalize this code, to always use row raster
+                final WritableRaster rowRaster = shift != 0 ? tile.createCompatibleWritableRaster(tile.getWidth(), 1) : null;
+                final DataBuffer rowBuffer = shift != 0 ? rowRaster.getDataBuffer() : null;
 
-                        // TODO: Generalize this code, to always use row raster
-                        final WritableRaster rowRaster = shift != 0 ? tile.createCompatibleWritableRaster(tile.getWidth(), 1) : null;
-                        final DataBuffer rowBuffer = shift != 0 ? rowRaster.getDataBuffer() : null;
+                for (int b = 0; b < dataBuffer.getNumBanks(); b++) {
+                    for (int y = offsetY; y < tileHeight + offsetY; y++) {
+                        final int yOff = y * stride * numBands;
 
-                        for (int b = 0; b < dataBuffer.getNumBanks(); b++) {
-                            for (int y = offsetY; y < tileHeight + offsetY; y++) {
-                                final int yOff = y * stride * numBands;
+                        if (shift != 0) {
+                            rowRaster.setDataElements(0, 0, tile.createChild(tile.getMinX(), tile.getMinY() + y - offsetY, tile.getWidth(), 1, 0, 0, null));
+                        }
 
-                                if (shift != 0) {
-                                    rowRaster.setDataElements(0, 0, tile.createChild(0, y - offsetY, tile.getWidth(), 1, 0, 0, null));
-                                }
+                        for (int x = xOffset; x < steps + xOffset; x++) {
+                            final int xOff = yOff + x * numBands;
 
-                                for (int x = offsetX; x < steps + offsetX; x++) {
-                                    final int xOff = yOff + x * numBands;
-
-                                    for (int s = 0; s < numBands; s++) {
-                                        if (sampleSize == 8 || shift == 0) {
-                                            // Normal interleaved/planar case
-                                            buffer.put((byte) (dataBuffer.getElem(b, xOff + bandOffsets[s]) & 0xff));
-                                        }
-                                        else {
-                                            // "Packed" case
-                                            buffer.put((byte) (rowBuffer.getElem(b, x - offsetX + bandOffsets[s]) & 0xff));
-                                        }
-                                    }
+                            for (int s = 0; s < numBands; s++) {
+                                if (sampleSize == 8 || shift == 0) {
+                                    // Normal interleaved/planar case
+                                    buffer.put((byte) (dataBuffer.getElem(b, xOff + bandOffsets[s]) & 0xff));
                                 }
-
-                                flushBuffer(buffer, stream);
-
-                                if (stream instanceof DataOutputStream) {
-                                    DataOutputStream dataOutputStream = (DataOutputStream) stream;
-                                    dataOutputStream.flush();
+                                else {
+                                    // "Packed" case
+                                    buffer.put((byte) (rowBuffer.getElem(b, x - xOffset + bandOffsets[s]) & 0xff));
                                 }
                             }
                         }
 
-                        break;
+                        flushBuffer(buffer, stream);
+
+                        if (stream instanceof DataOutputStream) {
+                            DataOutputStream dataOutputStream = (DataOutputStream) stream;
+                            dataOutputStream.flush();
+                        }
+                    }
+                }
+
+                break;
 
-                    case DataBuffer.TYPE_USHORT:
-                    case DataBuffer.TYPE_SHORT:
-                        if (numComponents == 1) {
-//                            System.err.println("Writing USHORT -> " + numBands * 2 + "_BYTES");
+            case DataBuffer.TYPE_USHORT:
+            case DataBuffer.TYPE_SHORT:
+                if (numComponents == 1) {
+//                    System.err.println("Writing USHORT -> " + numBands * 2 + "_BYTES");
 
-                            for (int b = 0; b < dataBuffer.getNumBanks(); b++) {
-                                for (int y = offsetY; y < tileHeight + offsetY; y++) {
-                                    int yOff = y * stride / 2;
+                    for (int b = 0; b < dataBuffer.getNumBanks(); b++) {
+                        for (int y = offsetY; y < tileHeight + offsetY; y++) {
+                            int yOff = y * stride / 2;
 
-                                    for (int x = offsetX; x < tileWidth + offsetX; x++) {
-                                        final int xOff = yOff + x;
+                            for (int x = offsetX; x < tileWidth + offsetX; x++) {
+                                final int xOff = yOff + x;
 
-                                        buffer.putShort((short) (dataBuffer.getElem(b, xOff) & 0xffff));
-                                    }
+                                buffer.putShort((short) (dataBuffer.getElem(b, xOff) & 0xffff));
+                            }
 
-                                    flushBuffer(buffer, stream);
+                            flushBuffer(buffer, stream);
 
-                                    if (stream instanceof DataOutputStream) {
-                                        DataOutputStream dataOutputStream = (DataOutputStream) stream;
-                                        dataOutputStream.flush();
-                                    }
-                                }
+                            if (stream instanceof DataOutputStream) {
+                                DataOutputStream dataOutputStream = (DataOutputStream) stream;
+                                dataOutputStream.flush();
                             }
                         }
-                        else {
-//                            for (int b = 0; b < dataBuffer.getNumBanks(); b++) {
-//                                for (int y = 0; y < tileHeight; y++) {
-//                                    final int yOff = y * tileWidth;
-//
-//                                    for (int x = 0; x < tileWidth; x++) {
-//                                        final int xOff = yOff + x;
-//                                        int element = dataBuffer.getElem(b, xOff);
+                    }
+                }
+                else {
+//                    for (int b = 0; b < dataBuffer.getNumBanks(); b++) {
+//                        for (int y = 0; y < tileHeight; y++) {
+//                            final int yOff = y * tileWidth;
 //
-//                                        for (int s = 0; s < numBands; s++) {
-//                                            buffer.put((byte) ((element >> bitOffsets[s]) & 0xff));
-//                                        }
-//                                    }
+//                            for (int x = 0; x < tileWidth; x++) {
+//                                final int xOff = yOff + x;
+//                                int element = dataBuffer.getElem(b, xOff);
 //
-//                                    flushBuffer(buffer, stream);
-//                                    if (stream instanceof DataOutputStream) {
-//                                        DataOutputStream dataOutputStream = (DataOutputStream) stream;
-//                                        dataOutputStream.flush();
-//                                    }
+//                                for (int s = 0; s < numBands; s++) {
+//                                    buffer.put((byte) ((element >> bitOffsets[s]) & 0xff));
 //                                }
 //                            }
-                            throw new IllegalArgumentException("Not implemented for data type: " + dataBuffer.getDataType());
-                        }
+//
+//                            flushBuffer(buffer, stream);
+//                            if (stream instanceof DataOutputStream) {
+//                                DataOutputStream dataOutputStream = (DataOutputStream) stream;
+//                                dataOutputStream.flush();
+//                            }
+//                        }
+//                    }
+                    throw new IllegalArgumentException("Not implemented for data type: " + dataBuffer.getDataType());
+                }
 
-                        break;
+                break;
 
-                    case DataBuffer.TYPE_INT:
-                        // TODO: This is incorrect for 32 bits/sample, only works for packed (INT_(A)RGB)
-                        if (1 == numComponents) {
-//                            System.err.println("Writing INT -> " + numBands * 4 + "_BYTES");
+            case DataBuffer.TYPE_INT:
+                // TODO: This is incorrect for 32 bits/sample, only works for packed (INT_(A)RGB)
+                if (1 == numComponents) {
+//                    System.err.println("Writing INT -> " + numBands * 4 + "_BYTES");
 
-                            for (int b = 0; b < dataBuffer.getNumBanks(); b++) {
-                                for (int y = offsetY; y < tileHeight + offsetY; y++) {
-                                    int yOff = y * stride / 4;
+                    for (int b = 0; b < dataBuffer.getNumBanks(); b++) {
+                        for (int y = offsetY; y < tileHeight + offsetY; y++) {
+                            int yOff = y * stride / 4;
 
-                                    for (int x = offsetX; x < tileWidth + offsetX; x++) {
-                                        final int xOff = yOff + x;
+                            for (int x = offsetX; x < tileWidth + offsetX; x++) {
+                                final int xOff = yOff + x;
 
-                                        buffer.putInt(dataBuffer.getElem(b, xOff));
-                                    }
+                                buffer.putInt(dataBuffer.getElem(b, xOff));
+                            }
 
-                                    flushBuffer(buffer, stream);
+                            flushBuffer(buffer, stream);
 
-                                    if (stream instanceof DataOutputStream) {
-                                        DataOutputStream dataOutputStream = (DataOutputStream) stream;
-                                        dataOutputStream.flush();
-                                    }
-                                }
+                            if (stream instanceof DataOutputStream) {
+                                DataOutputStream dataOutputStream = (DataOutputStream) stream;
+                                dataOutputStream.flush();
                             }
                         }
-                        else {
-//                            System.err.println("Writing INT -> " + numBands + "_BYTES");
-
-                            for (int b = 0; b < dataBuffer.getNumBanks(); b++) {
-                                for (int y = 0; y < tileHeight; y++) {
-                                    final int yOff = y * tileWidth;
-
-                                    for (int x = 0; x < tileWidth; x++) {
-                                        final int xOff = yOff + x;
-                                        int element = dataBuffer.getElem(b, xOff);
-
-                                        for (int s = 0; s < numBands; s++) {
-                                            buffer.put((byte) ((element >> bitOffsets[s]) & 0xff));
-                                        }
-                                    }
-
-                                    flushBuffer(buffer, stream);
-                                    if (stream instanceof DataOutputStream) {
-                                        DataOutputStream dataOutputStream = (DataOutputStream) stream;
-                                        dataOutputStream.flush();
-                                    }
+                    }
+                }
+                else {
+//                    System.err.println("Writing INT -> " + numBands + "_BYTES");
+
+                    final int scanlineStride = ((SinglePixelPackedSampleModel) tile.getSampleModel()).getScanlineStride();
+
+                    for (int b = 0; b < dataBuffer.getNumBanks(); b++) {
+                        for (int y = offsetY; y < tileHeight + offsetY; y++) {
+                            final int yOff = y * scanlineStride;
+
+                            for (int x = offsetX; x < tileWidth + offsetX; x++) {
+                                final int xOff = yOff + x;
+                                int element = dataBuffer.getElem(b, xOff);
+
+                                for (int s = 0; s < numBands; s++) {
+                                    buffer.put((byte) ((element >> bitOffsets[s]) & 0xff));
                                 }
                             }
+
+                            flushBuffer(buffer, stream);
+                            if (stream instanceof DataOutputStream) {
+                                DataOutputStream dataOutputStream = (DataOutputStream) stream;
+                                dataOutputStream.flush();
+                            }
                         }
+                    }
+                }
+
+                break;
+
+            case DataBuffer.TYPE_FLOAT:
+                if (numComponents == 1) {
+                    for (int b = 0; b < dataBuffer.getNumBanks(); b++) {
+                        for (int y = offsetY; y < tileHeight + offsetY; y++) {
+                            int yOff = y * stride / 4;
+
+                            for (int x = offsetX; x < tileWidth + offsetX; x++) {
+                                buffer.putFloat(dataBuffer.getElemFloat(b, yOff + x));
+                            }
 
-                        break;
-                    default:
-                        throw new IllegalArgumentException("Not implemented for data type: " + dataBuffer.getDataType());
+                            flushBuffer(buffer, stream);
+
+                            if (stream instanceof DataOutputStream) {
+                                DataOutputStream dataOutputStream = (DataOutputStream) stream;
+                                dataOutputStream.flush();
+                            }
+                        }
+                    }
                 }
-            }
+                else {
+                    // Any sample model, written as interleaved (chunky) samples
+                    float[] samples = new float[tileWidth * numBands];
 
-            // TODO: Need to flush/start new compression for each row, for proper LZW/PackBits/Deflate/ZLib
-            if (stream instanceof DataOutputStream) {
-                DataOutputStream dataOutputStream = (DataOutputStream) stream;
-                dataOutputStream.flush();
-            }
+                    for (int y = 0; y < tileHeight; y++) {
+                        tile.getPixels(tile.getMinX(), tile.getMinY() + y, tileWidth, 1, samples);
 
-            // TODO: Report better progress
-            processImageProgress((100f * (yTile + 1)) / maxYTiles);
-        }
+                        for (float sample : samples) {
+                            buffer.putFloat(sample);
+                        }
 
-        if (stream instanceof DataOutputStream) {
-            DataOutputStream dataOutputStream = (DataOutputStream) stream;
-            dataOutputStream.close();
-        }
+                        flushBuffer(buffer, stream);
 
-        processImageComplete();
+                        if (stream instanceof DataOutputStream) {
+                            DataOutputStream dataOutputStream = (DataOutputStream) stream;
+                            dataOutputStream.flush();
+                        }
+                    }
+                }
+
+                break;
+            default:
+                throw new IllegalArgumentException("Not implemented for data type: " + dataBuffer.getDataType());
+        }
     }
 
     // TODO: Would be better to solve this on stream level... But writers would then have to explicitly flush the buffer before done.
@@ -714,6 +1150,141 @@ public final class TIFFImageWriter extends ImageWriterBase {
         buffer.clear();
     }
 
+    /**
+     * The IFD entries and strip or tile layout of a page being written.
+     */
+    private static final class Page {
+        final Map<Integer, Entry> entries;
+        final int width;
+        final int height;
+        final int compression;
+        final boolean tiled;
+        final int segmentWidth;
+        final int segmentHeight;
+        final int offsetsTag;
+        final int byteCountsTag;
+        final long[] segmentOffsets;
+        final long[] segmentByteCounts;
+        final int numBands;
+        final int[] bandOffsets;
+        final int[] bitOffsets;
+        final long lastIFDPointerOffset;
+
+        long nextIFDPointerOffset = -1;
+
+        Page(final Map<Integer, Entry> entries, final int width, final int height, final int compression,
+             final boolean tiled, final int segmentWidth, final int segmentHeight, final int segmentCount,
+             final int offsetsTag, final int byteCountsTag,
+             final int numBands, final int[] bandOffsets, final int[] bitOffsets, final long lastIFDPointerOffset) {
+            this.entries = entries;
+            this.width = width;
+            this.height = height;
+            this.compression = compression;
+            this.tiled = tiled;
+            this.segmentWidth = segmentWidth;
+            this.segmentHeight = segmentHeight;
+            this.offsetsTag = offsetsTag;
+            this.byteCountsTag = byteCountsTag;
+            this.numBands = numBands;
+            this.bandOffsets = bandOffsets;
+            this.bitOffsets = bitOffsets;
+            this.lastIFDPointerOffset = lastIFDPointerOffset;
+
+            segmentOffsets = new long[segmentCount];
+            segmentByteCounts = new long[segmentCount];
+        }
+    }
+
+    /**
+     * An image written using {@code prepareWriteEmpty} or {@code prepareInsertEmpty}.
+     * Rows supplied using {@code replacePixels} are collected in a band, holding one strip or one row of tiles,
+     * that is written as soon as it is filled.
+     */
+    private static final class EmptyImage {
+        final int imageIndex;
+        final Page page;
+        final ImageTypeSpecifier imageType;
+        final ImageWriteParam param;
+        final ImageWriter jpegWriter;
+        final boolean endsSequence;
+
+        BufferedImage band;
+        int bandY;
+        int nextRow;
+
+        EmptyImage(final int imageIndex, final Page page, final ImageTypeSpecifier imageType, final ImageWriteParam param,
+                   final ImageWriter jpegWriter, final boolean endsSequence) {
+            this.imageIndex = imageIndex;
+            this.page = page;
+            this.imageType = imageType;
+            this.param = param;
+            this.jpegWriter = jpegWriter;
+            this.endsSequence = endsSequence;
+        }
+
+        int bandEnd() {
+            return Math.min(bandY + page.segmentHeight, page.height);
+        }
+
+        void createBand() {
+            // Tiles are always full size, padded with zeros outside the image, while strips are clipped to the image
+            band = bandY < page.height
+                   ? imageType.createBufferedImage(page.width, page.tiled ? page.segmentHeight : bandEnd() - bandY)
+                   : null;
+        }
+    }
+
+    /**
+     * Compresses a strip or tile into a separate buffer.
+     */
+    private final class CompressSegment implements Callable<Void> {
+        private final RenderedImage renderedImage;
+        private final ImageWriteParam param;
+        private final Map<Integer, Entry> entries;
+        private final ByteOrder byteOrder;
+        private final Rectangle bounds;
+        private final boolean tiled;
+        private final int numComponents;
+        private final int[] bandOffsets;
+        private final int[] bitOffsets;
+        private final SegmentBuffer buffer;
+
+        CompressSegment(final RenderedImage renderedImage, final ImageWriteParam param, final Map<Integer, Entry> entries, final ByteOrder byteOrder,
+                        final Rectangle bounds, final boolean tiled, final int numComponents, final int[] bandOffsets, final int[] bitOffsets,
+                        final SegmentBuffer buffer) {
+            this.renderedImage = renderedImage;
+            this.param = param;
+            this.entries = entries;
+            this.byteOrder = byteOrder;
+            this.bounds = bounds;
+            this.tiled = tiled;
+            this.numComponents = numComponents;
+            this.bandOffsets = bandOffsets;
+            this.bitOffsets = bitOffsets;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            compressSegment(renderedImage, param, entries, byteOrder, bounds, tiled, numComponents, bandOffsets, bitOffsets, buffer);
+
+            return null;
+        }
+    }
+
+    /**
+     * In-memory buffer for a compressed strip or tile, that can be written directly to an {@code ImageOutputStream}.
+     */
+    private static final class SegmentBuffer extends ByteArrayOutputStream {
+        SegmentBuffer() {
+            super(8192);
+        }
+
+        void writeTo(final ImageOutputStream stream) throws IOException {
+            stream.write(buf, 0, count);
+        }
+    }
+
     // Metadata
 
     @Override
@@ -809,7 +1380,10 @@ public final class TIFFImageWriter extends ImageWriterBase {
             case TIFFExtension.COMPRESSION_LZW:
                 // TODO: Let param/metadata control predictor
                 // TODO: Depending on param.getCompressionMode(): DISABLED/EXPLICIT/COPY_FROM_METADATA/DEFAULT
-                if (pixelSize >= 8) {
+                if (sampleModel.getDataType() == DataBuffer.TYPE_FLOAT) {
+                    entries.put(TIFF.TAG_PREDICTOR, new TIFFEntry(TIFF.TAG_PREDICTOR, TIFFExtension.PREDICTOR_HORIZONTAL_FLOATINGPOINT));
+                }
+                else if (pixelSize >= 8) {
                     entries.put(TIFF.TAG_PREDICTOR, new TIFFEntry(TIFF.TAG_PREDICTOR, TIFFExtension.PREDICTOR_HORIZONTAL_DIFFERENCING));
                 }
 
@@ -860,7 +1434,9 @@ public final class TIFFImageWriter extends ImageWriterBase {
         if (sampleModel.getDataType() == DataBuffer.TYPE_SHORT/* TODO: if isSigned(sampleModel.getDataType) or getSampleFormat(sampleModel) != 0 */) {
             entries.put(TIFF.TAG_SAMPLE_FORMAT, new TIFFEntry(TIFF.TAG_SAMPLE_FORMAT, TIFFExtension.SAMPLEFORMAT_INT));
         }
-        // TODO: Float values!
+        else if (sampleModel.getDataType() == DataBuffer.TYPE_FLOAT) {
+            entries.put(TIFF.TAG_SAMPLE_FORMAT, new TIFFEntry(TIFF.TAG_SAMPLE_FORMAT, TIFFExtension.SAMPLEFORMAT_FP));
+        }
 
         return new TIFFImageMetadata(entries.values());
     }
@@ -945,8 +1521,25 @@ public final class TIFFImageWriter extends ImageWriterBase {
         return true;
     }
 
+    /**
+     * Begins writing a TIFF stream with multiple images.
+     * <p>
+     * As the size of the images in the sequence is not known up front, the sequence is always written
+     * as classic TIFF, unless this writer was created by the BigTIFF provider
+     * (ie. {@code ImageIO.getImageWritersByFormatName("bigtiff")}).
+     * If the image data of the sequence exceeds the 4 GB limit of classic TIFF,
+     * {@link #writeToSequence(IIOImage, ImageWriteParam)} will throw an {@code IIOException}.
+     * Unlike sequences, {@link #write(IIOMetadata, IIOImage, ImageWriteParam)} and
+     * {@link #prepareWriteEmpty(IIOMetadata, ImageTypeSpecifier, int, int, IIOMetadata, List, ImageWriteParam)}
+     * switch to BigTIFF automatically, if the image may exceed this limit.
+     * </p>
+     */
     @Override
     public void prepareWriteSequence(final IIOMetadata streamMetadata) throws IOException {
+        prepareWriteSequence(streamMetadata, isBigTIFFProvider());
+    }
+
+    private void prepareWriteSequence(final IIOMetadata streamMetadata, final boolean bigTIFF) throws IOException {
         if (writingSequence) {
             throw new IllegalStateException("sequence writing has already been started!");
         }
@@ -955,7 +1548,8 @@ public final class TIFFImageWriter extends ImageWriterBase {
         configureStreamByteOrder(streamMetadata, imageOutput);
 
         writingSequence = true;
-        sequenceTIFFWriter = new TIFFWriter();
+        sequenceBigTIFF = bigTIFF;
+        sequenceTIFFWriter = new TIFFWriter(offsetSize());
         sequenceTIFFWriter.writeTIFFHeader(imageOutput);
         sequenceLastIFDPos = imageOutput.getStreamPosition();
     }
@@ -966,12 +1560,16 @@ public final class TIFFImageWriter extends ImageWriterBase {
             throw new IllegalStateException("prepareWriteSequence() must be called before writeToSequence()!");
         }
 
+        seekToNextPage();
+
+        sequenceLastIFDPos = writePage(sequenceIndex++, image, param, sequenceTIFFWriter, sequenceLastIFDPos);
+    }
+
+    private void seekToNextPage() throws IOException {
         if (sequenceIndex > 0) {
             imageOutput.flushBefore(sequenceLastIFDPos);
             imageOutput.seek(imageOutput.length());
         }
-
-        sequenceLastIFDPos = writePage(sequenceIndex++, image, param, sequenceTIFFWriter, sequenceLastIFDPos);
     }
 
     @Override
@@ -984,6 +1582,7 @@ public final class TIFFImageWriter extends ImageWriterBase {
         sequenceIndex = 0;
         sequenceTIFFWriter = null;
         sequenceLastIFDPos = -1;
+        sequenceBigTIFF = false;
         imageOutput.flush();
     }
 
@@ -991,10 +1590,252 @@ public final class TIFFImageWriter extends ImageWriterBase {
     protected void resetMembers() {
         super.resetMembers();
 
+        if (emptyImage != null && emptyImage.jpegWriter != null) {
+            emptyImage.jpegWriter.dispose();
+        }
+
+        emptyImage = null;
+        replacingPixels = false;
+
         writingSequence = false;
         sequenceIndex = 0;
         sequenceTIFFWriter = null;
         sequenceLastIFDPos = -1;
+        sequenceBigTIFF = false;
+    }
+
+    // Writing empty images, and supplying the pixels later
+
+    @Override
+    public boolean canWriteEmpty() throws IOException {
+        assertOutput();
+
+        return true;
+    }
+
+    /**
+     * Begins writing a TIFF stream with a single image, where the pixels are supplied later,
+     * using {@link #replacePixels(Raster, ImageWriteParam)} or {@link #replacePixels(RenderedImage, ImageWriteParam)}.
+     * <p>
+     * Pixels must be supplied in order, from top to bottom, in full rows.
+     * Strips (or rows of tiles) are compressed and written as soon as they are filled,
+     * so the entire image never has to be in memory.
+     * Any rows not supplied before {@link #endWriteEmpty()} is invoked, are written as zeros.
+     * </p>
+     */
+    @Override
+    public void prepareWriteEmpty(final IIOMetadata streamMetadata, final ImageTypeSpecifier imageType, final int width, final int height,
+                                  final IIOMetadata imageMetadata, final List<? extends BufferedImage> thumbnails,
+                                  final ImageWriteParam param) throws IOException {
+        assertOutput();
+        assertNotWritingEmpty();
+        assertEmptyImage(imageType, width, height);
+
+        prepareWriteSequence(streamMetadata, isBigTIFFProvider() || exceedsClassicTIFF(imageType.getSampleModel(), width, height, imageMetadata, param));
+        emptyImage = beginEmpty(imageType, width, height, imageMetadata, param, true);
+    }
+
+    @Override
+    public void endWriteEmpty() throws IOException {
+        if (emptyImage == null || !emptyImage.endsSequence) {
+            throw new IllegalStateException("prepareWriteEmpty() must be called before endWriteEmpty()!");
+        }
+
+        endEmpty();
+        endWriteSequence();
+    }
+
+    @Override
+    public boolean canInsertEmpty(final int imageIndex) throws IOException {
+        assertOutput();
+
+        // Only appending to the active sequence is supported
+        return writingSequence && (imageIndex == -1 || imageIndex == sequenceIndex);
+    }
+
+    /**
+     * Begins writing an image to the end of the active sequence, where the pixels are supplied later,
+     * the same way as for {@link #prepareWriteEmpty(IIOMetadata, ImageTypeSpecifier, int, int, IIOMetadata, List, ImageWriteParam)}.
+     */
+    @Override
+    public void prepareInsertEmpty(final int imageIndex, final ImageTypeSpecifier imageType, final int width, final int height,
+                                   final IIOMetadata imageMetadata, final List<? extends BufferedImage> thumbnails,
+                                   final ImageWriteParam param) throws IOException {
+        assertOutput();
+        assertNotWritingEmpty();
+
+        if (!canInsertEmpty(imageIndex)) {
+            throw new UnsupportedOperationException("Empty images can only be inserted at the end of an active sequence");
+        }
+
+        assertEmptyImage(imageType, width, height);
+
+        seekToNextPage();
+        emptyImage = beginEmpty(imageType, width, height, imageMetadata, param, false);
+    }
+
+    @Override
+    public void endInsertEmpty() throws IOException {
+        if (emptyImage == null || emptyImage.endsSequence) {
+            throw new IllegalStateException("prepareInsertEmpty() must be called before endInsertEmpty()!");
+        }
+
+        endEmpty();
+    }
+
+    @Override
+    public boolean canReplacePixels(final int imageIndex) throws IOException {
+        assertOutput();
+
+        // Only the image currently being written empty can be replaced
+        return emptyImage != null && imageIndex == emptyImage.imageIndex;
+    }
+
+    @Override
+    public void prepareReplacePixels(final int imageIndex, final Rectangle region) throws IOException {
+        if (!canReplacePixels(imageIndex)) {
+            throw new UnsupportedOperationException("Only pixels of an image written using prepareWriteEmpty() or prepareInsertEmpty() can be replaced");
+        }
+        if (replacingPixels) {
+            throw new IllegalStateException("prepareReplacePixels() has already been called!");
+        }
+
+        Validate.notNull(region, "region");
+        Validate.isTrue(!region.isEmpty(), region, "region may not be empty: %s");
+
+        replacingPixels = true;
+    }
+
+    /**
+     * Writes the next rows of the image being written empty.
+     * The location of the rows in the image is given by the location of the raster,
+     * offset by the destination offset of {@code param}, if any.
+     * Rows must be supplied in order, from top to bottom, and the raster must span the full width of the image.
+     */
+    @Override
+    public void replacePixels(final Raster raster, final ImageWriteParam param) throws IOException {
+        Validate.notNull(raster, "raster");
+
+        if (!replacingPixels) {
+            throw new IllegalStateException("prepareReplacePixels() must be called before replacePixels()!");
+        }
+
+        EmptyImage empty = emptyImage;
+        Page page = empty.page;
+
+        Point offset = param != null ? param.getDestinationOffset() : new Point();
+        int x = raster.getMinX() + offset.x;
+        int y = raster.getMinY() + offset.y;
+
+        if (x != 0 || raster.getWidth() != page.width) {
+            throw new IllegalArgumentException(String.format("Pixels must be replaced in full rows (x: 0, width: %d): x: %d, width: %d", page.width, x, raster.getWidth()));
+        }
+        if (y != empty.nextRow) {
+            throw new IllegalArgumentException(String.format("Pixels must be replaced in order, from top to bottom (row: %d): %d", empty.nextRow, y));
+        }
+        if (raster.getNumBands() != page.numBands) {
+            throw new IllegalArgumentException(String.format("Raster must have the same number of bands as the image (%d): %d", page.numBands, raster.getNumBands()));
+        }
+
+        int end = Math.min(y + raster.getHeight(), page.height);
+
+        while (empty.nextRow < end) {
+            // Copy the rows that fit in the current band
+            int rows = Math.min(end, empty.bandEnd()) - empty.nextRow;
+            empty.band.getRaster().setRect(raster.createChild(raster.getMinX(), raster.getMinY() + empty.nextRow - y, page.width, rows,
+                                                              0, empty.nextRow - empty.bandY, null));
+            empty.nextRow += rows;
+
+            if (empty.nextRow == empty.bandEnd()) {
+                writeBand(empty);
+            }
+        }
+    }
+
+    @Override
+    public void replacePixels(final RenderedImage image, final ImageWriteParam param) throws IOException {
+        Validate.notNull(image, "image");
+
+        replacePixels(image instanceof BufferedImage ? ((BufferedImage) image).getRaster() : image.getData(), param);
+    }
+
+    @Override
+    public void endReplacePixels() throws IOException {
+        if (!replacingPixels) {
+            throw new IllegalStateException("prepareReplacePixels() must be called before endReplacePixels()!");
+        }
+
+        replacingPixels = false;
+    }
+
+    private void assertNotWritingEmpty() {
+        if (emptyImage != null) {
+            throw new IllegalStateException("prepareWriteEmpty() or prepareInsertEmpty() has already been called!");
+        }
+    }
+
+    private void assertEmptyImage(final ImageTypeSpecifier imageType, final int width, final int height) {
+        Validate.notNull(imageType, "imageType");
+        Validate.isTrue(width > 0, width, "width must be > 0: %d");
+        Validate.isTrue(height > 0, height, "height must be > 0: %d");
+    }
+
+    private EmptyImage beginEmpty(final ImageTypeSpecifier imageType, final int width, final int height, final IIOMetadata imageMetadata,
+                                  final ImageWriteParam param, final boolean endsSequence) throws IOException {
+        ImageWriteParam writeParam = param != null ? param : getDefaultWriteParam();
+        Page page = beginPage(imageType, width, height, imageMetadata, writeParam, sequenceTIFFWriter, sequenceLastIFDPos, true);
+        ImageWriter jpegWriter = page.compression == TIFFExtension.COMPRESSION_JPEG ? createJPEGWriter() : null;
+
+        EmptyImage empty = new EmptyImage(sequenceIndex, page, imageType, writeParam, jpegWriter, endsSequence);
+        empty.createBand();
+
+        processImageStarted(empty.imageIndex);
+
+        return empty;
+    }
+
+    private void writeBand(final EmptyImage empty) throws IOException {
+        Page page = empty.page;
+        int segmentsAcross = (page.width + page.segmentWidth - 1) / page.segmentWidth;
+        int first = (empty.bandY / page.segmentHeight) * segmentsAcross;
+
+        for (int i = 0; i < segmentsAcross; i++) {
+            Rectangle bounds = new Rectangle(i * page.segmentWidth, 0, page.segmentWidth, empty.band.getHeight());
+
+            page.segmentOffsets[first + i] = imageOutput.getStreamPosition();
+            writeSegment(empty.jpegWriter, empty.band, bounds, page.tiled, empty.param, page.entries, page.numBands, page.bandOffsets, page.bitOffsets);
+            page.segmentByteCounts[first + i] = imageOutput.getStreamPosition() - page.segmentOffsets[first + i];
+        }
+
+        empty.bandY += page.segmentHeight;
+        empty.createBand();
+
+        processImageProgress((100f * Math.min(empty.bandY, page.height)) / page.height);
+    }
+
+    private void endEmpty() throws IOException {
+        EmptyImage empty = emptyImage;
+
+        try {
+            // Rows that were never supplied are written as zeros
+            while (empty.band != null) {
+                empty.nextRow = empty.bandEnd();
+                writeBand(empty);
+            }
+
+            sequenceLastIFDPos = endPage(empty.page, sequenceTIFFWriter);
+            sequenceIndex++;
+        }
+        finally {
+            if (empty.jpegWriter != null) {
+                empty.jpegWriter.dispose();
+            }
+
+            emptyImage = null;
+            replacingPixels = false;
+        }
+
+        processImageComplete();
     }
 
     // Test
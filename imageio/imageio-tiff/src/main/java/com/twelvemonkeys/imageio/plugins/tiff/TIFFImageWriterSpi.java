@@ -35,6 +35,14 @@ import com.twelvemonkeys.imageio.spi.ImageWriterSpiBase;
 import javax.imageio.ImageTypeSpecifier;
 import javax.imageio.spi.ImageWriterSpi;
 import javax.imageio.spi.ServiceRegistry;
+import java.awt.color.ColorSpace;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.util.Locale;
 
 import static com.twelvemonkeys.imageio.util.IIOUtil.lookupProviderByName;
@@ -47,8 +55,6 @@ import static com.twelvemonkeys.imageio.util.IIOUtil.lookupProviderByName;
  * @version $Id: TIFFImageWriterSpi.java,v 1.0 18.09.13 12:46 haraldk Exp$
  */
 public final class TIFFImageWriterSpi extends ImageWriterSpiBase {
-    // TODO: Implement canEncodeImage better
-
     public TIFFImageWriterSpi() {
         super(new TIFFProviderInfo());
     }
@@ -66,8 +72,58 @@ public final class TIFFImageWriterSpi extends ImageWriterSpiBase {
 
     @Override
     public boolean canEncodeImage(final ImageTypeSpecifier type) {
-        // TODO: Test bit depths compatibility
-        return true;
+        return canEncode(type);
+    }
+
+    // Shared with BigTIFFImageWriterSpi, must match the layouts and color spaces TIFFImageWriter can write
+    static boolean canEncode(final ImageTypeSpecifier type) {
+        SampleModel sampleModel = type.getSampleModel();
+
+        if (!(sampleModel instanceof ComponentSampleModel
+                || sampleModel instanceof SinglePixelPackedSampleModel
+                || sampleModel instanceof MultiPixelPackedSampleModel)) {
+            return false;
+        }
+
+        ColorModel colorModel = type.getColorModel();
+
+        if (colorModel.getPixelSize() != 1 && !(colorModel instanceof IndexColorModel)) {
+            switch (colorModel.getColorSpace().getType()) {
+                case ColorSpace.TYPE_GRAY:
+                case ColorSpace.TYPE_RGB:
+                case ColorSpace.TYPE_CMYK:
+                    break;
+                default:
+                    return false;
+            }
+        }
+
+        switch (sampleModel.getDataType()) {
+            case DataBuffer.TYPE_BYTE:
+                return sampleModel.getNumBands() == 1 || !(sampleModel instanceof ComponentSampleModel)
+                        || isPixelInterleaved((ComponentSampleModel) sampleModel);
+            case DataBuffer.TYPE_FLOAT:
+                return true;
+            case DataBuffer.TYPE_USHORT:
+            case DataBuffer.TYPE_SHORT:
+                return sampleModel.getNumBands() == 1;
+            case DataBuffer.TYPE_INT:
+                // Multiple bands are only supported when packed into a single int (INT_(A)RGB)
+                return sampleModel.getNumBands() == 1 || sampleModel instanceof SinglePixelPackedSampleModel;
+            default:
+                return false;
+        }
+    }
+
+    // Multiple byte bands are only supported when interleaved in a single bank, without padding
+    private static boolean isPixelInterleaved(final ComponentSampleModel sampleModel) {
+        for (int bank : sampleModel.getBankIndices()) {
+            if (bank != 0) {
+                return false;
+            }
+        }
+
+        return sampleModel.getPixelStride() == sampleModel.getNumBands();
     }
 
     @Override
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package com.twelvemonkeys.imageio.plugins.tiff;
+
+import javax.imageio.ImageTypeSpecifier;
+import java.awt.*;
+import java.awt.image.*;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A lazily decoded, tiled {@link RenderedImage} backed by a {@link TIFFImageReader}.
+ * <p>
+ * Tiles are decoded on demand by {@link #getTile(int, int)}, and kept in a bounded LRU cache.
+ * The cache is bounded by the number of bytes used by the decoded tiles, not the number of tiles.
+ * As callers may modify the rasters returned, {@code getTile} returns a copy of the cached tile.
+ * Rendering a viewport of a huge tiled TIFF will thus only decode (and keep in memory) the visible tiles.
+ * </p>
+ * <p>
+ * The image is only valid as long as the reader keeps its current input.
+ * All decoding is synchronized on the reader, as the reader and its input stream are not thread safe.
+ * </p>
+ */
+final class TIFFRenderedImage implements RenderedImage {
+    private final TIFFImageReader reader;
+    private final int imageIndex;
+
+    private final int width;
+    private final int height;
+    private final int tileWidth;
+    private final int tileHeight;
+
+    private final SampleModel sampleModel;
+    private final ColorModel colorModel;
+
+    private final TileCache tileCache;
+
+    TIFFRenderedImage(final TIFFImageReader reader, final int imageIndex, final ImageTypeSpecifier imageType, final long tileCacheSize) throws IOException {
+        this.reader = reader;
+        this.imageIndex = imageIndex;
+
+        width = reader.getWidth(imageIndex);
+        height = reader.getHeight(imageIndex);
+        tileWidth = reader.getTileWidth(imageIndex);
+        tileHeight = reader.getTileHeight(imageIndex);
+
+        sampleModel = imageType.getSampleModel(tileWidth, tileHeight);
+        colorModel = imageType.getColorModel();
+
+        tileCache = new TileCache(tileCacheSize);
+    }
+
+    @Override
+    public Vector<RenderedImage> getSources() {
+        return null;
+    }
+
+    @Override
+    public Object getProperty(final String name) {
+        return Image.UndefinedProperty;
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return null;
+    }
+
+    @Override
+    public ColorModel getColorModel() {
+        return colorModel;
+    }
+
+    @Override
+    public SampleModel getSampleModel() {
+        return sampleModel;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getMinX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinY() {
+        return 0;
+    }
+
+    @Override
+    public int getNumXTiles() {
+        return (width + tileWidth - 1) / tileWidth;
+    }
+
+    @Override
+    public int getNumYTiles() {
+        return (height + tileHeight - 1) / tileHeight;
+    }
+
+    @Override
+    public int getMinTileX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinTileY() {
+        return 0;
+    }
+
+    @Override
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    @Override
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    @Override
+    public int getTileGridXOffset() {
+        return 0;
+    }
+
+    @Override
+    public int getTileGridYOffset() {
+        return 0;
+    }
+
+    @Override
+    public Raster getTile(final int tileX, final int tileY) {
+        if (tileX < 0 || tileY < 0 || tileX >= getNumXTiles() || tileY >= getNumYTiles()) {
+            throw new IllegalArgumentException("Tile [" + tileX + "," + tileY + "] out of bounds");
+        }
+
+        // Copy, so that callers can't modify the cached tile (a Raster view of the same data buffer could still be written to)
+        Raster tile = getCachedTile(tileX, tileY);
+        WritableRaster copy = Raster.createWritableRaster(sampleModel, tile.getBounds().getLocation());
+        copy.setDataElements(tile.getMinX(), tile.getMinY(), tile.getWidth(), tile.getHeight(),
+                             tile.getDataElements(tile.getMinX(), tile.getMinY(), tile.getWidth(), tile.getHeight(), null));
+
+        return copy;
+    }
+
+    private Raster getCachedTile(final int tileX, final int tileY) {
+        Point key = new Point(tileX, tileY);
+
+        synchronized (reader) {
+            Raster tile = tileCache.get(key);
+
+            if (tile == null) {
+                tile = readTile(tileX, tileY);
+                tileCache.put(key, tile);
+            }
+
+            return tile;
+        }
+    }
+
+    private Raster readTile(final int tileX, final int tileY) {
+        WritableRaster decoded;
+
+        try {
+            decoded = reader.readTile(imageIndex, tileX, tileY).getRaster();
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Could not read tile [" + tileX + "," + tileY + "]: " + e.getMessage(), e);
+        }
+
+        int x = tileX * tileWidth;
+        int y = tileY * tileHeight;
+
+        if (decoded.getWidth() == tileWidth && decoded.getHeight() == tileHeight) {
+            return decoded.createTranslatedChild(x, y);
+        }
+
+        // Tiles in the last column/row may be clipped by the image bounds, pad to the full tile size
+        WritableRaster tile = Raster.createWritableRaster(sampleModel, new Point(x, y));
+        tile.setDataElements(x, y, decoded.getWidth(), decoded.getHeight(), decoded.getDataElements(0, 0, decoded.getWidth(), decoded.getHeight(), null));
+
+        return tile;
+    }
+
+    @Override
+    public Raster getData() {
+        return getData(new Rectangle(0, 0, width, height));
+    }
+
+    @Override
+    public Raster getData(final Rectangle rect) {
+        WritableRaster raster = Raster.createWritableRaster(sampleModel.createCompatibleSampleModel(rect.width, rect.height), rect.getLocation());
+
+        return copyData(raster);
+    }
+
+    @Override
+    public WritableRaster copyData(final WritableRaster raster) {
+        WritableRaster dest = raster != null
+                              ? raster
+                              : Raster.createWritableRaster(sampleModel.createCompatibleSampleModel(width, height), null);
+
+        Rectangle region = dest.getBounds().intersection(new Rectangle(0, 0, width, height));
+
+        if (!region.isEmpty()) {
+            int minTileX = region.x / tileWidth;
+            int minTileY = region.y / tileHeight;
+            int maxTileX = (region.x + region.width - 1) / tileWidth;
+            int maxTileY = (region.y + region.height - 1) / tileHeight;
+
+            for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+                for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                    Raster tile = getCachedTile(tileX, tileY);
+                    Rectangle area = region.intersection(tile.getBounds());
+
+                    // NOTE: Not using setRect, as it is broken for translated rasters in some JREs
+                    Object data = tile.getDataElements(area.x, area.y, area.width, area.height, null);
+                    dest.setDataElements(area.x, area.y, area.width, area.height, data);
+                }
+            }
+        }
+
+        return dest;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TIFFRenderedImage@%x: width = %d height = %d tileWidth = %d tileHeight = %d #numXTiles = %d #numYTiles = %d cached tiles = %d (%d bytes) %s",
+                System.identityHashCode(this), width, height, tileWidth, tileHeight, getNumXTiles(), getNumYTiles(),
+                tileCache.size(), tileCache.cachedBytes, colorModel);
+    }
+
+    /**
+     * LRU tile cache, bounded by the number of bytes used by the cached rasters.
+     * Not thread safe, all access must be synchronized externally.
+     */
+    private static final class TileCache extends LinkedHashMap<Point, Raster> {
+        private final long maxBytes;
+        private long cachedBytes;
+
+        TileCache(final long maxBytes) {
+            super(16, .75f, true);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public Raster put(final Point key, final Raster tile) {
+            Raster old = super.put(key, tile);
+
+            if (old != null) {
+                cachedBytes -= sizeOf(old);
+            }
+
+            cachedBytes += sizeOf(tile);
+
+            // Evict the least recently used tiles, until we are within budget
+            Iterator<Raster> tiles = values().iterator();
+            while (cachedBytes > maxBytes && tiles.hasNext()) {
+                cachedBytes -= sizeOf(tiles.next());
+                tiles.remove();
+            }
+
+            return old;
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            cachedBytes = 0;
+        }
+
+        private static long sizeOf(final Raster tile) {
+            DataBuffer buffer = tile.getDataBuffer();
+            return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.webp;
+
+/**
+ * An 'ANMF' RIFF chunk, describing a single frame of an animated WebP.
+ * <p>
+ * The offset of the chunk is the start of the frame header, the frame data
+ * ('ALPH' and 'VP8 ', or 'VP8L' chunks) follows the 16 byte header.
+ * </p>
+ */
+final class AnimationFrame extends RIFFChunk {
+    static final int HEADER_SIZE = 16;
+
+    int x;
+    int y;
+    int width;
+    int height;
+    int duration;
+
+    boolean blend;   // Alpha-blend with the canvas, otherwise replace
+    boolean dispose; // Dispose to background after display, otherwise leave as is
+
+    AnimationFrame(int fourCC, long length, long offset) {
+        super(fourCC, length, offset);
+    }
+
+    boolean coversCanvas(final VP8xChunk header) {
+        return x == 0 && y == 0 && width == header.width && height == header.height;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[" +
+                "x=" + x +
+                ", y=" + y +
+                ", width=" + width +
+                ", height=" + height +
+                ", duration=" + duration +
+                ", blend=" + blend +
+                ", dispose=" + dispose +
+                ']';
+    }
+}
@@ -5,52 +5,113 @@ import java.io.EOFException;
 import java.io.IOException;
 
 /**
- * LSBBitReader
+ * LSBBitReader.
+ * <p>
+ * Reads bits least significant bit first, as used by the VP8L lossless format.
+ * Bits are kept in a 64 bit window, refilled a byte at a time from a
+ * buffered chunk of the stream, so that up to 32 bits may be peeked or read
+ * without touching the stream.
+ * </p>
+ * <p>
+ * NOTE: The reader reads ahead, and starts reading at the stream position at
+ * the time of the first read. The position of the stream after reading is
+ * undefined.
+ * </p>
  */
 public final class LSBBitReader {
-    // TODO: Consider creating an ImageInputStream wrapper with the WebP implementation of readBit(s)?
+    private static final int BUFFER_SIZE = 4096;
 
     private final ImageInputStream imageInput;
-    int bitOffset = 0;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
 
-    public LSBBitReader(ImageInputStream imageInput) {
+    private long bits;     // Bits not yet consumed, next bit in the least significant position
+    private int bitCount;  // Number of bits in the window, including padding
+    private int padding;   // Number of zero bits appended past the end of stream
+
+    public LSBBitReader(final ImageInputStream imageInput) {
         this.imageInput = imageInput;
     }
 
-    // TODO: Optimize this... Read many bits at once!
-    public long readBits(int bits) throws IOException {
-        long result = 0;
-        for (int i = 0; i < bits; i++) {
-            result |= (long) readBit() << i;
+    public long readBits(final int count) throws IOException {
+        if (bitCount < count) {
+            fill();
         }
 
+        long result = bits & ((1L << count) - 1);
+        bits >>>= count;
+        bitCount -= count;
+
         return result;
     }
 
-    // TODO: Optimize this...
-    // TODO: Consider not reading value over and over....
     public int readBit() throws IOException {
-        int bit = 7 - bitOffset;
+        if (bitCount < 1) {
+            fill();
+        }
+
+        int result = (int) bits & 1;
+        bits >>>= 1;
+        bitCount--;
+
+        return result;
+    }
+
+    /**
+     * Returns the next {@code count} bits, without consuming them.
+     *
+     * @param count the number of bits, at most 32
+     * @return the next {@code count} bits
+     * @throws IOException if an I/O exception occurs, or the end of stream was passed
+     */
+    public int peekBits(final int count) throws IOException {
+        if (bitCount < count) {
+            fill();
+        }
 
-        imageInput.setBitOffset(bit);
+        return (int) (bits & ((1L << count) - 1));
+    }
 
-        // Compute final bit offset before we call read() and seek()
-        int newBitOffset = (bitOffset + 1) & 0x7;
+    /**
+     * Consumes {@code count} bits, previously made available by {@link #peekBits(int)}.
+     *
+     * @param count the number of bits to skip
+     */
+    public void skipBits(final int count) {
+        bits >>>= count;
+        bitCount -= count;
+    }
 
-        int val = imageInput.read();
-        if (val == -1) {
+    private void fill() throws IOException {
+        if (bitCount < padding) {
+            // We have consumed bits that were not in the stream
             throw new EOFException();
         }
 
-        if (newBitOffset != 0) {
-            // Move byte position back if in the middle of a byte
-            // NOTE: RESETS bit offset!
-            imageInput.seek(imageInput.getStreamPosition() - 1);
+        while (bitCount <= 56) {
+            if (position == limit && !fillBuffer()) {
+                // Pad with zeros, the error is raised if the padding is consumed
+                bitCount += 8;
+                padding += 8;
+                continue;
+            }
+
+            bits |= (buffer[position++] & 0xffL) << bitCount;
+            bitCount += 8;
+        }
+    }
+
+    private boolean fillBuffer() throws IOException {
+        int read = imageInput.read(buffer, 0, BUFFER_SIZE);
+
+        if (read <= 0) {
+            return false;
         }
 
-        bitOffset = newBitOffset;
+        position = 0;
+        limit = read;
 
-        // Shift the bit to be read to the rightmost position
-        return (val >> (7 - bit)) & 0x1;
+        return true;
     }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.webp;
+
+import javax.imageio.stream.ImageOutputStream;
+import java.io.IOException;
+
+/**
+ * LSBBitWriter.
+ * <p>
+ * Writes bits least significant bit first, as used by the VP8L lossless format.
+ * Bits are collected in a 64 bit window, and written to the stream through a
+ * buffer, so that up to 32 bits may be written at a time.
+ * </p>
+ * <p>
+ * NOTE: The writer buffers output, {@link #flush()} must be invoked after
+ * writing the last bits. The last byte is padded with zero bits.
+ * </p>
+ */
+public final class LSBBitWriter {
+    private static final int BUFFER_SIZE = 4096;
+
+    private final ImageOutputStream imageOutput;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    private long bits;     // Bits not yet written, next bit in the least significant position
+    private int bitCount;  // Number of bits in the window
+
+    public LSBBitWriter(final ImageOutputStream imageOutput) {
+        this.imageOutput = imageOutput;
+    }
+
+    /**
+     * Writes the {@code count} least significant bits of {@code value}.
+     *
+     * @param value the bits to write
+     * @param count the number of bits, at most 32
+     * @throws IOException if an I/O exception occurs
+     */
+    public void writeBits(final int value, final int count) throws IOException {
+        bits |= (value & ((1L << count) - 1)) << bitCount;
+        bitCount += count;
+
+        if (bitCount >= 32) {
+            if (position + 4 > BUFFER_SIZE) {
+                flushBuffer();
+            }
+
+            buffer[position++] = (byte) bits;
+            buffer[position++] = (byte) (bits >>> 8);
+            buffer[position++] = (byte) (bits >>> 16);
+            buffer[position++] = (byte) (bits >>> 24);
+
+            bits >>>= 32;
+            bitCount -= 32;
+        }
+    }
+
+    public void writeBit(final int value) throws IOException {
+        writeBits(value, 1);
+    }
+
+    /**
+     * Writes all pending bits to the stream, padding the last byte with zero bits.
+     *
+     * @throws IOException if an I/O exception occurs
+     */
+    public void flush() throws IOException {
+        while (bitCount > 0) {
+            if (position == BUFFER_SIZE) {
+                flushBuffer();
+            }
+
+            buffer[position++] = (byte) bits;
+            bits >>>= 8;
+            bitCount = Math.max(0, bitCount - 8);
+        }
+
+        flushBuffer();
+    }
+
+    private void flushBuffer() throws IOException {
+        imageOutput.write(buffer, 0, position);
+        position = 0;
+    }
+}
@@ -42,9 +42,11 @@ import static com.twelvemonkeys.lang.Validate.notNull;
  */
 final class WebPImageMetadata extends AbstractMetadata {
     private final VP8xChunk header;
+    private final AnimationFrame frame;
 
-    WebPImageMetadata(final VP8xChunk header) {
+    WebPImageMetadata(final VP8xChunk header, final AnimationFrame frame) {
         this.header = notNull(header, "header");
+        this.frame = frame;
     }
 
     @Override
@@ -132,6 +134,25 @@ final class WebPImageMetadata extends AbstractMetadata {
         dimension.appendChild(pixelAspectRatio);
         pixelAspectRatio.setAttribute("value", "1.0");
 
+        if (frame != null) {
+            // Animation frames are positioned on the canvas, same as GIF frames on the logical screen
+            IIOMetadataNode horizontalPixelOffset = new IIOMetadataNode("HorizontalPixelOffset");
+            dimension.appendChild(horizontalPixelOffset);
+            horizontalPixelOffset.setAttribute("value", Integer.toString(frame.x));
+
+            IIOMetadataNode verticalPixelOffset = new IIOMetadataNode("VerticalPixelOffset");
+            dimension.appendChild(verticalPixelOffset);
+            verticalPixelOffset.setAttribute("value", Integer.toString(frame.y));
+
+            IIOMetadataNode horizontalScreenSize = new IIOMetadataNode("HorizontalScreenSize");
+            dimension.appendChild(horizontalScreenSize);
+            horizontalScreenSize.setAttribute("value", Integer.toString(header.width));
+
+            IIOMetadataNode verticalScreenSize = new IIOMetadataNode("VerticalScreenSize");
+            dimension.appendChild(verticalScreenSize);
+            verticalScreenSize.setAttribute("value", Integer.toString(header.height));
+        }
+
         return dimension;
     }
 
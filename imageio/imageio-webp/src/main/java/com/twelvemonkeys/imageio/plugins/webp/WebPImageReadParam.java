@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.webp;
+
+import javax.imageio.ImageReadParam;
+import java.util.concurrent.Executor;
+
+/**
+ * WebPImageReadParam.
+ * <p>
+ * By default, each frame of an animated WebP is read as is, using the size
+ * of the frame, without decoding any other frames. The offset of the frame
+ * and the size of the canvas is available from the standard metadata.
+ * </p>
+ * <p>
+ * In compositing mode, the frame is instead rendered onto the canvas, by
+ * blending and disposing all frames up to and including the frame read,
+ * and the image returned has the size of the canvas.
+ * The reader keeps the canvas between reads, so that reading the frames in
+ * increasing order renders each frame only once. Reading frames out of
+ * order, starts rendering from the closest preceding frame that does not
+ * depend on the previous canvas, rather than from the first frame.
+ * The canvas is initially transparent, and is disposed to transparent, as
+ * the background color of the animation is a hint only.
+ * </p>
+ * <p>
+ * Compositing has no effect for still images.
+ * </p>
+ * <p>
+ * An {@link Executor} may be specified, used for pipelined decoding of lossy (VP8) images,
+ * where the loop filtering and output of each macro block row runs on the executor,
+ * while the next row is decoded by the reading thread.
+ * The executor is not shut down by the reader, its life cycle is the responsibility of the caller.
+ * </p>
+ */
+public final class WebPImageReadParam extends ImageReadParam {
+    private boolean compositing;
+    private Executor executor;
+
+    /**
+     * Returns whether animation frames are composited onto the canvas.
+     *
+     * @return {@code true} if animation frames are composited onto the canvas.
+     */
+    public boolean isCompositing() {
+        return compositing;
+    }
+
+    /**
+     * Sets whether animation frames are composited onto the canvas.
+     *
+     * @param compositing {@code true} if animation frames should be composited onto the canvas.
+     */
+    public void setCompositing(final boolean compositing) {
+        this.compositing = compositing;
+    }
+
+    /**
+     * Returns the executor used for pipelined decoding, or {@code null} if decoding is sequential.
+     *
+     * @return the executor used for pipelined decoding, or {@code null}.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor used for pipelined decoding of lossy images.
+     * A {@code null} value (the default) means images are decoded sequentially in the reading thread.
+     *
+     * @param executor the executor used for pipelined decoding, may be {@code null}.
+     */
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
+    }
+}
@@ -49,15 +49,19 @@ import javax.imageio.ImageReader;
 import javax.imageio.ImageTypeSpecifier;
 import javax.imageio.metadata.IIOMetadata;
 import javax.imageio.spi.ImageReaderSpi;
+import java.awt.Rectangle;
 import java.awt.color.ICC_ColorSpace;
 import java.awt.color.ICC_Profile;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
 import java.awt.image.WritableRaster;
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -68,11 +72,19 @@ final class WebPImageReader extends ImageReaderBase {
 
     final static boolean DEBUG = "true".equalsIgnoreCase(System.getProperty("com.twelvemonkeys.imageio.plugins.webp.debug"));
 
-    private LSBBitReader lsbBitReader;
-
     // Either VP8_, VP8L or VP8X chunk
     private VP8xChunk header;
     private ICC_Profile iccProfile;
+    private int[] colorTable;
+
+    // Animation frames, indexed lazily, reading only the chunk headers
+    private List<AnimationFrame> frames;
+    private long nextChunkOffset;
+    private boolean framesIndexed;
+
+    // Canvas for compositing animation frames, kept between reads
+    private BufferedImage canvas;
+    private int canvasIndex = -1;
 
     WebPImageReader(ImageReaderSpi provider) {
         super(provider);
@@ -82,7 +94,14 @@ final class WebPImageReader extends ImageReaderBase {
     protected void resetMembers() {
         header = null;
         iccProfile = null;
-        lsbBitReader = null;
+        colorTable = null;
+
+        frames = null;
+        nextChunkOffset = 0;
+        framesIndexed = false;
+
+        canvas = null;
+        canvasIndex = -1;
     }
 
     @Override
@@ -96,13 +115,14 @@ final class WebPImageReader extends ImageReaderBase {
 //         catch (IOException e) {
 //             throw new IOError(e);
 //         }
-
-        lsbBitReader = new LSBBitReader(imageInput);
     }
 
     private void readHeader(int imageIndex) throws IOException {
         checkBounds(imageIndex);
+        readHeader();
+    }
 
+    private void readHeader() throws IOException {
         // TODO: Consider just storing the chunks, parse until VP8, VP8L or VP8X chunk
         if (header != null) {
             return;
@@ -134,22 +154,22 @@ final class WebPImageReader extends ImageReaderBase {
         switch (chunk) {
             case WebP.CHUNK_VP8_:
                 //https://tools.ietf.org/html/rfc6386#section-9.1
-                int frameType = lsbBitReader.readBit(); // 0 = key frame, 1 = interframe (not used in WebP)
+                int frameTag = readUInt24();
+                int frameType = frameTag & 0x1; // 0 = key frame, 1 = interframe (not used in WebP)
 
                 if (frameType != 0) {
                     throw new IIOException("Unexpected WebP frame type (expected 0): " + frameType);
                 }
 
-                int versionNumber = (int) lsbBitReader.readBits(3); // 0 - 3 = different profiles (see spec)
-                int showFrame = lsbBitReader.readBit(); // 0 = don't show, 1 = show
+                int versionNumber = (frameTag >> 1) & 0x7; // 0 - 3 = different profiles (see spec)
+                int showFrame = (frameTag >> 4) & 0x1; // 0 = don't show, 1 = show
 
                 if (DEBUG) {
                     System.out.println("versionNumber: " + versionNumber);
                     System.out.println("showFrame: " + showFrame);
                 }
 
-                // 19 bit field containing the size of the first data partition in bytes
-                lsbBitReader.readBits(19);
+                // 19 bit field containing the size of the first data partition in bytes (frameTag >>> 5)
 
                 // StartCode 0, 1, 2
                 imageInput.readUnsignedByte();
@@ -174,17 +194,21 @@ final class WebPImageReader extends ImageReaderBase {
 
                 header.isLossless = true;
 
-                // 14 bit width, 14 bit height, 1 bit alpha, 3 bit version
-                header.width = 1 + (int) lsbBitReader.readBits(14);
-                header.height = 1 + (int) lsbBitReader.readBits(14);
-                header.containsALPH = lsbBitReader.readBit() == 1;
+                // 14 bit width, 14 bit height, 1 bit alpha, 3 bit version (LSB first)
+                int imageSize = imageInput.readInt();
+                header.width = 1 + (imageSize & 0x3fff);
+                header.height = 1 + ((imageSize >> 14) & 0x3fff);
+                header.containsALPH = ((imageSize >> 28) & 0x1) == 1;
 
-                int version = (int) lsbBitReader.readBits(3);
+                int version = imageSize >>> 29;
 
                 if (version != 0) {
                     throw new IIOException(String.format("Unexpected 'VP8L' version, expected 0: %d", version));
                 }
 
+                // Color table, if the image can be read as color indexes
+                colorTable = new VP8LDecoder(imageInput, DEBUG).readColorTable();
+
                 break;
 
             case WebP.CHUNK_VP8X:
@@ -212,8 +236,8 @@ final class WebPImageReader extends ImageReaderBase {
                 }
 
                 // NOTE: Spec refers to this as *Canvas* size, as opposed to *Image* size for the lossless chunk
-                header.width = 1 + (int) lsbBitReader.readBits(24);
-                header.height = 1 + (int) lsbBitReader.readBits(24);
+                header.width = 1 + readUInt24();
+                header.height = 1 + readUInt24();
 
                 if (header.containsICCP) {
                     // ICCP chunk must be first chunk, if present
@@ -244,6 +268,11 @@ final class WebPImageReader extends ImageReaderBase {
         }
     }
 
+    private int readUInt24() throws IOException {
+        // NOTE: Little Endian
+        return imageInput.readUnsignedByte() | imageInput.readUnsignedByte() << 8 | imageInput.readUnsignedByte() << 16;
+    }
+
     static String fourCC(int value) {
         // NOTE: Little Endian
         return new String(
@@ -257,22 +286,119 @@ final class WebPImageReader extends ImageReaderBase {
         );
     }
 
+    private AnimationFrame readFrameHeader(int imageIndex) throws IOException {
+        readHeader(imageIndex);
+
+        if (!header.containsANIM) {
+            return null;
+        }
+
+        indexFrames(imageIndex);
+
+        if (imageIndex >= frames.size()) {
+            throw new IndexOutOfBoundsException("index >= numImages (" + imageIndex + " >= " + frames.size() + ")");
+        }
+
+        return frames.get(imageIndex);
+    }
+
+    private void indexFrames(final int imageIndex) throws IOException {
+        if (frames == null) {
+            frames = new ArrayList<>();
+            nextChunkOffset = header.offset + header.length;
+        }
+
+        // Only the chunk headers are read, the frame data is skipped
+        while (!framesIndexed && frames.size() <= imageIndex) {
+            long length = imageInput.length();
+
+            if (length >= 0 && nextChunkOffset + 8 > length) {
+                framesIndexed = true;
+                break;
+            }
+
+            imageInput.seek(nextChunkOffset);
+
+            int chunk;
+            long chunkLength;
+
+            try {
+                chunk = imageInput.readInt();
+                chunkLength = imageInput.readUnsignedInt();
+            }
+            catch (EOFException e) {
+                framesIndexed = true;
+                break;
+            }
+
+            long chunkStart = imageInput.getStreamPosition();
+
+            if (chunk == WebP.CHUNK_ANMF) {
+                AnimationFrame frame = readAnimationFrame(chunk, chunkLength, chunkStart);
+
+                if (DEBUG) {
+                    System.out.println("frame: " + frame);
+                }
+
+                frames.add(frame);
+            }
+
+            // NOTE: The 'ANIM' chunk contains background color and loop count, neither needed for decoding
+            nextChunkOffset = chunkStart + chunkLength + (chunkLength & 1); // Padded to even length
+        }
+    }
+
+    private AnimationFrame readAnimationFrame(final int chunk, final long chunkLength, final long chunkStart) throws IOException {
+        if (chunkLength < AnimationFrame.HEADER_SIZE) {
+            throw new IIOException("Unexpected 'ANMF' chunk length, expected >= 16: " + chunkLength);
+        }
+
+        AnimationFrame frame = new AnimationFrame(chunk, chunkLength, chunkStart);
+
+        frame.x = 2 * readUInt24();
+        frame.y = 2 * readUInt24();
+        frame.width = 1 + readUInt24();
+        frame.height = 1 + readUInt24();
+        frame.duration = readUInt24();
+
+        // Rsv|B|D
+        int flags = imageInput.readUnsignedByte();
+        frame.blend = (flags & 0x2) == 0;
+        frame.dispose = (flags & 0x1) != 0;
+
+        if (frame.x + frame.width > header.width || frame.y + frame.height > header.height) {
+            throw new IIOException(String.format("'ANMF' frame outside canvas (%dx%d): %s", header.width, header.height, frame));
+        }
+
+        return frame;
+    }
+
     @Override
     public int getNumImages(boolean allowSearch) throws IOException {
-        // TODO: Support ANIM/ANMF
-        return super.getNumImages(allowSearch);
+        assertInput();
+        readHeader();
+
+        if (!header.containsANIM) {
+            return 1;
+        }
+
+        if (allowSearch) {
+            indexFrames(Integer.MAX_VALUE);
+        }
+
+        return framesIndexed ? frames.size() : -1;
     }
 
     @Override
     public int getWidth(int imageIndex) throws IOException {
-        readHeader(imageIndex);
-        return header.width;
+        AnimationFrame frame = readFrameHeader(imageIndex);
+        return frame != null ? frame.width : header.width;
     }
 
     @Override
     public int getHeight(int imageIndex) throws IOException {
-        readHeader(imageIndex);
-        return header.height;
+        AnimationFrame frame = readFrameHeader(imageIndex);
+        return frame != null ? frame.height : header.height;
     }
 
     @Override
@@ -300,11 +426,41 @@ final class WebPImageReader extends ImageReaderBase {
         types.add(rawImageType);
         types.add(ImageTypeSpecifiers.createFromBufferedImageType(header.containsALPH ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB));
 
+        if (colorTable != null) {
+            types.add(createIndexedType(colorTable));
+        }
+
         return types.iterator();
     }
 
+    private static ImageTypeSpecifier createIndexedType(final int[] colorTable) {
+        boolean hasAlpha = false;
+        for (int argb : colorTable) {
+            if (argb >>> 24 != 0xff) {
+                hasAlpha = true;
+                break;
+            }
+        }
+
+        // Same number of bits per pixel as the color indexes in the stream
+        int bits = colorTable.length > 16 ? 8 : colorTable.length > 4 ? 4 : colorTable.length > 2 ? 2 : 1;
+
+        return ImageTypeSpecifiers.createIndexed(colorTable, hasAlpha, -1, bits, DataBuffer.TYPE_BYTE);
+    }
+
+    @Override
+    public ImageReadParam getDefaultReadParam() {
+        return new WebPImageReadParam();
+    }
+
     @Override
     public BufferedImage read(final int imageIndex, final ImageReadParam param) throws IOException {
+        AnimationFrame frame = readFrameHeader(imageIndex);
+
+        if (frame != null && param instanceof WebPImageReadParam && ((WebPImageReadParam) param).isCompositing()) {
+            return readComposited(imageIndex, param);
+        }
+
         int width = getWidth(imageIndex);
         int height = getHeight(imageIndex);
         BufferedImage destination = getDestination(param, getImageTypes(imageIndex), width, height);
@@ -319,121 +475,369 @@ final class WebPImageReader extends ImageReaderBase {
                 break;
 
             case WebP.CHUNK_VP8L:
-                imageInput.seek(header.offset);
-                readVP8Lossless(RasterUtils.asByteRaster(destination.getRaster(), destination.getColorModel()), param);
+                imageInput.seek(header.offset + 5); // Skip signature and image size, already read
+                readVP8Lossless(destination, param, width, height);
 
                 break;
 
             case WebP.CHUNK_VP8X:
-                imageInput.seek(header.offset + header.length);
+                if (frame != null) {
+                    readImageChunks(destination, param, width, height, frame.offset + AnimationFrame.HEADER_SIZE, frame.offset + frame.length);
+                }
+                else {
+                    readImageChunks(destination, param, width, height, header.offset + header.length, imageInput.length());
+                }
 
-                while (imageInput.getStreamPosition() < imageInput.length()) {
-                    int nextChunk = imageInput.readInt();
-                    long chunkLength = imageInput.readUnsignedInt();
-                    long chunkStart = imageInput.getStreamPosition();
+                break;
 
-                    if (DEBUG) {
-                        System.out.printf("chunk: '%s'\n", fourCC(nextChunk));
-                        System.out.println("chunkLength: " + chunkLength);
-                        System.out.println("chunkStart: " + chunkStart);
-                    }
+            default:
+                throw new IIOException("Unknown first chunk for WebP: " + fourCC(header.fourCC));
+        }
 
-                    switch (nextChunk) {
-                        case WebP.CHUNK_ALPH:
-                            int reserved = (int) imageInput.readBits(2);
-                            if (reserved != 0) {
-                                // Spec says SHOULD be 0
-                                throw new IIOException(String.format("Unexpected 'ALPH' chunk reserved value, expected 0: %d", reserved));
-                            }
-
-                            int preProcessing = (int) imageInput.readBits(2);
-                            int filtering = (int) imageInput.readBits(2);
-                            int compression = (int) imageInput.readBits(2);
-
-                            if (DEBUG) {
-                                System.out.println("preProcessing: " + preProcessing);
-                                System.out.println("filtering: " + filtering);
-                                System.out.println("compression: " + compression);
-                            }
-
-                            switch (compression) {
-                                case 0:
-                                    readUncompressedAlpha(destination.getAlphaRaster());
-                                    break;
-                                case 1:
-                                    opaqueAlpha(destination.getAlphaRaster()); // TODO: Remove when correctly implemented!
-                                    readVP8Lossless(destination.getAlphaRaster(), param);
-                                    break;
-                                default:
-                                    processWarningOccurred("Unknown WebP alpha compression: " + compression);
-                                    opaqueAlpha(destination.getAlphaRaster());
-                                    break;
-                            }
+        if (abortRequested()) {
+            processReadAborted();
+        } else {
+            processImageComplete();
+        }
 
-                            break;
+        return destination;
+    }
 
-                        case WebP.CHUNK_VP8_:
-                            readVP8(RasterUtils.asByteRaster(destination.getRaster(), destination.getColorModel())
-                                    .createWritableChild(0, 0, width, height, 0, 0, new int[]{0, 1, 2}), param);
+    private void readImageChunks(final BufferedImage destination, final ImageReadParam param, final int width, final int height,
+                                 final long start, final long end) throws IOException {
+        imageInput.seek(start);
 
-                            break;
+        boolean alphaRead = false;
 
-                        case WebP.CHUNK_VP8L:
-                            readVP8Lossless(RasterUtils.asByteRaster(destination.getRaster(), destination.getColorModel()), param);
+        while (imageInput.getStreamPosition() < end) {
+            int nextChunk = imageInput.readInt();
+            long chunkLength = imageInput.readUnsignedInt();
+            long chunkStart = imageInput.getStreamPosition();
 
-                            break;
+            if (DEBUG) {
+                System.out.printf("chunk: '%s'\n", fourCC(nextChunk));
+                System.out.println("chunkLength: " + chunkLength);
+                System.out.println("chunkStart: " + chunkStart);
+            }
+
+            switch (nextChunk) {
+                case WebP.CHUNK_ALPH:
+                    int reserved = (int) imageInput.readBits(2);
+                    if (reserved != 0) {
+                        // Spec says SHOULD be 0
+                        throw new IIOException(String.format("Unexpected 'ALPH' chunk reserved value, expected 0: %d", reserved));
+                    }
+
+                    int preProcessing = (int) imageInput.readBits(2);
+                    int filtering = (int) imageInput.readBits(2);
+                    int compression = (int) imageInput.readBits(2);
+
+                    if (DEBUG) {
+                        System.out.println("preProcessing: " + preProcessing);
+                        System.out.println("filtering: " + filtering);
+                        System.out.println("compression: " + compression);
+                    }
 
-                        case WebP.CHUNK_ANIM:
-                        case WebP.CHUNK_ANMF:
-                            processWarningOccurred("Ignoring unsupported chunk: " + fourCC(nextChunk));
+                    WritableRaster alphaRaster = destination.getAlphaRaster();
+
+                    if (alphaRaster == null) {
+                        break;
+                    }
+
+                    switch (compression) {
+                        case 0:
+                        case 1:
+                            readAlpha(alphaRaster, param, compression, filtering, width, height);
                             break;
                         default:
-                            processWarningOccurred("Ignoring unexpected chunk: " + fourCC(nextChunk));
+                            processWarningOccurred("Unknown WebP alpha compression: " + compression);
+                            opaqueAlpha(alphaRaster);
                             break;
                     }
 
-                    imageInput.seek(chunkStart + chunkLength + (chunkLength & 1)); // Padded to even length
-                }
+                    alphaRead = true;
+
+                    break;
 
+                case WebP.CHUNK_VP8_:
+                    if (!alphaRead && destination.getAlphaRaster() != null) {
+                        // No 'ALPH' chunk, typical for opaque frames of an animation with alpha
+                        opaqueAlpha(destination.getAlphaRaster());
+                    }
+
+                    readVP8(RasterUtils.asByteRaster(destination.getRaster(), destination.getColorModel())
+                            .createWritableChild(0, 0, destination.getWidth(), destination.getHeight(), 0, 0, new int[]{0, 1, 2}), param);
+
+                    break;
+
+                case WebP.CHUNK_VP8L:
+                    imageInput.seek(chunkStart + 5); // Skip signature and image size, same as canvas or frame size
+                    readVP8Lossless(destination, param, width, height);
+
+                    break;
+
+                default:
+                    processWarningOccurred("Ignoring unexpected chunk: " + fourCC(nextChunk));
+                    break;
+            }
+
+            imageInput.seek(chunkStart + chunkLength + (chunkLength & 1)); // Padded to even length
+        }
+    }
+
+    private BufferedImage readComposited(final int imageIndex, final ImageReadParam param) throws IOException {
+        BufferedImage destination = getDestination(param, getImageTypes(imageIndex), header.width, header.height);
+
+        processImageStarted(imageIndex);
+
+        if (canvas == null) {
+            canvas = new BufferedImage(header.width, header.height, BufferedImage.TYPE_INT_ARGB);
+        }
+
+        int[] canvasData = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+
+        // Continue from the current canvas if possible, otherwise start over from the closest key frame
+        int keyFrame = findKeyFrame(imageIndex);
+
+        if (canvasIndex < keyFrame || canvasIndex > imageIndex) {
+            Arrays.fill(canvasData, 0);
+            canvasIndex = keyFrame - 1;
+        }
+
+        for (int i = canvasIndex + 1; i <= imageIndex; i++) {
+            if (abortRequested()) {
                 break;
+            }
 
-            default:
-                throw new IIOException("Unknown first chunk for WebP: " + fourCC(header.fourCC));
+            int previousIndex = canvasIndex;
+            canvasIndex = -1; // Canvas is undefined, until the frame is completely rendered
+
+            if (previousIndex >= 0 && frames.get(previousIndex).dispose) {
+                AnimationFrame previous = frames.get(previousIndex);
+
+                for (int y = previous.y; y < previous.y + previous.height; y++) {
+                    int offset = y * header.width + previous.x;
+                    Arrays.fill(canvasData, offset, offset + previous.width, 0);
+                }
+            }
+
+            renderFrame(frames.get(i), canvasData);
+            canvasIndex = i;
+        }
+
+        if (canvasIndex == imageIndex) {
+            copyCanvas(canvasData, destination, param);
         }
 
         if (abortRequested()) {
             processReadAborted();
-        } else {
+        }
+        else {
             processImageComplete();
         }
 
         return destination;
     }
 
+    private int findKeyFrame(final int imageIndex) {
+        // A key frame does not depend on the previous canvas, it either replaces the entire canvas,
+        // or the previous canvas is entirely disposed (same as libwebp, not knowing the frame alpha up front)
+        int keyFrame = 0;
+        boolean previousIsKeyFrame = true;
+
+        for (int i = 1; i <= imageIndex; i++) {
+            AnimationFrame previous = frames.get(i - 1);
+            AnimationFrame current = frames.get(i);
+
+            boolean isKeyFrame = !current.blend && current.coversCanvas(header)
+                    || previous.dispose && (previousIsKeyFrame || previous.coversCanvas(header));
+
+            if (isKeyFrame) {
+                keyFrame = i;
+            }
+
+            previousIsKeyFrame = isKeyFrame;
+        }
+
+        return keyFrame;
+    }
+
+    private void renderFrame(final AnimationFrame frame, final int[] canvasData) throws IOException {
+        BufferedImage image = new BufferedImage(frame.width, frame.height, BufferedImage.TYPE_INT_ARGB);
+        readImageChunks(image, null, frame.width, frame.height, frame.offset + AnimationFrame.HEADER_SIZE, frame.offset + frame.length);
+
+        int[] frameData = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        for (int y = 0; y < frame.height; y++) {
+            int src = y * frame.width;
+            int dst = (frame.y + y) * header.width + frame.x;
+
+            if (!frame.blend) {
+                System.arraycopy(frameData, src, canvasData, dst, frame.width);
+                continue;
+            }
+
+            for (int x = 0; x < frame.width; x++) {
+                int argb = frameData[src + x];
+
+                if (argb >>> 24 != 0xff) {
+                    argb = blend(argb, canvasData[dst + x]);
+                }
+
+                canvasData[dst + x] = argb;
+            }
+        }
+    }
+
+    private static int blend(final int src, final int dst) {
+        // Non-premultiplied "src over dst", using the same integer approximation as libwebp
+        int srcAlpha = src >>> 24;
+
+        if (srcAlpha == 0) {
+            return dst;
+        }
+
+        int dstAlpha = ((dst >>> 24) * (256 - srcAlpha)) >> 8;
+        int alpha = srcAlpha + dstAlpha;
+        long scale = (1 << 24) / alpha;
+
+        int r = (int) ((((src >> 16) & 0xff) * srcAlpha + ((dst >> 16) & 0xff) * dstAlpha) * scale >> 24);
+        int g = (int) ((((src >> 8) & 0xff) * srcAlpha + ((dst >> 8) & 0xff) * dstAlpha) * scale >> 24);
+        int b = (int) (((src & 0xff) * srcAlpha + (dst & 0xff) * dstAlpha) * scale >> 24);
+
+        return alpha << 24 | r << 16 | g << 8 | b;
+    }
+
+    private void copyCanvas(final int[] canvasData, final BufferedImage destination, final ImageReadParam param) {
+        Rectangle region = getSourceRegion(param, header.width, header.height);
+        int xSubsampling = param != null ? param.getSourceXSubsampling() : 1;
+        int ySubsampling = param != null ? param.getSourceYSubsampling() : 1;
+
+        WritableRaster raster = destination.getRaster();
+        int bands = raster.getNumBands();
+        int dstWidth = Math.min((region.width + xSubsampling - 1) / xSubsampling, raster.getWidth());
+        int dstHeight = Math.min((region.height + ySubsampling - 1) / ySubsampling, raster.getHeight());
+        int[] row = new int[dstWidth * bands];
+
+        for (int dstY = 0, y = region.y; dstY < dstHeight; dstY++, y += ySubsampling) {
+            for (int x = 0, i = y * header.width + region.x, s = 0; x < dstWidth; x++, i += xSubsampling) {
+                int argb = canvasData[i];
+
+                row[s++] = (argb >> 16) & 0xff;
+                row[s++] = (argb >> 8) & 0xff;
+                row[s++] = argb & 0xff;
+
+                if (bands > 3) {
+                    row[s++] = argb >>> 24;
+                }
+            }
+
+            raster.setPixels(0, dstY, dstWidth, 1, row);
+        }
+    }
+
     private void opaqueAlpha(final WritableRaster alphaRaster) {
         int h = alphaRaster.getHeight();
         int w = alphaRaster.getWidth();
 
+        int[] row = new int[w];
+        Arrays.fill(row, 0xff);
+
         for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                alphaRaster.setSample(x, y, 0, 0xff);
+            alphaRaster.setSamples(0, y, w, 1, 0, row);
+        }
+    }
+
+    private void readAlpha(final WritableRaster alphaRaster, final ImageReadParam param, final int compression,
+                           final int filtering, final int width, final int height) throws IOException {
+        Rectangle region = getSourceRegion(param, width, height);
+        int xSubsampling = param != null ? param.getSourceXSubsampling() : 1;
+        int ySubsampling = param != null ? param.getSourceYSubsampling() : 1;
+
+        // Filtering depends on the rows above, decode all rows up to the end of the region
+        int rows = Math.min(region.y + region.height, region.y + alphaRaster.getHeight() * ySubsampling);
+        byte[] alpha = new byte[width * rows];
+
+        if (compression == 0) {
+            imageInput.readFully(alpha);
+        }
+        else {
+            // Lossless compressed, alpha values are stored in the green channel
+            int[] argb = new VP8LDecoder(imageInput, DEBUG).readARGB(width, height, rows);
+
+            for (int i = 0; i < alpha.length; i++) {
+                alpha[i] = (byte) (argb[i] >> 8);
             }
         }
+
+        unfilterAlpha(alpha, width, rows, filtering);
+
+        int dstWidth = Math.min((region.width + xSubsampling - 1) / xSubsampling, alphaRaster.getWidth());
+        int[] row = new int[dstWidth];
+
+        for (int y = region.y, dstY = 0; y < rows; y += ySubsampling, dstY++) {
+            for (int x = 0, i = y * width + region.x; x < dstWidth; x++, i += xSubsampling) {
+                row[x] = alpha[i] & 0xff;
+            }
+
+            alphaRaster.setSamples(0, dstY, dstWidth, 1, 0, row);
+        }
     }
 
-    private void readUncompressedAlpha(final WritableRaster alphaRaster) throws IOException {
-        // Hardly used in practice, need to find a sample file
-        processWarningOccurred("Uncompressed WebP alpha not implemented");
-        opaqueAlpha(alphaRaster);
+    private static void unfilterAlpha(final byte[] alpha, final int width, final int rows, final int filtering) {
+        // Filtering method: 0 = none, 1 = horizontal, 2 = vertical, 3 = gradient
+        if (filtering == 0) {
+            return;
+        }
+
+        // Top row is always predicted from the left, top-left pixel from 0
+        for (int x = 1; x < width; x++) {
+            alpha[x] += alpha[x - 1];
+        }
+
+        for (int y = 1; y < rows; y++) {
+            int start = y * width;
+
+            // Leftmost pixel is always predicted from the top
+            alpha[start] += alpha[start - width];
+
+            switch (filtering) {
+                case 1:
+                    for (int i = start + 1; i < start + width; i++) {
+                        alpha[i] += alpha[i - 1];
+                    }
+                    break;
+                case 2:
+                    for (int i = start + 1; i < start + width; i++) {
+                        alpha[i] += alpha[i - width];
+                    }
+                    break;
+                default:
+                    for (int i = start + 1; i < start + width; i++) {
+                        int gradient = (alpha[i - 1] & 0xff) + (alpha[i - width] & 0xff) - (alpha[i - width - 1] & 0xff);
+                        alpha[i] += (byte) Math.max(0, Math.min(gradient, 255));
+                    }
+                    break;
+            }
+        }
     }
 
-    private void readVP8Lossless(final WritableRaster raster, final ImageReadParam param) throws IOException {
+    private void readVP8Lossless(final BufferedImage destination, final ImageReadParam param, final int width, final int height) throws IOException {
         VP8LDecoder decoder = new VP8LDecoder(imageInput, DEBUG);
-        decoder.readVP8Lossless(raster, true);
+
+        decoder.setProgressListener(new ProgressListenerBase() {
+            @Override
+            public void imageProgress(ImageReader source, float percentageDone) {
+                processImageProgress(percentageDone);
+            }
+        });
+
+        decoder.readVP8Lossless(destination.getRaster(), destination.getColorModel(), param, width, height);
     }
 
     private void readVP8(final WritableRaster raster, final ImageReadParam param) throws IOException {
         VP8Frame frame = new VP8Frame(imageInput, DEBUG);
+        frame.setExecutor(param instanceof WebPImageReadParam ? ((WebPImageReadParam) param).getExecutor() : null);
 
         frame.setProgressListener(new ProgressListenerBase() {
             @Override
@@ -451,10 +855,10 @@ final class WebPImageReader extends ImageReaderBase {
 
     @Override
     public IIOMetadata getImageMetadata(int imageIndex) throws IOException {
-        readHeader(imageIndex);
+        AnimationFrame frame = readFrameHeader(imageIndex);
         readMeta();
 
-        return new WebPImageMetadata(header);
+        return new WebPImageMetadata(header, frame);
     }
 
     private void readMeta() throws IOException {
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.webp;
+
+import com.twelvemonkeys.imageio.plugins.webp.lossless.VP8LEncoder;
+
+import javax.imageio.ImageWriteParam;
+import java.util.Locale;
+
+/**
+ * WebPImageWriteParam.
+ * <p>
+ * Images are written using lossless compression. The compression quality
+ * controls the effort used to compress the image, a quality of {@code 1.0}
+ * gives the fastest compression, while lower qualities spend more effort,
+ * and typically give smaller output. As the encoder selects its settings
+ * using estimated sizes, a lower quality is not guaranteed to give smaller
+ * output for every image.
+ * When the compression mode is not {@code MODE_EXPLICIT}, a default effort
+ * is used, giving a good balance between speed and size.
+ * </p>
+ */
+public final class WebPImageWriteParam extends ImageWriteParam {
+    // Corresponds to VP8LEncoder.DEFAULT_EFFORT
+    private static final float DEFAULT_QUALITY = 1 - VP8LEncoder.DEFAULT_EFFORT / (float) VP8LEncoder.MAX_EFFORT;
+
+    @SuppressWarnings("unused")
+    public WebPImageWriteParam() {
+        this(null);
+    }
+
+    public WebPImageWriteParam(final Locale locale) {
+        super(locale);
+
+        canWriteCompressed = true;
+        compressionTypes = new String[] {"Lossless"};
+        compressionType = compressionTypes[0];
+        compressionQuality = DEFAULT_QUALITY;
+    }
+
+    @Override
+    public void unsetCompression() {
+        super.unsetCompression();
+
+        // There's only one compression type, keep it
+        compressionType = compressionTypes[0];
+        compressionQuality = DEFAULT_QUALITY;
+    }
+
+    @Override
+    public boolean isCompressionLossless() {
+        super.isCompressionLossless();
+
+        return true;
+    }
+
+    @Override
+    public String[] getCompressionQualityDescriptions() {
+        super.getCompressionQualityDescriptions();
+
+        return new String[] {"Smallest", "Default", "Fastest"};
+    }
+
+    @Override
+    public float[] getCompressionQualityValues() {
+        super.getCompressionQualityValues();
+
+        return new float[] {0.0f, 0.25f, 0.75f, 1.0f};
+    }
+
+    static int getEffort(final ImageWriteParam param) {
+        if (param == null || !param.canWriteCompressed() || param.getCompressionMode() != MODE_EXPLICIT) {
+            return VP8LEncoder.DEFAULT_EFFORT;
+        }
+
+        return Math.round((1 - param.getCompressionQuality()) * VP8LEncoder.MAX_EFFORT);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.webp;
+
+import com.twelvemonkeys.imageio.ImageWriterBase;
+import com.twelvemonkeys.imageio.plugins.webp.lossless.VP8LEncoder;
+import com.twelvemonkeys.lang.Validate;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.spi.ImageWriterSpi;
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+import static com.twelvemonkeys.imageio.plugins.webp.WebPImageWriteParam.getEffort;
+
+/**
+ * WebPImageWriter.
+ * <p>
+ * Writes images as a simple (lossless) WebP file, a single 'VP8L' chunk.
+ * The image is encoded in-process, and written directly to the output stream.
+ * </p>
+ */
+final class WebPImageWriter extends ImageWriterBase {
+    private static final int MAX_SIZE = 1 << 14;
+
+    WebPImageWriter(final ImageWriterSpi provider) {
+        super(provider);
+    }
+
+    @Override
+    public IIOMetadata getDefaultImageMetadata(final ImageTypeSpecifier imageType, final ImageWriteParam param) {
+        Validate.notNull(imageType, "imageType");
+
+        VP8xChunk header = new VP8xChunk(WebP.CHUNK_VP8L, 0, 0);
+        header.isLossless = true;
+        header.containsALPH = imageType.getColorModel().hasAlpha();
+
+        return new WebPImageMetadata(header, null);
+    }
+
+    @Override
+    public IIOMetadata convertImageMetadata(final IIOMetadata inData, final ImageTypeSpecifier imageType, final ImageWriteParam param) {
+        Validate.notNull(inData, "inData");
+        Validate.notNull(imageType, "imageType");
+
+        if (inData instanceof WebPImageMetadata) {
+            return inData;
+        }
+
+        return getDefaultImageMetadata(imageType, param);
+    }
+
+    @Override
+    public void setOutput(final Object output) {
+        super.setOutput(output);
+
+        if (imageOutput != null) {
+            // RIFF native order is Little Endian
+            imageOutput.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    @Override
+    public ImageWriteParam getDefaultWriteParam() {
+        return new WebPImageWriteParam(getLocale());
+    }
+
+    @Override
+    public void write(final IIOMetadata streamMetadata, final IIOImage image, final ImageWriteParam param) throws IOException {
+        assertOutput();
+        Validate.notNull(image, "image");
+
+        if (image.hasRaster()) {
+            throw new UnsupportedOperationException("Raster not supported");
+        }
+
+        RenderedImage renderedImage = image.getRenderedImage();
+        Rectangle region = getSourceRegion(param, renderedImage.getWidth(), renderedImage.getHeight());
+        int xSubsampling = param != null ? param.getSourceXSubsampling() : 1;
+        int ySubsampling = param != null ? param.getSourceYSubsampling() : 1;
+
+        int width = (region.width + xSubsampling - 1) / xSubsampling;
+        int height = (region.height + ySubsampling - 1) / ySubsampling;
+
+        if (width > MAX_SIZE || height > MAX_SIZE) {
+            throw new IIOException(String.format("Image too large for WebP (max %dx%d): %dx%d", MAX_SIZE, MAX_SIZE, width, height));
+        }
+
+        processImageStarted(0);
+
+        int[] pixels = readPixels(renderedImage, region, xSubsampling, ySubsampling, width, height);
+
+        if (abortRequested()) {
+            processWriteAborted();
+            return;
+        }
+
+        // RIFF and chunk sizes are written, once the size of the encoded image is known
+        long start = imageOutput.getStreamPosition();
+
+        imageOutput.writeInt(WebP.RIFF_MAGIC);
+        imageOutput.writeInt(0);
+        imageOutput.writeInt(WebP.WEBP_MAGIC);
+        imageOutput.writeInt(WebP.CHUNK_VP8L);
+        imageOutput.writeInt(0);
+
+        new VP8LEncoder(imageOutput, getEffort(param)).writeVP8Lossless(pixels, width, height);
+
+        long chunkLength = imageOutput.getStreamPosition() - start - 20;
+
+        if ((chunkLength & 1) != 0) {
+            imageOutput.writeByte(0); // Padded to even length
+        }
+
+        long end = imageOutput.getStreamPosition();
+
+        imageOutput.seek(start + 4);
+        imageOutput.writeInt((int) (end - start - 8));
+        imageOutput.seek(start + 16);
+        imageOutput.writeInt((int) chunkLength);
+        imageOutput.seek(end);
+
+        processImageComplete();
+    }
+
+    private static int[] readPixels(final RenderedImage renderedImage, final Rectangle region, final int xSubsampling, final int ySubsampling,
+                                    final int width, final int height) {
+        BufferedImage image = asBufferedImage(renderedImage);
+        ColorModel colorModel = image.getColorModel();
+        Raster raster = image.getRaster();
+
+        // Gray samples are used as is, rather than converted from linear gray to sRGB
+        int transferType = raster.getTransferType();
+        boolean gray = colorModel.getColorSpace().getType() == ColorSpace.TYPE_GRAY && !(colorModel instanceof IndexColorModel)
+                && !colorModel.isAlphaPremultiplied() && (transferType == DataBuffer.TYPE_BYTE || transferType == DataBuffer.TYPE_USHORT);
+        boolean grayAlpha = gray && colorModel.hasAlpha();
+
+        int[] pixels = new int[width * height];
+        int[] row = new int[region.width];
+        int[] alphaRow = grayAlpha ? new int[region.width] : null;
+
+        for (int y = 0; y < height; y++) {
+            int srcY = region.y + y * ySubsampling;
+
+            if (gray) {
+                raster.getSamples(region.x, srcY, region.width, 1, 0, row);
+
+                if (grayAlpha) {
+                    raster.getSamples(region.x, srcY, region.width, 1, raster.getNumBands() - 1, alphaRow);
+                }
+
+                int max = (1 << colorModel.getComponentSize(0)) - 1;
+                int alphaMax = grayAlpha ? (1 << colorModel.getComponentSize(colorModel.getNumComponents() - 1)) - 1 : 0;
+
+                for (int x = 0; x < width; x++) {
+                    int value = (row[x * xSubsampling] * 255 + max / 2) / max;
+                    int alpha = grayAlpha ? (alphaRow[x * xSubsampling] * 255 + alphaMax / 2) / alphaMax : 0xff;
+
+                    pixels[y * width + x] = alpha << 24 | value << 16 | value << 8 | value;
+                }
+            }
+            else {
+                image.getRGB(region.x, srcY, region.width, 1, row, 0, region.width);
+
+                for (int x = 0; x < width; x++) {
+                    pixels[y * width + x] = row[x * xSubsampling];
+                }
+            }
+        }
+
+        return pixels;
+    }
+
+    private static BufferedImage asBufferedImage(final RenderedImage image) {
+        if (image instanceof BufferedImage) {
+            return (BufferedImage) image;
+        }
+
+        ColorModel colorModel = image.getColorModel();
+
+        return new BufferedImage(colorModel, image.copyData(null).createWritableTranslatedChild(0, 0), colorModel.isAlphaPremultiplied(), null);
+    }
+}
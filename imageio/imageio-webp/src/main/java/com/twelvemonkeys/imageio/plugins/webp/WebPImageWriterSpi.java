@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2017, Brooss, Harald Kuhr
+ * Copyright (c) 2026, TwelveMonkeys contributors
  * All rights reserved.
  *
  * Redistribution and use in source and binary forms, with or without
@@ -29,16 +29,39 @@
  * POSSIBILITY OF SUCH DAMAGE.
  */
 
-package com.twelvemonkeys.imageio.plugins.webp.vp8;
+package com.twelvemonkeys.imageio.plugins.webp;
 
-final class Segment {
-	int P0, P1, P2, P3;
-	int Q0, Q1, Q2, Q3;
+import com.twelvemonkeys.imageio.spi.ImageWriterSpiBase;
 
-	public String toString() {
-		return Globals.toHex(P3) + " " + Globals.toHex(P2) + " "
-				+ Globals.toHex(P1) + " " + Globals.toHex(P0) + " "
-				+ Globals.toHex(Q0) + " " + Globals.toHex(Q1) + " "
-				+ Globals.toHex(Q2) + " " + Globals.toHex(Q3);
-	}
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import java.awt.color.ColorSpace;
+import java.util.Locale;
+
+/**
+ * WebPImageWriterSpi
+ */
+public final class WebPImageWriterSpi extends ImageWriterSpiBase {
+    @SuppressWarnings("WeakerAccess")
+    public WebPImageWriterSpi() {
+        super(new WebPProviderInfo());
+    }
+
+    @Override
+    public boolean canEncodeImage(final ImageTypeSpecifier type) {
+        // Pixels are converted to (s)RGB, with optional alpha
+        int colorSpaceType = type.getColorModel().getColorSpace().getType();
+
+        return colorSpaceType == ColorSpace.TYPE_RGB || colorSpaceType == ColorSpace.TYPE_GRAY;
+    }
+
+    @Override
+    public ImageWriter createWriterInstance(final Object extension) {
+        return new WebPImageWriter(this);
+    }
+
+    @Override
+    public String getDescription(final Locale locale) {
+        return "Google WebP File Format (WebP) Writer";
+    }
 }
@@ -47,8 +47,8 @@ final class WebPProviderInfo extends ReaderWriterProviderInfo {
                 },
                 "com.twelvemonkeys.imageio.plugins.webp.WebPImageReader",
                 new String[] {"com.twelvemonkeys.imageio.plugins.webp.WebPImageReaderSpi"},
-                null,
-                null,
+                "com.twelvemonkeys.imageio.plugins.webp.WebPImageWriter",
+                new String[] {"com.twelvemonkeys.imageio.plugins.webp.WebPImageWriterSpi"},
                 false, null, null, null, null,
                 true, null, null, null, null
 
@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.webp.lossless;
+
+import com.twelvemonkeys.imageio.plugins.webp.LSBBitWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * A canonical prefix code, built from symbol frequencies, used for encoding.
+ * <p>
+ * Code lengths are limited by repeatedly flattening the frequencies, until the tree is shallow enough.
+ * Codes are stored bit reversed, as the first bit of a code is written as the least significant bit.
+ * A code with a single symbol uses no bits, same as when decoding.
+ * </p>
+ */
+final class HuffmanCode {
+    static final int MAX_CODE_LENGTH = 15;
+
+    private static final int NUM_CODE_LENGTH_CODES = 19;
+    private static final int MAX_CODE_LENGTH_CODE_LENGTH = 7;
+
+    // Same order as when decoding
+    private static final int[] CODE_LENGTH_CODE_ORDER = {17, 18, 0, 1, 2, 3, 4, 5, 16, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15};
+
+    // Extra bits of the code length codes, repeat previous (16) or repeat zero (17 and 18)
+    private static final int[] EXTRA_BITS = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 3, 7};
+
+    private final int numSymbols;
+    private final int[] lengths;
+    private final int[] codes;
+    private final int usedSymbols;
+    private final int firstSymbol;  // The first two used symbols, 0 and -1 if unused
+    private final int secondSymbol;
+
+    // Normal code, computed when needed
+    private int[] tokens;
+    private int[] extras;
+    private int numTokens;
+    private HuffmanCode codeLengthCode;
+    private int numCodeLengthCodes;
+
+    /**
+     * Creates a code for the symbols of the histogram.
+     *
+     * @param histogram the symbol frequencies
+     * @param numSymbols the number of symbols in the alphabet
+     * @param maxLength the maximum code length
+     */
+    HuffmanCode(final int[] histogram, final int numSymbols, final int maxLength) {
+        this.numSymbols = numSymbols;
+        this.lengths = new int[numSymbols];
+        this.codes = new int[numSymbols];
+
+        int used = 0;
+        int first = -1;
+        int second = -1;
+
+        for (int symbol = 0; symbol < numSymbols; symbol++) {
+            if (histogram[symbol] > 0) {
+                if (first < 0) {
+                    first = symbol;
+                }
+                else if (second < 0) {
+                    second = symbol;
+                }
+
+                used++;
+            }
+        }
+
+        usedSymbols = used;
+        firstSymbol = max(first, 0);
+        secondSymbol = second;
+
+        if (used == 1) {
+            for (int symbol = 0; symbol < numSymbols; symbol++) {
+                if (histogram[symbol] > 0) {
+                    lengths[symbol] = 1;
+                }
+            }
+        }
+        else if (used > 1) {
+            // Flatten the frequencies until the code lengths are within limits
+            for (int minCount = 1; buildLengths(histogram, minCount, used) > maxLength; minCount <<= 1) {
+                Arrays.fill(lengths, 0);
+            }
+
+            assignCodes();
+        }
+    }
+
+    /**
+     * Returns the size of the code, as written by {@link #writeCode(LSBBitWriter)}.
+     *
+     * @return the size of the code in bits
+     */
+    int codeSize() {
+        if (isSimpleCode()) {
+            return 3 + (firstSymbol < 2 ? 1 : 8) + (usedSymbols == 2 ? 8 : 0);
+        }
+
+        tokenizeCode();
+
+        int size = 1 + 4 + 3 * numCodeLengthCodes + 1;
+
+        for (int i = 0; i < numTokens; i++) {
+            size += codeLengthCode.symbolSize(tokens[i]) + EXTRA_BITS[tokens[i]];
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns the size of the symbols of the histogram, when written using this code.
+     *
+     * @param histogram the symbol frequencies
+     * @return the size of the symbols in bits
+     */
+    long symbolsSize(final int[] histogram) {
+        long size = 0;
+
+        if (usedSymbols > 1) {
+            for (int symbol = 0; symbol < numSymbols; symbol++) {
+                size += (long) histogram[symbol] * lengths[symbol];
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Writes the code, as the code lengths of the symbols.
+     *
+     * @param writer the bit writer
+     * @throws IOException if an I/O exception occurs
+     */
+    void writeCode(final LSBBitWriter writer) throws IOException {
+        if (isSimpleCode()) {
+            // Simple code, one or two 8 bit symbols (or no symbols at all)
+            writer.writeBit(1);
+            writer.writeBit(usedSymbols == 2 ? 1 : 0);
+
+            if (firstSymbol < 2) {
+                writer.writeBit(0);
+                writer.writeBits(firstSymbol, 1);
+            }
+            else {
+                writer.writeBit(1);
+                writer.writeBits(firstSymbol, 8);
+            }
+
+            if (usedSymbols == 2) {
+                writer.writeBits(secondSymbol, 8);
+            }
+
+            return;
+        }
+
+        // Normal code, code lengths are themselves prefix coded, with run lengths
+        tokenizeCode();
+
+        writer.writeBit(0);
+        writer.writeBits(numCodeLengthCodes - 4, 4);
+
+        for (int i = 0; i < numCodeLengthCodes; i++) {
+            writer.writeBits(codeLengthCode.lengths[CODE_LENGTH_CODE_ORDER[i]], 3);
+        }
+
+        writer.writeBit(0); // Code lengths for all symbols, no max_symbol
+
+        for (int i = 0; i < numTokens; i++) {
+            int token = tokens[i];
+            codeLengthCode.writeSymbol(writer, token);
+
+            if (EXTRA_BITS[token] > 0) {
+                writer.writeBits(extras[i], EXTRA_BITS[token]);
+            }
+        }
+    }
+
+    private boolean isSimpleCode() {
+        return usedSymbols <= 2 && firstSymbol < 256 && secondSymbol < 256;
+    }
+
+    // Computes the tokens of a normal code, and the code used for the tokens
+    private void tokenizeCode() {
+        if (tokens != null) {
+            return;
+        }
+
+        tokens = new int[numSymbols];
+        extras = new int[numSymbols];
+        numTokens = tokenizeLengths(tokens, extras);
+
+        int[] histogram = new int[NUM_CODE_LENGTH_CODES];
+        for (int i = 0; i < numTokens; i++) {
+            histogram[tokens[i]]++;
+        }
+
+        codeLengthCode = new HuffmanCode(histogram, NUM_CODE_LENGTH_CODES, MAX_CODE_LENGTH_CODE_LENGTH);
+
+        numCodeLengthCodes = NUM_CODE_LENGTH_CODES;
+        while (numCodeLengthCodes > 4 && codeLengthCode.lengths[CODE_LENGTH_CODE_ORDER[numCodeLengthCodes - 1]] == 0) {
+            numCodeLengthCodes--;
+        }
+    }
+
+    private int symbolSize(final int symbol) {
+        return usedSymbols > 1 ? lengths[symbol] : 0;
+    }
+
+    void writeSymbol(final LSBBitWriter writer, final int symbol) throws IOException {
+        if (usedSymbols > 1) {
+            writer.writeBits(codes[symbol], lengths[symbol]);
+        }
+    }
+
+    // Code lengths as literal lengths 0-15, repeat previous non-zero length (16), or repeat zero (17 and 18)
+    private int tokenizeLengths(final int[] tokens, final int[] extras) {
+        int count = 0;
+        int previous = 8; // Initial previous non-zero length, same as when decoding
+
+        for (int i = 0; i < numSymbols; ) {
+            int length = lengths[i];
+            int run = 1;
+
+            while (i + run < numSymbols && lengths[i + run] == length) {
+                run++;
+            }
+
+            i += run;
+
+            if (length == 0) {
+                while (run > 0) {
+                    if (run >= 11) {
+                        int repeat = min(run, 138);
+                        tokens[count] = 18;
+                        extras[count++] = repeat - 11;
+                        run -= repeat;
+                    }
+                    else if (run >= 3) {
+                        tokens[count] = 17;
+                        extras[count++] = run - 3;
+                        run = 0;
+                    }
+                    else {
+                        tokens[count++] = 0;
+                        run--;
+                    }
+                }
+            }
+            else {
+                if (length != previous) {
+                    tokens[count++] = length;
+                    previous = length;
+                    run--;
+                }
+
+                while (run > 0) {
+                    if (run >= 3) {
+                        int repeat = min(run, 6);
+                        tokens[count] = 16;
+                        extras[count++] = repeat - 3;
+                        run -= repeat;
+                    }
+                    else {
+                        tokens[count++] = length;
+                        run--;
+                    }
+                }
+            }
+        }
+
+        return count;
+    }
+
+    // Builds a Huffman tree, using the sorted leaves and a queue of internal nodes, and returns the max depth
+    private int buildLengths(final int[] histogram, final int minCount, final int used) {
+        // Leaves sorted by weight, then symbol
+        long[] leaves = new long[used];
+        for (int symbol = 0, i = 0; symbol < numSymbols; symbol++) {
+            if (histogram[symbol] > 0) {
+                leaves[i++] = (long) max(histogram[symbol], minCount) << 12 | symbol;
+            }
+        }
+
+        Arrays.sort(leaves);
+
+        int numNodes = 2 * used - 1;
+        long[] weights = new long[numNodes];
+        int[] parents = new int[numNodes];
+
+        for (int i = 0; i < used; i++) {
+            weights[i] = leaves[i] >>> 12;
+        }
+
+        // Internal nodes are created in order of increasing weight
+        int leaf = 0;
+        int node = used;
+
+        for (int next = used; next < numNodes; next++) {
+            for (int child = 0; child < 2; child++) {
+                int smallest;
+
+                if (leaf < used && (node >= next || weights[leaf] <= weights[node])) {
+                    smallest = leaf++;
+                }
+                else {
+                    smallest = node++;
+                }
+
+                weights[next] += weights[smallest];
+                parents[smallest] = next;
+            }
+        }
+
+        // Depths, from the root down, parents are always created after their children
+        int[] depths = new int[numNodes];
+        int maxDepth = 0;
+
+        for (int i = numNodes - 2; i >= 0; i--) {
+            depths[i] = depths[parents[i]] + 1;
+        }
+
+        for (int i = 0; i < used; i++) {
+            lengths[(int) (leaves[i] & 0xfff)] = depths[i];
+            maxDepth = max(maxDepth, depths[i]);
+        }
+
+        return maxDepth;
+    }
+
+    // Canonical codes, ordered by length, then symbol, same as when decoding
+    private void assignCodes() {
+        int[] count = new int[MAX_CODE_LENGTH + 1];
+        for (int length : lengths) {
+            count[length]++;
+        }
+
+        count[0] = 0;
+
+        int[] next = new int[MAX_CODE_LENGTH + 1];
+        for (int length = 1, code = 0; length <= MAX_CODE_LENGTH; length++) {
+            code = (code + count[length - 1]) << 1;
+            next[length] = code;
+        }
+
+        for (int symbol = 0; symbol < numSymbols; symbol++) {
+            int length = lengths[symbol];
+
+            if (length > 0) {
+                codes[symbol] = Integer.reverse(next[length]++) >>> (32 - length);
+            }
+        }
+    }
+}
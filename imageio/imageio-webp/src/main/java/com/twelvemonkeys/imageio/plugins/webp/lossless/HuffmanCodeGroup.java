@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.webp.lossless;
+
+/**
+ * The five prefix codes used to decode the pixels of one group.
+ */
+final class HuffmanCodeGroup {
+    final HuffmanTable green;    // Green, backward reference length or color cache key
+    final HuffmanTable red;
+    final HuffmanTable blue;
+    final HuffmanTable alpha;
+    final HuffmanTable distance;
+
+    // If red, blue and alpha all have a single symbol, literals are decoded using the green code only
+    final boolean isTrivialLiteral;
+    final int literalARB;
+
+    HuffmanCodeGroup(final HuffmanTable green, final HuffmanTable red, final HuffmanTable blue,
+                     final HuffmanTable alpha, final HuffmanTable distance) {
+        this.green = green;
+        this.red = red;
+        this.blue = blue;
+        this.alpha = alpha;
+        this.distance = distance;
+
+        int r = red.singleSymbol();
+        int b = blue.singleSymbol();
+        int a = alpha.singleSymbol();
+
+        isTrivialLiteral = r >= 0 && b >= 0 && a >= 0;
+        literalARB = isTrivialLiteral ? a << 24 | r << 16 | b : 0;
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.webp.lossless;
+
+import com.twelvemonkeys.imageio.plugins.webp.LSBBitReader;
+
+import javax.imageio.IIOException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A canonical prefix code, resolved through a two-level lookup table.
+ * <p>
+ * Each table entry is packed as {@code (bits << 16) | value}.
+ * The root table is indexed by the next {@code rootBits} bits of the stream.
+ * Codes longer than {@code rootBits} have a root entry, where {@code bits} is the root bits plus the size of
+ * the second level table, and {@code value} is the offset of the second level table, relative to the entry.
+ * The second level table is indexed by the following bits, and its entries hold the remaining code length.
+ * </p>
+ */
+final class HuffmanTable {
+    static final int ROOT_BITS = 8;
+    static final int CODE_LENGTHS_ROOT_BITS = 7;
+
+    private static final int MAX_CODE_LENGTH = 15;
+
+    /** Size of a work buffer large enough to build any table with at most {@code ROOT_BITS} root bits. */
+    static final int WORK_SIZE = (1 << ROOT_BITS) + (1 << MAX_CODE_LENGTH);
+
+    private final int[] table;
+    private final int rootBits;
+    private final int rootMask;
+
+    /**
+     * Creates a table from the code lengths of the symbols.
+     *
+     * @param codeLengths the code lengths, {@code 0} for unused symbols
+     * @param numSymbols the number of symbols in the alphabet
+     * @param rootBits the number of bits in the root table, at most {@code ROOT_BITS}
+     * @param work a work buffer of at least {@code WORK_SIZE} entries, may be shared between tables
+     * @throws IIOException if the code lengths does not describe a complete prefix code
+     */
+    HuffmanTable(final int[] codeLengths, final int numSymbols, final int rootBits, final int[] work) throws IIOException {
+        this.rootBits = rootBits;
+        this.rootMask = (1 << rootBits) - 1;
+        this.table = buildTable(codeLengths, numSymbols, rootBits, work);
+    }
+
+    /**
+     * Reads the next symbol from the stream.
+     *
+     * @param reader the bit reader
+     * @return the decoded symbol
+     * @throws IOException if an I/O exception occurs
+     */
+    int readSymbol(final LSBBitReader reader) throws IOException {
+        int value = reader.peekBits(MAX_CODE_LENGTH);
+        int index = value & rootMask;
+        int entry = table[index];
+        int secondBits = (entry >>> 16) - rootBits;
+
+        if (secondBits > 0) {
+            reader.skipBits(rootBits);
+            entry = table[index + (entry & 0xffff) + ((value >>> rootBits) & ((1 << secondBits) - 1))];
+        }
+
+        reader.skipBits(entry >>> 16);
+
+        return entry & 0xffff;
+    }
+
+    /**
+     * Returns the symbol of a code with only one symbol, which requires no bits to decode.
+     *
+     * @return the only symbol, or {@code -1} if the code has more than one symbol
+     */
+    int singleSymbol() {
+        int entry = table[0];
+        return entry >>> 16 == 0 ? entry & 0xffff : -1;
+    }
+
+    private static int[] buildTable(final int[] codeLengths, final int numSymbols, final int rootBits, final int[] table) throws IIOException {
+        // Count code lengths, and sort the symbols by code length, then symbol value
+        int[] count = new int[MAX_CODE_LENGTH + 1];
+
+        for (int symbol = 0; symbol < numSymbols; symbol++) {
+            if (codeLengths[symbol] > MAX_CODE_LENGTH) {
+                throw new IIOException("Corrupt WebP stream, invalid code length: " + codeLengths[symbol]);
+            }
+
+            count[codeLengths[symbol]]++;
+        }
+
+        if (count[0] == numSymbols) {
+            throw new IIOException("Corrupt WebP stream, prefix code without symbols");
+        }
+
+        int[] offset = new int[MAX_CODE_LENGTH + 1];
+        for (int len = 1; len < MAX_CODE_LENGTH; len++) {
+            if (count[len] > 1 << len) {
+                throw new IIOException("Corrupt WebP stream, invalid prefix code");
+            }
+
+            offset[len + 1] = offset[len] + count[len];
+        }
+
+        int[] sorted = new int[numSymbols];
+        for (int symbol = 0; symbol < numSymbols; symbol++) {
+            int len = codeLengths[symbol];
+
+            if (len > 0) {
+                sorted[offset[len]++] = symbol;
+            }
+        }
+
+        int rootSize = 1 << rootBits;
+
+        // Special case, a single symbol uses no bits
+        if (offset[MAX_CODE_LENGTH] == 1) {
+            int[] single = new int[rootSize];
+            Arrays.fill(single, sorted[0]);
+
+            return single;
+        }
+
+        int totalSize = rootSize;
+
+        int key = 0;
+        int symbol = 0;
+        int numNodes = 1;
+        int numOpen = 1;
+
+        // Root table
+        for (int len = 1, step = 2; len <= rootBits; len++, step <<= 1) {
+            numOpen <<= 1;
+            numNodes += numOpen;
+            numOpen -= count[len];
+
+            if (numOpen < 0) {
+                throw new IIOException("Corrupt WebP stream, invalid prefix code");
+            }
+
+            for (; count[len] > 0; count[len]--) {
+                replicate(table, key, step, rootSize, len << 16 | sorted[symbol++]);
+                key = nextKey(key, len);
+            }
+        }
+
+        // Second level tables, and their entries in the root table
+        int tableStart = 0;
+        int tableSize = rootSize;
+        int low = -1;
+
+        for (int len = rootBits + 1, step = 2; len <= MAX_CODE_LENGTH; len++, step <<= 1) {
+            numOpen <<= 1;
+            numNodes += numOpen;
+            numOpen -= count[len];
+
+            if (numOpen < 0) {
+                throw new IIOException("Corrupt WebP stream, invalid prefix code");
+            }
+
+            for (; count[len] > 0; count[len]--) {
+                if ((key & (rootSize - 1)) != low) {
+                    tableStart += tableSize;
+                    int tableBits = nextTableBits(count, len, rootBits);
+                    tableSize = 1 << tableBits;
+                    totalSize += tableSize;
+                    low = key & (rootSize - 1);
+                    table[low] = (tableBits + rootBits) << 16 | (tableStart - low);
+                }
+
+                replicate(table, tableStart + (key >> rootBits), step, tableSize, (len - rootBits) << 16 | sorted[symbol++]);
+                key = nextKey(key, len);
+            }
+        }
+
+        // All codes must be used
+        if (numNodes != 2 * offset[MAX_CODE_LENGTH] - 1) {
+            throw new IIOException("Corrupt WebP stream, incomplete prefix code");
+        }
+
+        return Arrays.copyOf(table, totalSize);
+    }
+
+    // Stores entry in table[offset + i * step], for all i such that i * step < end
+    private static void replicate(final int[] table, final int offset, final int step, int end, final int entry) {
+        do {
+            end -= step;
+            table[offset + end] = entry;
+        }
+        while (end > 0);
+    }
+
+    // Returns the bit reversed increment of the len bit key
+    private static int nextKey(final int key, final int len) {
+        int step = 1 << (len - 1);
+
+        while ((key & step) != 0) {
+            step >>= 1;
+        }
+
+        return step != 0 ? (key & (step - 1)) + step : key;
+    }
+
+    // Returns the number of bits needed for the second level table, for the remaining codes starting at len
+    private static int nextTableBits(final int[] count, int len, final int rootBits) {
+        int left = 1 << (len - rootBits);
+
+        while (len < MAX_CODE_LENGTH) {
+            left -= count[len];
+
+            if (left <= 0) {
+                break;
+            }
+
+            len++;
+            left <<= 1;
+        }
+
+        return len - rootBits;
+    }
+}
@@ -38,18 +38,14 @@ package com.twelvemonkeys.imageio.plugins.webp.lossless;
  */
 final class Transform {
     final int type;
-    final Object data;
+    final int bits;   // Block size bits for predictor and color transforms, pixel packing bits for color indexing
+    final int xSize;  // Width of the transformed image (before packing for color indexing)
+    final int[] data; // Sub-image for predictor and color transforms, color table for color indexing
 
-    Transform(final int type, final Object data) {
+    Transform(final int type, final int bits, final int xSize, final int[] data) {
         this.type = type;
+        this.bits = bits;
+        this.xSize = xSize;
         this.data = data;
     }
-
-    byte[] getData() {
-        return (byte[]) data;
-    }
-
-    int[] getColorMap() {
-        return (int[]) data;
-    }
 }
@@ -34,10 +34,14 @@ package com.twelvemonkeys.imageio.plugins.webp.lossless;
 import com.twelvemonkeys.imageio.plugins.webp.LSBBitReader;
 
 import javax.imageio.IIOException;
+import javax.imageio.ImageReadParam;
+import javax.imageio.event.IIOReadProgressListener;
 import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
 import java.awt.image.*;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static com.twelvemonkeys.imageio.plugins.webp.RasterUtils.asByteRaster;
@@ -45,186 +49,790 @@ import static java.lang.Math.*;
 
 /**
  * VP8LDecoder.
+ * <p>
+ * Decodes the entropy coded image into an {@code int[]} ARGB buffer, and applies the inverse transforms in place.
+ * Pixels are written directly to {@code DataBufferInt} rasters with ARGB or RGB masks,
+ * and as color indexes when the destination has an {@code IndexColorModel}.
+ * </p>
  *
  * @author <a href="mailto:harald.kuhr@gmail.com">Harald Kuhr</a>
  */
 public final class VP8LDecoder {
+    private static final int NUM_LITERAL_CODES = 256;
+    private static final int NUM_LENGTH_CODES = 24;
+    private static final int NUM_DISTANCE_CODES = 40;
+    private static final int NUM_CODE_LENGTH_CODES = 19;
+    private static final int MAX_COLOR_CACHE_BITS = 11;
+    private static final int MAX_ALPHABET_SIZE = NUM_LITERAL_CODES + NUM_LENGTH_CODES + (1 << MAX_COLOR_CACHE_BITS);
+
+    private static final int[] CODE_LENGTH_CODE_ORDER = {17, 18, 0, 1, 2, 3, 4, 5, 16, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15};
+
+    // Code length codes 16, 17 and 18: repeat previous, repeat zero, repeat zero (long)
+    private static final int CODE_LENGTH_LITERALS = 16;
+    private static final int CODE_LENGTH_REPEAT_CODE = 16;
+    private static final int[] CODE_LENGTH_EXTRA_BITS = {2, 3, 7};
+    private static final int[] CODE_LENGTH_REPEAT_OFFSETS = {3, 3, 11};
+
+    // Distance codes 1-120 are neighbouring pixels, packed as (yOffset << 4) | (8 - xOffset)
+    static final int[] CODE_TO_PLANE = {
+            0x18, 0x07, 0x17, 0x19, 0x28, 0x06, 0x27, 0x29, 0x16, 0x1a,
+            0x26, 0x2a, 0x38, 0x05, 0x37, 0x39, 0x15, 0x1b, 0x36, 0x3a,
+            0x25, 0x2b, 0x48, 0x04, 0x47, 0x49, 0x14, 0x1c, 0x35, 0x3b,
+            0x46, 0x4a, 0x24, 0x2c, 0x58, 0x45, 0x4b, 0x34, 0x3c, 0x03,
+            0x57, 0x59, 0x13, 0x1d, 0x56, 0x5a, 0x23, 0x2d, 0x44, 0x4c,
+            0x55, 0x5b, 0x33, 0x3d, 0x68, 0x02, 0x67, 0x69, 0x12, 0x1e,
+            0x66, 0x6a, 0x22, 0x2e, 0x54, 0x5c, 0x43, 0x4d, 0x65, 0x6b,
+            0x32, 0x3e, 0x78, 0x01, 0x77, 0x79, 0x53, 0x5d, 0x11, 0x1f,
+            0x64, 0x6c, 0x42, 0x4e, 0x76, 0x7a, 0x21, 0x2f, 0x75, 0x7b,
+            0x31, 0x3f, 0x63, 0x6d, 0x52, 0x5e, 0x00, 0x74, 0x7c, 0x41,
+            0x4f, 0x10, 0x20, 0x62, 0x6e, 0x30, 0x73, 0x7d, 0x51, 0x5f,
+            0x40, 0x72, 0x7e, 0x61, 0x6f, 0x50, 0x71, 0x7f, 0x60, 0x70
+    };
+
+    // Rows between progress updates
+    private static final int PROGRESS_ROWS = 16;
+
     private final ImageInputStream imageInput;
-    private final LSBBitReader lsbBitReader;
+    private final boolean debug;
+    private LSBBitReader lsbBitReader;
+
+    private IIOReadProgressListener listener = null;
 
     private final List<Transform> transforms = new ArrayList<>();
-    private ColorCache colorCache;
+
+    // Work buffers, shared by all prefix codes
+    private final int[] codeLengths = new int[MAX_ALPHABET_SIZE];
+    private final int[] codeLengthCodeLengths = new int[NUM_CODE_LENGTH_CODES];
+    private int[] huffmanWork;
 
     public VP8LDecoder(final ImageInputStream imageInput, final boolean debug) {
         this.imageInput = imageInput;
-        lsbBitReader = new LSBBitReader(imageInput);
+        this.debug = debug;
     }
 
-    public void readVP8Lossless(final WritableRaster raster, final boolean topLevel) throws IOException {
-        //https://github.com/webmproject/libwebp/blob/666bd6c65483a512fe4c2eb63fbc198b6fb4fae4/src/dec/vp8l_dec.c#L1114
+    public void setProgressListener(final IIOReadProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Decodes a VP8L image stream into the raster.
+     * The stream must be positioned after the VP8L header (signature and image size).
+     *
+     * @param raster the destination raster
+     * @param colorModel the color model of the destination, if it is an {@code IndexColorModel},
+     *                   color indexes are written instead of ARGB values
+     * @param param the read param, may be {@code null}
+     * @param width the width of the image
+     * @param height the height of the image
+     * @throws IOException if an I/O exception occurs, or the stream is corrupt
+     */
+    public void readVP8Lossless(final WritableRaster raster, final ColorModel colorModel, final ImageReadParam param,
+                                final int width, final int height) throws IOException {
+        Rectangle region = param != null && param.getSourceRegion() != null ? param.getSourceRegion() : raster.getBounds();
+        region = region.intersection(new Rectangle(0, 0, width, height));
+        int xSubsampling = param != null ? param.getSourceXSubsampling() : 1;
+        int ySubsampling = param != null ? param.getSourceYSubsampling() : 1;
+
+        // We might be copying into a smaller raster
+        int regionEnd = min(region.y + region.height, region.y + raster.getHeight() * ySubsampling);
+
+        if (region.isEmpty() || regionEnd <= region.y) {
+            return;
+        }
+
+        boolean indexed = colorModel instanceof IndexColorModel;
+        int[] pixels = decode(width, height, regionEnd, indexed);
 
-        int xSize = raster.getWidth();
-        int ySize = raster.getHeight();
+        int dstWidth = min((region.width + xSubsampling - 1) / xSubsampling, raster.getWidth());
+
+        if (indexed) {
+            copyIndexes(pixels, width, raster, region, regionEnd, xSubsampling, ySubsampling, dstWidth);
+        }
+        else if (isPackedRGB(raster, colorModel)) {
+            copyPacked(pixels, width, raster, region, regionEnd, xSubsampling, ySubsampling, dstWidth);
+        }
+        else {
+            copyInterleaved(pixels, width, asByteRaster(raster, colorModel), region, regionEnd, xSubsampling, ySubsampling, dstWidth);
+        }
+    }
+
+    /**
+     * Decodes a VP8L image stream into an ARGB buffer.
+     * The stream must be positioned at the start of the image stream, after any header.
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param rows the number of rows to decode, starting at the top of the image
+     * @return a buffer of at least {@code width * rows} ARGB pixels, in row order
+     * @throws IOException if an I/O exception occurs, or the stream is corrupt
+     */
+    public int[] readARGB(final int width, final int height, final int rows) throws IOException {
+        return decode(width, height, rows, false);
+    }
+
+    /**
+     * Reads the color table of a VP8L image stream, if the image is color indexed.
+     * The stream must be positioned after the VP8L header (signature and image size).
+     * The color table is only returned if decoding the rest of the stream yields color indexes.
+     *
+     * @return the color table, or {@code null} if the image is not color indexed
+     * @throws IOException if an I/O exception occurs, or the stream is corrupt
+     */
+    public int[] readColorTable() throws IOException {
+        lsbBitReader = new LSBBitReader(imageInput);
+
+        if (lsbBitReader.readBit() == 1 && lsbBitReader.readBits(2) == TransformType.COLOR_INDEXING_TRANSFORM) {
+            int colorTableSize = (int) lsbBitReader.readBits(8) + 1;
+            return Arrays.copyOf(readColorTable(colorTableSize), colorTableSize);
+        }
+
+        return null;
+    }
+
+    private int[] decode(final int width, final int height, final int rows, final boolean indexed) throws IOException {
+        lsbBitReader = new LSBBitReader(imageInput);
+        transforms.clear();
 
         // Read transforms
-        while (topLevel && lsbBitReader.readBit() == 1) {
-            xSize = readTransform(xSize, ySize);
+        int xSize = width;
+        int transformTypes = 0;
+
+        while (lsbBitReader.readBit() == 1) {
+            int transformType = (int) lsbBitReader.readBits(2);
+
+            // Each transform type can only be present once in the stream
+            if ((transformTypes & (1 << transformType)) != 0) {
+                throw new IIOException("Corrupt WebP stream, duplicate transform: " + transformType);
+            }
+
+            transformTypes |= 1 << transformType;
+            xSize = readTransform(transformType, xSize, height);
+        }
+
+        if (indexed && (transforms.isEmpty() || transforms.get(0).type != TransformType.COLOR_INDEXING_TRANSFORM)) {
+            throw new IIOException("WebP image is not color indexed");
         }
 
+        // Buffer is large enough to expand color indexes in place
+        int[] pixels = new int[width * height];
+        readImageData(pixels, xSize, height, rows, true);
+
+        if (debug) {
+            System.err.println("transforms: " + transforms.size());
+        }
+
+        // Apply inverse transforms in reverse order
+        for (int i = transforms.size() - 1; i >= 0; i--) {
+            Transform transform = transforms.get(i);
+
+            switch (transform.type) {
+                case TransformType.PREDICTOR_TRANSFORM:
+                    inversePredictor(pixels, transform.xSize, rows, transform.bits, transform.data);
+                    break;
+                case TransformType.COLOR_TRANSFORM:
+                    inverseColorTransform(pixels, transform.xSize, rows, transform.bits, transform.data);
+                    break;
+                case TransformType.SUBTRACT_GREEN:
+                    addGreenToBlueAndRed(pixels, transform.xSize * rows);
+                    break;
+                case TransformType.COLOR_INDEXING_TRANSFORM:
+                    inverseColorIndexing(pixels, transform.xSize, rows, transform.bits, indexed && i == 0 ? null : transform.data);
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+        }
+
+        return pixels;
+    }
+
+    private int readTransform(final int transformType, final int xSize, final int ySize) throws IOException {
+        switch (transformType) {
+            case TransformType.PREDICTOR_TRANSFORM:
+            case TransformType.COLOR_TRANSFORM: {
+                // The two first transforms contains the exact same data, a sub-image of one pixel per block
+                int sizeBits = (int) lsbBitReader.readBits(3) + 2;
+                int blockWidth = subSampleSize(xSize, sizeBits);
+                int blockHeight = subSampleSize(ySize, sizeBits);
+
+                int[] data = new int[blockWidth * blockHeight];
+                readImageData(data, blockWidth, blockHeight, blockHeight, false);
+
+                transforms.add(new Transform(transformType, sizeBits, xSize, data));
+
+                return xSize;
+            }
+            case TransformType.SUBTRACT_GREEN: {
+                // No data here
+                transforms.add(new Transform(transformType, 0, xSize, null));
+
+                return xSize;
+            }
+            case TransformType.COLOR_INDEXING_TRANSFORM: {
+                // 8 bit value for color table size
+                int colorTableSize = (int) lsbBitReader.readBits(8) + 1; // 1-256
+
+                // Number of bits used to pack multiple pixels into each green sample (byte)
+                int widthBits = colorTableSize > 16 ? 0 :
+                                colorTableSize > 4 ? 1 :
+                                colorTableSize > 2 ? 2 : 3;
+
+                transforms.add(new Transform(transformType, widthBits, xSize, readColorTable(colorTableSize)));
+
+                return subSampleSize(xSize, widthBits);
+            }
+            default:
+                throw new AssertionError("Invalid transformType: " + transformType);
+        }
+    }
+
+    private int[] readColorTable(final int colorTableSize) throws IOException {
+        // If the index is equal or larger than color_table_size,
+        // the argb color value should be set to 0x00000000
+        // We handle this by allocating a possibly larger buffer
+        int safeColorTableSize = colorTableSize > 16 ? 256 :
+                                 colorTableSize > 4 ? 16 :
+                                 colorTableSize > 2 ? 4 : 2;
+
+        int[] colorTable = new int[safeColorTableSize];
+
+        // The color table can be obtained by reading an image,
+        // without the RIFF header, image size, and transforms,
+        // assuming a height of one pixel and a width of
+        // color_table_size. The color table is always
+        // subtraction-coded to reduce image entropy.
+        readImageData(colorTable, colorTableSize, 1, 1, false);
+
+        for (int i = 1; i < colorTableSize; i++) {
+            colorTable[i] = addPixels(colorTable[i], colorTable[i - 1]);
+        }
+
+        return colorTable;
+    }
+
+    private void readImageData(final int[] data, final int xSize, final int ySize, final int rows, final boolean topLevel) throws IOException {
+        //https://github.com/webmproject/libwebp/blob/666bd6c65483a512fe4c2eb63fbc198b6fb4fae4/src/dec/vp8l_dec.c#L1114
+
         // Read color cache size
         int colorCacheBits = 0;
         if (lsbBitReader.readBit() == 1) {
             colorCacheBits = (int) lsbBitReader.readBits(4);
-            if (colorCacheBits < 1 || colorCacheBits > 11) {
+            if (colorCacheBits < 1 || colorCacheBits > MAX_COLOR_CACHE_BITS) {
                 throw new IIOException("Corrupt WebP stream, colorCacheBits < 1 || > 11: " + colorCacheBits);
             }
         }
 
-        // Read Huffman codes
-        readHuffmanCodes(colorCacheBits, topLevel);
+        // Read meta prefix codes, an entropy image of prefix code group indexes
+        int huffmanBits = 0;
+        int huffmanXSize = 0;
+        int[] huffmanImage = null;
+        int numGroups = 1;
+
+        if (topLevel && lsbBitReader.readBit() == 1) {
+            huffmanBits = (int) lsbBitReader.readBits(3) + 2;
+            huffmanXSize = subSampleSize(xSize, huffmanBits);
+            int huffmanYSize = subSampleSize(ySize, huffmanBits);
+
+            huffmanImage = new int[huffmanXSize * huffmanYSize];
+            readImageData(huffmanImage, huffmanXSize, huffmanYSize, huffmanYSize, false);
 
-        if (colorCacheBits > 0) {
-            colorCache = new ColorCache(colorCacheBits);
+            for (int i = 0; i < huffmanImage.length; i++) {
+                int group = (huffmanImage[i] >> 8) & 0xffff;
+                huffmanImage[i] = group;
+                numGroups = max(numGroups, group + 1);
+            }
+        }
+
+        // Read prefix codes
+        HuffmanCodeGroup[] groups = new HuffmanCodeGroup[numGroups];
+        for (int i = 0; i < numGroups; i++) {
+            groups[i] = readHuffmanCodeGroup(colorCacheBits);
         }
 
-        // Use the Huffman trees to decode the LZ77 encoded data.
-//        decodeImageData(raster, )
+        // Use the prefix codes to decode the LZ77 encoded data
+        decodePixels(data, xSize, ySize, rows, groups, huffmanImage, huffmanBits, huffmanXSize,
+                colorCacheBits > 0 ? new ColorCache(colorCacheBits) : null, topLevel);
     }
 
-    private int readTransform(int xSize, int ySize) throws IOException {
-        int transformType = (int) lsbBitReader.readBits(2);
+    private HuffmanCodeGroup readHuffmanCodeGroup(final int colorCacheBits) throws IOException {
+        int greenSize = NUM_LITERAL_CODES + NUM_LENGTH_CODES + (colorCacheBits > 0 ? 1 << colorCacheBits : 0);
 
-        // TODO: Each transform type can only be present once in the stream.
+        HuffmanTable green = readHuffmanCode(greenSize);
+        HuffmanTable red = readHuffmanCode(NUM_LITERAL_CODES);
+        HuffmanTable blue = readHuffmanCode(NUM_LITERAL_CODES);
+        HuffmanTable alpha = readHuffmanCode(NUM_LITERAL_CODES);
+        HuffmanTable distance = readHuffmanCode(NUM_DISTANCE_CODES);
 
-        switch (transformType) {
-            case TransformType.PREDICTOR_TRANSFORM: {
-                System.err.println("transformType: PREDICTOR_TRANSFORM");
-//                    int sizeBits = (int) readBits(3) + 2;
-                int sizeBits = (int) lsbBitReader.readBits(3) + 2;
-                int size = 1 << sizeBits;
+        return new HuffmanCodeGroup(green, red, blue, alpha, distance);
+    }
+
+    private HuffmanTable readHuffmanCode(final int numSymbols) throws IOException {
+        if (huffmanWork == null) {
+            huffmanWork = new int[HuffmanTable.WORK_SIZE];
+        }
+
+        Arrays.fill(codeLengths, 0, numSymbols, 0);
 
-                int blockWidth = size;
-                int blockHeight = size;
+        if (lsbBitReader.readBit() == 1) {
+            // Simple code, one or two symbols of length 1
+            int numCodes = lsbBitReader.readBit() + 1;
+            int firstSymbol = (int) lsbBitReader.readBits(lsbBitReader.readBit() == 0 ? 1 : 8);
+            codeLengths[firstSymbol] = 1;
+
+            if (numCodes == 2) {
+                int secondSymbol = (int) lsbBitReader.readBits(8);
+                codeLengths[secondSymbol] = 1;
+            }
+        }
+        else {
+            // Normal code, code lengths are themselves prefix coded
+            Arrays.fill(codeLengthCodeLengths, 0);
 
-//                    int blockSize = divRoundUp(width, size);
-                int blockSize = divRoundUp(xSize, size);
+            int numCodes = (int) lsbBitReader.readBits(4) + 4;
+            for (int i = 0; i < numCodes; i++) {
+                codeLengthCodeLengths[CODE_LENGTH_CODE_ORDER[i]] = (int) lsbBitReader.readBits(3);
+            }
+
+            readCodeLengths(new HuffmanTable(codeLengthCodeLengths, NUM_CODE_LENGTH_CODES, HuffmanTable.CODE_LENGTHS_ROOT_BITS, huffmanWork), numSymbols);
+        }
+
+        // NOTE: Symbols outside the alphabet (from simple codes) are ignored
+        return new HuffmanTable(codeLengths, numSymbols, HuffmanTable.ROOT_BITS, huffmanWork);
+    }
+
+    private void readCodeLengths(final HuffmanTable codeLengthCode, final int numSymbols) throws IOException {
+        int maxSymbol = numSymbols;
+
+        if (lsbBitReader.readBit() == 1) {
+            int lengthBits = 2 + 2 * (int) lsbBitReader.readBits(3);
+            maxSymbol = 2 + (int) lsbBitReader.readBits(lengthBits);
+
+            if (maxSymbol > numSymbols) {
+                throw new IIOException("Corrupt WebP stream, max_symbol > num_symbols: " + maxSymbol);
+            }
+        }
+
+        int previous = 8;
+        int symbol = 0;
+
+        while (symbol < numSymbols && maxSymbol-- > 0) {
+            int code = codeLengthCode.readSymbol(lsbBitReader);
+
+            if (code < CODE_LENGTH_LITERALS) {
+                codeLengths[symbol++] = code;
+
+                if (code != 0) {
+                    previous = code;
+                }
+            }
+            else {
+                int slot = code - CODE_LENGTH_LITERALS;
+                int repeat = (int) lsbBitReader.readBits(CODE_LENGTH_EXTRA_BITS[slot]) + CODE_LENGTH_REPEAT_OFFSETS[slot];
 
-                for (int y = 0; y < ySize; y++) {
-                    for (int x = 0; x < xSize; x++) {
-                        int blockIndex = (y >> sizeBits) * blockSize + (x >> sizeBits);
+                if (symbol + repeat > numSymbols) {
+                    throw new IIOException("Corrupt WebP stream, code length repeat beyond num_symbols");
+                }
+
+                int length = code == CODE_LENGTH_REPEAT_CODE ? previous : 0;
+                Arrays.fill(codeLengths, symbol, symbol + repeat, length);
+                symbol += repeat;
+            }
+        }
+    }
+
+    private void decodePixels(final int[] data, final int xSize, final int ySize, final int rows,
+                              final HuffmanCodeGroup[] groups, final int[] huffmanImage, final int huffmanBits,
+                              final int huffmanXSize, final ColorCache colorCache, final boolean topLevel) throws IOException {
+        LSBBitReader reader = lsbBitReader;
+
+        int total = xSize * ySize;
+        int end = xSize * min(rows, ySize);
+
+        // Prefix code group changes only at block boundaries, or never without an entropy image
+        int mask = huffmanImage != null ? (1 << huffmanBits) - 1 : ~0;
+        HuffmanCodeGroup group = groups[0];
+
+        int pos = 0;
+        int col = 0;
+        int row = 0;
+        int cached = 0; // Pixels before this position are inserted in the color cache
+        int nextProgress = PROGRESS_ROWS;
+
+        while (pos < end) {
+            if ((col & mask) == 0 && huffmanImage != null) {
+                group = groups[huffmanImage[(row >> huffmanBits) * huffmanXSize + (col >> huffmanBits)]];
+            }
+
+            int code = group.green.readSymbol(reader);
+
+            if (code < NUM_LITERAL_CODES) {
+                // Literal
+                if (group.isTrivialLiteral) {
+                    data[pos++] = group.literalARB | code << 8;
+                }
+                else {
+                    int red = group.red.readSymbol(reader);
+                    int blue = group.blue.readSymbol(reader);
+                    int alpha = group.alpha.readSymbol(reader);
+
+                    data[pos++] = alpha << 24 | red << 16 | code << 8 | blue;
+                }
+
+                if (++col >= xSize) {
+                    col = 0;
+                    row++;
+                }
+            }
+            else if (code < NUM_LITERAL_CODES + NUM_LENGTH_CODES) {
+                // Backward reference
+                int length = prefixValue(code - NUM_LITERAL_CODES);
+                int distance = planeCodeToDistance(xSize, prefixValue(group.distance.readSymbol(reader)));
+
+                if (pos < distance || total - pos < length) {
+                    throw new IIOException("Corrupt WebP stream, invalid backward reference");
+                }
+
+                if (distance >= length) {
+                    System.arraycopy(data, pos - distance, data, pos, length);
+                }
+                else {
+                    // Overlapping copy, repeating the last distance pixels
+                    for (int i = 0; i < length; i++) {
+                        data[pos + i] = data[pos + i - distance];
                     }
                 }
 
-                // Special rules:
-                // Top-left pixel of image is predicted BLACK
-                // Rest of top pixels is predicted L
-                // Rest of leftmost pixels are predicted T
-                // Rightmost pixels using TR, uses LEFTMOST pixel on SAME ROW (same distance as TR in memory!)
+                pos += length;
+                col += length;
 
-//                    WritableRaster data = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, blockWidth, blockHeight, blockWidth, 1, new int[] {0}, null);
-//                    readVP8Lossless(data, false);
-//
-                break;
+                while (col >= xSize) {
+                    col -= xSize;
+                    row++;
+                }
+
+                if ((col & mask) != 0 && huffmanImage != null && pos < end) {
+                    group = groups[huffmanImage[(row >> huffmanBits) * huffmanXSize + (col >> huffmanBits)]];
+                }
             }
-            case TransformType.COLOR_TRANSFORM: {
-                // The two first transforms contains the exact same data, can be combined
-                System.err.println("transformType: COLOR_TRANSFORM");
+            else {
+                // Color cache
+                int key = code - NUM_LITERAL_CODES - NUM_LENGTH_CODES;
 
-                int sizeBits = (int) lsbBitReader.readBits(3) + 2;
-//                int size = 1 << sizeBits;
+                if (colorCache == null) {
+                    throw new IIOException("Corrupt WebP stream, color cache key without color cache: " + key);
+                }
 
-                // TODO: Understand difference between spec divRoundUp and impl VP8LSubSampleSize
+                while (cached < pos) {
+                    colorCache.insert(data[cached++]);
+                }
 
-                int blockWidth = subSampleSize(xSize, sizeBits);
-                int blockHeight = subSampleSize(ySize, sizeBits);
-                WritableRaster data = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, blockWidth, blockHeight, blockWidth, 1, new int[] {0}, null);
-                readVP8Lossless(data, false);
+                data[pos++] = colorCache.lookup(key);
+
+                if (++col >= xSize) {
+                    col = 0;
+                    row++;
+                }
+            }
 
-                transforms.add(new Transform(transformType, ((DataBufferByte) data.getDataBuffer()).getData()));
+            if (topLevel && row >= nextProgress) {
+                fireProgressUpdate(row, rows);
+                nextProgress = row + PROGRESS_ROWS;
+            }
+        }
+    }
 
-                break;
+    private void fireProgressUpdate(final int row, final int rows) {
+        if (listener != null) {
+            float percentageDone = (100.0f * ((float) min(row, rows) / (float) rows));
+            listener.imageProgress(null, percentageDone);
+        }
+    }
+
+    // Length and distance prefix codes, with extra bits
+    private int prefixValue(final int prefixCode) throws IOException {
+        if (prefixCode < 4) {
+            return prefixCode + 1;
+        }
+
+        int extraBits = (prefixCode - 2) >> 1;
+        int offset = (2 + (prefixCode & 1)) << extraBits;
+
+        return offset + (int) lsbBitReader.readBits(extraBits) + 1;
+    }
+
+    private static int planeCodeToDistance(final int xSize, final int planeCode) {
+        if (planeCode > CODE_TO_PLANE.length) {
+            return planeCode - CODE_TO_PLANE.length;
+        }
+
+        int distanceCode = CODE_TO_PLANE[planeCode - 1];
+        int yOffset = distanceCode >> 4;
+        int xOffset = 8 - (distanceCode & 0xf);
+        int distance = yOffset * xSize + xOffset;
+
+        // Can happen for very narrow images
+        return distance >= 1 ? distance : 1;
+    }
+
+    // Inverse transforms, in place
+
+    private static void inversePredictor(final int[] data, final int xSize, final int rows, final int bits, final int[] modes) {
+        // Special rules:
+        // Top-left pixel of image is predicted BLACK
+        // Rest of top pixels is predicted L
+        // Rest of leftmost pixels are predicted T
+        // Rightmost pixels using TR, uses LEFTMOST pixel on SAME ROW (same distance as TR in memory!)
+        data[0] = addPixels(data[0], 0xff000000);
+
+        for (int x = 1; x < xSize; x++) {
+            data[x] = addPixels(data[x], data[x - 1]);
+        }
+
+        int blocksPerRow = subSampleSize(xSize, bits);
+
+        for (int y = 1; y < rows; y++) {
+            int rowStart = y * xSize;
+            int modeStart = (y >> bits) * blocksPerRow;
+
+            data[rowStart] = addPixels(data[rowStart], data[rowStart - xSize]);
+
+            for (int x = 1; x < xSize; ) {
+                int mode = (modes[modeStart + (x >> bits)] >> 8) & 0xf;
+                int blockEnd = min(((x >> bits) + 1) << bits, xSize);
+
+                predictBlock(data, rowStart + x, rowStart + blockEnd, xSize, mode);
+
+                x = blockEnd;
             }
-            case TransformType.SUBTRACT_GREEN: {
-                System.err.println("transformType: SUBTRACT_GREEN");
-                // No data here
+        }
+    }
 
-//                    addGreenToBlueAndRed();
+    private static void predictBlock(final int[] data, final int start, final int end, final int xSize, final int mode) {
+        switch (mode) {
+            case PredictorMode.L:
+                for (int i = start; i < end; i++) {
+                    data[i] = addPixels(data[i], data[i - 1]);
+                }
+                break;
+            case PredictorMode.T:
+                for (int i = start; i < end; i++) {
+                    data[i] = addPixels(data[i], data[i - xSize]);
+                }
                 break;
+            case PredictorMode.TR:
+                for (int i = start; i < end; i++) {
+                    data[i] = addPixels(data[i], data[i - xSize + 1]);
+                }
+                break;
+            case PredictorMode.TL:
+                for (int i = start; i < end; i++) {
+                    data[i] = addPixels(data[i], data[i - xSize - 1]);
+                }
+                break;
+            case PredictorMode.AVG_L_TR_T:
+                for (int i = start; i < end; i++) {
+                    data[i] = addPixels(data[i], average2(average2(data[i - 1], data[i - xSize + 1]), data[i - xSize]));
+                }
+                break;
+            case PredictorMode.AVG_L_TL:
+                for (int i = start; i < end; i++) {
+                    data[i] = addPixels(data[i], average2(data[i - 1], data[i - xSize - 1]));
+                }
+                break;
+            case PredictorMode.AVG_L_T:
+                for (int i = start; i < end; i++) {
+                    data[i] = addPixels(data[i], average2(data[i - 1], data[i - xSize]));
+                }
+                break;
+            case PredictorMode.AVG_TL_T:
+                for (int i = start; i < end; i++) {
+                    data[i] = addPixels(data[i], average2(data[i - xSize - 1], data[i - xSize]));
+                }
+                break;
+            case PredictorMode.AVG_T_TR:
+                for (int i = start; i < end; i++) {
+                    data[i] = addPixels(data[i], average2(data[i - xSize], data[i - xSize + 1]));
+                }
+                break;
+            case PredictorMode.AVG_L_TL_T_TR:
+                for (int i = start; i < end; i++) {
+                    data[i] = addPixels(data[i], average2(average2(data[i - 1], data[i - xSize - 1]), average2(data[i - xSize], data[i - xSize + 1])));
+                }
+                break;
+            case PredictorMode.SELECT:
+                for (int i = start; i < end; i++) {
+                    data[i] = addPixels(data[i], select(data[i - 1], data[i - xSize], data[i - xSize - 1]));
+                }
+                break;
+            case PredictorMode.CLAMP_ADD_SUB_FULL:
+                for (int i = start; i < end; i++) {
+                    data[i] = addPixels(data[i], clampAddSubtractFull(data[i - 1], data[i - xSize], data[i - xSize - 1]));
+                }
+                break;
+            case PredictorMode.CLAMP_ADD_SUB_HALF:
+                for (int i = start; i < end; i++) {
+                    data[i] = addPixels(data[i], clampAddSubtractHalf(average2(data[i - 1], data[i - xSize]), data[i - xSize - 1]));
+                }
+                break;
+            default:
+                // BLACK, modes 14 and 15 are treated as BLACK too
+                for (int i = start; i < end; i++) {
+                    data[i] = addPixels(data[i], 0xff000000);
+                }
+                break;
+        }
+    }
+
+    private static void inverseColorTransform(final int[] data, final int xSize, final int rows, final int bits, final int[] elements) {
+        int blocksPerRow = subSampleSize(xSize, bits);
+
+        for (int y = 0; y < rows; y++) {
+            int rowStart = y * xSize;
+            int elementStart = (y >> bits) * blocksPerRow;
+
+            for (int x = 0; x < xSize; ) {
+                int element = elements[elementStart + (x >> bits)];
+                int blockEnd = min(((x >> bits) + 1) << bits, xSize);
+
+                // Multipliers are signed 8 bit values
+                byte greenToRed = (byte) element;
+                byte greenToBlue = (byte) (element >> 8);
+                byte redToBlue = (byte) (element >> 16);
+
+                for (int i = rowStart + x; i < rowStart + blockEnd; i++) {
+                    int argb = data[i];
+                    byte green = (byte) (argb >> 8);
+
+                    int red = ((argb >> 16) + colorTransformDelta(greenToRed, green)) & 0xff;
+                    int blue = (argb + colorTransformDelta(greenToBlue, green) + colorTransformDelta(redToBlue, (byte) red)) & 0xff;
+
+                    data[i] = argb & 0xff00ff00 | red << 16 | blue;
+                }
+
+                x = blockEnd;
             }
-            case TransformType.COLOR_INDEXING_TRANSFORM: {
-                System.err.println("transformType: COLOR_INDEXING_TRANSFORM");
+        }
+    }
 
-                // 8 bit value for color table size
-                int colorTableSize = imageInput.readUnsignedByte() + 1; // 1-256
-                System.err.println("colorTableSize: " + colorTableSize);
-
-                // If the index is equal or larger than color_table_size,
-                // the argb color value should be set to 0x00000000
-                // We handle this by allocating a possibly larger buffer
-                int safeColorTableSize = colorTableSize > 16 ? 256 :
-                                         colorTableSize > 4 ? 16 :
-                                         colorTableSize > 2 ? 4 : 2;
-
-                System.err.println("safeColorTableSize: " + safeColorTableSize);
-
-                int[] colorTable = new int[safeColorTableSize];
-
-                // The color table can be obtained by reading an image,
-                // without the RIFF header, image size, and transforms,
-                // assuming a height of one pixel and a width of
-                // color_table_size. The color table is always
-                // subtraction-coded to reduce image entropy.
-                // TODO: Read *without transforms*, using SUBTRACT_GREEN only!
-                readVP8Lossless(asByteRaster(
-                        Raster.createPackedRaster(
-                                new DataBufferInt(colorTable, colorTableSize),
-                                colorTableSize, 1, colorTableSize,
-                                new int[] {0}, null
-                        ),
-                        ColorModel.getRGBdefault()
-                ), false);
-
-                // TODO: We may not really need this value...
-                // What we need is the number of pixels packed into each green sample (byte)
-                int widthBits = colorTableSize > 16 ? 0 :
-                                colorTableSize > 4 ? 1 :
-                                colorTableSize > 2 ? 2 : 3;
+    private static void addGreenToBlueAndRed(final int[] data, final int length) {
+        for (int i = 0; i < length; i++) {
+            int argb = data[i];
+            int green = (argb >> 8) & 0xff;
 
-                xSize = subSampleSize(xSize, widthBits);
+            data[i] = argb & 0xff00ff00 | ((argb & 0x00ff00ff) + (green << 16 | green)) & 0x00ff00ff;
+        }
+    }
 
-                /*
-                // TODO: read ARGB
-                int argb = 0;
+    // Expands packed color indexes to one pixel per int, from the end of the buffer, as the expanded rows are larger.
+    // If colorTable is null, the indexes are kept.
+    private static void inverseColorIndexing(final int[] data, final int width, final int rows, final int bits, final int[] colorTable) {
+        if (bits == 0) {
+            if (colorTable != null) {
+                for (int i = 0; i < width * rows; i++) {
+                    data[i] = colorTable[(data[i] >> 8) & 0xff];
+                }
+            }
+            else {
+                for (int i = 0; i < width * rows; i++) {
+                    data[i] = (data[i] >> 8) & 0xff;
+                }
+            }
+
+            return;
+        }
 
-                // Inverse transform
-                // TODO: Expand to mutliple pixels?
-                argb = colorTable[GREEN(argb)];
-                */
+        int xSize = subSampleSize(width, bits);
+        int bitsPerPixel = 8 >> bits;
+        int pixelMask = (1 << bitsPerPixel) - 1;
+        int xMask = (1 << bits) - 1;
 
-                // TODO: Can we use this to produce an image with IndexColorModel instead of expanding the values in-memory?
-                transforms.add(new Transform(transformType, colorTable));
+        for (int y = rows - 1; y >= 0; y--) {
+            int packedStart = y * xSize;
+            int rowStart = y * width;
 
-                break;
+            for (int x = width - 1; x >= 0; x--) {
+                int index = (data[packedStart + (x >> bits)] >> (8 + (x & xMask) * bitsPerPixel)) & pixelMask;
+                data[rowStart + x] = colorTable != null ? colorTable[index] : index;
             }
-            default:
-                throw new AssertionError("Invalid transformType: " + transformType);
         }
+    }
+
+    // Output
+
+    private static boolean isPackedRGB(final WritableRaster raster, final ColorModel colorModel) {
+        if (raster.getDataBuffer() instanceof DataBufferInt && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && !(colorModel != null && colorModel.isAlphaPremultiplied())) {
+            int[] masks = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getBitMasks();
 
-        return xSize;
+            return (masks.length == 3 || masks.length == 4 && masks[3] == 0xff000000)
+                    && masks[0] == 0xff0000 && masks[1] == 0xff00 && masks[2] == 0xff;
+        }
+
+        return false;
     }
 
-    private void readHuffmanCodes(int colorCacheBits, boolean allowRecursion) {
+    private static void copyPacked(final int[] pixels, final int width, final WritableRaster raster, final Rectangle region,
+                                   final int regionEnd, final int xSubsampling, final int ySubsampling, final int dstWidth) {
+        SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+        int[] data = buffer.getData();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int offset = buffer.getOffset() + sampleModel.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
 
+        for (int y = region.y; y < regionEnd; y += ySubsampling, offset += scanlineStride) {
+            int src = y * width + region.x;
+
+            if (xSubsampling == 1) {
+                System.arraycopy(pixels, src, data, offset, dstWidth);
+            }
+            else {
+                for (int x = 0; x < dstWidth; x++, src += xSubsampling) {
+                    data[offset + x] = pixels[src];
+                }
+            }
+        }
     }
 
-    ////
+    private static void copyInterleaved(final int[] pixels, final int width, final WritableRaster raster, final Rectangle region,
+                                        final int regionEnd, final int xSubsampling, final int ySubsampling, final int dstWidth) {
+        // Bands in RGB(A) order
+        int bands = raster.getNumDataElements();
+        byte[] row = new byte[dstWidth * bands];
 
-    // FROM the spec
-    private static int divRoundUp(final int numerator, final int denominator) {
-        return (numerator + denominator - 1) / denominator;
+        for (int y = region.y, dstY = 0; y < regionEnd; y += ySubsampling, dstY++) {
+            for (int x = 0, src = y * width + region.x, i = 0; x < dstWidth; x++, src += xSubsampling, i += bands) {
+                int argb = pixels[src];
+
+                row[i] = (byte) (argb >> 16);
+                row[i + 1] = (byte) (argb >> 8);
+                row[i + 2] = (byte) argb;
+
+                if (bands > 3) {
+                    row[i + 3] = (byte) (argb >>> 24);
+                }
+            }
+
+            raster.setDataElements(0, dstY, dstWidth, 1, row);
+        }
+    }
+
+    private static void copyIndexes(final int[] pixels, final int width, final WritableRaster raster, final Rectangle region,
+                                    final int regionEnd, final int xSubsampling, final int ySubsampling, final int dstWidth) {
+        int[] row = new int[dstWidth];
+
+        for (int y = region.y, dstY = 0; y < regionEnd; y += ySubsampling, dstY++) {
+            for (int x = 0, src = y * width + region.x; x < dstWidth; x++, src += xSubsampling) {
+                row[x] = pixels[src];
+            }
+
+            raster.setSamples(0, dstY, dstWidth, 1, 0, row);
+        }
     }
 
-    private static int subSampleSize(final int size, final int samplingBits) {
+    ////
+
+    // FROM the spec
+    static int subSampleSize(final int size, final int samplingBits) {
         return (size + (1 << samplingBits) - 1) >> samplingBits;
     }
 
@@ -244,20 +852,22 @@ public final class VP8LDecoder {
         return ARGB & 0xff;
     }
 
-    private static int select(final int L, final int T, final int TL) {
-        // L = left pixel, T = top pixel, TL = top left pixel.
+    // Per component addition, modulo 256
+    private static int addPixels(final int a, final int b) {
+        int alphaGreen = (a & 0xff00ff00) + (b & 0xff00ff00);
+        int redBlue = (a & 0x00ff00ff) + (b & 0x00ff00ff);
 
-        // ARGB component estimates for prediction.
-        int pAlpha = ALPHA(L) + ALPHA(T) - ALPHA(TL);
-        int pRed = RED(L) + RED(T) - RED(TL);
-        int pGreen = GREEN(L) + GREEN(T) - GREEN(TL);
-        int pBlue = BLUE(L) + BLUE(T) - BLUE(TL);
+        return alphaGreen & 0xff00ff00 | redBlue & 0x00ff00ff;
+    }
+
+    static int select(final int L, final int T, final int TL) {
+        // L = left pixel, T = top pixel, TL = top left pixel.
 
-        // Manhattan distances to estimates for left and top pixels.
-        int pL = abs(pAlpha - ALPHA(L)) + abs(pRed - RED(L)) +
-                abs(pGreen - GREEN(L)) + abs(pBlue - BLUE(L));
-        int pT = abs(pAlpha - ALPHA(T)) + abs(pRed - RED(T)) +
-                abs(pGreen - GREEN(T)) + abs(pBlue - BLUE(T));
+        // Manhattan distances from the estimate (L + T - TL) to the left and top pixels.
+        int pL = abs(ALPHA(T) - ALPHA(TL)) + abs(RED(T) - RED(TL)) +
+                abs(GREEN(T) - GREEN(TL)) + abs(BLUE(T) - BLUE(TL));
+        int pT = abs(ALPHA(L) - ALPHA(TL)) + abs(RED(L) - RED(TL)) +
+                abs(GREEN(L) - GREEN(TL)) + abs(BLUE(L) - BLUE(TL));
 
         // Return either left or top, the one closer to the prediction.
         if (pL < pT) {
@@ -268,8 +878,9 @@ public final class VP8LDecoder {
         }
     }
 
-    private static int average2(final int a, final int b) {
-        return (a + b) / 2;
+    // Per component (a + b) / 2, rounded down
+    static int average2(final int a, final int b) {
+        return (((a ^ b) & 0xfefefefe) >>> 1) + (a & b);
     }
 
     // Clamp the input value between 0 and 255.
@@ -277,43 +888,18 @@ public final class VP8LDecoder {
         return max(0, min(a, 255));
     }
 
-    private static int clampAddSubtractFull(final int a, final int b, final int c) {
-        return clamp(a + b - c);
-    }
-
-    private static int clampAddSubtractHalf(final int a, final int b) {
-        return clamp(a + (a - b) / 2);
+    static int clampAddSubtractFull(final int a, final int b, final int c) {
+        return clamp(ALPHA(a) + ALPHA(b) - ALPHA(c)) << 24 |
+                clamp(RED(a) + RED(b) - RED(c)) << 16 |
+                clamp(GREEN(a) + GREEN(b) - GREEN(c)) << 8 |
+                clamp(BLUE(a) + BLUE(b) - BLUE(c));
     }
 
-    static final class ColorTransformElement {
-        final int green_to_red;
-        final int green_to_blue;
-        final int red_to_blue;
-
-        ColorTransformElement(final int green_to_red, final int green_to_blue, final int red_to_blue) {
-            this.green_to_red = green_to_red;
-            this.green_to_blue = green_to_blue;
-            this.red_to_blue = red_to_blue;
-        }
-    }
-
-    // NOTE: For encoding!
-    private static void colorTransform(final int red, final int blue, final int green,
-                                       final ColorTransformElement trans,
-                                       final int[] newRedBlue) {
-        // Transformed values of red and blue components
-        int tmp_red = red;
-        int tmp_blue = blue;
-
-        // Applying transform is just adding the transform deltas
-        tmp_red += colorTransformDelta((byte) trans.green_to_red, (byte) green);
-        tmp_blue += colorTransformDelta((byte) trans.green_to_blue, (byte) green);
-        tmp_blue += colorTransformDelta((byte) trans.red_to_blue, (byte) red);
-
-        // No pointer dereferences in Java...
-        // TODO: Consider passing an offset too, so we can modify in-place
-        newRedBlue[0] = tmp_red & 0xff;
-        newRedBlue[1] = tmp_blue & 0xff;
+    static int clampAddSubtractHalf(final int a, final int b) {
+        return clamp(ALPHA(a) + (ALPHA(a) - ALPHA(b)) / 2) << 24 |
+                clamp(RED(a) + (RED(a) - RED(b)) / 2) << 16 |
+                clamp(GREEN(a) + (GREEN(a) - GREEN(b)) / 2) << 8 |
+                clamp(BLUE(a) + (BLUE(a) - BLUE(b)) / 2);
     }
 
     // A conversion from the 8-bit unsigned representation (uint8) to the 8-bit
@@ -321,44 +907,7 @@ public final class VP8LDecoder {
     // should be performed using 8-bit two's complement (that is: uint8 range
     // [128-255] is mapped to the [-128, -1] range of its converted int8
     // value).
-    private static byte colorTransformDelta(final byte t, final byte c) {
-        return (byte) ((t * c) >> 5);
-    }
-
-    private static void inverseTransform(final byte red, final byte green, final byte blue,
-                                         final ColorTransformElement trans,
-                                         final int[] newRedBlue) {
-        // Applying inverse transform is just subtracting the
-        // color transform deltas
-        // Transformed values of red and blue components
-        int tmp_red = red;
-        int tmp_blue = blue;
-
-        tmp_red -= colorTransformDelta((byte) trans.green_to_red, green);
-        tmp_blue -= colorTransformDelta((byte) trans.green_to_blue, green);
-        tmp_blue -= colorTransformDelta((byte) trans.red_to_blue, red); // Spec has red & 0xff
-
-        newRedBlue[0] = tmp_red & 0xff;
-        newRedBlue[1] = tmp_blue & 0xff;
-    }
-
-    private static void inverseTransform(final byte[] rgb, final ColorTransformElement trans) {
-        // Applying inverse transform is just subtracting the
-        // color transform deltas
-        // Transformed values of red and blue components
-        int tmp_red = rgb[0];
-        int tmp_blue = rgb[2];
-
-        tmp_red -= colorTransformDelta((byte) trans.green_to_red, rgb[1]);
-        tmp_blue -= colorTransformDelta((byte) trans.green_to_blue, rgb[1]);
-        tmp_blue -= colorTransformDelta((byte) trans.red_to_blue, rgb[0]); // Spec has red & 0xff
-
-        rgb[0] = (byte) (tmp_red & 0xff);
-        rgb[2] = (byte) (tmp_blue & 0xff);
-    }
-
-    private static void addGreenToBlueAndRed(byte[] rgb) {
-        rgb[0] = (byte) ((rgb[0] + rgb[1]) & 0xff);
-        rgb[2] = (byte) ((rgb[2] + rgb[1]) & 0xff);
+    private static int colorTransformDelta(final byte t, final byte c) {
+        return (t * c) >> 5;
     }
 }
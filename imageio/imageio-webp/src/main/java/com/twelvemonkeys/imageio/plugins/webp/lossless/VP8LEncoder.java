@@ -0,0 +1,931 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.webp.lossless;
+
+import com.twelvemonkeys.imageio.plugins.webp.LSBBitWriter;
+
+import javax.imageio.stream.ImageOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static com.twelvemonkeys.imageio.plugins.webp.lossless.VP8LDecoder.*;
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * VP8LEncoder.
+ * <p>
+ * Encodes an ARGB image as a VP8L lossless stream, using the subtract green and predictor transforms,
+ * LZ77 backward references, a color cache and a single group of prefix codes.
+ * The effort controls the predictors tried for each block, the size of the blocks,
+ * the depth of the backward reference search and the color cache sizes tried.
+ * </p>
+ * <p>
+ * The predictor of each block is selected by the estimated entropy of its residuals,
+ * and backward references by their estimated cost. The color cache size, and for the highest
+ * efforts the predictor block size, are selected by the exact size of the encoded image.
+ * As the estimates are not exact, a higher effort typically, but not always, gives smaller output.
+ * </p>
+ */
+public final class VP8LEncoder {
+    public static final int MIN_EFFORT = 0;
+    public static final int MAX_EFFORT = 6;
+    public static final int DEFAULT_EFFORT = 4;
+
+    private static final byte LOSSLESS_SIGNATURE = 0x2f;
+
+    private static final int NUM_LITERAL_CODES = 256;
+    private static final int NUM_LENGTH_CODES = 24;
+    private static final int NUM_DISTANCE_CODES = 40;
+
+    private static final int MIN_LENGTH = 3;
+    private static final int MAX_LENGTH = 4096;
+    private static final int MAX_DISTANCE = (1 << 20) - 120;
+
+    private static final int HASH_BITS = 18;
+    private static final long HASH_MUL = 0x1e35a7bdL;
+
+    private static final int[][] PREDICTOR_MODES = {
+            {PredictorMode.L, PredictorMode.T, PredictorMode.SELECT},
+            {PredictorMode.L, PredictorMode.T, PredictorMode.AVG_L_T, PredictorMode.SELECT, PredictorMode.CLAMP_ADD_SUB_FULL, PredictorMode.CLAMP_ADD_SUB_HALF},
+            {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13}
+    };
+    private static final int[][] COLOR_CACHE_BITS = {
+            {0},
+            {0, 4, 7, 10},
+            {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10}
+    };
+
+    // By effort
+    private static final int[] CHAIN_DEPTH = {0, 4, 8, 16, 32, 64, 128};
+    private static final int[] CACHE_BITS = {0, 1, 1, 1, 2, 2, 2};
+    private static final int[][][] PREDICTORS = { // As {bits, modes}, the smallest encoding is used if more than one
+            {{6, 0}},
+            {{5, 1}},
+            {{5, 1}},
+            {{5, 2}},
+            {{4, 2}},
+            {{5, 2}, {4, 2}},
+            {{6, 0}, {5, 1}, {5, 2}, {4, 2}}
+    };
+
+    // Pseudo counts for the estimated cost of the residuals, favouring small residuals until the counts are known
+    private static final float[] PRIOR_COUNTS = new float[256];
+    private static final float PRIOR_TOTAL;
+
+    static {
+        float total = 0;
+
+        for (int residual = 0; residual < 256; residual++) {
+            PRIOR_COUNTS[residual] = 2f / (1 + abs((byte) residual));
+            total += PRIOR_COUNTS[residual];
+        }
+
+        PRIOR_TOTAL = total;
+    }
+
+    private final ImageOutputStream imageOutput;
+    private final int effort;
+    private LSBBitWriter writer;
+
+    /**
+     * Creates an encoder.
+     *
+     * @param imageOutput the stream to write to
+     * @param effort the effort, from {@code MIN_EFFORT} (fastest) to {@code MAX_EFFORT} (slowest, typically smallest output)
+     */
+    public VP8LEncoder(final ImageOutputStream imageOutput, final int effort) {
+        this.imageOutput = imageOutput;
+        this.effort = max(MIN_EFFORT, min(effort, MAX_EFFORT));
+    }
+
+    /**
+     * Encodes the pixels as a VP8L image stream, including the VP8L header (signature and image size).
+     * The pixels are transformed in place.
+     *
+     * @param pixels the pixels, as non-premultiplied ARGB, row by row
+     * @param width the width of the image
+     * @param height the height of the image
+     * @throws IOException if an I/O exception occurs
+     */
+    public void writeVP8Lossless(final int[] pixels, final int width, final int height) throws IOException {
+        int length = width * height;
+
+        boolean alphaIsUsed = false;
+        for (int i = 0; i < length && !alphaIsUsed; i++) {
+            alphaIsUsed = pixels[i] >>> 24 != 0xff;
+        }
+
+        subtractGreen(pixels, length);
+
+        // Each predictor configuration is encoded using the same buffers, so the smallest is encoded again, unless it was the last one
+        int[][] predictors = PREDICTORS[effort];
+        int[] residuals = predictors.length > 1 ? new int[length] : pixels;
+        int[] lengths = new int[length];
+        int[] values = new int[length];
+
+        int bits = 0;
+        int[] modes = null;
+        EntropyImage modeImage = null;
+        EntropyImage image = null;
+        int best = -1;
+
+        for (int i = 0; i < predictors.length; i++) {
+            int candidateBits = predictors[i][0];
+            int[] candidateModes = selectPredictors(pixels, width, height, candidateBits, PREDICTOR_MODES[predictors[i][1]]);
+
+            EntropyImage candidateModeImage = entropyImage(candidateModes, subSampleSize(width, candidateBits), subSampleSize(height, candidateBits), false);
+            EntropyImage candidateImage = predictedImage(pixels, width, height, candidateBits, candidateModes, residuals, lengths, values);
+
+            if (best < 0 || candidateModeImage.size() + candidateImage.size() < modeImage.size() + image.size()) {
+                bits = candidateBits;
+                modes = candidateModes;
+                modeImage = candidateModeImage;
+                image = candidateImage;
+                best = i;
+            }
+        }
+
+        if (best != predictors.length - 1) {
+            image = predictedImage(pixels, width, height, bits, modes, residuals, lengths, values);
+        }
+
+        writer = new LSBBitWriter(imageOutput);
+
+        writer.writeBits(LOSSLESS_SIGNATURE, 8);
+        writer.writeBits(width - 1, 14);
+        writer.writeBits(height - 1, 14);
+        writer.writeBit(alphaIsUsed ? 1 : 0);
+        writer.writeBits(0, 3); // Version
+
+        // Transforms, in the order applied, the decoder applies the inverse transforms in reverse order
+        writer.writeBit(1);
+        writer.writeBits(TransformType.SUBTRACT_GREEN, 2);
+
+        writer.writeBit(1);
+        writer.writeBits(TransformType.PREDICTOR_TRANSFORM, 2);
+        writer.writeBits(bits - 2, 3);
+        writeImageData(modeImage);
+
+        writer.writeBit(0); // No more transforms
+
+        writeImageData(image);
+
+        writer.flush();
+    }
+
+    private EntropyImage predictedImage(final int[] pixels, final int width, final int height, final int bits, final int[] modes,
+                                        final int[] residuals, final int[] lengths, final int[] values) {
+        if (residuals != pixels) {
+            System.arraycopy(pixels, 0, residuals, 0, width * height);
+        }
+
+        predict(residuals, width, height, bits, modes);
+
+        return entropyImage(residuals, width, height, true, lengths, values);
+    }
+
+    // Transforms
+
+    private static void subtractGreen(final int[] pixels, final int length) {
+        for (int i = 0; i < length; i++) {
+            int argb = pixels[i];
+            int green = (argb >> 8) & 0xff;
+            int redBlue = ((argb & 0x00ff00ff) + 0x01000100 - (green << 16 | green)) & 0x00ff00ff;
+
+            pixels[i] = argb & 0xff00ff00 | redBlue;
+        }
+    }
+
+    private static int[] selectPredictors(final int[] pixels, final int width, final int height, final int bits, final int[] candidates) {
+        int blocksPerRow = subSampleSize(width, bits);
+        int[] modes = new int[blocksPerRow * subSampleSize(height, bits)];
+
+        // Residual counts of the blocks so far, per channel, and their log2 (including the pseudo counts)
+        int[] counts = new int[4 * 256];
+        float[] logCounts = new float[4 * 256];
+        int[] updated = new int[4 * 256];
+        long total = 0;
+
+        for (int i = 0; i < logCounts.length; i++) {
+            logCounts[i] = log2(PRIOR_COUNTS[i & 0xff]);
+        }
+
+        // Each block uses the predictor with the smallest estimated cost, given the residuals of the previous blocks
+        for (int blockY = 0, i = 0; blockY < height; blockY += 1 << bits) {
+            int blockHeight = min(1 << bits, height - blockY);
+
+            for (int blockX = 0; blockX < width; blockX += 1 << bits, i++) {
+                int blockWidth = min(1 << bits, width - blockX);
+                float logTotal = 4 * log2(total + PRIOR_TOTAL);
+                int bestMode = candidates[0];
+                float bestCost = Float.MAX_VALUE;
+
+                for (int mode : candidates) {
+                    float cost = 0;
+
+                    for (int y = blockY; y < blockY + blockHeight && cost < bestCost; y++) {
+                        for (int x = blockX, pos = y * width + blockX; x < blockX + blockWidth; x++, pos++) {
+                            int residual = subtractPixels(pixels[pos], predictor(pixels, pos, x, y, width, mode));
+
+                            cost += logTotal - logCounts[residual >>> 24] - logCounts[256 + ((residual >> 16) & 0xff)]
+                                    - logCounts[512 + ((residual >> 8) & 0xff)] - logCounts[768 + (residual & 0xff)];
+                        }
+                    }
+
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestMode = mode;
+                    }
+                }
+
+                modes[i] = 0xff000000 | bestMode << 8;
+
+                // Update the counts with the residuals of the selected predictor
+                for (int y = blockY; y < blockY + blockHeight; y++) {
+                    for (int x = blockX, pos = y * width + blockX; x < blockX + blockWidth; x++, pos++) {
+                        int residual = subtractPixels(pixels[pos], predictor(pixels, pos, x, y, width, bestMode));
+
+                        counts[residual >>> 24]++;
+                        counts[256 + ((residual >> 16) & 0xff)]++;
+                        counts[512 + ((residual >> 8) & 0xff)]++;
+                        counts[768 + (residual & 0xff)]++;
+
+                        updated[residual >>> 24] = i + 1;
+                        updated[256 + ((residual >> 16) & 0xff)] = i + 1;
+                        updated[512 + ((residual >> 8) & 0xff)] = i + 1;
+                        updated[768 + (residual & 0xff)] = i + 1;
+                    }
+                }
+
+                for (int j = 0; j < counts.length; j++) {
+                    if (updated[j] == i + 1) {
+                        logCounts[j] = log2(counts[j] + PRIOR_COUNTS[j & 0xff]);
+                    }
+                }
+
+                total += blockWidth * blockHeight;
+            }
+        }
+
+        return modes;
+    }
+
+    private static void predict(final int[] pixels, final int width, final int height, final int bits, final int[] modes) {
+        int blocksPerRow = subSampleSize(width, bits);
+
+        // Backwards, so that the predictors use the original pixels
+        for (int y = height - 1; y >= 0; y--) {
+            for (int x = width - 1, pos = y * width + x; x >= 0; x--, pos--) {
+                int mode = (modes[(y >> bits) * blocksPerRow + (x >> bits)] >> 8) & 0xf;
+                pixels[pos] = subtractPixels(pixels[pos], predictor(pixels, pos, x, y, width, mode));
+            }
+        }
+    }
+
+    // Same special rules for the top row and leftmost column as when decoding
+    private static int predictor(final int[] pixels, final int pos, final int x, final int y, final int width, final int mode) {
+        if (y == 0) {
+            return x == 0 ? 0xff000000 : pixels[pos - 1];
+        }
+        else if (x == 0) {
+            return pixels[pos - width];
+        }
+
+        switch (mode) {
+            case PredictorMode.L:
+                return pixels[pos - 1];
+            case PredictorMode.T:
+                return pixels[pos - width];
+            case PredictorMode.TR:
+                return pixels[pos - width + 1];
+            case PredictorMode.TL:
+                return pixels[pos - width - 1];
+            case PredictorMode.AVG_L_TR_T:
+                return average2(average2(pixels[pos - 1], pixels[pos - width + 1]), pixels[pos - width]);
+            case PredictorMode.AVG_L_TL:
+                return average2(pixels[pos - 1], pixels[pos - width - 1]);
+            case PredictorMode.AVG_L_T:
+                return average2(pixels[pos - 1], pixels[pos - width]);
+            case PredictorMode.AVG_TL_T:
+                return average2(pixels[pos - width - 1], pixels[pos - width]);
+            case PredictorMode.AVG_T_TR:
+                return average2(pixels[pos - width], pixels[pos - width + 1]);
+            case PredictorMode.AVG_L_TL_T_TR:
+                return average2(average2(pixels[pos - 1], pixels[pos - width - 1]), average2(pixels[pos - width], pixels[pos - width + 1]));
+            case PredictorMode.SELECT:
+                return select(pixels[pos - 1], pixels[pos - width], pixels[pos - width - 1]);
+            case PredictorMode.CLAMP_ADD_SUB_FULL:
+                return clampAddSubtractFull(pixels[pos - 1], pixels[pos - width], pixels[pos - width - 1]);
+            case PredictorMode.CLAMP_ADD_SUB_HALF:
+                return clampAddSubtractHalf(average2(pixels[pos - 1], pixels[pos - width]), pixels[pos - width - 1]);
+            default:
+                return 0xff000000;
+        }
+    }
+
+    // Per component subtraction, modulo 256
+    private static int subtractPixels(final int a, final int b) {
+        int alphaGreen = 0x00ff00ff + (a & 0xff00ff00) - (b & 0xff00ff00);
+        int redBlue = 0xff00ff00 + (a & 0x00ff00ff) - (b & 0x00ff00ff);
+
+        return alphaGreen & 0xff00ff00 | redBlue & 0x00ff00ff;
+    }
+
+    private static float log2(final double value) {
+        return (float) (Math.log(value) / Math.log(2));
+    }
+
+    // Entropy coded image
+
+    private EntropyImage entropyImage(final int[] pixels, final int xSize, final int ySize, final boolean topLevel) {
+        return entropyImage(pixels, xSize, ySize, topLevel, new int[xSize * ySize], new int[xSize * ySize]);
+    }
+
+    private EntropyImage entropyImage(final int[] pixels, final int xSize, final int ySize, final boolean topLevel,
+                                      final int[] lengths, final int[] values) {
+        int[] planeCodes = planeCodes(xSize);
+        int depth = CHAIN_DEPTH[effort];
+
+        if (depth == 0) {
+            return entropyImage(pixels, xSize, ySize, topLevel, planeCodes, 0, lengths, values);
+        }
+
+        // Searching the hash chains usually finds more and longer backward references, but the estimated gain of each
+        // reference may be wrong, so the references to the previous pixel and the pixel above only are used if smaller
+        long nearSize = entropyImage(pixels, xSize, ySize, topLevel, planeCodes, 0, lengths, values).size();
+        EntropyImage image = entropyImage(pixels, xSize, ySize, topLevel, planeCodes, depth, lengths, values);
+
+        return image.size() <= nearSize ? image : entropyImage(pixels, xSize, ySize, topLevel, planeCodes, 0, lengths, values);
+    }
+
+    private EntropyImage entropyImage(final int[] pixels, final int xSize, final int ySize, final boolean topLevel, final int[] planeCodes,
+                                      final int depth, final int[] lengths, final int[] values) {
+        // Backward references, as (length, distance) pairs, or (0, argb) for literals
+        int numTokens = findBackwardReferences(pixels, xSize * ySize, xSize, planeCodes, depth, lengths, values);
+
+        // Use the color cache size giving the smallest output
+        Histograms best = null;
+
+        for (Histograms histograms : Histograms.collect(COLOR_CACHE_BITS[CACHE_BITS[effort]], pixels, lengths, values, numTokens, planeCodes)) {
+            if (best == null || histograms.size() < best.size()) {
+                best = histograms;
+            }
+        }
+
+        return new EntropyImage(pixels, lengths, values, numTokens, planeCodes, topLevel, best);
+    }
+
+    private void writeImageData(final EntropyImage image) throws IOException {
+        Histograms histograms = image.histograms;
+        int cacheBits = histograms.cacheBits;
+
+        if (cacheBits > 0) {
+            writer.writeBit(1);
+            writer.writeBits(cacheBits, 4);
+        }
+        else {
+            writer.writeBit(0);
+        }
+
+        if (image.topLevel) {
+            writer.writeBit(0); // No meta prefix codes, a single group of prefix codes for the entire image
+        }
+
+        HuffmanCode green = histograms.greenCode;
+        HuffmanCode red = histograms.redCode;
+        HuffmanCode blue = histograms.blueCode;
+        HuffmanCode alpha = histograms.alphaCode;
+        HuffmanCode distance = histograms.distanceCode;
+
+        green.writeCode(writer);
+        red.writeCode(writer);
+        blue.writeCode(writer);
+        alpha.writeCode(writer);
+        distance.writeCode(writer);
+
+        // Pixels, the color cache is updated the same way as when decoding
+        int[] pixels = image.pixels;
+        int[] lengths = image.lengths;
+        int[] values = image.values;
+        int[] cache = cacheBits > 0 ? new int[1 << cacheBits] : null;
+        int cacheShift = 32 - cacheBits;
+
+        for (int i = 0, pos = 0; i < image.numTokens; i++) {
+            int copyLength = lengths[i];
+
+            if (copyLength == 0) {
+                int argb = values[i];
+
+                if (cache != null) {
+                    int key = hash(argb, cacheShift);
+
+                    if (cache[key] == argb) {
+                        green.writeSymbol(writer, NUM_LITERAL_CODES + NUM_LENGTH_CODES + key);
+                        pos++;
+
+                        continue;
+                    }
+
+                    cache[key] = argb;
+                }
+
+                green.writeSymbol(writer, (argb >> 8) & 0xff);
+                red.writeSymbol(writer, (argb >> 16) & 0xff);
+                blue.writeSymbol(writer, argb & 0xff);
+                alpha.writeSymbol(writer, argb >>> 24);
+                pos++;
+            }
+            else {
+                int lengthCode = prefixCode(copyLength);
+                green.writeSymbol(writer, NUM_LITERAL_CODES + lengthCode);
+                writePrefixExtraBits(copyLength, lengthCode);
+
+                int planeCode = planeCode(image.planeCodes, values[i]);
+                int distanceCode = prefixCode(planeCode);
+                distance.writeSymbol(writer, distanceCode);
+                writePrefixExtraBits(planeCode, distanceCode);
+
+                if (cache != null) {
+                    for (int end = pos + copyLength; pos < end; pos++) {
+                        cache[hash(pixels[pos], cacheShift)] = pixels[pos];
+                    }
+                }
+                else {
+                    pos += copyLength;
+                }
+            }
+        }
+    }
+
+    private static int findBackwardReferences(final int[] pixels, final int length, final int xSize, final int[] planeCodes,
+                                              final int depth, final int[] lengths, final int[] values) {
+        TokenCosts costs = new TokenCosts();
+        int[] head = null;
+        int[] chain = null;
+
+        if (depth > 0) {
+            head = new int[1 << HASH_BITS];
+            chain = new int[length];
+            Arrays.fill(head, -1);
+        }
+
+        int numTokens = 0;
+        float[] literalsCost = new float[MAX_LENGTH + 1];
+        int[] nearDistances = xSize > 1 ? new int[] {1, xSize} : new int[] {1};
+
+        for (int pos = 0; pos < length; ) {
+            int maxLength = min(MAX_LENGTH, length - pos);
+            int bestLength = 0;
+            int bestDistance = 0;
+
+            if (maxLength >= MIN_LENGTH) {
+                // The backward reference with the largest estimated gain over literals is used, if any
+                float bestGain = 0;
+                int longest = 0;
+                int computed = costs.literalsCost(pixels, pos, 0, MIN_LENGTH, literalsCost);
+
+                // The previous pixel and the pixel above are cheap to test, and have the shortest distance codes
+                for (int distance : nearDistances) {
+                    if (distance > pos) {
+                        break;
+                    }
+
+                    int matchLength = matchLength(pixels, pos - distance, pos, maxLength);
+
+                    if (matchLength >= MIN_LENGTH) {
+                        computed = costs.literalsCost(pixels, pos, computed, matchLength, literalsCost);
+                        float gain = literalsCost[matchLength] - costs.copyCost(matchLength, planeCode(planeCodes, distance));
+
+                        if (gain > bestGain) {
+                            bestGain = gain;
+                            bestLength = matchLength;
+                            bestDistance = distance;
+                        }
+                    }
+
+                    longest = max(longest, matchLength);
+                }
+
+                if (head != null) {
+                    int candidate = head[hash2(pixels[pos], pixels[pos + 1])];
+
+                    for (int i = depth; candidate >= 0 && i > 0 && longest < maxLength; i--) {
+                        int distance = pos - candidate;
+
+                        if (distance > MAX_DISTANCE) {
+                            break;
+                        }
+
+                        // Only matches longer than the longest so far are considered, quick test of the pixel that makes it longer
+                        if (pixels[candidate + longest] == pixels[pos + longest]) {
+                            int matchLength = matchLength(pixels, candidate, pos, maxLength);
+
+                            if (matchLength > longest) {
+                                longest = matchLength;
+
+                                if (matchLength >= MIN_LENGTH) {
+                                    computed = costs.literalsCost(pixels, pos, computed, matchLength, literalsCost);
+                                    float gain = literalsCost[matchLength] - costs.copyCost(matchLength, planeCode(planeCodes, distance));
+
+                                    if (gain > bestGain) {
+                                        bestGain = gain;
+                                        bestLength = matchLength;
+                                        bestDistance = distance;
+                                    }
+                                }
+                            }
+                        }
+
+                        candidate = chain[candidate];
+                    }
+                }
+            }
+
+            int advance;
+
+            if (bestLength > 0) {
+                lengths[numTokens] = bestLength;
+                values[numTokens++] = bestDistance;
+                costs.addCopy(bestLength, planeCode(planeCodes, bestDistance));
+                advance = bestLength;
+            }
+            else {
+                lengths[numTokens] = 0;
+                values[numTokens++] = pixels[pos];
+                costs.addLiteral(pixels[pos]);
+                advance = 1;
+            }
+
+            if (head != null) {
+                // Hash all positions covered, except the last, that has no following pixel
+                for (int i = pos, end = min(pos + advance, length - 1); i < end; i++) {
+                    int key = hash2(pixels[i], pixels[i + 1]);
+                    chain[i] = head[key];
+                    head[key] = i;
+                }
+            }
+
+            pos += advance;
+        }
+
+        return numTokens;
+    }
+
+    private static int matchLength(final int[] pixels, final int candidate, final int pos, final int maxLength) {
+        int length = 0;
+
+        while (length < maxLength && pixels[candidate + length] == pixels[pos + length]) {
+            length++;
+        }
+
+        return length;
+    }
+
+    private static int hash(final int argb, final int shift) {
+        return hash(argb) >>> shift;
+    }
+
+    // The color cache key, for a cache of n bits, is the n most significant bits
+    private static int hash(final int argb) {
+        return argb * (int) HASH_MUL;
+    }
+
+    private static int hash2(final int first, final int second) {
+        return (int) ((((first * HASH_MUL) ^ second) * HASH_MUL & 0xffffffffL) >> (32 - HASH_BITS));
+    }
+
+    // Distance codes 1-120 for the closest neighbours (the smallest code if several are the same distance)
+    private static int[] planeCodes(final int xSize) {
+        int[] codes = new int[7 * xSize + 9];
+
+        for (int code = CODE_TO_PLANE.length; code >= 1; code--) {
+            int distanceCode = CODE_TO_PLANE[code - 1];
+            int distance = (distanceCode >> 4) * xSize + 8 - (distanceCode & 0xf);
+
+            if (distance >= 1) {
+                codes[distance] = code;
+            }
+        }
+
+        return codes;
+    }
+
+    private static int planeCode(final int[] planeCodes, final int distance) {
+        return distance < planeCodes.length && planeCodes[distance] != 0 ? planeCodes[distance] : distance + CODE_TO_PLANE.length;
+    }
+
+    // Length and distance prefix codes, the value is coded as the prefix code and extra bits
+    private static int prefixCode(final int value) {
+        int v = value - 1;
+
+        if (v < 4) {
+            return v;
+        }
+
+        int highestBit = 31 - Integer.numberOfLeadingZeros(v);
+
+        return 2 * highestBit + ((v >> (highestBit - 1)) & 1);
+    }
+
+    private static int prefixExtraBits(final int prefixCode) {
+        return prefixCode < 4 ? 0 : (prefixCode - 2) >> 1;
+    }
+
+    private void writePrefixExtraBits(final int value, final int prefixCode) throws IOException {
+        int extraBits = prefixExtraBits(prefixCode);
+
+        if (extraBits > 0) {
+            writer.writeBits(value - 1, extraBits); // Only the low bits are written
+        }
+    }
+
+    /**
+     * Adaptive estimate of the cost of literals and backward references, in bits, from the frequencies of the tokens so far.
+     * The color cache is not taken into account.
+     */
+    private static final class TokenCosts {
+        private static final int NUM_GREEN_CODES = NUM_LITERAL_CODES + NUM_LENGTH_CODES;
+
+        // log2 of 0 - 65535, larger values are shifted into the table
+        private static final float[] LOG2 = new float[1 << 16];
+
+        static {
+            for (int i = 1; i < LOG2.length; i++) {
+                LOG2[i] = VP8LEncoder.log2(i);
+            }
+        }
+
+        // Counts start at 1, so that unseen symbols have a finite cost, the log2 of each count is kept up to date
+        private final int[] green = new int[NUM_GREEN_CODES];
+        private final int[] red = new int[NUM_LITERAL_CODES];
+        private final int[] blue = new int[NUM_LITERAL_CODES];
+        private final int[] alpha = new int[NUM_LITERAL_CODES];
+        private final int[] distance = new int[NUM_DISTANCE_CODES];
+
+        private final float[] logGreen = new float[NUM_GREEN_CODES];
+        private final float[] logRed = new float[NUM_LITERAL_CODES];
+        private final float[] logBlue = new float[NUM_LITERAL_CODES];
+        private final float[] logAlpha = new float[NUM_LITERAL_CODES];
+        private final float[] logDistance = new float[NUM_DISTANCE_CODES];
+
+        private int literals = NUM_LITERAL_CODES;
+        private int copies = NUM_DISTANCE_CODES;
+        private float logLiteralTotal;
+        private float logCopyTotal;
+
+        TokenCosts() {
+            Arrays.fill(green, 1);
+            Arrays.fill(red, 1);
+            Arrays.fill(blue, 1);
+            Arrays.fill(alpha, 1);
+            Arrays.fill(distance, 1);
+
+            updateTotals();
+        }
+
+        // Cumulative cost of the literals from pos, computes the costs from index computed up to length, returns the new computed length
+        int literalsCost(final int[] pixels, final int pos, final int computed, final int length, final float[] costs) {
+            for (int i = computed; i < length; i++) {
+                int argb = pixels[pos + i];
+
+                costs[i + 1] = costs[i] + logLiteralTotal
+                        - logGreen[(argb >> 8) & 0xff] - logRed[(argb >> 16) & 0xff] - logBlue[argb & 0xff] - logAlpha[argb >>> 24];
+            }
+
+            return max(computed, length);
+        }
+
+        float copyCost(final int length, final int planeCode) {
+            int lengthCode = prefixCode(length);
+            int distanceCode = prefixCode(planeCode);
+
+            return logCopyTotal - logGreen[NUM_LITERAL_CODES + lengthCode] - logDistance[distanceCode]
+                    + prefixExtraBits(lengthCode) + prefixExtraBits(distanceCode);
+        }
+
+        void addLiteral(final int argb) {
+            increment(green, logGreen, (argb >> 8) & 0xff);
+            increment(red, logRed, (argb >> 16) & 0xff);
+            increment(blue, logBlue, argb & 0xff);
+            increment(alpha, logAlpha, argb >>> 24);
+            literals++;
+
+            updateTotals();
+        }
+
+        void addCopy(final int length, final int planeCode) {
+            increment(green, logGreen, NUM_LITERAL_CODES + prefixCode(length));
+            increment(distance, logDistance, prefixCode(planeCode));
+            copies++;
+
+            updateTotals();
+        }
+
+        private static void increment(final int[] counts, final float[] logCounts, final int symbol) {
+            logCounts[symbol] = log2(++counts[symbol]);
+        }
+
+        private void updateTotals() {
+            // All green symbols are literals or lengths, both start at one count per symbol
+            float logGreenTotal = log2(literals + copies - NUM_DISTANCE_CODES + NUM_LENGTH_CODES);
+
+            logLiteralTotal = logGreenTotal + 3 * log2(literals);
+            logCopyTotal = logGreenTotal + log2(copies);
+        }
+
+        private static float log2(final int value) {
+            if (value < LOG2.length) {
+                return LOG2[value];
+            }
+
+            int shift = 16 - Integer.numberOfLeadingZeros(value);
+
+            return LOG2[value >>> shift] + shift;
+        }
+    }
+
+    /**
+     * The backward references of an image, and the prefix codes used to write them.
+     */
+    private static final class EntropyImage {
+        final int[] pixels;
+        final int[] lengths;
+        final int[] values;
+        final int numTokens;
+        final int[] planeCodes;
+        final boolean topLevel;
+        final Histograms histograms;
+
+        EntropyImage(final int[] pixels, final int[] lengths, final int[] values, final int numTokens, final int[] planeCodes,
+                     final boolean topLevel, final Histograms histograms) {
+            this.pixels = pixels;
+            this.lengths = lengths;
+            this.values = values;
+            this.numTokens = numTokens;
+            this.planeCodes = planeCodes;
+            this.topLevel = topLevel;
+            this.histograms = histograms;
+        }
+
+        // Size in bits, as written by writeImageData
+        long size() {
+            return (topLevel ? 1 : 0) + histograms.size();
+        }
+    }
+
+    /**
+     * Symbol frequencies of the five prefix codes, for a given color cache size.
+     */
+    private static final class Histograms {
+        final int cacheBits;
+        final int[] green;
+        final int[] red = new int[NUM_LITERAL_CODES];
+        final int[] blue = new int[NUM_LITERAL_CODES];
+        final int[] alpha = new int[NUM_LITERAL_CODES];
+        final int[] distance = new int[NUM_DISTANCE_CODES];
+
+        long extraBits;
+
+        HuffmanCode greenCode;
+        HuffmanCode redCode;
+        HuffmanCode blueCode;
+        HuffmanCode alphaCode;
+        HuffmanCode distanceCode;
+
+        private long size;
+
+        Histograms(final int cacheBits) {
+            this.cacheBits = cacheBits;
+            this.green = new int[NUM_LITERAL_CODES + NUM_LENGTH_CODES + (cacheBits > 0 ? 1 << cacheBits : 0)];
+        }
+
+        // Collects the histograms for each of the color cache sizes, in a single pass over the tokens
+        static Histograms[] collect(final int[] cacheBits, final int[] pixels, final int[] lengths, final int[] values,
+                                    final int numTokens, final int[] planeCodes) {
+            int count = cacheBits.length;
+            Histograms[] histograms = new Histograms[count];
+            int[][] caches = new int[count][];
+            int[] lengthCodes = new int[NUM_LENGTH_CODES];
+            int[] distance = new int[NUM_DISTANCE_CODES];
+            long extraBits = 0;
+
+            for (int k = 0; k < count; k++) {
+                histograms[k] = new Histograms(cacheBits[k]);
+                caches[k] = cacheBits[k] > 0 ? new int[1 << cacheBits[k]] : null;
+            }
+
+            for (int i = 0, pos = 0; i < numTokens; i++) {
+                int copyLength = lengths[i];
+
+                if (copyLength == 0) {
+                    int argb = values[i];
+                    int hash = hash(argb);
+                    pos++;
+
+                    for (int k = 0; k < count; k++) {
+                        Histograms histogram = histograms[k];
+                        int[] cache = caches[k];
+
+                        if (cache != null) {
+                            int key = hash >>> (32 - histogram.cacheBits);
+
+                            if (cache[key] == argb) {
+                                histogram.green[NUM_LITERAL_CODES + NUM_LENGTH_CODES + key]++;
+                                continue;
+                            }
+
+                            cache[key] = argb;
+                        }
+
+                        histogram.green[(argb >> 8) & 0xff]++;
+                        histogram.red[(argb >> 16) & 0xff]++;
+                        histogram.blue[argb & 0xff]++;
+                        histogram.alpha[argb >>> 24]++;
+                    }
+                }
+                else {
+                    int lengthCode = prefixCode(copyLength);
+                    lengthCodes[lengthCode]++;
+
+                    int distanceCode = prefixCode(planeCode(planeCodes, values[i]));
+                    distance[distanceCode]++;
+
+                    extraBits += prefixExtraBits(lengthCode) + prefixExtraBits(distanceCode);
+
+                    for (int end = pos + copyLength; pos < end; pos++) {
+                        int argb = pixels[pos];
+                        int hash = hash(argb);
+
+                        for (int k = 0; k < count; k++) {
+                            if (caches[k] != null) {
+                                caches[k][hash >>> (32 - cacheBits[k])] = argb;
+                            }
+                        }
+                    }
+                }
+            }
+
+            // Backward references are the same for all cache sizes
+            for (Histograms histogram : histograms) {
+                System.arraycopy(lengthCodes, 0, histogram.green, NUM_LITERAL_CODES, NUM_LENGTH_CODES);
+                System.arraycopy(distance, 0, histogram.distance, 0, NUM_DISTANCE_CODES);
+                histogram.extraBits = extraBits;
+                histogram.buildCodes();
+            }
+
+            return histograms;
+        }
+
+        private void buildCodes() {
+            greenCode = new HuffmanCode(green, green.length, HuffmanCode.MAX_CODE_LENGTH);
+            redCode = new HuffmanCode(red, NUM_LITERAL_CODES, HuffmanCode.MAX_CODE_LENGTH);
+            blueCode = new HuffmanCode(blue, NUM_LITERAL_CODES, HuffmanCode.MAX_CODE_LENGTH);
+            alphaCode = new HuffmanCode(alpha, NUM_LITERAL_CODES, HuffmanCode.MAX_CODE_LENGTH);
+            distanceCode = new HuffmanCode(distance, NUM_DISTANCE_CODES, HuffmanCode.MAX_CODE_LENGTH);
+
+            // The color cache bits, the codes and the coded symbols
+            size = (cacheBits > 0 ? 5 : 1) + extraBits
+                    + greenCode.codeSize() + greenCode.symbolsSize(green)
+                    + redCode.codeSize() + redCode.symbolsSize(red)
+                    + blueCode.codeSize() + blueCode.symbolsSize(blue)
+                    + alphaCode.codeSize() + alphaCode.symbolsSize(alpha)
+                    + distanceCode.codeSize() + distanceCode.symbolsSize(distance);
+        }
+
+        // Size in bits
+        long size() {
+            return size;
+        }
+    }
+}
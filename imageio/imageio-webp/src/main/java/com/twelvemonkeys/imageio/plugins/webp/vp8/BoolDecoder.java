@@ -32,12 +32,20 @@
 package com.twelvemonkeys.imageio.plugins.webp.vp8;
 
 import javax.imageio.stream.ImageInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 
 final class BoolDecoder {
+    // Each decoder reads its partition in chunks, so several decoders can share the same stream
+    private static final int BUFFER_SIZE = 4096;
+
+    private final ImageInputStream data;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private long offset; /* stream position of next buffer fill */
+    private int pos;
+    private int limit;
+
     private int bit_count; /* # of bits shifted out of value, at most 7 */
-    ImageInputStream data;
-    private long offset; /* pointer to next compressed data byte */
     private int range; /* always identical to encoder's range */
     private int value; /* contains at least 24 significant bits */
 
@@ -48,17 +56,28 @@ final class BoolDecoder {
     }
 
     private void initBoolDecoder() throws IOException {
-        value = 0; /* value = first 16 input bits */
-
-        data.seek(offset);
-        value = data.readUnsignedByte() << 8;
-        // value = (data[offset]) << 8;
-        offset++;
-
+        value = readByte() << 8; /* value = first 16 input bits */
         range = 255; /* initial range is full */
         bit_count = 0; /* have not yet shifted out any bits */
     }
 
+    private int readByte() throws IOException {
+        if (pos == limit) {
+            data.seek(offset);
+
+            int read = data.read(buffer, 0, buffer.length);
+            if (read <= 0) {
+                throw new EOFException();
+            }
+
+            offset += read;
+            pos = 0;
+            limit = read;
+        }
+
+        return buffer[pos++] & 0xff;
+    }
+
     public int readBit() throws IOException {
         return readBool(128);
     }
@@ -87,10 +106,7 @@ final class BoolDecoder {
             count -= shift;
 
             if (count <= 0) {
-                // data.seek(offset);
-                value |= data.readUnsignedByte() << (-count);
-                // value |= data[offset] << (-count);
-                offset++;
+                value |= readByte() << (-count);
                 count += 8;
             }
 
@@ -134,10 +150,6 @@ final class BoolDecoder {
         return -i; /* return value is negation of nonpositive index */
     }
 
-    public void seek() throws IOException {
-        data.seek(offset);
-    }
-
     public String toString() {
         return "bc: " + value;
     }
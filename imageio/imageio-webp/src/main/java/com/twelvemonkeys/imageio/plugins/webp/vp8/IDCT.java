@@ -37,108 +37,112 @@ final class IDCT {
 
 	private static final int sinpi8sqrt2 = 35468;
 
-	public static int[][] idct4x4llm(int[] input) {
+	/**
+	 * Inverse transforms the 16 coefficients at {@code offset} and adds the result to the predicted 4x4 block
+	 * in {@code dest}. The coefficients are used as temporary storage, and are cleared on return.
+	 */
+	static void idct4x4llm(final int[] input, final int offset, final byte[] dest, final int destOffset, final int stride) {
 		int a1, b1, c1, d1;
-
-		int[] output = new int[16];
 		int temp1, temp2;
 
-		for (int i = 0, offset = 0; i < 4; i++) {
-			a1 = input[offset] + input[offset + 8];
-			b1 = input[offset] - input[offset + 8];
-
-			temp1 = (input[offset + 4] * sinpi8sqrt2) >> 16;
-			temp2 = input[offset + 12]
-					+ ((input[offset + 12] * cospi8sqrt2minus1) >> 16);
+		// Vertical pass, in place
+		for (int i = offset; i < offset + 4; i++) {
+			a1 = input[i] + input[i + 8];
+			b1 = input[i] - input[i + 8];
 
+			temp1 = (input[i + 4] * sinpi8sqrt2) >> 16;
+			temp2 = input[i + 12] + ((input[i + 12] * cospi8sqrt2minus1) >> 16);
 			c1 = temp1 - temp2;
 
-			temp1 = input[offset + 4]
-					+ ((input[offset + 4] * cospi8sqrt2minus1) >> 16);
-			temp2 = (input[offset + 12] * sinpi8sqrt2) >> 16;
+			temp1 = input[i + 4] + ((input[i + 4] * cospi8sqrt2minus1) >> 16);
+			temp2 = (input[i + 12] * sinpi8sqrt2) >> 16;
 			d1 = temp1 + temp2;
 
-			output[offset          ] = a1 + d1;
-			output[offset + (3 * 4)] = a1 - d1;
-			output[offset + (    4)] = b1 + c1;
-			output[offset + (2 * 4)] = b1 - c1;
-
-			offset++;
+			input[i     ] = a1 + d1;
+			input[i + 12] = a1 - d1;
+			input[i +  4] = b1 + c1;
+			input[i +  8] = b1 - c1;
 		}
 
-		int diffo = 0;
-		int[][] diff = new int[4][4];
-		for (int i = 0, offset = 0; i < 4; i++) {
-			a1 = output[offset * 4] + output[(offset * 4) + 2];
-			b1 = output[offset * 4] - output[(offset * 4) + 2];
+		// Horizontal pass, adding to the prediction
+		for (int i = offset, d = destOffset; i < offset + 16; i += 4, d += stride) {
+			a1 = input[i] + input[i + 2];
+			b1 = input[i] - input[i + 2];
 
-			temp1 = (output[(offset * 4) + 1] * sinpi8sqrt2) >> 16;
-			temp2 = output[(offset * 4) + 3] + ((output[(offset * 4) + 3] * cospi8sqrt2minus1) >> 16);
+			temp1 = (input[i + 1] * sinpi8sqrt2) >> 16;
+			temp2 = input[i + 3] + ((input[i + 3] * cospi8sqrt2minus1) >> 16);
 			c1 = temp1 - temp2;
 
-			temp1 = output[(offset * 4) + 1] + ((output[(offset * 4) + 1] * cospi8sqrt2minus1) >> 16);
-			temp2 = (output[(offset * 4) + 3] * sinpi8sqrt2) >> 16;
+			temp1 = input[i + 1] + ((input[i + 1] * cospi8sqrt2minus1) >> 16);
+			temp2 = (input[i + 3] * sinpi8sqrt2) >> 16;
 			d1 = temp1 + temp2;
 
-			output[(offset * 4)    ] = (a1 + d1 + 4) >> 3;
-			output[(offset * 4) + 3] = (a1 - d1 + 4) >> 3;
-			output[(offset * 4) + 1] = (b1 + c1 + 4) >> 3;
-			output[(offset * 4) + 2] = (b1 - c1 + 4) >> 3;
+			dest[d    ] = clamp((dest[d    ] & 0xff) + ((a1 + d1 + 4) >> 3));
+			dest[d + 3] = clamp((dest[d + 3] & 0xff) + ((a1 - d1 + 4) >> 3));
+			dest[d + 1] = clamp((dest[d + 1] & 0xff) + ((b1 + c1 + 4) >> 3));
+			dest[d + 2] = clamp((dest[d + 2] & 0xff) + ((b1 - c1 + 4) >> 3));
 
-			diff[0][diffo] = (a1 + d1 + 4) >> 3;
-			diff[3][diffo] = (a1 - d1 + 4) >> 3;
-			diff[1][diffo] = (b1 + c1 + 4) >> 3;
-			diff[2][diffo] = (b1 - c1 + 4) >> 3;
-
-			offset++;
-			diffo++;
+			input[i] = input[i + 1] = input[i + 2] = input[i + 3] = 0;
 		}
+	}
 
-		return diff;
-
+	/**
+	 * Same as {@link #idct4x4llm}, for blocks where only the DC coefficient is non-zero.
+	 */
+	static void idctDC(final int[] input, final int offset, final byte[] dest, final int destOffset, final int stride) {
+		int dc = (input[offset] + 4) >> 3;
+		input[offset] = 0;
+
+		for (int y = 0, d = destOffset; y < 4; y++, d += stride) {
+			dest[d    ] = clamp((dest[d    ] & 0xff) + dc);
+			dest[d + 1] = clamp((dest[d + 1] & 0xff) + dc);
+			dest[d + 2] = clamp((dest[d + 2] & 0xff) + dc);
+			dest[d + 3] = clamp((dest[d + 3] & 0xff) + dc);
+		}
 	}
 
-	public static int[][] iwalsh4x4(int[] input) {
+	/**
+	 * Inverse Walsh-Hadamard transforms the 16 Y2 coefficients at {@code offset}, and stores the result as the DC
+	 * coefficients of the 16 luma blocks, starting at {@code outputOffset}.
+	 * The Y2 coefficients are used as temporary storage, and are cleared on return.
+	 */
+	static void iwalsh4x4(final int[] input, final int offset, final int[] output, final int outputOffset) {
 		int a1, b1, c1, d1;
 		int a2, b2, c2, d2;
 
-		int[] output = new int[16];
-		int[][] diff = new int[4][4];
-		for (int i = 0, offset = 0; i < 4; i++) {
-			a1 = input[offset    ] + input[offset + 12];
-			b1 = input[offset + 4] + input[offset + 8];
-			c1 = input[offset + 4] - input[offset + 8];
-			d1 = input[offset    ] - input[offset + 12];
-
-			output[offset     ] = a1 + b1;
-			output[offset +  4] = c1 + d1;
-			output[offset +  8] = a1 - b1;
-			output[offset + 12] = d1 - c1;
-			offset++;
+		for (int i = offset; i < offset + 4; i++) {
+			a1 = input[i    ] + input[i + 12];
+			b1 = input[i + 4] + input[i + 8];
+			c1 = input[i + 4] - input[i + 8];
+			d1 = input[i    ] - input[i + 12];
+
+			input[i     ] = a1 + b1;
+			input[i +  4] = c1 + d1;
+			input[i +  8] = a1 - b1;
+			input[i + 12] = d1 - c1;
 		}
 
-		for (int i = 0, offset = 0; i < 4; i++) {
-			a1 = output[offset    ] + output[offset + 3];
-			b1 = output[offset + 1] + output[offset + 2];
-			c1 = output[offset + 1] - output[offset + 2];
-			d1 = output[offset    ] - output[offset + 3];
+		for (int i = offset, o = outputOffset; i < offset + 16; i += 4, o += 4 * 16) {
+			a1 = input[i    ] + input[i + 3];
+			b1 = input[i + 1] + input[i + 2];
+			c1 = input[i + 1] - input[i + 2];
+			d1 = input[i    ] - input[i + 3];
 
 			a2 = a1 + b1;
 			b2 = c1 + d1;
 			c2 = a1 - b1;
 			d2 = d1 - c1;
-			output[offset    ] = (a2 + 3) >> 3;
-			output[offset + 1] = (b2 + 3) >> 3;
-			output[offset + 2] = (c2 + 3) >> 3;
-			output[offset + 3] = (d2 + 3) >> 3;
-			diff[0][i] = (a2 + 3) >> 3;
-			diff[1][i] = (b2 + 3) >> 3;
-			diff[2][i] = (c2 + 3) >> 3;
-			diff[3][i] = (d2 + 3) >> 3;
-			offset += 4;
-		}
 
-		return diff;
+			output[o         ] = (a2 + 3) >> 3;
+			output[o +     16] = (b2 + 3) >> 3;
+			output[o + 2 * 16] = (c2 + 3) >> 3;
+			output[o + 3 * 16] = (d2 + 3) >> 3;
+
+			input[i] = input[i + 1] = input[i + 2] = input[i + 3] = 0;
+		}
+	}
 
+	private static byte clamp(final int value) {
+		return (byte) (value < 0 ? 0 : value > 255 ? 255 : value);
 	}
 }
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2026, TwelveMonkeys contributors
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.twelvemonkeys.imageio.plugins.webp.vp8;
+
+import static com.twelvemonkeys.imageio.plugins.webp.vp8.Globals.*;
+
+/**
+ * Intra prediction, in place in a work buffer with a row stride of {@link #BPS}.
+ * The row above and the column left of the predicted block, as well as four pixels above right for sub blocks,
+ * must be available in the buffer.
+ * For macro blocks, {@code top} and {@code left} tells whether the neighbouring pixels are inside the frame.
+ */
+final class IntraPredictor {
+    static final int BPS = 32;
+
+    private IntraPredictor() {}
+
+    static void predictLuma(final byte[] buffer, final int offset, final int mode, final boolean top, final boolean left) {
+        predictMacroBlock(buffer, offset, 16, mode, top, left);
+    }
+
+    static void predictChroma(final byte[] buffer, final int offset, final int mode, final boolean top, final boolean left) {
+        predictMacroBlock(buffer, offset, 8, mode, top, left);
+    }
+
+    private static void predictMacroBlock(final byte[] buffer, final int offset, final int size, final int mode, final boolean top, final boolean left) {
+        switch (mode) {
+            case DC_PRED:
+                int dc = 128;
+
+                if (top || left) {
+                    int sum = 0;
+                    int shift = size == 16 ? 3 : 2;
+
+                    if (top) {
+                        for (int i = 0; i < size; i++) {
+                            sum += buffer[offset - BPS + i] & 0xff;
+                        }
+
+                        shift++;
+                    }
+
+                    if (left) {
+                        for (int i = 0; i < size; i++) {
+                            sum += buffer[offset + i * BPS - 1] & 0xff;
+                        }
+
+                        shift++;
+                    }
+
+                    dc = (sum + (1 << (shift - 1))) >> shift;
+                }
+
+                for (int y = 0, o = offset; y < size; y++, o += BPS) {
+                    for (int x = 0; x < size; x++) {
+                        buffer[o + x] = (byte) dc;
+                    }
+                }
+
+                break;
+
+            case V_PRED:
+                for (int y = 0, o = offset; y < size; y++, o += BPS) {
+                    System.arraycopy(buffer, offset - BPS, buffer, o, size);
+                }
+
+                break;
+
+            case H_PRED:
+                for (int y = 0, o = offset; y < size; y++, o += BPS) {
+                    byte value = buffer[o - 1];
+
+                    for (int x = 0; x < size; x++) {
+                        buffer[o + x] = value;
+                    }
+                }
+
+                break;
+
+            case TM_PRED:
+                int topLeft = buffer[offset - BPS - 1] & 0xff;
+
+                for (int y = 0, o = offset; y < size; y++, o += BPS) {
+                    int leftMinusTopLeft = (buffer[o - 1] & 0xff) - topLeft;
+
+                    for (int x = 0; x < size; x++) {
+                        buffer[o + x] = (byte) clamp((buffer[offset - BPS + x] & 0xff) + leftMinusTopLeft, 255);
+                    }
+                }
+
+                break;
+
+            default:
+                throw new IllegalArgumentException("Bad input: Unknown intra prediction mode: " + mode);
+        }
+    }
+
+    static void predictSubBlock(final byte[] buffer, final int offset, final int mode) {
+        int t = offset - BPS;
+
+        int a0 = buffer[t] & 0xff;
+        int a1 = buffer[t + 1] & 0xff;
+        int a2 = buffer[t + 2] & 0xff;
+        int a3 = buffer[t + 3] & 0xff;
+        int a4 = buffer[t + 4] & 0xff; // Above right
+        int a5 = buffer[t + 5] & 0xff;
+        int a6 = buffer[t + 6] & 0xff;
+        int a7 = buffer[t + 7] & 0xff;
+
+        int l0 = buffer[offset - 1] & 0xff;
+        int l1 = buffer[offset + BPS - 1] & 0xff;
+        int l2 = buffer[offset + 2 * BPS - 1] & 0xff;
+        int l3 = buffer[offset + 3 * BPS - 1] & 0xff;
+
+        int al = buffer[t - 1] & 0xff;
+
+        switch (mode) {
+            case B_DC_PRED:
+                fill(buffer, offset, (a0 + a1 + a2 + a3 + l0 + l1 + l2 + l3 + 4) >> 3);
+                break;
+
+            case B_TM_PRED:
+                for (int r = 0, o = offset; r < 4; r++, o += BPS) {
+                    int left = (buffer[o - 1] & 0xff) - al;
+
+                    buffer[o    ] = (byte) clamp(a0 + left, 255);
+                    buffer[o + 1] = (byte) clamp(a1 + left, 255);
+                    buffer[o + 2] = (byte) clamp(a2 + left, 255);
+                    buffer[o + 3] = (byte) clamp(a3 + left, 255);
+                }
+                break;
+
+            case B_VE_PRED:
+                for (int r = 0, o = offset; r < 4; r++, o += BPS) {
+                    buffer[o    ] = avg3(al, a0, a1);
+                    buffer[o + 1] = avg3(a0, a1, a2);
+                    buffer[o + 2] = avg3(a1, a2, a3);
+                    buffer[o + 3] = avg3(a2, a3, a4);
+                }
+                break;
+
+            case B_HE_PRED:
+                fillRow(buffer, offset, avg3(al, l0, l1));
+                fillRow(buffer, offset + BPS, avg3(l0, l1, l2));
+                fillRow(buffer, offset + 2 * BPS, avg3(l1, l2, l3));
+                fillRow(buffer, offset + 3 * BPS, avg3(l2, l3, l3));
+                break;
+
+            case B_LD_PRED:
+                set(buffer, offset, 0, 0, avg3(a0, a1, a2));
+                set(buffer, offset, 1, 0, 0, 1, avg3(a1, a2, a3));
+                set(buffer, offset, 2, 0, 1, 1, 0, 2, avg3(a2, a3, a4));
+                set(buffer, offset, 3, 0, 2, 1, 1, 2, 0, 3, avg3(a3, a4, a5));
+                set(buffer, offset, 3, 1, 2, 2, 1, 3, avg3(a4, a5, a6));
+                set(buffer, offset, 3, 2, 2, 3, avg3(a5, a6, a7));
+                set(buffer, offset, 3, 3, avg3(a6, a7, a7));
+                break;
+
+            case B_RD_PRED:
+                set(buffer, offset, 0, 3, avg3(l3, l2, l1));
+                set(buffer, offset, 1, 3, 0, 2, avg3(l2, l1, l0));
+                set(buffer, offset, 2, 3, 1, 2, 0, 1, avg3(l1, l0, al));
+                set(buffer, offset, 3, 3, 2, 2, 1, 1, 0, 0, avg3(l0, al, a0));
+                set(buffer, offset, 3, 2, 2, 1, 1, 0, avg3(al, a0, a1));
+                set(buffer, offset, 3, 1, 2, 0, avg3(a0, a1, a2));
+                set(buffer, offset, 3, 0, avg3(a1, a2, a3));
+                break;
+
+            case B_VR_PRED:
+                set(buffer, offset, 0, 3, avg3(l2, l1, l0));
+                set(buffer, offset, 0, 2, avg3(l1, l0, al));
+                set(buffer, offset, 1, 3, 0, 1, avg3(l0, al, a0));
+                set(buffer, offset, 1, 2, 0, 0, avg2(al, a0));
+                set(buffer, offset, 2, 3, 1, 1, avg3(al, a0, a1));
+                set(buffer, offset, 2, 2, 1, 0, avg2(a0, a1));
+                set(buffer, offset, 3, 3, 2, 1, avg3(a0, a1, a2));
+                set(buffer, offset, 3, 2, 2, 0, avg2(a1, a2));
+                set(buffer, offset, 3, 1, avg3(a1, a2, a3));
+                set(buffer, offset, 3, 0, avg2(a2, a3));
+                break;
+
+            case B_VL_PRED:
+                set(buffer, offset, 0, 0, avg2(a0, a1));
+                set(buffer, offset, 0, 1, avg3(a0, a1, a2));
+                set(buffer, offset, 0, 2, 1, 0, avg2(a1, a2));
+                set(buffer, offset, 1, 1, 0, 3, avg3(a1, a2, a3));
+                set(buffer, offset, 1, 2, 2, 0, avg2(a2, a3));
+                set(buffer, offset, 1, 3, 2, 1, avg3(a2, a3, a4));
+                set(buffer, offset, 3, 0, 2, 2, avg2(a3, a4));
+                set(buffer, offset, 3, 1, 2, 3, avg3(a3, a4, a5));
+                set(buffer, offset, 3, 2, avg3(a4, a5, a6));
+                set(buffer, offset, 3, 3, avg3(a5, a6, a7));
+                break;
+
+            case B_HD_PRED:
+                set(buffer, offset, 0, 3, avg2(l3, l2));
+                set(buffer, offset, 1, 3, avg3(l3, l2, l1));
+                set(buffer, offset, 0, 2, 2, 3, avg2(l2, l1));
+                set(buffer, offset, 1, 2, 3, 3, avg3(l2, l1, l0));
+                set(buffer, offset, 2, 2, 0, 1, avg2(l1, l0));
+                set(buffer, offset, 3, 2, 1, 1, avg3(l1, l0, al));
+                set(buffer, offset, 2, 1, 0, 0, avg2(l0, al));
+                set(buffer, offset, 3, 1, 1, 0, avg3(l0, al, a0));
+                set(buffer, offset, 2, 0, avg3(al, a0, a1));
+                set(buffer, offset, 3, 0, avg3(a0, a1, a2));
+                break;
+
+            case B_HU_PRED:
+                set(buffer, offset, 0, 0, avg2(l0, l1));
+                set(buffer, offset, 1, 0, avg3(l0, l1, l2));
+                set(buffer, offset, 2, 0, 0, 1, avg2(l1, l2));
+                set(buffer, offset, 3, 0, 1, 1, avg3(l1, l2, l3));
+                set(buffer, offset, 2, 1, 0, 2, avg2(l2, l3));
+                set(buffer, offset, 3, 1, 1, 2, avg3(l2, l3, l3));
+                set(buffer, offset, 2, 2, 3, 2, 0, 3, (byte) l3);
+                set(buffer, offset, 1, 3, 2, 3, 3, 3, (byte) l3);
+                break;
+
+            default:
+                throw new IllegalArgumentException("Bad input: Unknown sub block prediction mode: " + mode);
+        }
+    }
+
+    private static byte avg2(final int a, final int b) {
+        return (byte) ((a + b + 1) >> 1);
+    }
+
+    private static byte avg3(final int a, final int b, final int c) {
+        return (byte) ((a + 2 * b + c + 2) >> 2);
+    }
+
+    private static void fill(final byte[] buffer, final int offset, final int value) {
+        for (int r = 0; r < 4; r++) {
+            fillRow(buffer, offset + r * BPS, (byte) value);
+        }
+    }
+
+    private static void fillRow(final byte[] buffer, final int offset, final byte value) {
+        buffer[offset] = buffer[offset + 1] = buffer[offset + 2] = buffer[offset + 3] = value;
+    }
+
+    // Sets the pixel(s) at (column, row) to value
+    private static void set(final byte[] buffer, final int offset, final int c, final int r, final byte value) {
+        buffer[offset + r * BPS + c] = value;
+    }
+
+    private static void set(final byte[] buffer, final int offset, final int c0, final int r0, final int c1, final int r1, final byte value) {
+        buffer[offset + r0 * BPS + c0] = buffer[offset + r1 * BPS + c1] = value;
+    }
+
+    private static void set(final byte[] buffer, final int offset, final int c0, final int r0, final int c1, final int r1, final int c2, final int r2, final byte value) {
+        buffer[offset + r0 * BPS + c0] = buffer[offset + r1 * BPS + c1] = buffer[offset + r2 * BPS + c2] = value;
+    }
+
+    private static void set(final byte[] buffer, final int offset, final int c0, final int r0, final int c1, final int r1, final int c2, final int r2, final int c3, final int r3, final byte value) {
+        buffer[offset + r0 * BPS + c0] = buffer[offset + r1 * BPS + c1] = buffer[offset + r2 * BPS + c2] = buffer[offset + r3 * BPS + c3] = value;
+    }
+}
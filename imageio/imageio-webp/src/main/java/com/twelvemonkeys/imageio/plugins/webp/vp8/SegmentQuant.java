@@ -85,6 +85,9 @@ final class SegmentQuant {
 
     public void setUvdc_delta_q(int uvdc_delta_q) {
         this.uvdc = Globals.vp8DcQLookup[clamp(Qindex + uvdc_delta_q, 127)];
+        if (this.uvdc > 132) {
+            this.uvdc = 132;
+        }
     }
 
     public void setY1ac() {
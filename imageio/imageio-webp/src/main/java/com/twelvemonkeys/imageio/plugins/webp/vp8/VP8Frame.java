@@ -29,20 +29,26 @@
  * POSSIBILITY OF SUCH DAMAGE.
  */
 
+
 package com.twelvemonkeys.imageio.plugins.webp.vp8;
 
-import javax.imageio.IIOException;
 import javax.imageio.ImageReadParam;
+import javax.imageio.IIOException;
 import javax.imageio.event.IIOReadProgressListener;
 import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.awt.image.WritableRaster;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import static com.twelvemonkeys.imageio.color.YCbCrConverter.convertYCbCr2RGB;
+import static com.twelvemonkeys.imageio.plugins.webp.vp8.IntraPredictor.BPS;
 
 public final class VP8Frame {
     private static final int BLOCK_TYPES = 4;
@@ -52,10 +58,29 @@ public final class VP8Frame {
     private static final int MAX_REF_LF_DELTAS = 4;
     private static final int PREV_COEF_CONTEXTS = 3;
 
+    // Work buffer layout, one macro block with the row above and the column to the left
+    private static final int Y_OFFSET = BPS + 8;
+    private static final int U_OFFSET = BPS * 18 + 8;
+    private static final int V_OFFSET = U_OFFSET + 16;
+    private static final int WORK_SIZE = BPS * 26;
+
+    // Coefficient layout, 16 Y blocks, 4 U blocks, 4 V blocks and the Y2 block, 16 coefficients each
+    private static final int U_BLOCKS = 16;
+    private static final int V_BLOCKS = 20;
+    private static final int Y2_BLOCK = 24;
+
+    // Non-zero context bits, 4 Y, 2 U, 2 V and Y2
+    private static final int NZ_Y2 = 1 << 8;
+
+    // Rows kept above the current macro block row, for loop filtering
+    private static final int FILTER_ROWS = 8;
+
+    // Minimum number of macro blocks in the frame, for pipelined decoding to pay off
+    private static final int MIN_PIPELINE_MACRO_BLOCKS = 1024;
+
     private IIOReadProgressListener listener = null;
+    private Executor executor;
 
-    //    private int bufferCount;
-//    private int buffersToCreate = 1;
     private final int[][][][] coefProbs;
     private int filterLevel;
 
@@ -68,7 +93,6 @@ public final class VP8Frame {
     private int macroBlockNoCoeffSkip;
     private int macroBlockRows;
 
-    private MacroBlock[][] macroBlocks;
     private int macroBlockSegementAbsoluteDelta;
     private int[] macroBlockSegmentTreeProbs;
     private final int[] modeLoopFilterDeltas = new int[MAX_MODE_LF_DELTAS];
@@ -77,6 +101,7 @@ public final class VP8Frame {
     private int multiTokenPartition = 0;
 
     private long offset;
+    private int probSkipFalse;
     private final int[] refLoopFilterDeltas = new int[MAX_REF_LF_DELTAS];
     private int refreshEntropyProbs;
     private int refreshLastFrame;
@@ -84,12 +109,35 @@ public final class VP8Frame {
     private SegmentQuants segmentQuants;
     private int sharpnessLevel;
     private boolean simpleFilter;
-    private BoolDecoder tokenBoolDecoder;
     private final List<BoolDecoder> tokenBoolDecoders;
     private int updateMacroBlockSegmentationMap;
     private int updateMacroBlockSegmentatonData;
     private int width;
 
+    // Per macro block decoding state
+    private final int[] coefficients = new int[25 * 16];
+    private final int[] blockStatus = new int[24];
+    private final int[] subBlockModes = new int[16];
+    private final byte[] work = new byte[WORK_SIZE];
+
+    // Per macro block row decoding state, proportional to the width of the frame
+    private int[] intraTop;
+    private final int[] intraLeft = new int[4];
+    private int[] nonZeroTop;
+    private int nonZeroLeft;
+    private byte[] yTop;
+    private byte[] uTop;
+    private byte[] vTop;
+    private int[] filterLevels;
+    private boolean[] filterInner;
+
+    // The macro block row being reconstructed, and the rows above it needed for loop filtering
+    private byte[] yRows;
+    private byte[] uRows;
+    private byte[] vRows;
+    private int yStride;
+    private int uvStride;
+
     public VP8Frame(final ImageInputStream stream, boolean debug) throws IOException {
         this.frame = stream;
         this.debug = debug;
@@ -103,13 +151,15 @@ public final class VP8Frame {
         this.listener = listener;
     }
 
-    private void createMacroBlocks() {
-        macroBlocks = new MacroBlock[macroBlockRows + 2][macroBlockCols + 2];
-        for (int y = 0; y < macroBlockRows + 2; y++) {
-            for (int x = 0; x < macroBlockCols + 2; x++) {
-                macroBlocks[y][x] = new MacroBlock(x, y, debug);
-            }
-        }
+    /**
+     * Enables pipelined decoding, where the loop filter and output of a macro block row runs on the given executor,
+     * while the next row is reconstructed.
+     * Only used for frames large enough for the pipeline to pay off.
+     *
+     * @param executor the executor used for pipelined decoding, or {@code null} to decode sequentially
+     */
+    public void setExecutor(final Executor executor) {
+        this.executor = executor;
     }
 
     public boolean decode(final WritableRaster raster, final ImageReadParam param) throws IOException {
@@ -180,8 +230,6 @@ public final class VP8Frame {
 //        logger.log("macroBlockCols: " + macroBlockCols);
 //        logger.log("macroBlockRows: " + macroBlockRows);
 
-        createMacroBlocks();
-
         offset = frame.getStreamPosition();
 
         BoolDecoder bc = new BoolDecoder(frame, offset);
@@ -276,7 +324,6 @@ public final class VP8Frame {
         }
 
         setupTokenDecoder(bc, firstPartitionLengthInBytes, offset);
-        bc.seek();
 
         segmentQuants.parse(bc, segmentationIsEnabled == 1, macroBlockSegementAbsoluteDelta == 1);
 
@@ -321,695 +368,663 @@ public final class VP8Frame {
         macroBlockNoCoeffSkip = bc.readBit();
 //        logger.log("mb_no_coeff_skip: " + macroBlockNoCoeffSkip);
 
-        if (frameType == 0) {
-            readModes(bc);
-        }
-        else {
-            throw new IIOException("Bad input: Not an Intra frame");
+        probSkipFalse = macroBlockNoCoeffSkip > 0 ? bc.readLiteral(8) : 0;
+
+        if (debug) {
+            System.err.println("VP8 frame: " + width + "x" + height + ", partitions: " + tokenBoolDecoders.size()
+                    + ", qIndex: " + segmentQuants.getqIndex() + ", filter: " + (simpleFilter ? "simple" : "normal")
+                    + ", filter level: " + filterLevel + ", sharpness: " + sharpnessLevel);
         }
 
-        int ibc = 0;
-        int parts = 1 << multiTokenPartition;
+        decodeMacroBlockRows(bc, raster, param);
+
+        return true;
+    }
 
+    private void decodeMacroBlockRows(final BoolDecoder bc, final WritableRaster raster, final ImageReadParam param) throws IOException {
         Rectangle region = param != null && param.getSourceRegion() != null ? param.getSourceRegion() : raster.getBounds();
-        int sourceXSubsampling = param != null ? param.getSourceXSubsampling() : 1;
-        int sourceYSubsampling = param != null ? param.getSourceYSubsampling() : 1;
+        region = region.intersection(new Rectangle(0, 0, width, height));
+        final int xSubsampling = param != null ? param.getSourceXSubsampling() : 1;
+        final int ySubsampling = param != null ? param.getSourceYSubsampling() : 1;
 
-        for (int row = 0; row < macroBlockRows; row++) {
-            if (parts > 1) {
-                tokenBoolDecoder = tokenBoolDecoders.get(ibc);
-                tokenBoolDecoder.seek();
+        // We might be copying into a smaller raster
+        final int regionEnd = Math.min(region.y + region.height, region.y + raster.getHeight() * ySubsampling);
 
-                ibc++;
-                if (ibc == parts) {
-                    ibc = 0;
-                }
-            }
+        if (region.isEmpty() || regionEnd <= region.y) {
+            return;
+        }
 
-            decodeMacroBlockRow(row, raster, region, sourceXSubsampling, sourceYSubsampling);
+        final Rectangle sourceRegion = region;
+        int[][] levels = computeFilterLevels();
 
-            fireProgressUpdate(row);
-        }
+        intraTop = new int[macroBlockCols * 4];
+        nonZeroTop = new int[macroBlockCols];
+        yTop = new byte[macroBlockCols * 16];
+        uTop = new byte[macroBlockCols * 8];
+        vTop = new byte[macroBlockCols * 8];
 
-        return true;
-    }
+        yStride = macroBlockCols * 16;
+        uvStride = macroBlockCols * 8;
 
-    private void decodeMacroBlockRow(final int mbRow, final WritableRaster raster, final Rectangle region,
-                                     final int xSubsampling, final int ySubsampling) throws IOException {
-        final boolean filter = filterLevel != 0;
+        // In pipelined mode, one window is reconstructed while the other is filtered and copied to the raster
+        boolean pipeline = executor != null && macroBlockRows > 1 && macroBlockCols * macroBlockRows >= MIN_PIPELINE_MACRO_BLOCKS;
+        RowWindow[] windows = new RowWindow[pipeline ? 2 : 1];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new RowWindow(yStride, uvStride, macroBlockCols);
+        }
 
-        MacroBlock left = null;
-        MacroBlock[] prevRow = macroBlocks[mbRow];
-        MacroBlock[] currRow = macroBlocks[mbRow + 1];
+        Future<?> pending = null;
+        int pendingRow = -1;
+        int parts = tokenBoolDecoders.size();
 
-        for (int mbCol = 0; mbCol < macroBlockCols; mbCol++) {
-            MacroBlock mb = currRow[mbCol + 1];
+        try {
+            for (int mbY = 0; mbY < macroBlockRows; mbY++) {
+                final RowWindow window = windows[mbY % windows.length];
+                final RowWindow next = windows[(mbY + 1) % windows.length];
 
-            mb.decodeMacroBlock(this);
-            mb.dequantMacroBlock(this);
+                yRows = window.y;
+                uRows = window.u;
+                vRows = window.v;
+                filterLevels = window.filterLevels;
+                filterInner = window.filterInner;
 
-            if (filter) {
-                MacroBlock top = mbRow > 0 ? prevRow[mbCol + 1] : null;
-                LoopFilter.loopFilterBlock(mb, left, top, frameType, simpleFilter, sharpnessLevel);
-            }
+                BoolDecoder tokenBoolDecoder = tokenBoolDecoders.get(mbY & (parts - 1));
 
-            copyBlock(mb, raster, region, xSubsampling, ySubsampling);
+                initLeft(mbY);
 
-            left = mb;
-        }
-    }
+                for (int mbX = 0; mbX < macroBlockCols; mbX++) {
+                    decodeMacroBlock(bc, tokenBoolDecoder, levels, mbX, mbY);
+                }
 
-    private void fireProgressUpdate(int mbRow) {
-        if (listener != null) {
-            float percentageDone = (100.0f * ((float) (mbRow + 1) / (float) getMacroBlockRows()));
-            listener.imageProgress(null, percentageDone);
-        }
-    }
+                final int row = mbY;
+                final int end = mbY == macroBlockRows - 1 ? height : mbY * 16 + 16 - FILTER_ROWS;
 
-    public SubBlock getAboveRightSubBlock(SubBlock sb, SubBlock.Plane plane) {
-        // this might break at right edge
-        SubBlock r;
-        MacroBlock mb = sb.getMacroBlock();
-        int x = mb.getSubblockX(sb);
-        int y = mb.getSubblockY(sb);
-
-        if (plane == SubBlock.Plane.Y1) {
-            // top row
-            if (y == 0 && x < 3) {
-                MacroBlock mb2 = this.getMacroBlock(mb.getX(), mb.getY() - 1);
-                r = mb2.getSubBlock(plane, x + 1, 3);
-                return r;
-            }
-            //top right
-            else if (y == 0 && x == 3) {
-                MacroBlock mb2 = this.getMacroBlock(mb.getX() + 1, mb.getY() - 1);
-                r = mb2.getSubBlock(plane, 0, 3);
-
-                if (mb2.getX() == this.getMacroBlockCols()) {
-
-                    int[][] dest = new int[4][4];
-                    for (int b = 0; b < 4; b++) {
-                        for (int a = 0; a < 4; a++) {
-                            if (mb2.getY() < 0) {
-                                dest[a][b] = 127;
-                            }
-                            else {
-                                dest[a][b] = this.getMacroBlock(mb.getX(), mb.getY() - 1).getSubBlock(SubBlock.Plane.Y1, 3, 3).getDest()[3][3];
-                            }
-                        }
+                if (pending != null) {
+                    // The previous row must be finished, before this row can be filtered
+                    await(pending);
+                    fireProgressUpdate(pendingRow);
+                }
+
+                Runnable finishRow = new Runnable() {
+                    @Override
+                    public void run() {
+                        finishMacroBlockRow(row, end, window, next, raster, sourceRegion, regionEnd, xSubsampling, ySubsampling);
                     }
-                    r = new SubBlock(mb2, null, null, SubBlock.Plane.Y1);
-                    r.setDest(dest);
+                };
+
+                if (pipeline) {
+                    FutureTask<Void> task = new FutureTask<>(finishRow, null);
+                    executor.execute(task);
+                    pending = task;
+                    pendingRow = mbY;
+                }
+                else {
+                    finishRow.run();
+                    fireProgressUpdate(mbY);
                 }
 
-                return r;
+                if (end >= regionEnd) {
+                    break;
+                }
             }
-            //not right edge or top row
-            else if (y > 0 && x < 3) {
-                r = mb.getSubBlock(plane, x + 1, y - 1);
-                return r;
+
+            if (pending != null) {
+                Future<?> last = pending;
+                pending = null;
+                await(last);
+                fireProgressUpdate(pendingRow);
             }
-            //else use top right
-            else {
-                SubBlock sb2 = mb.getSubBlock(sb.getPlane(), 3, 0);
-                return this.getAboveRightSubBlock(sb2, plane);
+        }
+        finally {
+            if (pending != null) {
+                // Don't leave the worker writing to the raster, if decoding failed
+                awaitQuietly(pending);
             }
         }
-        else {
-            // TODO
-            throw new IllegalArgumentException("bad input: getAboveRightSubBlock()");
+    }
+
+    private static void await(final Future<?> pending) throws IOException {
+        try {
+            pending.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decoding VP8 frame");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new IIOException("Could not decode VP8 frame", cause);
         }
     }
 
-    public SubBlock getAboveSubBlock(SubBlock sb, SubBlock.Plane plane) {
-        SubBlock above = sb.getAbove();
+    private static void awaitQuietly(final Future<?> pending) {
+        try {
+            pending.get();
+        }
+        catch (ExecutionException ignore) {
+            // We're already failing
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Filters the macro block row, copies the finished rows to the raster,
+    // and moves the bottom rows to the next window, as they may still be modified by filtering the next row
+    private void finishMacroBlockRow(final int mbY, final int end, final RowWindow window, final RowWindow next,
+                                     final WritableRaster raster, final Rectangle region, final int regionEnd,
+                                     final int xSubsampling, final int ySubsampling) {
+        if (filterLevel != 0) {
+            filterMacroBlockRow(mbY, window);
+        }
 
-        if (above == null) {
-            MacroBlock mb = sb.getMacroBlock();
-            int x = mb.getSubblockX(sb);
+        copyRows(mbY, end, window, raster, region, regionEnd, xSubsampling, ySubsampling);
 
-            MacroBlock mb2 = getMacroBlock(mb.getX(), mb.getY() - 1);
-            //TODO: SPLIT
-            while (plane == SubBlock.Plane.Y2 && mb2.getYMode() == Globals.B_PRED) {
-                mb2 = getMacroBlock(mb2.getX(), mb2.getY() - 1);
+        System.arraycopy(window.y, 16 * yStride, next.y, 0, FILTER_ROWS * yStride);
+        System.arraycopy(window.u, 8 * uvStride, next.u, 0, FILTER_ROWS / 2 * uvStride);
+        System.arraycopy(window.v, 8 * uvStride, next.v, 0, FILTER_ROWS / 2 * uvStride);
+    }
+
+    /**
+     * A macro block row, with the rows above it needed for loop filtering, and the filter parameters of the row.
+     */
+    private static final class RowWindow {
+        final byte[] y;
+        final byte[] u;
+        final byte[] v;
+        final int[] filterLevels;
+        final boolean[] filterInner;
+
+        RowWindow(final int yStride, final int uvStride, final int macroBlockCols) {
+            y = new byte[yStride * (FILTER_ROWS + 16)];
+            u = new byte[uvStride * (FILTER_ROWS / 2 + 8)];
+            v = new byte[uvStride * (FILTER_ROWS / 2 + 8)];
+            filterLevels = new int[macroBlockCols];
+            filterInner = new boolean[macroBlockCols];
+        }
+    }
+
+    private int[][] computeFilterLevels() {
+        // Filter level per segment, for other modes and B_PRED
+        int[][] levels = new int[Globals.MAX_MB_SEGMENTS][2];
+
+        for (int s = 0; s < Globals.MAX_MB_SEGMENTS; s++) {
+            int level = filterLevel;
+
+            if (segmentationIsEnabled > 0) {
+                int strength = segmentQuants.getSegQuants()[s].getFilterStrength();
+                level = macroBlockSegementAbsoluteDelta > 0 ? strength : level + strength;
+                level = Math.max(0, Math.min(level, 63));
             }
 
-            above = mb2.getBottomSubBlock(x, sb.getPlane());
+            levels[s][0] = level;
+            levels[s][1] = level;
+
+            if (modeRefLoopFilterDeltaEnabled > 0) {
+                // Key frames are always intra, B_PRED has its own mode delta
+                level += refLoopFilterDeltas[0];
+                levels[s][0] = Math.max(0, Math.min(level, 63));
+                levels[s][1] = Math.max(0, Math.min(level + modeLoopFilterDeltas[0], 63));
+            }
         }
 
-        return above;
+        return levels;
     }
 
-//     private boolean getBit(int data, int bit) {
-//         int r = data & (1 << bit);
-//         return r != 0;
-//     }
+    private void initLeft(final int mbY) {
+        nonZeroLeft = 0;
 
-    private int getBitAsInt(int data, int bit) {
-        int r = data & (1 << bit);
-        if (r != 0) {
-            return 1;
+        for (int i = 0; i < 4; i++) {
+            intraLeft[i] = Globals.B_DC_PRED;
+        }
+
+        // Left of the frame
+        for (int y = 0; y < 16; y++) {
+            work[Y_OFFSET + y * BPS - 1] = (byte) 129;
+        }
+        for (int y = 0; y < 8; y++) {
+            work[U_OFFSET + y * BPS - 1] = (byte) 129;
+            work[V_OFFSET + y * BPS - 1] = (byte) 129;
         }
-        return 0;
-    }
 
-    int[][][][] getCoefProbs() {
-        return coefProbs;
+        // Top left of the frame
+        byte topLeft = (byte) (mbY > 0 ? 129 : 127);
+        work[Y_OFFSET - BPS - 1] = topLeft;
+        work[U_OFFSET - BPS - 1] = topLeft;
+        work[V_OFFSET - BPS - 1] = topLeft;
     }
 
-    public BufferedImage getDebugImageDiff() {
-
-        BufferedImage bi = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-        WritableRaster imRas = bi.getWritableTile(0, 0);
-        for (int x = 0; x < getWidth(); x++) {
-            for (int y = 0; y < getHeight(); y++) {
-                int[] c = new int[3];
-                int yy, u, v;
-                yy = 127 + this.getMacroBlock(x / 16, y / 16).getSubBlock(SubBlock.Plane.Y1, (x % 16) / 4, (y % 16) / 4).getDiff()[x % 4][y % 4];
-                u = 127 + this.getMacroBlock(x / 16, y / 16).getSubBlock(SubBlock.Plane.U, ((x / 2) % 8) / 4, ((y / 2) % 8) / 4).getDiff()[(x / 2) % 4][(y / 2) % 4];
-                v = 127 + this.getMacroBlock(x / 16, y / 16).getSubBlock(SubBlock.Plane.V, ((x / 2) % 8) / 4, ((y / 2) % 8) / 4).getDiff()[(x / 2) % 4][(y / 2) % 4];
-                c[0] = (int) (1.164 * (yy - 16) + 1.596 * (v - 128));
-                c[1] = (int) (1.164 * (yy - 16) - 0.813 * (v - 128) - 0.391 * (u - 128));
-                c[2] = (int) (1.164 * (yy - 16) + 2.018 * (u - 128));
-
-                for (int z = 0; z < 3; z++) {
-                    if (c[z] < 0) {
-                        c[z] = 0;
-                    }
-                    if (c[z] > 255) {
-                        c[z] = 255;
-                    }
+    private void decodeMacroBlock(final BoolDecoder bc, final BoolDecoder tokenBoolDecoder, final int[][] levels,
+                                  final int mbX, final int mbY) throws IOException {
+        // Modes, from the first partition
+        int segment = 0;
+        if (segmentationIsEnabled > 0 && updateMacroBlockSegmentationMap > 0) {
+            segment = bc.readTree(Globals.macroBlockSegmentTree, macroBlockSegmentTreeProbs, 0);
+        }
+
+        boolean skip = macroBlockNoCoeffSkip > 0 && bc.readBool(probSkipFalse) != 0;
+
+        int yMode = readYMode(bc);
+
+        if (yMode == Globals.B_PRED) {
+            for (int y = 0; y < 4; y++) {
+                for (int x = 0; x < 4; x++) {
+                    int mode = readSubBlockMode(bc, intraTop[mbX * 4 + x], intraLeft[y]);
+
+                    subBlockModes[y * 4 + x] = mode;
+                    intraTop[mbX * 4 + x] = mode;
+                    intraLeft[y] = mode;
                 }
-                imRas.setPixel(x, y, c);
             }
         }
-//        bufferCount++;
-        return bi;
-    }
+        else {
+            int mode = impliedSubBlockMode(yMode);
 
-    public BufferedImage getDebugImagePredict() {
-        BufferedImage bi = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-        WritableRaster imRas = bi.getWritableTile(0, 0);
-        for (int x = 0; x < getWidth(); x++) {
-            for (int y = 0; y < getHeight(); y++) {
-                int[] c = new int[3];
-                int yy, u, v;
-                yy = this.getMacroBlock(x / 16, y / 16).getSubBlock(SubBlock.Plane.Y1, (x % 16) / 4, (y % 16) / 4).getPredict()[x % 4][y % 4];
-                u = this.getMacroBlock(x / 16, y / 16).getSubBlock(SubBlock.Plane.U, ((x / 2) % 8) / 4, ((y / 2) % 8) / 4).getPredict()[(x / 2) % 4][(y / 2) % 4];
-                v = this.getMacroBlock(x / 16, y / 16).getSubBlock(SubBlock.Plane.V, ((x / 2) % 8) / 4, ((y / 2) % 8) / 4).getPredict()[(x / 2) % 4][(y / 2) % 4];
-                c[0] = (int) (1.164 * (yy - 16) + 1.596 * (v - 128));
-                c[1] = (int) (1.164 * (yy - 16) - 0.813 * (v - 128) - 0.391 * (u - 128));
-                c[2] = (int) (1.164 * (yy - 16) + 2.018 * (u - 128));
-
-                for (int z = 0; z < 3; z++) {
-                    if (c[z] < 0) {
-                        c[z] = 0;
-                    }
-                    if (c[z] > 255) {
-                        c[z] = 255;
-                    }
-                }
-                imRas.setPixel(x, y, c);
+            for (int i = 0; i < 4; i++) {
+                intraTop[mbX * 4 + i] = mode;
+                intraLeft[i] = mode;
             }
         }
-//        bufferCount++;
-        return bi;
-    }
 
-    public BufferedImage getDebugImageUBuffer() {
-        BufferedImage bi = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-        WritableRaster imRas = bi.getWritableTile(0, 0);
-        for (int x = 0; x < getWidth(); x++) {
-            for (int y = 0; y < getHeight(); y++) {
-                int[] c = new int[3];
-                int u;
-                u = this.getMacroBlock(x / 16, y / 16).getSubBlock(SubBlock.Plane.U, ((x / 2) % 8) / 4, ((y / 2) % 8) / 4).getDest()[(x / 2) % 4][(y / 2) % 4];
-                c[0] = u;
-                c[1] = u;
-                c[2] = u;
-
-                for (int z = 0; z < 3; z++) {
-                    if (c[z] < 0) {
-                        c[z] = 0;
-                    }
-                    if (c[z] > 255) {
-                        c[z] = 255;
-                    }
-                }
-                imRas.setPixel(x, y, c);
+        int uvMode = readUvMode(bc);
+
+        // Residuals, from the token partition
+        SegmentQuant quant = segmentQuants.getSegQuants()[segment];
+        boolean nonZero;
+
+        if (skip) {
+            nonZero = false;
+
+            // The Y2 context is kept across macro blocks without Y2
+            int keep = yMode == Globals.B_PRED ? NZ_Y2 : 0;
+            nonZeroTop[mbX] &= keep;
+            nonZeroLeft &= keep;
+
+            for (int i = 0; i < blockStatus.length; i++) {
+                blockStatus[i] = 0;
             }
         }
-//        bufferCount++;
-        return bi;
-    }
+        else {
+            nonZero = decodeMacroBlockTokens(tokenBoolDecoder, mbX, yMode != Globals.B_PRED, quant);
+        }
 
-    public BufferedImage getDebugImageUDiffBuffer() {
-        BufferedImage bi = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-        WritableRaster imRas = bi.getWritableTile(0, 0);
-        for (int x = 0; x < getWidth(); x++) {
-            for (int y = 0; y < getHeight(); y++) {
-                int[] c = new int[3];
-                int u;
-                u = 127 + this.getMacroBlock(x / 16, y / 16).getSubBlock(SubBlock.Plane.U, ((x / 2) % 8) / 4, ((y / 2) % 8) / 4).getDiff()[(x / 2) % 4][(y / 2) % 4];
-                c[0] = u;
-                c[1] = u;
-                c[2] = u;
-
-                for (int z = 0; z < 3; z++) {
-                    if (c[z] < 0) {
-                        c[z] = 0;
-                    }
-                    if (c[z] > 255) {
-                        c[z] = 255;
-                    }
-                }
-                imRas.setPixel(x, y, c);
+        filterLevels[mbX] = levels[segment][yMode == Globals.B_PRED ? 1 : 0];
+        filterInner[mbX] = yMode == Globals.B_PRED || nonZero;
+
+        // Prediction and reconstruction, in the work buffer
+        initTop(mbX, mbY);
+
+        if (yMode == Globals.B_PRED) {
+            for (int n = 0; n < 16; n++) {
+                int blockOffset = Y_OFFSET + (n >> 2) * 4 * BPS + (n & 3) * 4;
+
+                IntraPredictor.predictSubBlock(work, blockOffset, subBlockModes[n]);
+                addResidual(n, blockOffset);
             }
         }
-//        bufferCount++;
-        return bi;
-    }
+        else {
+            IntraPredictor.predictLuma(work, Y_OFFSET, yMode, mbY > 0, mbX > 0);
 
-    public BufferedImage getDebugImageUPredBuffer() {
-        BufferedImage bi = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-        WritableRaster imRas = bi.getWritableTile(0, 0);
-        for (int x = 0; x < getWidth(); x++) {
-            for (int y = 0; y < getHeight(); y++) {
-                int[] c = new int[3];
-                int u;
-                u = this.getMacroBlock(x / 16, y / 16).getSubBlock(SubBlock.Plane.U, ((x / 2) % 8) / 4, ((y / 2) % 8) / 4).getPredict()[(x / 2) % 4][(y / 2) % 4];
-                c[0] = u;
-                c[1] = u;
-                c[2] = u;
-
-                for (int z = 0; z < 3; z++) {
-                    if (c[z] < 0) {
-                        c[z] = 0;
-                    }
-                    if (c[z] > 255) {
-                        c[z] = 255;
-                    }
-                }
-                imRas.setPixel(x, y, c);
+            for (int n = 0; n < 16; n++) {
+                addResidual(n, Y_OFFSET + (n >> 2) * 4 * BPS + (n & 3) * 4);
             }
         }
-//        bufferCount++;
-        return bi;
+
+        IntraPredictor.predictChroma(work, U_OFFSET, uvMode, mbY > 0, mbX > 0);
+        IntraPredictor.predictChroma(work, V_OFFSET, uvMode, mbY > 0, mbX > 0);
+
+        for (int n = 0; n < 4; n++) {
+            int blockOffset = (n >> 1) * 4 * BPS + (n & 1) * 4;
+
+            addResidual(U_BLOCKS + n, U_OFFSET + blockOffset);
+            addResidual(V_BLOCKS + n, V_OFFSET + blockOffset);
+        }
+
+        storeMacroBlock(mbX);
     }
 
-    public BufferedImage getDebugImageVBuffer() {
-        BufferedImage bi = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-        WritableRaster imRas = bi.getWritableTile(0, 0);
-        for (int x = 0; x < getWidth(); x++) {
-            for (int y = 0; y < getHeight(); y++) {
-                int[] c = new int[3];
-                int v;
-                v = this.getMacroBlock(x / 16, y / 16).getSubBlock(SubBlock.Plane.V, ((x / 2) % 8) / 4, ((y / 2) % 8) / 4).getDest()[(x / 2) % 4][(y / 2) % 4];
-                c[0] = v;
-                c[1] = v;
-                c[2] = v;
-
-                for (int z = 0; z < 3; z++) {
-                    if (c[z] < 0) {
-                        c[z] = 0;
-                    }
-                    if (c[z] > 255) {
-                        c[z] = 255;
-                    }
-                }
-                imRas.setPixel(x, y, c);
-            }
+    private static int impliedSubBlockMode(final int yMode) {
+        switch (yMode) {
+            case Globals.V_PRED:
+                return Globals.B_VE_PRED;
+            case Globals.H_PRED:
+                return Globals.B_HE_PRED;
+            case Globals.TM_PRED:
+                return Globals.B_TM_PRED;
+            case Globals.DC_PRED:
+            default:
+                return Globals.B_DC_PRED;
         }
-//        bufferCount++;
-        return bi;
     }
 
-    public BufferedImage getDebugImageVDiffBuffer() {
-        BufferedImage bi = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-        WritableRaster imRas = bi.getWritableTile(0, 0);
-        for (int x = 0; x < getWidth(); x++) {
-            for (int y = 0; y < getHeight(); y++) {
-                int[] c = new int[3];
-                int v;
-                v = 127 + this.getMacroBlock(x / 16, y / 16).getSubBlock(SubBlock.Plane.V, ((x / 2) % 8) / 4, ((y / 2) % 8) / 4).getDiff()[(x / 2) % 4][(y / 2) % 4];
-                c[0] = v;
-                c[1] = v;
-                c[2] = v;
-
-                for (int z = 0; z < 3; z++) {
-                    if (c[z] < 0) {
-                        c[z] = 0;
-                    }
-                    if (c[z] > 255) {
-                        c[z] = 255;
-                    }
+    private void initTop(final int mbX, final int mbY) {
+        int yTopOffset = Y_OFFSET - BPS;
+        int uTopOffset = U_OFFSET - BPS;
+        int vTopOffset = V_OFFSET - BPS;
+
+        if (mbY > 0) {
+            System.arraycopy(yTop, mbX * 16, work, yTopOffset, 16);
+            System.arraycopy(uTop, mbX * 8, work, uTopOffset, 8);
+            System.arraycopy(vTop, mbX * 8, work, vTopOffset, 8);
+
+            // Above right, replicated from the last pixel above at the right edge of the frame
+            if (mbX < macroBlockCols - 1) {
+                System.arraycopy(yTop, mbX * 16 + 16, work, yTopOffset + 16, 4);
+            }
+            else {
+                byte last = yTop[mbX * 16 + 15];
+
+                for (int i = 16; i < 20; i++) {
+                    work[yTopOffset + i] = last;
                 }
-                imRas.setPixel(x, y, c);
             }
         }
-//        bufferCount++;
-        return bi;
+        else {
+            // Above the frame
+            for (int i = 0; i < 20; i++) {
+                work[yTopOffset + i] = 127;
+            }
+            for (int i = 0; i < 8; i++) {
+                work[uTopOffset + i] = 127;
+                work[vTopOffset + i] = 127;
+            }
+        }
+
+        // Sub blocks in the right column all use the above right pixels of the macro block
+        for (int y = 3; y < 15; y += 4) {
+            System.arraycopy(work, yTopOffset + 16, work, Y_OFFSET + y * BPS + 16, 4);
+        }
     }
 
-    public BufferedImage getDebugImageVPredBuffer() {
-        BufferedImage bi = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-        WritableRaster imRas = bi.getWritableTile(0, 0);
-        for (int x = 0; x < getWidth(); x++) {
-            for (int y = 0; y < getHeight(); y++) {
-                int[] c = new int[3];
-                int v;
-                v = this.getMacroBlock(x / 16, y / 16).getSubBlock(SubBlock.Plane.V, ((x / 2) % 8) / 4, ((y / 2) % 8) / 4).getPredict()[(x / 2) % 4][(y / 2) % 4];
-                c[0] = v;
-                c[1] = v;
-                c[2] = v;
-
-                for (int z = 0; z < 3; z++) {
-                    if (c[z] < 0) {
-                        c[z] = 0;
-                    }
-                    if (c[z] > 255) {
-                        c[z] = 255;
-                    }
-                }
-                imRas.setPixel(x, y, c);
-            }
+    private void storeMacroBlock(final int mbX) {
+        int yOffset = FILTER_ROWS * yStride + mbX * 16;
+        int uvOffset = FILTER_ROWS / 2 * uvStride + mbX * 8;
+
+        for (int y = 0; y < 16; y++) {
+            System.arraycopy(work, Y_OFFSET + y * BPS, yRows, yOffset + y * yStride, 16);
+        }
+        for (int y = 0; y < 8; y++) {
+            System.arraycopy(work, U_OFFSET + y * BPS, uRows, uvOffset + y * uvStride, 8);
+            System.arraycopy(work, V_OFFSET + y * BPS, vRows, uvOffset + y * uvStride, 8);
+        }
+
+        // Unfiltered bottom row, for predicting the next macro block row
+        System.arraycopy(work, Y_OFFSET + 15 * BPS, yTop, mbX * 16, 16);
+        System.arraycopy(work, U_OFFSET + 7 * BPS, uTop, mbX * 8, 8);
+        System.arraycopy(work, V_OFFSET + 7 * BPS, vTop, mbX * 8, 8);
+
+        // Right column (and top right pixel) becomes the left column (and top left pixel) of the next macro block
+        for (int y = -1; y < 16; y++) {
+            work[Y_OFFSET + y * BPS - 1] = work[Y_OFFSET + y * BPS + 15];
+        }
+        for (int y = -1; y < 8; y++) {
+            work[U_OFFSET + y * BPS - 1] = work[U_OFFSET + y * BPS + 7];
+            work[V_OFFSET + y * BPS - 1] = work[V_OFFSET + y * BPS + 7];
         }
-//        bufferCount++;
-        return bi;
     }
 
-    public BufferedImage getDebugImageYBuffer() {
-        BufferedImage bi = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-        WritableRaster imRas = bi.getWritableTile(0, 0);
-        for (int x = 0; x < getWidth(); x++) {
-            for (int y = 0; y < getHeight(); y++) {
-                int[] c = new int[3];
-                int yy;
-                yy = this.getMacroBlock(x / 16, y / 16).getSubBlock(SubBlock.Plane.Y1, (x % 16) / 4, (y % 16) / 4).getDest()[x % 4][y % 4];
-                c[0] = yy;
-                c[1] = yy;
-                c[2] = yy;
-
-                for (int z = 0; z < 3; z++) {
-                    if (c[z] < 0) {
-                        c[z] = 0;
-                    }
-                    if (c[z] > 255) {
-                        c[z] = 255;
-                    }
-                }
-                imRas.setPixel(x, y, c);
-            }
+    private void addResidual(final int block, final int destOffset) {
+        switch (blockStatus[block]) {
+            case 1:
+                IDCT.idctDC(coefficients, block * 16, work, destOffset, BPS);
+                break;
+            case 2:
+                IDCT.idct4x4llm(coefficients, block * 16, work, destOffset, BPS);
+                break;
+            default:
+                // No residual
         }
-//        bufferCount++;
-        return bi;
     }
 
-    public BufferedImage getDebugImageYDiffBuffer() {
-        BufferedImage bi = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-        WritableRaster imRas = bi.getWritableTile(0, 0);
-        for (int x = 0; x < getWidth(); x++) {
-            for (int y = 0; y < getHeight(); y++) {
-                int[] c = new int[3];
-                int yy;
-                yy = 127 + this.getMacroBlock(x / 16, y / 16).getSubBlock(SubBlock.Plane.Y1, (x % 16) / 4, (y % 16) / 4).getDiff()[x % 4][y % 4];
-                c[0] = yy;
-                c[1] = yy;
-                c[2] = yy;
-
-                for (int z = 0; z < 3; z++) {
-                    if (c[z] < 0) {
-                        c[z] = 0;
-                    }
-                    if (c[z] > 255) {
-                        c[z] = 255;
-                    }
-                }
-                imRas.setPixel(x, y, c);
+    private boolean decodeMacroBlockTokens(final BoolDecoder decoder, final int mbX, final boolean withY2,
+                                           final SegmentQuant quant) throws IOException {
+        int top = nonZeroTop[mbX];
+        int left = nonZeroLeft;
+        boolean nonZero = false;
+
+        int first = 0;
+        int type = 3;
+
+        if (withY2) {
+            int context = ((top & NZ_Y2) != 0 ? 1 : 0) + ((left & NZ_Y2) != 0 ? 1 : 0);
+            int status = decodeCoefficients(decoder, 1, context, 0, quant.getY2dc(), quant.getY2ac_delta_q(), Y2_BLOCK * 16);
+
+            if (status != 0) {
+                top |= NZ_Y2;
+                left |= NZ_Y2;
+                nonZero = true;
+            }
+            else {
+                top &= ~NZ_Y2;
+                left &= ~NZ_Y2;
             }
+
+            // DC of the Y blocks
+            IDCT.iwalsh4x4(coefficients, Y2_BLOCK * 16, coefficients, 0);
+
+            first = 1;
+            type = 0;
         }
-//        bufferCount++;
-        return bi;
-    }
 
-    public BufferedImage getDebugImageYPredBuffer() {
-        BufferedImage bi = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-        WritableRaster imRas = bi.getWritableTile(0, 0);
-        for (int x = 0; x < getWidth(); x++) {
-            for (int y = 0; y < getHeight(); y++) {
-                int[] c = new int[3];
-                int yy;
-                yy = this.getMacroBlock(x / 16, y / 16).getSubBlock(SubBlock.Plane.Y1, (x % 16) / 4, (y % 16) / 4).getPredict()[x % 4][y % 4];
-                c[0] = yy;
-                c[1] = yy;
-                c[2] = yy;
-
-                for (int z = 0; z < 3; z++) {
-                    if (c[z] < 0) {
-                        c[z] = 0;
-                    }
-                    if (c[z] > 255) {
-                        c[z] = 255;
-                    }
+        for (int y = 0; y < 4; y++) {
+            int l = (left >> y) & 1;
+
+            for (int x = 0; x < 4; x++) {
+                int block = y * 4 + x;
+                int status = decodeCoefficients(decoder, type, l + ((top >> x) & 1), first, quant.getY1dc(), quant.getY1ac(), block * 16);
+
+                l = status != 0 ? 1 : 0;
+                top = (top & ~(1 << x)) | (l << x);
+                nonZero |= status != 0;
+
+                if (withY2 && status < 2) {
+                    // AC coefficients only, status depends on the DC from Y2
+                    status = status != 0 ? 2 : coefficients[block * 16] != 0 ? 1 : 0;
                 }
-                imRas.setPixel(x, y, c);
+
+                blockStatus[block] = status;
             }
+
+            left = (left & ~(1 << y)) | (l << y);
         }
-//        bufferCount++;
-        return bi;
-    }
 
-    public int getFrameType() {
-        return frameType;
-    }
+        for (int plane = 0; plane < 2; plane++) {
+            int shift = 4 + plane * 2;
+            int blocks = plane == 0 ? U_BLOCKS : V_BLOCKS;
 
-    public int getWidth() {
-        return width;
-    }
+            for (int y = 0; y < 2; y++) {
+                int l = (left >> (shift + y)) & 1;
 
-    public int getHeight() {
-        return height;
-    }
+                for (int x = 0; x < 2; x++) {
+                    int block = blocks + y * 2 + x;
+                    int status = decodeCoefficients(decoder, 2, l + ((top >> (shift + x)) & 1), 0, quant.getUvdc_delta_q(), quant.getUvac_delta_q(), block * 16);
 
-    public SubBlock getLeftSubBlock(SubBlock sb, SubBlock.Plane plane) {
-        SubBlock r = sb.getLeft();
-        if (r == null) {
-            MacroBlock mb = sb.getMacroBlock();
-            int y = mb.getSubblockY(sb);
-            MacroBlock mb2 = getMacroBlock(mb.getX() - 1, mb.getY());
-            //TODO: SPLIT
+                    l = status != 0 ? 1 : 0;
+                    top = (top & ~(1 << (shift + x))) | (l << (shift + x));
+                    nonZero |= status != 0;
 
-            while (plane == SubBlock.Plane.Y2 && mb2.getYMode() == Globals.B_PRED) {
-                mb2 = getMacroBlock(mb2.getX() - 1, mb2.getY());
-            }
+                    blockStatus[block] = status;
+                }
 
-            r = mb2.getRightSubBlock(y, sb.getPlane());
+                left = (left & ~(1 << (shift + y))) | (l << (shift + y));
+            }
         }
 
-        return r;
-    }
+        nonZeroTop[mbX] = top;
+        nonZeroLeft = left;
 
-    public MacroBlock getMacroBlock(int mbCol, int mbRow) {
-//         return macroBlocks[mbCol + 1][mbRow + 1];
-        return macroBlocks[mbRow + 1][mbCol + 1];
+        return nonZero;
     }
 
-    public int getMacroBlockCols() {
-        return macroBlockCols;
-    }
+    /**
+     * Decodes and dequantizes the coefficients of one block, into {@code coefficients} starting at {@code offset}.
+     *
+     * @return {@code 0} if all coefficients are zero, {@code 1} if only the DC coefficient is non-zero,
+     * otherwise {@code 2}.
+     */
+    private int decodeCoefficients(final BoolDecoder decoder, final int type, final int context, final int first,
+                                   final int dcQ, final int acQ, final int offset) throws IOException {
+        int[][][] probs = coefProbs[type];
+        int lc = context;
+        boolean skip = false;
+        int status = 0;
+
+        for (int i = first; i < 16; i++) {
+            int token = decoder.readTree(Globals.vp8CoefTree, probs[Globals.vp8CoefBands[i]][lc], skip ? 1 : 0);
+
+            if (token == Globals.dct_eob) {
+                break;
+            }
+
+            if (token == Globals.DCT_0) {
+                // No EOB after a zero token
+                lc = 0;
+                skip = true;
+                continue;
+            }
+
+            int value = decodeToken(decoder, token);
+
+            lc = value == 1 ? 1 : 2;
+            skip = false;
 
-    public String getMacroBlockDebugString(int mbx, int mby, int sbx, int sby) {
-        String r = "";
-        if (mbx < this.macroBlockCols && mby < this.getMacroBlockRows()) {
-            MacroBlock mb = getMacroBlock(mbx, mby);
-            r = r + mb.getDebugString();
-            if (sbx < 4 && sby < 4) {
-                SubBlock sb = mb.getSubBlock(SubBlock.Plane.Y1, sbx, sby);
-                r = r + "\n SubBlock " + sbx + ", " + sby + "\n  " + sb.getDebugString();
-                sb = mb.getSubBlock(SubBlock.Plane.Y2, sbx, sby);
-                r = r + "\n SubBlock " + sbx + ", " + sby + "\n  " + sb.getDebugString();
-                sb = mb.getSubBlock(SubBlock.Plane.U, sbx / 2, sby / 2);
-                r = r + "\n SubBlock " + sbx / 2 + ", " + sby / 2 + "\n  " + sb.getDebugString();
-                sb = mb.getSubBlock(SubBlock.Plane.V, sbx / 2, sby / 2);
-                r = r + "\n SubBlock " + sbx / 2 + ", " + sby / 2 + "\n  " + sb.getDebugString();
+            if (decoder.readBit() > 0) {
+                value = -value;
             }
+
+            coefficients[offset + Globals.vp8defaultZigZag1d[i]] = value * (i > 0 ? acQ : dcQ);
+            status = i > 0 ? 2 : 1;
         }
-        return r;
-    }
 
-    public int getMacroBlockRows() {
-        return macroBlockRows;
+        return status;
     }
 
-    public int getQIndex() {
-        return segmentQuants.getqIndex();
+    private static int decodeToken(final BoolDecoder decoder, final int token) throws IOException {
+        switch (token) {
+            case Globals.dct_cat1:
+                return 5 + DCTextra(decoder, Globals.Pcat1);
+            case Globals.dct_cat2:
+                return 7 + DCTextra(decoder, Globals.Pcat2);
+            case Globals.dct_cat3:
+                return 11 + DCTextra(decoder, Globals.Pcat3);
+            case Globals.dct_cat4:
+                return 19 + DCTextra(decoder, Globals.Pcat4);
+            case Globals.dct_cat5:
+                return 35 + DCTextra(decoder, Globals.Pcat5);
+            case Globals.dct_cat6:
+                return 67 + DCTextra(decoder, Globals.Pcat6);
+            default:
+                return token;
+        }
     }
 
-    public SegmentQuants getSegmentQuants() {
-        return segmentQuants;
+    private static int DCTextra(final BoolDecoder decoder, final int[] p) throws IOException {
+        int v = 0;
+        int offset = 0;
+        do {
+            v += v + decoder.readBool(p[offset]);
+            offset++;
+        } while (p[offset] > 0);
+        return v;
     }
 
-    public int getSharpnessLevel() {
-        return sharpnessLevel;
-    }
+    private void filterMacroBlockRow(final int mbY, final RowWindow window) {
+        int yOffset = FILTER_ROWS * yStride;
+        int uvOffset = FILTER_ROWS / 2 * uvStride;
 
-    public BoolDecoder getTokenBoolDecoder() throws IOException {
-        tokenBoolDecoder.seek();
-        return tokenBoolDecoder;
+        for (int mbX = 0; mbX < macroBlockCols; mbX++) {
+            LoopFilter.loopFilterMacroBlock(window.y, yOffset + mbX * 16, yStride, window.u, window.v, uvOffset + mbX * 8, uvStride,
+                    mbX > 0, mbY > 0, window.filterInner[mbX], window.filterLevels[mbX], simpleFilter, sharpnessLevel);
+        }
     }
 
-//     public int[][] getUBuffer() {
-//         int[][] r = new int[macroBlockCols * 8][macroBlockRows * 8];
-//         for (int y = 0; y < macroBlockRows; y++) {
-//             for (int x = 0; x < macroBlockCols; x++) {
-//                 MacroBlock mb = macroBlocks[x + 1][y + 1];
-//                 for (int b = 0; b < 2; b++) {
-//                     for (int a = 0; a < 2; a++) {
-//                         SubBlock sb = mb.getUSubBlock(a, b);
-//                         for (int d = 0; d < 4; d++) {
-//                             for (int c = 0; c < 4; c++) {
-//                                 r[(x * 8) + (a * 4) + c][(y * 8) + (b * 4) + d] = sb.getDest()[c][d];
-//                             }
-//                         }
-//                     }
-//                 }
-//             }
-//         }
-//         return r;
-//     }
-//
-//     public int[][] getVBuffer() {
-//         int[][] r = new int[macroBlockCols * 8][macroBlockRows * 8];
-//         for (int y = 0; y < macroBlockRows; y++) {
-//             for (int x = 0; x < macroBlockCols; x++) {
-//                 MacroBlock mb = macroBlocks[x + 1][y + 1];
-//                 for (int b = 0; b < 2; b++) {
-//                     for (int a = 0; a < 2; a++) {
-//                         SubBlock sb = mb.getVSubBlock(a, b);
-//                         for (int d = 0; d < 4; d++) {
-//                             for (int c = 0; c < 4; c++) {
-//                                 r[(x * 8) + (a * 4) + c][(y * 8) + (b * 4) + d] = sb.getDest()[c][d];
-//                             }
-//                         }
-//                     }
-//                 }
-//             }
-//         }
-//         return r;
-//     }
+    private void copyRows(final int mbY, final int end, final RowWindow window, final WritableRaster raster, final Rectangle region,
+                          final int regionEnd, final int xSubsampling, final int ySubsampling) {
+        // Rows in the buffers start FILTER_ROWS above the current macro block row
+        int firstRow = mbY * 16 - FILTER_ROWS;
+        int firstUVRow = mbY * 8 - FILTER_ROWS / 2;
 
-//     public int[][] getYBuffer() {
-//         int[][] r = new int[macroBlockCols * 16][macroBlockRows * 16];
-//         for (int y = 0; y < macroBlockRows; y++) {
-//             for (int x = 0; x < macroBlockCols; x++) {
-//                 MacroBlock mb = macroBlocks[x + 1][y + 1];
-//                 for (int b = 0; b < 4; b++) {
-//                     for (int a = 0; a < 4; a++) {
-//                         SubBlock sb = mb.getYSubBlock(a, b);
-//                         for (int d = 0; d < 4; d++) {
-//                             for (int c = 0; c < 4; c++) {
-//                                 r[(x * 16) + (a * 4) + c][(y * 16) + (b * 4) + d] = sb.getDest()[c][d];
-//                             }
-//                         }
-//                     }
-//                 }
-//             }
-//         }
-//         return r;
-//     }
+        int start = Math.max(mbY == 0 ? 0 : firstRow, region.y);
+        int stop = Math.min(end, regionEnd);
 
-    private void readModes(BoolDecoder bc) throws IOException {
-        int mb_row = -1;
-        int prob_skip_false = 0;
+        // First row on the subsampling grid
+        start += (ySubsampling - (start - region.y) % ySubsampling) % ySubsampling;
 
-        if (macroBlockNoCoeffSkip > 0) {
-            prob_skip_false = bc.readLiteral(8);
-        }
+        int dstWidth = Math.min((region.width + xSubsampling - 1) / xSubsampling, raster.getWidth());
+        int bands = raster.getNumDataElements();
+        byte[] row = new byte[dstWidth * bands];
 
-        while (++mb_row < macroBlockRows) {
-            int mb_col = -1;
-            while (++mb_col < macroBlockCols) {
-                //if (this.segmentation_enabled > 0) {
-                //	logger.log(Level.SEVERE, "TODO:");
-                //	throw new IllegalArgumentException("bad input: segmentation_enabled()");
-                //}
-                // Read the macroblock coeff skip flag if this feature is in
-                // use, else default to 0
-                MacroBlock mb = getMacroBlock(mb_col, mb_row);
-
-                if ((segmentationIsEnabled > 0) && (updateMacroBlockSegmentationMap > 0)) {
-                    int value = bc.readTree(Globals.macroBlockSegmentTree, this.macroBlockSegmentTreeProbs, 0);
-                    mb.setSegmentId(value);
-                }
+        for (int y = start; y < stop; y += ySubsampling) {
+            int yOffset = (y - firstRow) * yStride;
+            int uvOffset = ((y >> 1) - firstUVRow) * uvStride;
 
-                if (modeRefLoopFilterDeltaEnabled > 0) {
-                    int level = filterLevel;
-                    level = level + refLoopFilterDeltas[0];
-                    level = (level < 0) ? 0 : Math.min(level, 63);
-                    mb.setFilterLevel(level);
-                }
-                else {
-                    mb.setFilterLevel(segmentQuants.getSegQuants()[mb.getSegmentId()].getFilterStrength());
-                }
+            for (int dstX = 0, x = region.x, i = 0; dstX < dstWidth; dstX++, x += xSubsampling, i += bands) {
+                row[i] = window.y[yOffset + x];
+                row[i + 1] = window.u[uvOffset + (x >> 1)];
+                row[i + 2] = window.v[uvOffset + (x >> 1)];
 
-                int mb_skip_coeff = macroBlockNoCoeffSkip > 0 ? bc.readBool(prob_skip_false) : 0;
+                // TODO: Consider doing YCbCr -> RGB in reader instead, or pass a flag to allow readRaster reading direct YUV/YCbCr values
+                convertYCbCr2RGB(row, row, i);
+            }
 
-                mb.setSkipCoeff(mb_skip_coeff);
+            raster.setDataElements(0, (y - region.y) / ySubsampling, dstWidth, 1, row);
+        }
+    }
 
-                int y_mode = readYMode(bc);
+    private void fireProgressUpdate(int mbRow) {
+        if (listener != null) {
+            float percentageDone = (100.0f * ((float) (mbRow + 1) / (float) getMacroBlockRows()));
+            listener.imageProgress(null, percentageDone);
+        }
+    }
 
-                mb.setYMode(y_mode);
+//     private boolean getBit(int data, int bit) {
+//         int r = data & (1 << bit);
+//         return r != 0;
+//     }
 
-                if (y_mode == Globals.B_PRED) {
-                    for (int i = 0; i < 4; i++) {
-                        for (int j = 0; j < 4; j++) {
-                            SubBlock sb = mb.getYSubBlock(j, i);
-                            SubBlock A = getAboveSubBlock(sb, SubBlock.Plane.Y1);
-                            SubBlock L = getLeftSubBlock(sb, SubBlock.Plane.Y1);
+    private int getBitAsInt(int data, int bit) {
+        int r = data & (1 << bit);
+        if (r != 0) {
+            return 1;
+        }
+        return 0;
+    }
 
-                            int mode = readSubBlockMode(bc, A.getMode(), L.getMode());
+    public int getFrameType() {
+        return frameType;
+    }
 
-                            sb.setMode(mode);
-                        }
-                    }
+    public int getWidth() {
+        return width;
+    }
 
-                    if (modeRefLoopFilterDeltaEnabled > 0) {
-                        int level = mb.getFilterLevel();
-                        level = level + this.modeLoopFilterDeltas[0];
-                        level = (level < 0) ? 0 : Math.min(level, 63);
-                        mb.setFilterLevel(level);
-                    }
-                }
-                else {
-                    int BMode;
-
-                    switch (y_mode) {
-                        case Globals.V_PRED:
-                            BMode = Globals.B_VE_PRED;
-                            break;
-                        case Globals.H_PRED:
-                            BMode = Globals.B_HE_PRED;
-                            break;
-                        case Globals.TM_PRED:
-                            BMode = Globals.B_TM_PRED;
-                            break;
-                        case Globals.DC_PRED:
-                        default:
-                            BMode = Globals.B_DC_PRED;
-                            break;
-                    }
+    public int getHeight() {
+        return height;
+    }
 
-                    for (int x = 0; x < 4; x++) {
-                        for (int y = 0; y < 4; y++) {
-                            SubBlock sb = mb.getYSubBlock(x, y);
-                            sb.setMode(BMode);
-                        }
-                    }
-                }
-                int mode = readUvMode(bc);
-                mb.setUvMode(mode);
-            }
-        }
+    public int getMacroBlockCols() {
+        return macroBlockCols;
+    }
+
+    public int getMacroBlockRows() {
+        return macroBlockRows;
+    }
+
+    public int getQIndex() {
+        return segmentQuants.getqIndex();
+    }
+
+    public int getSharpnessLevel() {
+        return sharpnessLevel;
     }
 
     private int readPartitionSize(long l) throws IOException {
@@ -1043,7 +1058,6 @@ public final class VP8Frame {
             // Calculate the length of this partition. The last partition size is implicit.
             if (i < num_part - 1) {
                 partitionSize = readPartitionSize(partitionsStart + (i * 3));
-                bc.seek();
             }
             else {
                 partitionSize = frame.length() - partition;
@@ -1052,42 +1066,5 @@ public final class VP8Frame {
             tokenBoolDecoders.add(new BoolDecoder(frame, partition));
             partition += partitionSize;
         }
-
-        tokenBoolDecoder = tokenBoolDecoders.get(0);
-    }
-
-    private final byte[] yuv = new byte[3];
-    private final byte[] rgb = new byte[4]; // Allow decoding into RGBA, leaving the alpha out.
-
-    private void copyBlock(final MacroBlock macroBlock, final WritableRaster byteRGBRaster,
-                           final Rectangle region, final int xSubsampling, final int ySubsampling) {
-        // We might be copying into a smaller raster
-        int yStart = macroBlock.getY() * 16 - region.y;
-        int yEnd = Math.min(16, byteRGBRaster.getHeight() * ySubsampling - yStart);
-        int xStart = macroBlock.getX() * 16 - region.x;
-        int xEnd = Math.min(16, byteRGBRaster.getWidth() * xSubsampling - xStart);
-
-        for (int y = 0; y < yEnd; y += ySubsampling) {
-            int dstY = (yStart + y) / ySubsampling;
-            if (dstY < 0) {
-                continue;
-            }
-
-            for (int x = 0; x < xEnd; x += xSubsampling) {
-                int dstX = (xStart + x) / xSubsampling;
-                if (dstX < 0) {
-                    continue;
-                }
-
-                yuv[0] = (byte) macroBlock.getSubBlock(SubBlock.Plane.Y1, x / 4, y / 4).getDest()[x % 4][y % 4];
-                yuv[1] = (byte) macroBlock.getSubBlock(SubBlock.Plane.U, (x / 2) / 4, (y / 2) / 4).getDest()[(x / 2) % 4][(y / 2) % 4];
-                yuv[2] = (byte) macroBlock.getSubBlock(SubBlock.Plane.V, (x / 2) / 4, (y / 2) / 4).getDest()[(x / 2) % 4][(y / 2) % 4];
-
-                // TODO: Consider doing YCbCr -> RGB in reader instead, or pass a flag to allow readRaster reading direct YUV/YCbCr values
-                convertYCbCr2RGB(yuv, rgb, 0);
-                byteRGBRaster.setDataElements(dstX, dstY, rgb);
-//                 byteRGBRaster.setDataElements(dstX, dstY, yuv);
-            }
-        }
     }
 }